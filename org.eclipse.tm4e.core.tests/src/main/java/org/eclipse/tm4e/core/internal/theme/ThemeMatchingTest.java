@@ -193,4 +193,36 @@ void testMicrosoft_vscode_23460() throws Exception {
 		final var result = theme.match(path);
 		assertThat(theme.getColorMap().get(result.foregroundId)).isEqualTo("#FF410D");
 	}
+
+	@Test
+	@Order(6)
+	@DisplayName("Theme matching memoizes results per scope path and theme")
+	void testMemoizesPerScopePathAndTheme() throws Exception {
+		final Theme theme1 = createTheme("""
+			{"settings": [
+				{ "settings": { "foreground": "#100000", "background": "#200000" } },
+				{ "scope": "source.json > meta.structure string", "settings": { "foreground": "#300000" } },
+				{ "scope": "meta.structure.dictionary.value string", "settings": { "foreground": "#400000" } }
+			]}""");
+		final Theme theme2 = createTheme("""
+			{"settings": [
+				{ "settings": { "foreground": "#100000", "background": "#200000" } },
+				{ "scope": "string", "settings": { "foreground": "#500000" } }
+			]}""");
+
+		final var parent = ScopeStack.from("source.json", "meta.structure.dictionary.json");
+		final var path = ScopeStack.from("source.json", "meta.structure.dictionary.json", "string.quoted.double.json");
+		final var nestedPath = ScopeStack.from("source.json", "meta.structure.dictionary.json",
+				"meta.structure.dictionary.value.json", "string.quoted.double.json");
+
+		assertThat(theme1.getColorMap().get(theme1.match(path).foregroundId)).isEqualTo("#300000");
+		assertThat(theme1.match(path)).isSameAs(theme1.match(path));
+		assertThat(theme1.getColorMap().get(theme1.match(nestedPath).foregroundId)).isEqualTo("#400000");
+		assertThat(theme1.match(parent)).isEqualTo(theme1.match(ScopeStack.from("source.json", "meta.structure.dictionary.json")));
+
+		// matching the same path instances against another theme must not return the memoized results of the first one
+		assertThat(theme2.getColorMap().get(theme2.match(path).foregroundId)).isEqualTo("#500000");
+		assertThat(theme2.getColorMap().get(theme2.match(nestedPath).foregroundId)).isEqualTo("#500000");
+		assertThat(theme1.getColorMap().get(theme1.match(path).foregroundId)).isEqualTo("#300000");
+	}
 }
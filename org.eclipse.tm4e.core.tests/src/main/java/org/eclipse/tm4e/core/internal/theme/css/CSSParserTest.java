@@ -32,4 +32,30 @@ void testCSSParser() throws Exception {
 		assertThat(parser.getBestStyle("storage", "invalid").getBackgroundColor()).isEqualTo(new RGB(255, 0, 0));
 		assertThat(parser.getBestStyle("storage", "modifier", "invalid", "deprecated").getBackgroundColor()).isEqualTo(new RGB(255, 0, 0));
 	}
+
+	@Test
+	void testBestStyleSpecificityAndOrder() throws Exception {
+		final var parser = new CSSParser("""
+			.comment { color: rgb(1,0,0); }
+			.comment.line, .string.quoted { color: rgb(2,0,0); }
+			.line.comment { color: rgb(3,0,0); }
+			.comment.line.java { color: rgb(4,0,0); }
+			.string { color: rgb(5,0,0); }
+			.comment { background-color: rgb(6,0,0); }
+			""");
+
+		// the last declared of equally specific matching selectors wins
+		assertThat(parser.getBestStyle("comment").getBackgroundColor()).isEqualTo(new RGB(6, 0, 0));
+		assertThat(parser.getBestStyle("comment", "line").getColor()).isEqualTo(new RGB(3, 0, 0));
+		assertThat(parser.getBestStyle("line", "comment", "js").getColor()).isEqualTo(new RGB(3, 0, 0));
+
+		// the selector with the most matching class names wins, regardless of its position
+		assertThat(parser.getBestStyle("comment", "line", "java").getColor()).isEqualTo(new RGB(4, 0, 0));
+		assertThat(parser.getBestStyle("string", "quoted", "double").getColor()).isEqualTo(new RGB(2, 0, 0));
+		assertThat(parser.getBestStyle("string", "double").getColor()).isEqualTo(new RGB(5, 0, 0));
+
+		// all class names of a selector must match
+		assertThat(parser.getBestStyle("line")).isNull();
+		assertThat(parser.getBestStyle("quoted", "java")).isNull();
+	}
 }
@@ -23,6 +23,7 @@
 import org.eclipse.tm4e.core.internal.theme.FontStyle;
 import org.eclipse.tm4e.core.internal.theme.StyleAttributes;
 import org.eclipse.tm4e.core.internal.utils.StringUtils;
+import org.eclipse.tm4e.core.internal.utils.WeakInterner;
 
 /**
  * @see <a href=
@@ -34,6 +35,30 @@ final class AttributedScopeStack {
 	record Frame(int encodedTokenAttributes, List<String> scopeNames) {
 	}
 
+	/**
+	 * @param interner the interner of the grammar that created the stack
+	 *
+	 * @return the canonical instance of the given stack, i.e. equal stacks are represented by the same instance
+	 */
+	static @Nullable AttributedScopeStack intern(final @Nullable AttributedScopeStack stack,
+			final WeakInterner<AttributedScopeStack> interner) {
+		if (stack == null || stack.interned)
+			return stack;
+
+		final var parent = stack.parent;
+		final var internedParent = intern(parent, interner);
+		var scopePath = stack.scopePath;
+		if (parent != null && internedParent != null && parent != internedParent) {
+			// rebase the scope path on the one of the interned parent so that getExtensionIfDefined keeps working
+			final var extension = scopePath.getExtensionIfDefined(parent.scopePath);
+			if (!extension.isEmpty() || scopePath == parent.scopePath) {
+				scopePath = castNonNull(ScopeStack.push(internedParent.scopePath, extension));
+			}
+		}
+		final var candidate = new AttributedScopeStack(internedParent, scopePath, stack.tokenAttributes, false);
+		return interner.intern(candidate, c -> new AttributedScopeStack(c.parent, c.scopePath, c.tokenAttributes, true));
+	}
+
 	static @Nullable AttributedScopeStack fromExtension(final @Nullable AttributedScopeStack namesScopeList,
 			final List<AttributedScopeStack.Frame> contentNameScopesList) {
 		var current = namesScopeList;
@@ -72,14 +97,31 @@ String scopeName() {
 	private final @Nullable AttributedScopeStack parent;
 	private final ScopeStack scopePath;
 	final int tokenAttributes;
+	private final int hashCode;
+
+	/** interned stacks are only equal to themselves, see {@link #intern(AttributedScopeStack, WeakInterner)} */
+	private final boolean interned;
+
+	/** children this node was pushed to before, see {@link AttributedScopeStackCache} */
+	private volatile @Nullable AttributedScopeStackCache childCache;
 
 	private AttributedScopeStack(
 			final @Nullable AttributedScopeStack parent,
 			final ScopeStack scopePath,
 			final int tokenAttributes) {
+		this(parent, scopePath, tokenAttributes, false);
+	}
+
+	private AttributedScopeStack(
+			final @Nullable AttributedScopeStack parent,
+			final ScopeStack scopePath,
+			final int tokenAttributes,
+			final boolean interned) {
 		this.parent = parent;
 		this.scopePath = scopePath;
 		this.tokenAttributes = tokenAttributes;
+		this.interned = interned;
+		hashCode = 31 * (31 * (parent == null ? 0 : parent.hashCode) + scopePath.hashCode()) + tokenAttributes;
 	}
 
 	@Override
@@ -87,8 +129,14 @@ public String toString() {
 		return String.join(" ", this.getScopeNames());
 	}
 
-	boolean equals(final AttributedScopeStack other) {
-		return equals(this, other);
+	@Override
+	public boolean equals(final @Nullable Object obj) {
+		return obj instanceof final AttributedScopeStack other && equals(this, other);
+	}
+
+	@Override
+	public int hashCode() {
+		return hashCode;
 	}
 
 	static boolean equals(
@@ -109,8 +157,14 @@ static boolean equals(
 				return false;
 			}
 
-			if (a.tokenAttributes != b.tokenAttributes
-					|| !Objects.equals(a.scopeName(), b.scopeName())) {
+			if (a.interned && b.interned) {
+				// equal interned stacks are the same instance
+				return false;
+			}
+
+			if (a.hashCode != b.hashCode
+					|| a.tokenAttributes != b.tokenAttributes
+					|| !Objects.equals(a.scopePath, b.scopePath)) {
 				return false;
 			}
 
@@ -166,6 +220,14 @@ private AttributedScopeStack _pushAttributed(
 			final AttributedScopeStack target,
 			final String scopeName,
 			final Grammar grammar) {
+		grammar.childCachePushes.increment();
+		final var cacheKey = grammar.getChildCacheKey();
+		final var cache = target.childCache;
+		final var cached = AttributedScopeStackCache.get(cache, cacheKey, scopeName);
+		if (cached != null)
+			return cached;
+		grammar.childCacheMisses.increment();
+
 		final var rawMetadata = grammar.getMetadataForScope(scopeName);
 
 		final var newPath = target.scopePath.push(scopeName);
@@ -174,7 +236,9 @@ private AttributedScopeStack _pushAttributed(
 				target.tokenAttributes,
 				rawMetadata,
 				scopeThemeMatchResult);
-		return new AttributedScopeStack(target, newPath, metadata);
+		final var child = new AttributedScopeStack(target, newPath, metadata);
+		target.childCache = AttributedScopeStackCache.with(cache, cacheKey, scopeName, child);
+		return child;
 	}
 
 	List<String> getScopeNames() {
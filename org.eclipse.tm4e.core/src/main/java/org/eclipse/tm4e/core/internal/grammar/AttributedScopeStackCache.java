@@ -0,0 +1,206 @@
+/**
+ * Copyright (c) 2026 Sebastian Thomschke and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.tm4e.core.internal.grammar;
+
+import static org.eclipse.tm4e.core.internal.utils.NullSafetyHelper.castNonNull;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tm4e.core.internal.theme.StyleAttributes;
+
+/**
+ * Small open-addressed map from scope name to the child {@link AttributedScopeStack} a node was pushed to before.
+ * <p>
+ * Computing a child requires a scope attributes lookup, a {@link ScopeStack#push(String)}, a theme match and a new
+ * node, while the same few scopes are pushed onto the same parent nodes over and over again. Each node therefore keeps
+ * one of these maps, so repeated pushes return the existing child.
+ * <p>
+ * The token attributes of a child depend on the grammar and the theme, so a map is only valid for the {@link Key} it was
+ * created with. Each grammar has its own key, which it replaces once its theme changed, see {@link Grammar#getChildCacheKey()}.
+ * A node shared by several grammars keeps one map per key, chained via {@link #next}, most recently updated first. At most
+ * {@value #MAX_KEYS} maps are kept per node, so the maps of replaced keys are dropped eventually.
+ * <p>
+ * Instances are immutable, an insertion returns a copy of the chain which the owning node publishes via a volatile write. In
+ * case of concurrent insertions one of them may get lost, which only costs a recomputation. At most {@value #MAX_ENTRIES}
+ * children are cached per map to bound the memory of nodes pushed with many different, e.g. capture-derived, scope names.
+ */
+public final class AttributedScopeStackCache {
+
+	static final int MAX_ENTRIES = 32;
+	static final int MAX_KEYS = 4;
+
+	private static final int INITIAL_CAPACITY = 4;
+
+	/**
+	 * @param pushes number of scopes pushed
+	 * @param misses number of children computed because they were not cached yet
+	 */
+	public record Stats(long pushes, long misses) {
+
+		public long hits() {
+			return pushes - misses;
+		}
+
+		/**
+		 * @return the ratio of pushes that returned a cached child, 0 if nothing was pushed yet
+		 */
+		public double hitRate() {
+			return pushes == 0 ? 0 : hits() / (double) pushes;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("AttributedScopeStackCache[pushes=%,d, hits=%,d, misses=%,d, hitRate=%.1f%%]",
+					pushes, hits(), misses, hitRate() * 100);
+		}
+	}
+
+	/**
+	 * Identifies the grammar and the theme defaults the cached token attributes were computed for. Does not reference the
+	 * grammar, so cached children do not keep it alive.
+	 */
+	static final class Key {
+		final StyleAttributes themeDefaults;
+
+		Key(final StyleAttributes themeDefaults) {
+			this.themeDefaults = themeDefaults;
+		}
+	}
+
+	/**
+	 * @return the cached child for the given key and scope name from the given chain or null
+	 */
+	static @Nullable AttributedScopeStack get(final @Nullable AttributedScopeStackCache chain, final Key key,
+			final String scopeName) {
+		for (var cache = chain; cache != null; cache = cache.next) {
+			if (cache.key == key)
+				return cache.get(scopeName);
+		}
+		return null;
+	}
+
+	/**
+	 * @return a copy of the given chain containing the given child for the given key
+	 */
+	static AttributedScopeStackCache with(final @Nullable AttributedScopeStackCache chain, final Key key,
+			final String scopeName, final AttributedScopeStack child) {
+		@Nullable
+		AttributedScopeStackCache cacheOfKey = null;
+		final var others = new @Nullable AttributedScopeStackCache[MAX_KEYS - 1];
+		int othersCount = 0;
+		for (var cache = chain; cache != null; cache = cache.next) {
+			if (cache.key == key) {
+				cacheOfKey = cache;
+			} else if (othersCount < others.length) {
+				others[othersCount++] = cache;
+			}
+		}
+
+		@Nullable
+		AttributedScopeStackCache next = null;
+		for (int i = othersCount - 1; i >= 0; i--) {
+			final var other = castNonNull(others[i]);
+			next = new AttributedScopeStackCache(other.key, other.keys, other.values, other.size, next);
+		}
+		if (cacheOfKey == null)
+			return new AttributedScopeStackCache(key, new @Nullable String[INITIAL_CAPACITY],
+					new @Nullable AttributedScopeStack[INITIAL_CAPACITY], 0, next).with(scopeName, child);
+		return cacheOfKey.withNext(next).with(scopeName, child);
+	}
+
+	final Key key;
+
+	private final @Nullable String[] keys;
+	private final @Nullable AttributedScopeStack[] values;
+	private final int size;
+
+	/** the map of another key of the same node */
+	private final @Nullable AttributedScopeStackCache next;
+
+	private AttributedScopeStackCache(final Key key, final @Nullable String[] keys, final @Nullable AttributedScopeStack[] values,
+			final int size, final @Nullable AttributedScopeStackCache next) {
+		this.key = key;
+		this.keys = keys;
+		this.values = values;
+		this.size = size;
+		this.next = next;
+	}
+
+	private AttributedScopeStackCache withNext(final @Nullable AttributedScopeStackCache next) {
+		return next == this.next ? this : new AttributedScopeStackCache(key, keys, values, size, next);
+	}
+
+	/**
+	 * @return the cached child for the given scope name or null
+	 */
+	@Nullable
+	private AttributedScopeStack get(final String scopeName) {
+		final var keys = this.keys;
+		final int mask = keys.length - 1;
+		int i = indexFor(scopeName, mask);
+		while (true) {
+			final var key = keys[i];
+			if (key == null)
+				return null;
+			// scope names usually are the same string instances taken from the grammar's rules
+			if (key == scopeName || key.equals(scopeName))
+				return values[i];
+			i = (i + 1) & mask;
+		}
+	}
+
+	/**
+	 * @return a copy of this cache containing the given child, or this instance if the cache is full
+	 */
+	private AttributedScopeStackCache with(final String scopeName, final AttributedScopeStack child) {
+		if (size >= MAX_ENTRIES)
+			return this;
+
+		// keep the load factor at or below 0.5 so probe sequences stay short
+		final int capacity = (size + 1) * 2 > keys.length ? keys.length * 2 : keys.length;
+		final var newKeys = new @Nullable String[capacity];
+		final var newValues = new @Nullable AttributedScopeStack[capacity];
+		final int mask = capacity - 1;
+		for (int i = 0; i < keys.length; i++) {
+			final var key = keys[i];
+			if (key != null) {
+				put(newKeys, newValues, mask, key, values[i]);
+			}
+		}
+		put(newKeys, newValues, mask, scopeName, child);
+		return new AttributedScopeStackCache(key, newKeys, newValues, size + 1, next);
+	}
+
+	int size() {
+		return size;
+	}
+
+	private static void put(final @Nullable String[] keys, final @Nullable AttributedScopeStack[] values, final int mask,
+			final String key, final @Nullable AttributedScopeStack value) {
+		int i = indexFor(key, mask);
+		while (true) {
+			final var existing = keys[i];
+			if (existing == null) {
+				keys[i] = key;
+				values[i] = value;
+				return;
+			}
+			if (existing.equals(key)) {
+				values[i] = value;
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+	}
+
+	private static int indexFor(final String key, final int mask) {
+		final int h = key.hashCode();
+		return (h ^ (h >>> 16)) & mask;
+	}
+}
@@ -27,6 +27,7 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
 
 import org.eclipse.jdt.annotation.Nullable;
@@ -49,6 +50,7 @@
 import org.eclipse.tm4e.core.internal.rule.RuleId;
 import org.eclipse.tm4e.core.internal.utils.ObjectCloner;
 import org.eclipse.tm4e.core.internal.utils.StringUtils;
+import org.eclipse.tm4e.core.internal.utils.WeakInterner;
 
 /**
  * TextMate grammar implementation.
@@ -63,7 +65,11 @@ public final class Grammar implements IGrammar, IRuleFactoryHelper {
 
 	private final String rootScopeName;
 
-	private @Nullable RuleId _rootId;
+	/**
+	 * Written once under the grammar's monitor after all rules and injections have been compiled. The volatile write publishes
+	 * the otherwise unsynchronized {@link #_ruleId2desc} and {@link #_injections} to all threads that tokenize concurrently.
+	 */
+	private volatile @Nullable RuleId _rootId;
 	private int _lastRuleId = 0;
 	private final Map<RuleId, @Nullable Rule> _ruleId2desc = new HashMap<>();
 	private final Map<String /*scopeName*/, IRawGrammar> includedGrammars = new HashMap<>();
@@ -77,6 +83,17 @@ public final class Grammar implements IGrammar, IRuleFactoryHelper {
 
 	private final @Nullable BalancedBracketSelectors balancedBracketSelectors;
 
+	private final LineTokenizationCache lineTokenizationCache = new LineTokenizationCache();
+
+	/** canonical end states of this grammar and their scope lists, see {@link StateStack#intern(StateStack, Grammar)} */
+	final WeakInterner<StateStack> stateStackInterner = new WeakInterner<>();
+	final WeakInterner<AttributedScopeStack> attributedScopeStackInterner = new WeakInterner<>();
+
+	/** identifies the child caches of this grammar's {@link AttributedScopeStack}s, replaced when the theme changed */
+	private volatile AttributedScopeStackCache.Key childCacheKey;
+	final LongAdder childCachePushes = new LongAdder();
+	final LongAdder childCacheMisses = new LongAdder();
+
 	public Grammar(
 			final String rootScopeName,
 			final IRawGrammar grammar,
@@ -93,6 +110,7 @@ public Grammar(
 		this._grammar = initGrammar(grammar, null);
 		this.balancedBracketSelectors = balancedBracketSelectors;
 		this.themeProvider = themeProvider;
+		childCacheKey = new AttributedScopeStackCache.Key(themeProvider.getDefaults());
 
 		if (tokenTypes != null) {
 			for (final var entry : tokenTypes.entrySet()) {
@@ -105,6 +123,22 @@ public Grammar(
 		}
 	}
 
+	/**
+	 * @return the key of the child caches of this grammar's {@link AttributedScopeStack}s for the current theme
+	 */
+	AttributedScopeStackCache.Key getChildCacheKey() {
+		final var themeDefaults = themeProvider.getDefaults();
+		var key = childCacheKey;
+		if (key.themeDefaults != themeDefaults) {
+			key = childCacheKey = new AttributedScopeStackCache.Key(themeDefaults);
+		}
+		return key;
+	}
+
+	public AttributedScopeStackCache.Stats getAttributedScopeStackCacheStats() {
+		return new AttributedScopeStackCache.Stats(childCachePushes.sum(), childCacheMisses.sum());
+	}
+
 	BasicScopeAttributes getMetadataForScope(final String scope) {
 		return this._basicScopeAttributesProvider.getBasicScopeAttributes(scope);
 	}
@@ -266,21 +300,65 @@ public ITokenizeLineResult<int[]> tokenizeLine2(final String lineText, final @Nu
 		return _tokenize(lineText, (StateStack) prevState, true, timeLimit);
 	}
 
+	/**
+	 * Same as {@link #tokenizeLine(String, IStateStack, Duration)} but looks up the result in and records it to the
+	 * {@link #getLineTokenizationCache() line tokenization cache} of this grammar.
+	 * <p>
+	 * The returned result may be shared with other callers and must not be modified.
+	 */
+	public ITokenizeLineResult<IToken[]> tokenizeLineCached(final String lineText,
+			final @Nullable IStateStack prevState,
+			final @Nullable Duration timeLimit) {
+		final var startState = prevState == null ? StateStack.NULL : (StateStack) prevState;
+		final var themeDefaults = themeProvider.getDefaults();
+		final var cachedResult = lineTokenizationCache.get(startState, lineText, themeDefaults);
+		if (cachedResult != null)
+			return cachedResult;
+
+		final TokenizeLineResult<IToken[]> result = _tokenize(lineText, startState, false, timeLimit);
+		lineTokenizationCache.put(startState, lineText, themeDefaults, result);
+		return result;
+	}
+
+	public LineTokenizationCache getLineTokenizationCache() {
+		return lineTokenizationCache;
+	}
+
+	/**
+	 * Compiles the rules of the grammar on first access. All rules, including the ones of included external grammars and of
+	 * injections, are registered here, so the rule registry is effectively immutable once this method returned.
+	 */
+	private RuleId getRootId() {
+		var rootId = this._rootId;
+		if (rootId == null) {
+			synchronized (this) {
+				rootId = this._rootId;
+				if (rootId == null) {
+					rootId = RuleFactory.getCompiledRuleId(
+							this._grammar.getRepository().getSelf(),
+							this,
+							this._grammar.getRepository());
+					// This ensures ids are deterministic, and thus equal in renderer and webworker.
+					this.getInjections();
+					this._rootId = rootId;
+				}
+			}
+		}
+		return rootId;
+	}
+
+	/**
+	 * Not synchronized: compiled rules are immutable, lazily compiled scanners are safely published by the rules and
+	 * per-line search state is confined to the {@link OnigString} of the line being tokenized, so multiple threads can
+	 * tokenize with the same grammar instance at the same time.
+	 */
 	@SuppressWarnings("unchecked")
-	private synchronized <T> TokenizeLineResult<T> _tokenize(
+	private <T> TokenizeLineResult<T> _tokenize(
 			String lineText,
 			@Nullable StateStack prevState,
 			final boolean emitBinaryTokens,
 			final @Nullable Duration timeLimit) {
-		var rootId = this._rootId;
-		if (rootId == null) {
-			rootId = this._rootId = RuleFactory.getCompiledRuleId(
-					this._grammar.getRepository().getSelf(),
-					this,
-					this._grammar.getRepository());
-			// This ensures ids are deterministic, and thus equal in renderer and webworker.
-			this.getInjections();
-		}
+		final var rootId = getRootId();
 
 		final boolean isFirstLine;
 		if (prevState == null || prevState == StateStack.NULL) {
@@ -350,7 +428,8 @@ private synchronized <T> TokenizeLineResult<T> _tokenize(
 				emitBinaryTokens
 						? lineTokens.getBinaryResult(r.stack, lineLength)
 						: lineTokens.getResult(r.stack, lineLength),
-				r.stack,
+				// equal end states share one instance, which makes comparing them cheap and saves memory
+				StateStack.intern(r.stack, this),
 				r.stoppedEarly);
 	}
 
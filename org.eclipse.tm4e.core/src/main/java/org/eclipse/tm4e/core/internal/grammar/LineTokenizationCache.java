@@ -0,0 +1,172 @@
+/**
+ * Copyright (c) 2026 Sebastian Thomschke and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.tm4e.core.internal.grammar;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tm4e.core.grammar.IToken;
+import org.eclipse.tm4e.core.internal.theme.StyleAttributes;
+
+/**
+ * Size-bounded memo cache of line tokenization results of a {@link Grammar}, keyed by the start state and the text of a
+ * line.
+ * <p>
+ * Source files repeat lines constantly, e.g. closing braces, blank lines, import blocks, license headers or generated
+ * code. Tokenizing a line is a pure function of its text and the state at its start, so such lines only have to be run
+ * through the {@link LineTokenizer} once per distinct start state.
+ * <p>
+ * Start states are compared via {@link StateStack#equals(Object)}. Since the token
+ * attributes depend on the theme, the cache is cleared when the theme of the grammar changed. Only results of lines not
+ * longer than {@value #MAX_LINE_LENGTH} chars that were completely tokenized are cached.
+ * <p>
+ * The least recently used entries are evicted once more than {@link #getMaxSize()} lines are cached. The max size
+ * defaults to {@value #DEFAULT_MAX_SIZE} and can be configured via the system property
+ * <code>tm4e.lineTokenizationCache.maxSize</code>.
+ */
+public final class LineTokenizationCache {
+
+	public static final int DEFAULT_MAX_SIZE = 4_096;
+
+	static final int MAX_LINE_LENGTH = 512;
+
+	public record Stats(long hits, long misses, long evictions, int size) {
+
+		public double hitRate() {
+			final long requests = hits + misses;
+			return requests == 0 ? 0 : hits / (double) requests;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("LineTokenizationCache[hits=%,d, misses=%,d, hitRate=%.1f%%, evictions=%,d, size=%,d]",
+					hits, misses, hitRate() * 100, evictions, size);
+		}
+	}
+
+	private static final class Key {
+		final StateStack startState;
+		final String lineText;
+		final int hashCode;
+
+		Key(final StateStack startState, final String lineText) {
+			this.startState = startState;
+			this.lineText = lineText;
+			hashCode = 31 * startState.hashCode() + lineText.hashCode();
+		}
+
+		@Override
+		public boolean equals(final @Nullable Object obj) {
+			if (this == obj)
+				return true;
+			if (obj instanceof final Key other)
+				return hashCode == other.hashCode
+						&& lineText.equals(other.lineText)
+						&& startState.equals(other.startState);
+			return false;
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+	}
+
+	private final int maxSize;
+	private final Map<Key, TokenizeLineResult<IToken[]>> cache;
+
+	/** the theme defaults the cached token attributes were computed with, used to detect theme changes */
+	private @Nullable StyleAttributes themeDefaults;
+
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	LineTokenizationCache() {
+		this(Integer.getInteger("tm4e.lineTokenizationCache.maxSize", DEFAULT_MAX_SIZE));
+	}
+
+	LineTokenizationCache(final int maxSize) {
+		this.maxSize = Math.max(0, maxSize);
+		cache = new LinkedHashMap<>(64, 0.75f, true /* access order => LRU */) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<Key, TokenizeLineResult<IToken[]>> eldest) {
+				if (size() > LineTokenizationCache.this.maxSize) {
+					evictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * @param startState the state at the start of the line, {@link StateStack#NULL} for the first line
+	 * @param lineText the line text as passed to the grammar, i.e. not necessarily ending with <code>\n</code>
+	 * @param themeDefaults the default style of the currently active theme
+	 *
+	 * @return the cached result or null if the line was not tokenized with the given start state before
+	 */
+	@Nullable
+	TokenizeLineResult<IToken[]> get(final StateStack startState, final String lineText, final StyleAttributes themeDefaults) {
+		if (maxSize == 0 || lineText.length() > MAX_LINE_LENGTH)
+			return null;
+
+		final var key = new Key(startState, lineText);
+		synchronized (cache) {
+			if (this.themeDefaults != themeDefaults) {
+				this.themeDefaults = themeDefaults;
+				cache.clear();
+			}
+			final var result = cache.get(key);
+			if (result != null) {
+				hits++;
+				return result;
+			}
+			misses++;
+			return null;
+		}
+	}
+
+	/**
+	 * Caches the given result unless the line is too long, the result is incomplete or the theme changed in the meantime.
+	 */
+	void put(final StateStack startState, final String lineText, final StyleAttributes themeDefaults,
+			final TokenizeLineResult<IToken[]> result) {
+		if (maxSize == 0 || lineText.length() > MAX_LINE_LENGTH || result.isStoppedEarly())
+			return;
+
+		final var key = new Key(startState, lineText);
+		synchronized (cache) {
+			if (this.themeDefaults == themeDefaults) {
+				cache.putIfAbsent(key, result);
+			}
+		}
+	}
+
+	public void clear() {
+		synchronized (cache) {
+			cache.clear();
+		}
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public Stats getStats() {
+		synchronized (cache) {
+			return new Stats(hits, misses, evictions, cache.size());
+		}
+	}
+}
@@ -28,7 +28,6 @@
 import java.util.List;
 
 import org.eclipse.jdt.annotation.Nullable;
-import org.eclipse.tm4e.core.internal.oniguruma.OnigCaptureIndex;
 import org.eclipse.tm4e.core.internal.oniguruma.OnigScannerMatch;
 import org.eclipse.tm4e.core.internal.oniguruma.OnigString;
 import org.eclipse.tm4e.core.internal.rule.BeginEndRule;
@@ -51,25 +50,6 @@ final class LineTokenizer {
 	private record LocalStackElement(AttributedScopeStack scopes, int endPos) {
 	}
 
-	private static class MatchResult {
-		final OnigCaptureIndex[] captureIndices;
-		final RuleId matchedRuleId;
-
-		MatchResult(final RuleId matchedRuleId, final OnigCaptureIndex[] captureIndices) {
-			this.matchedRuleId = matchedRuleId;
-			this.captureIndices = captureIndices;
-		}
-	}
-
-	private static final class MatchInjectionsResult extends MatchResult {
-		final boolean isPriorityMatch;
-
-		MatchInjectionsResult(final RuleId matchedRuleId, final OnigCaptureIndex[] captureIndices, final boolean isPriorityMatch) {
-			super(matchedRuleId, captureIndices);
-			this.isPriorityMatch = isPriorityMatch;
-		}
-	}
-
 	private record WhileCheckResult(
 			StateStack stack,
 			int linePos,
@@ -97,6 +77,19 @@ private TokenizeStringResult(final StateStack stack, final boolean stoppedEarly)
 	private boolean stop;
 	private final int lineLength;
 
+	/*
+	 * Reusable match context of this tokenizer, so scanning does not allocate match objects per scan. Nested
+	 * tokenizations of captures use their own LineTokenizer and thus their own match context.
+	 */
+	private final OnigScannerMatch ruleMatch = new OnigScannerMatch();
+	private OnigScannerMatch injectionMatch = new OnigScannerMatch();
+	private OnigScannerMatch bestInjectionMatch = new OnigScannerMatch();
+	private boolean bestInjectionIsPriorityMatch;
+	private final ArrayDeque<LocalStackElement> localStack = new ArrayDeque<>();
+
+	/** Rule id of the match last returned by {@link #matchRuleOrInjections} */
+	private RuleId matchedRuleId = RuleId.NO_RULE;
+
 	private LineTokenizer(final Grammar grammar, final OnigString lineText, final boolean isFirstLine, final int linePos,
 			final StateStack stack, final LineTokens lineTokens) {
 		this.grammar = grammar;
@@ -134,11 +127,13 @@ private TokenizeStringResult scan(final boolean checkWhileConditions, final long
 	}
 
 	private void scanNext() {
-		LOGGER.log(TRACE, () -> "@@scanNext: |" + lineText.content.replace("\n", "\\n").substring(linePos) + '|');
+		if (LOGGER.isLoggable(TRACE)) { // guarded to not build the log message per scan
+			LOGGER.log(TRACE, "@@scanNext: |" + lineText.content.replace("\n", "\\n").substring(linePos) + '|');
+		}
 
-		final MatchResult r = matchRuleOrInjections(grammar, lineText, isFirstLine, linePos, stack, anchorPosition);
+		final OnigScannerMatch match = matchRuleOrInjections(grammar, lineText, isFirstLine, linePos, stack, anchorPosition);
 
-		if (r == null) {
+		if (match == null) {
 			LOGGER.log(TRACE, " no more matches.");
 			// No match
 			lineTokens.produce(stack, lineLength);
@@ -146,9 +141,8 @@ private void scanNext() {
 			return;
 		}
 
-		final OnigCaptureIndex[] captureIndices = r.captureIndices;
-		final RuleId matchedRuleId = r.matchedRuleId;
-		final boolean hasAdvanced = captureIndices.length > 0 && captureIndices[0].end > linePos;
+		final RuleId matchedRuleId = this.matchedRuleId;
+		final boolean hasAdvanced = match.getCaptureCount() > 0 && match.getCaptureEnd(0) > linePos;
 
 		if (matchedRuleId.equals(RuleId.END_RULE)) {
 			// We matched the `end` for this rule => pop it
@@ -159,10 +153,10 @@ private void scanNext() {
 			 * " - " + poppedRule.debugEndRegExp); }
 			 */
 
-			lineTokens.produce(stack, captureIndices[0].start);
+			lineTokens.produce(stack, match.getCaptureStart(0));
 			stack = stack.withContentNameScopesList(stack.nameScopesList);
-			handleCaptures(grammar, lineText, isFirstLine, stack, lineTokens, poppedRule.endCaptures, captureIndices);
-			lineTokens.produce(stack, captureIndices[0].end);
+			handleCaptures(grammar, lineText, isFirstLine, stack, lineTokens, poppedRule.endCaptures, match);
+			lineTokens.produce(stack, match.getCaptureEnd(0));
 
 			// pop
 			final var popped = stack;
@@ -181,15 +175,15 @@ private void scanNext() {
 				stop = true;
 				return;
 			}
-		} else if (captureIndices.length > 0) {
+		} else if (match.getCaptureCount() > 0) {
 			// We matched a rule!
 			final Rule rule = grammar.getRule(matchedRuleId);
 
-			lineTokens.produce(stack, captureIndices[0].start);
+			lineTokens.produce(stack, match.getCaptureStart(0));
 
 			final StateStack beforePush = stack;
 			// push it on the stack rule
-			final var scopeName = rule.getName(lineText.content, captureIndices);
+			final var scopeName = rule.getName(lineText.content, match);
 
 			// custom tm4e code - not from upstream (for TMPartitioner)
 			// make sure origin grammar scope is present when external
@@ -203,7 +197,7 @@ private void scanNext() {
 					matchedRuleId,
 					linePos,
 					anchorPosition,
-					captureIndices[0].end == lineLength,
+					match.getCaptureEnd(0) == lineLength,
 					null,
 					nameScopesList,
 					nameScopesList,
@@ -221,11 +215,11 @@ private void scanNext() {
 						stack,
 						lineTokens,
 						pushedRule.beginCaptures,
-						captureIndices);
-				lineTokens.produce(stack, captureIndices[0].end);
-				anchorPosition = captureIndices[0].end;
+						match);
+				lineTokens.produce(stack, match.getCaptureEnd(0));
+				anchorPosition = match.getCaptureEnd(0);
 
-				final var contentName = pushedRule.getContentName(lineText.content, captureIndices);
+				final var contentName = pushedRule.getContentName(lineText.content, match);
 				final var contentNameScopesList = nameScopesList.pushAttributed(contentName, grammar);
 
 				// custom tm4e code - not from upstream (for TMPartitioner)
@@ -245,7 +239,7 @@ private void scanNext() {
 					stack = stack.withEndRule(
 							pushedRule.getEndWithResolvedBackReferences(
 									lineText.content,
-									captureIndices));
+									match.getCaptureIndices()));
 				}
 
 				if (!hasAdvanced && beforePush.hasSameRuleAs(stack)) {
@@ -268,10 +262,10 @@ private void scanNext() {
 						stack,
 						lineTokens,
 						pushedRule.beginCaptures,
-						captureIndices);
-				lineTokens.produce(stack, captureIndices[0].end);
-				anchorPosition = captureIndices[0].end;
-				final var contentName = pushedRule.getContentName(lineText.content, captureIndices);
+						match);
+				lineTokens.produce(stack, match.getCaptureEnd(0));
+				anchorPosition = match.getCaptureEnd(0);
+				final var contentName = pushedRule.getContentName(lineText.content, match);
 				final var contentNameScopesList = nameScopesList.pushAttributed(contentName, grammar);
 				stack = stack.withContentNameScopesList(contentNameScopesList);
 
@@ -279,7 +273,7 @@ private void scanNext() {
 					stack = stack.withEndRule(
 							pushedRule.getWhileWithResolvedBackReferences(
 									lineText.content,
-									captureIndices));
+									match.getCaptureIndices()));
 				}
 
 				if (!hasAdvanced && beforePush.hasSameRuleAs(stack)) {
@@ -304,8 +298,8 @@ private void scanNext() {
 						stack,
 						lineTokens,
 						matchingRule.captures,
-						captureIndices);
-				lineTokens.produce(stack, captureIndices[0].end);
+						match);
+				lineTokens.produce(stack, match.getCaptureEnd(0));
 
 				// pop rule immediately since it is a MatchRule
 				stack = castNonNull(stack.pop());
@@ -321,9 +315,9 @@ private void scanNext() {
 			}
 		}
 
-		if (captureIndices.length > 0 && captureIndices[0].end > linePos) {
+		if (match.getCaptureCount() > 0 && match.getCaptureEnd(0) > linePos) {
 			// Advance stream
-			linePos = captureIndices[0].end;
+			linePos = match.getCaptureEnd(0);
 			isFirstLine = false;
 		}
 	}
@@ -353,61 +347,79 @@ private void scanNext() {
 		return null;
 	}
 
-	private @Nullable MatchResult matchRule(final Grammar grammar, final OnigString lineText, final boolean isFirstLine, final int linePos,
+	/**
+	 * @return the id of the matched rule whose match is stored in {@link #ruleMatch}, or null if no rule matched
+	 */
+	private @Nullable RuleId matchRule(final Grammar grammar, final OnigString lineText, final boolean isFirstLine, final int linePos,
 			final StateStack stack, final int anchorPosition) {
 		final var rule = stack.getRule(grammar);
 		final var ruleScanner = rule.compileAG(grammar, stack.endRule, isFirstLine, linePos == anchorPosition);
 
-		final OnigScannerMatch r = ruleScanner.scanner.findNextMatch(lineText, linePos);
-
-		if (r != null) {
-			return new MatchResult(ruleScanner.rules[r.index], r.getCaptureIndices());
+		if (ruleScanner.scanner.findNextMatch(lineText, linePos, ruleMatch)) {
+			return ruleScanner.rules[ruleMatch.getIndex()];
 		}
 		return null;
 	}
 
-	private @Nullable MatchResult matchRuleOrInjections(final Grammar grammar, final OnigString lineText, final boolean isFirstLine,
+	/**
+	 * @return the winning match, which is either {@link #ruleMatch} or {@link #bestInjectionMatch}, or null if nothing
+	 *         matched. The id of the matched rule is stored in {@link #matchedRuleId}.
+	 */
+	private @Nullable OnigScannerMatch matchRuleOrInjections(final Grammar grammar, final OnigString lineText, final boolean isFirstLine,
 			final int linePos, final StateStack stack, final int anchorPosition) {
 		// Look for normal grammar rule
-		final MatchResult matchResult = matchRule(grammar, lineText, isFirstLine, linePos, stack, anchorPosition);
+		final RuleId matchRuleId = matchRule(grammar, lineText, isFirstLine, linePos, stack, anchorPosition);
 
 		// Look for injected rules
 		final List<Injection> injections = grammar.getInjections();
 		if (injections.isEmpty()) {
 			// No injections whatsoever => early return
-			return matchResult;
+			return matchRuleResult(matchRuleId);
 		}
 
-		final var injectionResult = matchInjections(injections, grammar, lineText, isFirstLine, linePos, stack, anchorPosition);
-		if (injectionResult == null) {
+		final RuleId injectionRuleId = matchInjections(injections, grammar, lineText, isFirstLine, linePos, stack, anchorPosition);
+		if (injectionRuleId == null) {
 			// No injections matched => early return
-			return matchResult;
+			return matchRuleResult(matchRuleId);
 		}
 
-		if (matchResult == null) {
+		if (matchRuleId == null) {
 			// Only injections matched => early return
-			return injectionResult;
+			matchedRuleId = injectionRuleId;
+			return bestInjectionMatch;
 		}
 
-		// Decide if `matchResult` or `injectionResult` should win
-		final int matchResultScore = matchResult.captureIndices[0].start;
-		final int injectionResultScore = injectionResult.captureIndices[0].start;
+		// Decide if `ruleMatch` or `bestInjectionMatch` should win
+		final int matchResultScore = ruleMatch.getCaptureStart(0);
+		final int injectionResultScore = bestInjectionMatch.getCaptureStart(0);
 
-		if (injectionResultScore < matchResultScore || injectionResult.isPriorityMatch && injectionResultScore == matchResultScore) {
+		if (injectionResultScore < matchResultScore || bestInjectionIsPriorityMatch && injectionResultScore == matchResultScore) {
 			// injection won!
-			return injectionResult;
+			matchedRuleId = injectionRuleId;
+			return bestInjectionMatch;
 		}
 
-		return matchResult;
+		matchedRuleId = matchRuleId;
+		return ruleMatch;
+	}
+
+	private @Nullable OnigScannerMatch matchRuleResult(final @Nullable RuleId matchRuleId) {
+		if (matchRuleId == null)
+			return null;
+		matchedRuleId = matchRuleId;
+		return ruleMatch;
 	}
 
-	private @Nullable MatchInjectionsResult matchInjections(final List<Injection> injections, final Grammar grammar,
+	/**
+	 * @return the id of the best matching injection rule whose match is stored in {@link #bestInjectionMatch}, or null if no
+	 *         injection matched
+	 */
+	private @Nullable RuleId matchInjections(final List<Injection> injections, final Grammar grammar,
 			final OnigString lineText, final boolean isFirstLine, final int linePos, final StateStack stack, final int anchorPosition) {
 
 		// The lower the better
 		var bestMatchRating = Integer.MAX_VALUE;
-		OnigCaptureIndex[] bestMatchCaptureIndices = null;
-		var bestMatchRuleId = RuleId.END_RULE;
+		RuleId bestMatchRuleId = null;
 		var bestMatchResultPriority = 0;
 
 		final List<String> scopes = stack.contentNameScopesList != null ? stack.contentNameScopesList.getScopeNames()
@@ -421,8 +433,8 @@ private void scanNext() {
 
 			final var rule = grammar.getRule(injection.ruleId);
 			final var ruleScanner = rule.compileAG(grammar, null, isFirstLine, linePos == anchorPosition);
-			final var matchResult = ruleScanner.scanner.findNextMatch(lineText, linePos);
-			if (matchResult == null) {
+			final var matchResult = injectionMatch;
+			if (!ruleScanner.scanner.findNextMatch(lineText, linePos, matchResult)) {
 				continue;
 			}
 
@@ -431,15 +443,18 @@ private void scanNext() {
 				LOGGER.log(Level.TRACE, debugCompiledRuleToString(ruleScanner));
 			}
 
-			final int matchRating = matchResult.getCaptureIndices()[0].start;
+			final int matchRating = matchResult.getCaptureStart(0);
 			if (matchRating > bestMatchRating) {
 				// Injections are sorted by priority, so the previous injection had a better or equal priority
 				continue;
 			}
 
+			// keep the new best match by swapping the reusable match instances
+			injectionMatch = bestInjectionMatch;
+			bestInjectionMatch = matchResult;
+
 			bestMatchRating = matchRating;
-			bestMatchCaptureIndices = matchResult.getCaptureIndices();
-			bestMatchRuleId = ruleScanner.rules[matchResult.index];
+			bestMatchRuleId = ruleScanner.rules[matchResult.getIndex()];
 			bestMatchResultPriority = injection.priority;
 
 			if (bestMatchRating == linePos) {
@@ -448,27 +463,21 @@ private void scanNext() {
 			}
 		}
 
-		if (bestMatchCaptureIndices != null) {
-			return new MatchInjectionsResult(
-					bestMatchRuleId,
-					bestMatchCaptureIndices,
-					bestMatchResultPriority == -1);
-		}
-
-		return null;
+		bestInjectionIsPriorityMatch = bestMatchResultPriority == -1;
+		return bestMatchRuleId;
 	}
 
 	private void handleCaptures(final Grammar grammar, final OnigString lineText, final boolean isFirstLine, final StateStack stack,
-			final LineTokens lineTokens, final List<@Nullable CaptureRule> captures, final OnigCaptureIndex[] captureIndices) {
+			final LineTokens lineTokens, final List<@Nullable CaptureRule> captures, final OnigScannerMatch match) {
 		if (captures.isEmpty()) {
 			return;
 		}
 
 		final var lineTextContent = lineText.content;
 
-		final int len = Math.min(captures.size(), captureIndices.length);
-		final var localStack = new ArrayDeque<LocalStackElement>();
-		final int maxEnd = captureIndices[0].end;
+		final int len = Math.min(captures.size(), match.getCaptureCount());
+		final var localStack = this.localStack; // empty again when this method returns
+		final int maxEnd = match.getCaptureEnd(0);
 
 		for (int i = 0; i < len; i++) {
 			final var captureRule = captures.get(i);
@@ -477,35 +486,36 @@ private void handleCaptures(final Grammar grammar, final OnigString lineText, fi
 				continue;
 			}
 
-			final var captureIndex = captureIndices[i];
+			final int captureStart = match.getCaptureStart(i);
+			final int captureEnd = match.getCaptureEnd(i);
 
-			if (captureIndex.getLength() == 0) {
+			if (captureEnd - captureStart == 0) {
 				// Nothing really captured
 				continue;
 			}
 
-			if (captureIndex.start > maxEnd) {
+			if (captureStart > maxEnd) {
 				// Capture going beyond consumed string
 				break;
 			}
 
 			// pop captures while needed
-			while (!localStack.isEmpty() && localStack.getLast().endPos <= captureIndex.start) {
+			while (!localStack.isEmpty() && localStack.getLast().endPos <= captureStart) {
 				// pop!
 				final var lastElem = localStack.removeLast();
 				lineTokens.produceFromScopes(lastElem.scopes, lastElem.endPos);
 			}
 
 			if (!localStack.isEmpty()) {
-				lineTokens.produceFromScopes(localStack.getLast().scopes, captureIndex.start);
+				lineTokens.produceFromScopes(localStack.getLast().scopes, captureStart);
 			} else {
-				lineTokens.produce(stack, captureIndex.start);
+				lineTokens.produce(stack, captureStart);
 			}
 
 			final var retokenizeCapturedWithRuleId = captureRule.retokenizeCapturedWithRuleId;
 			if (retokenizeCapturedWithRuleId.notEquals(RuleId.NO_RULE)) {
 				// the capture requires additional matching
-				final var scopeName = captureRule.getName(lineTextContent, captureIndices);
+				final var scopeName = captureRule.getName(lineTextContent, match);
 
 				// custom tm4e code - not from upstream (for TMPartitioner)
 				final AttributedScopeStack baseNames = castNonNull(stack.contentNameScopesList);
@@ -516,24 +526,24 @@ private void handleCaptures(final Grammar grammar, final OnigString lineText, fi
 						? grammarScope
 						: stack.grammarScope;
 
-				final var contentName = captureRule.getContentName(lineTextContent, captureIndices);
+				final var contentName = captureRule.getContentName(lineTextContent, match);
 				final var contentNameScopesList = nameScopesList.pushAttributed(contentName, grammar);
 
 				// the capture requires additional matching
-				final var stackClone = stack.push(retokenizeCapturedWithRuleId, captureIndex.start, -1, false, null, nameScopesList,
+				final var stackClone = stack.push(retokenizeCapturedWithRuleId, captureStart, -1, false, null, nameScopesList,
 						contentNameScopesList, frameGrammarScope);
-				final var onigSubStr = OnigString.of(lineTextContent.substring(0, captureIndex.end));
-				tokenizeString(grammar, onigSubStr, isFirstLine && captureIndex.start == 0, captureIndex.start, stackClone, lineTokens,
+				final var onigSubStr = OnigString.of(lineTextContent.substring(0, captureEnd));
+				tokenizeString(grammar, onigSubStr, isFirstLine && captureStart == 0, captureStart, stackClone, lineTokens,
 						false, Duration.ZERO /* no time limit */);
 				continue;
 			}
 
-			final var captureRuleScopeName = captureRule.getName(lineTextContent, captureIndices);
+			final var captureRuleScopeName = captureRule.getName(lineTextContent, match);
 			if (captureRuleScopeName != null) {
 				// push
 				final var base = localStack.isEmpty() ? stack.contentNameScopesList : localStack.getLast().scopes;
 				final var captureRuleScopesList = castNonNull(base).pushAttributed(captureRuleScopeName, grammar);
-				localStack.add(new LocalStackElement(captureRuleScopesList, captureIndex.end));
+				localStack.add(new LocalStackElement(captureRuleScopesList, captureEnd));
 			}
 		}
 
@@ -575,27 +585,28 @@ final class WhileStack {
 			final var whileRule = whileRules.get(i);
 
 			final var ruleScanner = whileRule.rule.compileWhileAG(whileRule.stack.endRule, isFirstLine, anchorPosition == linePos);
-			final var r = ruleScanner.scanner.findNextMatch(lineText, linePos);
+			// the rule match instance is reused, since while conditions are checked before the line is scanned
+			final var r = ruleMatch;
+			final boolean found = ruleScanner.scanner.findNextMatch(lineText, linePos, r);
 			if (LOGGER.isLoggable(TRACE)) {
 				LOGGER.log(TRACE, "  scanning for while rule");
 				LOGGER.log(TRACE, debugCompiledRuleToString(ruleScanner));
 			}
 
-			if (r != null) {
-				final RuleId matchedRuleId = ruleScanner.rules[r.index];
+			if (found) {
+				final RuleId matchedRuleId = ruleScanner.rules[r.getIndex()];
 				if (RuleId.WHILE_RULE.notEquals(matchedRuleId)) {
 					// we shouldn't end up here
 					stack = castNonNull(whileRule.stack.pop());
 					break;
 				}
-				if (r.getCaptureIndices().length > 0) {
-					lineTokens.produce(whileRule.stack, r.getCaptureIndices()[0].start);
-					handleCaptures(grammar, lineText, isFirstLine, whileRule.stack, lineTokens, whileRule.rule.whileCaptures,
-							r.getCaptureIndices());
-					lineTokens.produce(whileRule.stack, r.getCaptureIndices()[0].end);
-					anchorPosition = r.getCaptureIndices()[0].end;
-					if (r.getCaptureIndices()[0].end > linePos) {
-						linePos = r.getCaptureIndices()[0].end;
+				if (r.getCaptureCount() > 0) {
+					lineTokens.produce(whileRule.stack, r.getCaptureStart(0));
+					handleCaptures(grammar, lineText, isFirstLine, whileRule.stack, lineTokens, whileRule.rule.whileCaptures, r);
+					lineTokens.produce(whileRule.stack, r.getCaptureEnd(0));
+					anchorPosition = r.getCaptureEnd(0);
+					if (r.getCaptureEnd(0) > linePos) {
+						linePos = r.getCaptureEnd(0);
 						isFirstLine = false;
 					}
 				}
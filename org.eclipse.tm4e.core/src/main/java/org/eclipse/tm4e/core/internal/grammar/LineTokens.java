@@ -51,11 +51,18 @@ public static final class Token implements IToken {
 		 */
 		public final @Nullable String grammarScope; // custom tm4e code - not from upstream (for TMPartitioner)
 
-		Token(final int startIndex, final int endIndex, final List<String> scopes, final @Nullable String grammarScope) {
+		/**
+		 * true if brackets in this token are structural, i.e. count for bracket pair matching
+		 */
+		public final boolean containsBalancedBrackets; // custom tm4e code - not from upstream (for BracketPairTree)
+
+		Token(final int startIndex, final int endIndex, final List<String> scopes, final @Nullable String grammarScope,
+				final boolean containsBalancedBrackets) {
 			this.startIndex = startIndex;
 			this.endIndex = endIndex;
 			this.scopes = scopes;
 			this.grammarScope = grammarScope;
+			this.containsBalancedBrackets = containsBalancedBrackets;
 		}
 
 		@Override
@@ -247,11 +254,38 @@ && getLastElement(this._binaryTokens) == metadata) {
 			}
 		}
 
-		this._tokens.add(new Token(_lastTokenEndIndex, endIndex, scopes, _currentGrammarScope));
+		this._tokens.add(new Token(_lastTokenEndIndex, endIndex, scopes, _currentGrammarScope,
+				containsBalancedBrackets(scopesList, scopes)));
 
 		this._lastTokenEndIndex = endIndex;
 	}
 
+	/**
+	 * custom tm4e code - not from upstream (for BracketPairTree)
+	 * <p>
+	 * Computes the balanced brackets bit of a non-binary token. Unlike the bit of binary tokens it is only set for tokens of
+	 * the standard token type "other", since brackets in comments, strings and regular expressions are never structural.
+	 * Grammars loaded without a configuration, i.e. without balanced bracket selectors, behave like VS Code's default
+	 * selector <code>*</code>.
+	 */
+	private boolean containsBalancedBrackets(final @Nullable AttributedScopeStack scopesList, final List<String> scopes) {
+		int tokenType = scopesList != null
+				? EncodedTokenAttributes.getTokenType(scopesList.tokenAttributes)
+				: OptionalStandardTokenType.Other;
+		for (final var tokenTypeOverride : _tokenTypeOverrides) {
+			if (tokenTypeOverride.matcher.matches(scopes)) {
+				tokenType = tokenTypeOverride.type;
+			}
+		}
+		if (tokenType != OptionalStandardTokenType.Other)
+			return false;
+
+		final var balancedBracketSelectors = this.balancedBracketSelectors;
+		return balancedBracketSelectors == null
+				|| balancedBracketSelectors.matchesAlways()
+				|| !balancedBracketSelectors.matchesNever() && balancedBracketSelectors.match(scopes);
+	}
+
 	IToken[] getResult(final StateStack stack, final int lineLength) {
 		if (!this._tokens.isEmpty() && this._tokens.getLast().startIndex == lineLength - 1) {
 			// pop produced token for newline
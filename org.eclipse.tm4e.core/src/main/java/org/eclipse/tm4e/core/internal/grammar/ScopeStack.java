@@ -21,6 +21,7 @@
 import java.util.List;
 
 import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tm4e.core.internal.theme.ThemeMatcher;
 
 /**
  * @see <a href=
@@ -50,10 +51,42 @@ public static ScopeStack from(final String first) {
 
 	public final @Nullable ScopeStack parent;
 	public final String scopeName;
+	private final int hashCode;
+
+	/**
+	 * Memoized {@link org.eclipse.tm4e.core.internal.theme.Theme#match(ScopeStack)} result of this path, maintained by
+	 * the {@link ThemeMatcher} of the last theme this path was matched against.
+	 */
+	public volatile ThemeMatcher.@Nullable ScopeMatch themeMatch;
 
 	ScopeStack(final @Nullable ScopeStack parent, final String scopeName) {
 		this.parent = parent;
 		this.scopeName = scopeName;
+		hashCode = 31 * (parent == null ? 0 : parent.hashCode) + scopeName.hashCode();
+	}
+
+	@Override
+	public boolean equals(final @Nullable Object obj) {
+		if (!(obj instanceof ScopeStack)) {
+			return false;
+		}
+		@Nullable
+		ScopeStack a = this;
+		@Nullable
+		ScopeStack b = (ScopeStack) obj;
+		while (a != b) {
+			if (a == null || b == null || a.hashCode != b.hashCode || !a.scopeName.equals(b.scopeName)) {
+				return false;
+			}
+			a = a.parent;
+			b = b.parent;
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		return hashCode;
 	}
 
 	ScopeStack push(final String scopeName) {
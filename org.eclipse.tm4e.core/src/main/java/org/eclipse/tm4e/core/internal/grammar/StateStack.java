@@ -117,6 +117,11 @@ record Frame(
 	 */
 	final @Nullable String grammarScope; // custom tm4e code - not from upstream (for TMPartitioner)
 
+	private final int hashCode;
+
+	/** interned states are only equal to themselves, see {@link #intern(StateStack, Grammar)} */
+	private final boolean interned;
+
 	StateStack(
 			final @Nullable StateStack parent,
 			final RuleId ruleId,
@@ -127,6 +132,21 @@ record Frame(
 			final @Nullable AttributedScopeStack nameScopesList,
 			final @Nullable AttributedScopeStack contentNameScopesList,
 			final @Nullable String grammarScope) {
+		this(parent, ruleId, enterPos, anchorPos, beginRuleCapturedEOL, endRule, nameScopesList, contentNameScopesList,
+				grammarScope, false);
+	}
+
+	private StateStack(
+			final @Nullable StateStack parent,
+			final RuleId ruleId,
+			final int enterPos,
+			final int anchorPos,
+			final boolean beginRuleCapturedEOL,
+			final @Nullable String endRule,
+			final @Nullable AttributedScopeStack nameScopesList,
+			final @Nullable AttributedScopeStack contentNameScopesList,
+			final @Nullable String grammarScope,
+			final boolean interned) {
 
 		this.parent = parent;
 		this.ruleId = ruleId;
@@ -138,57 +158,86 @@ record Frame(
 		this.nameScopesList = nameScopesList;
 		this.contentNameScopesList = contentNameScopesList;
 		this.grammarScope = grammarScope; // custom tm4e code - not from upstream
+		this.interned = interned;
+
+		int hash = parent == null ? 0 : parent.hashCode;
+		hash = 31 * hash + ruleId.id;
+		hash = 31 * hash + Objects.hashCode(endRule);
+		hash = 31 * hash + Objects.hashCode(nameScopesList);
+		hash = 31 * hash + Objects.hashCode(contentNameScopesList);
+		hashCode = 31 * hash + (beginRuleCapturedEOL ? 1 : 0);
 	}
 
+	/**
+	 * Compares everything a line's tokenization depends on, i.e. the rules, the dynamic end rules, the name and content name
+	 * scopes with their token attributes, the captured EOL flag and the grammar scope of all elements, but not the line-local
+	 * positions.
+	 * <p>
+	 * End states returned by the grammar are {@link #intern(StateStack) interned}, so comparing two of them is a reference
+	 * check.
+	 */
 	@Override
 	public boolean equals(final @Nullable Object other) {
-		if (other instanceof final StateStack otherState) {
-			return _equals(this, otherState);
-		}
-		return false;
-	}
-
-	private static boolean _equals(final StateStack a, final StateStack b) {
-		if (a == b) {
-			return true;
-		}
-		if (!_structuralEquals(a, b)) {
-			return false;
-		}
-		return AttributedScopeStack.equals(a.contentNameScopesList, b.contentNameScopesList);
+		return other instanceof final StateStack otherState && _equals(this, otherState);
 	}
 
-	/**
-	 * A structural equals check. Does not take into account `scopes`.
-	 */
-	private static boolean _structuralEquals(
-			@Nullable StateStack a,
-			@Nullable StateStack b) {
-		do {
-			if (a == b) {
-				return true;
-			}
-
-			if (a == null && b == null) {
-				// End of list reached for both
-				return true;
-			}
+	private static boolean _equals(@Nullable StateStack a, @Nullable StateStack b) {
+		while (a != b) {
+			if (a == null || b == null)
+				return false;
 
-			if (a == null || b == null) {
-				// End of list reached only for one
+			if (a.interned && b.interned)
+				// equal interned states are the same instance
 				return false;
-			}
 
-			if (a.depth != b.depth
-					|| !Objects.equals(a.ruleId, b.ruleId)
-					|| !Objects.equals(a.endRule, b.endRule)) {
+			if (a.hashCode != b.hashCode
+					|| a.depth != b.depth
+					|| !a.ruleId.equals(b.ruleId)
+					|| a.beginRuleCapturedEOL != b.beginRuleCapturedEOL
+					|| !Objects.equals(a.endRule, b.endRule)
+					|| !Objects.equals(a.grammarScope, b.grammarScope)
+					|| !AttributedScopeStack.equals(a.nameScopesList, b.nameScopesList)
+					|| !AttributedScopeStack.equals(a.contentNameScopesList, b.contentNameScopesList))
 				return false;
-			}
 
-			// Go to previous pair
 			a = a.parent;
 			b = b.parent;
-		} while (true);
+		}
+		return true;
+	}
+
+	/**
+	 * @return the canonical instance of the given state, i.e. equal states are represented by the same instance. The
+	 *         line-local positions of the returned state and its parents are reset. States are interned per grammar, as
+	 *         their rule ids are only meaningful within the grammar that created them.
+	 */
+	static StateStack intern(final StateStack state, final Grammar grammar) {
+		if (state.interned)
+			return state;
+
+		final var parent = state.parent;
+		final var candidate = new StateStack(
+				parent == null ? null : intern(parent, grammar),
+				state.ruleId,
+				-1,
+				-1,
+				state.beginRuleCapturedEOL,
+				state.endRule,
+				AttributedScopeStack.intern(state.nameScopesList, grammar.attributedScopeStackInterner),
+				AttributedScopeStack.intern(state.contentNameScopesList, grammar.attributedScopeStackInterner),
+				state.grammarScope,
+				false);
+		return grammar.stateStackInterner.intern(candidate, c -> new StateStack(
+				c.parent,
+				c.ruleId,
+				-1,
+				-1,
+				c.beginRuleCapturedEOL,
+				c.endRule,
+				c.nameScopesList,
+				c.contentNameScopesList,
+				c.grammarScope,
+				true));
 	}
 
 	@Override
@@ -196,20 +245,47 @@ public int getDepth() {
 		return depth;
 	}
 
+	/**
+	 * @return the depth of the deepest state the given stacks have in common, e.g. the rules still open at the end of a line
+	 *         which were begun before that line, 0 if the stacks have nothing in common
+	 */
+	public static int getCommonDepth(final IStateStack stack1, final IStateStack stack2) {
+		@Nullable
+		StateStack a = (StateStack) stack1;
+		@Nullable
+		StateStack b = (StateStack) stack2;
+		while (a != null && b != null && a.depth > b.depth) {
+			a = a.parent;
+		}
+		while (a != null && b != null && b.depth > a.depth) {
+			b = b.parent;
+		}
+		while (a != null && b != null && !a.equals(b)) {
+			a = a.parent;
+			b = b.parent;
+		}
+		return a == null || b == null ? 0 : a.depth;
+	}
+
 	@Override
 	public int hashCode() {
-		int result = 31 + Objects.hashCode(contentNameScopesList);
-		result = 31 * result + Objects.hashCode(endRule);
-		result = 31 * result + Objects.hashCode(parent);
-		result = 31 * result + Objects.hashCode(ruleId);
-		return 31 * result + depth;
+		return hashCode;
 	}
 
+	/**
+	 * Resets the line-local positions of this stack. The same stack may be passed concurrently as start state to multiple
+	 * threads, e.g. when several documents share an end state. Since all of them only write the same constant, fields
+	 * which already hold it are skipped so stacks of the common prefix are not written over and over again.
+	 */
 	void reset() {
 		StateStack el = this;
 		while (el != null) {
-			el._enterPos = -1;
-			el._anchorPos = -1;
+			if (el._enterPos != -1) {
+				el._enterPos = -1;
+			}
+			if (el._anchorPos != -1) {
+				el._anchorPos = -1;
+			}
 			el = el.parent;
 		}
 	}
@@ -0,0 +1,480 @@
+/**
+ * Copyright (c) 2026 Sebastian Thomschke and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.tm4e.core.internal.oniguruma;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Set of UTF-8 bytes a match of a regex can start with, determined by a conservative analysis of the pattern.
+ * <p>
+ * Used by {@link OnigSearcher} to skip regexes that cannot match at or after the current position of a line, or not
+ * before the best match found so far, without running the regex engine. The analysis only over-approximates: constructs
+ * not understood by the analyzer either widen the set or disable the prefilter for the pattern. Non-ASCII characters are
+ * approximated by the set of all bytes &gt;= 0x80.
+ */
+final class OnigPrefilter {
+
+	private static final long[] DIGIT = bitsOf("0123456789");
+	private static final long[] HEX_DIGIT = bitsOf("0123456789abcdefABCDEF");
+	private static final long[] WORD = bitsOf("0123456789_abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ");
+
+	/** ASCII chars definitely matched by <code>\s</code> */
+	private static final long[] SPACE_MIN = bitsOf("\t\n\u000B\f\r ");
+
+	/** ASCII chars possibly matched by <code>\s</code>, depending on the Unicode definition of white space used */
+	private static final long[] SPACE_MAX = bitsOf("\t\n\u000B\f\r \u001C\u001D\u001E\u001F");
+
+	private static long[] bitsOf(final String asciiChars) {
+		final var bits = new long[4];
+		for (int i = 0; i < asciiChars.length(); i++) {
+			setBit(bits, asciiChars.charAt(i));
+		}
+		return bits;
+	}
+
+	private static void setBit(final long[] bits, final int b) {
+		bits[b >>> 6] |= 1L << b;
+	}
+
+	private static boolean isBitSet(final long[] bits, final int b) {
+		return (bits[b >>> 6] & 1L << b) != 0;
+	}
+
+	private static void setNonAsciiBits(final long[] bits) {
+		bits[2] = -1L;
+		bits[3] = -1L;
+	}
+
+	/**
+	 * @return the prefilter of the given pattern, or null if the start of a match cannot be narrowed down, e.g. because
+	 *         the pattern can match the empty string or uses syntax not supported by the analysis
+	 */
+	static @Nullable OnigPrefilter of(final String pattern, final boolean ignoreCase) {
+		if (ignoreCase && !pattern.chars().allMatch(ch -> ch < 0x80))
+			// multi-char case folding, e.g. "ß" matching "ss", could start a match with any letter
+			return null;
+
+		final long[] bits;
+		try {
+			final var analyzer = new Analyzer(pattern);
+			final var firstBytes = analyzer.parseAlternation();
+			if (analyzer.pos < pattern.length() || firstBytes.nullable)
+				// unbalanced ')' or the pattern can match the empty string, i.e. at any position
+				return null;
+			bits = firstBytes.bits;
+		} catch (final UnsupportedSyntaxException ex) {
+			return null;
+		}
+
+		if (ignoreCase) {
+			for (int ch = 'a'; ch <= 'z'; ch++) {
+				final int upper = ch - 'a' + 'A';
+				if (isBitSet(bits, ch) || isBitSet(bits, upper)) {
+					setBit(bits, ch);
+					setBit(bits, upper);
+				}
+			}
+			// Unicode case folding, e.g. "k" matching the Kelvin sign
+			setNonAsciiBits(bits);
+		}
+
+		if ((bits[0] | bits[1] | bits[2] | bits[3]) == 0 || (bits[0] & bits[1] & bits[2] & bits[3]) == -1L)
+			return null; // no benefit
+		return new OnigPrefilter(bits);
+	}
+
+	private final long[] bits;
+
+	private OnigPrefilter(final long[] bits) {
+		this.bits = bits;
+	}
+
+	/**
+	 * @return the first byte index within <code>[start, end)</code> at which a match can start, or -1 if there is none
+	 */
+	int nextCandidatePosition(final byte[] bytes, final int start, final int end) {
+		final long[] bits = this.bits;
+		for (int i = start; i < end; i++) {
+			final int b = bytes[i] & 0xFF;
+			if ((bits[b >>> 6] & 1L << b) != 0)
+				return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * UTF-16 variant of {@link #nextCandidatePosition(byte[], int, int)}.
+	 *
+	 * @return the first char index at or after <code>start</code> at which a match can start, or -1 if there is none
+	 */
+	int nextCandidateCharPosition(final String chars, final int start) {
+		final long[] bits = this.bits;
+		final boolean nonAscii = (bits[2] | bits[3]) != 0;
+		for (int i = start, l = chars.length(); i < l; i++) {
+			final char ch = chars.charAt(i);
+			if (ch < 0x80 ? (bits[ch >>> 6] & 1L << ch) != 0 : nonAscii)
+				return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Thrown by the analyzer for syntax it does not support, e.g. inline options, conditionals or nested character classes.
+	 */
+	private static final class UnsupportedSyntaxException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		static final UnsupportedSyntaxException INSTANCE = new UnsupportedSyntaxException();
+
+		private UnsupportedSyntaxException() {
+			super(null, null, false, false);
+		}
+	}
+
+	/**
+	 * Possible first bytes of a sub-pattern and whether it can match the empty string.
+	 */
+	private static final class FirstBytes {
+		final long[] bits = new long[4];
+		boolean nullable;
+
+		FirstBytes(final boolean nullable) {
+			this.nullable = nullable;
+		}
+
+		FirstBytes or(final long[] otherBits) {
+			for (int i = 0; i < 4; i++) {
+				bits[i] |= otherBits[i];
+			}
+			return this;
+		}
+	}
+
+	/**
+	 * Recursive descent analyzer for the subset of the Ruby regex syntax used by TextMate grammars.
+	 */
+	private static final class Analyzer {
+
+		final String pattern;
+		int pos;
+
+		Analyzer(final String pattern) {
+			this.pattern = pattern;
+		}
+
+		private boolean hasNext(final char ch) {
+			return pos < pattern.length() && pattern.charAt(pos) == ch;
+		}
+
+		private char next() {
+			if (pos >= pattern.length())
+				throw UnsupportedSyntaxException.INSTANCE;
+			return pattern.charAt(pos++);
+		}
+
+		/**
+		 * <code>alternation := sequence ('|' sequence)*</code>
+		 */
+		FirstBytes parseAlternation() {
+			final var result = parseSequence();
+			while (hasNext('|')) {
+				pos++;
+				final var alternative = parseSequence();
+				result.or(alternative.bits);
+				result.nullable |= alternative.nullable;
+			}
+			return result;
+		}
+
+		/**
+		 * <code>sequence := (atom quantifier*)*</code>
+		 */
+		private FirstBytes parseSequence() {
+			final var result = new FirstBytes(true);
+			while (pos < pattern.length()) {
+				final char ch = pattern.charAt(pos);
+				if (ch == '|' || ch == ')') {
+					break;
+				}
+				final var atom = parseAtom();
+				if (parseQuantifiers()) {
+					atom.nullable = true;
+				}
+				if (result.nullable) {
+					// all preceding atoms can match the empty string, so the match can start with this atom
+					result.or(atom.bits);
+					result.nullable = atom.nullable;
+				}
+			}
+			return result;
+		}
+
+		/**
+		 * @return true if the parsed quantifiers allow zero repetitions. Lazy and possessive quantifiers are conservatively
+		 *         treated as optional.
+		 */
+		private boolean parseQuantifiers() {
+			boolean optional = false;
+			while (pos < pattern.length()) {
+				final char ch = pattern.charAt(pos);
+				if (ch == '*' || ch == '?') {
+					optional = true;
+				} else if (ch == '{') {
+					// {n}, {n,}, {n,m} or {,m}, otherwise '{' is a literal
+					int i = pos + 1;
+					boolean hasMin = false;
+					boolean hasDigits = false;
+					while (i < pattern.length() && Character.isDigit(pattern.charAt(i))) {
+						hasMin |= pattern.charAt(i) != '0';
+						hasDigits = true;
+						i++;
+					}
+					if (i < pattern.length() && pattern.charAt(i) == ',') {
+						i++;
+						while (i < pattern.length() && Character.isDigit(pattern.charAt(i))) {
+							hasDigits = true;
+							i++;
+						}
+					}
+					if (!hasDigits || i >= pattern.length() || pattern.charAt(i) != '}') {
+						break;
+					}
+					optional |= !hasMin;
+					pos = i;
+				} else if (ch != '+') {
+					break;
+				}
+				pos++;
+			}
+			return optional;
+		}
+
+		private FirstBytes parseAtom() {
+			final char ch = next();
+			return switch (ch) {
+				case '^', '$' -> new FirstBytes(true);
+				case '.' -> new FirstBytes(false).or(new long[] { -1L, -1L, -1L, -1L });
+				case '[' -> new FirstBytes(false).or(parseCharClass());
+				case '(' -> parseGroup();
+				case '\\' -> parseEscape();
+				case '*', '+', '?', ')' -> throw UnsupportedSyntaxException.INSTANCE;
+				default -> {
+					final var literal = new FirstBytes(false);
+					addChar(literal.bits, parseLiteral(ch));
+					yield literal;
+				}
+			};
+		}
+
+		private int parseLiteral(final char ch) {
+			if (Character.isHighSurrogate(ch) && pos < pattern.length())
+				return Character.toCodePoint(ch, pattern.charAt(pos++));
+			return ch;
+		}
+
+		private static void addChar(final long[] bits, final int codePoint) {
+			if (codePoint < 0x80) {
+				setBit(bits, codePoint);
+			} else {
+				setNonAsciiBits(bits);
+			}
+		}
+
+		private FirstBytes parseGroup() {
+			boolean lookaround = false;
+			if (hasNext('?')) {
+				pos++;
+				switch (next()) {
+					case ':', '>' -> { /* non-capturing or atomic group */ }
+					case '=', '!' -> lookaround = true;
+					case '<' -> {
+						if (hasNext('=') || hasNext('!')) {
+							pos++;
+							lookaround = true;
+						} else {
+							skipPast('>'); // named group
+						}
+					}
+					case '\'' -> skipPast('\''); // named group
+					case '#' -> {
+						skipPast(')'); // comment
+						return new FirstBytes(true);
+					}
+					// inline options, absent operator, conditionals, ...
+					default -> throw UnsupportedSyntaxException.INSTANCE;
+				}
+			}
+
+			final var content = parseAlternation();
+			if (next() != ')')
+				throw UnsupportedSyntaxException.INSTANCE;
+			// lookarounds are zero-width, the match starts with whatever follows them
+			return lookaround ? new FirstBytes(true) : content;
+		}
+
+		private void skipPast(final char terminator) {
+			while (next() != terminator) {
+				// skip
+			}
+		}
+
+		private FirstBytes parseEscape() {
+			final char ch = next();
+			switch (ch) {
+				case 'b', 'B', 'A', 'z', 'Z', 'G':
+					return new FirstBytes(true);
+				case '1', '2', '3', '4', '5', '6', '7', '8', '9':
+					// back reference, may match the empty string
+					while (pos < pattern.length() && Character.isDigit(pattern.charAt(pos))) {
+						pos++;
+					}
+					return new FirstBytes(true);
+				default:
+					final var result = new FirstBytes(false);
+					final long[] set = escapeSet(ch, false);
+					if (set == null) {
+						addChar(result.bits, parseEscapedChar(ch, false));
+					} else {
+						result.or(set);
+					}
+					return result;
+			}
+		}
+
+		/**
+		 * @param forComplement if true the ASCII part of the returned set is an under-approximation, so its complement is an
+		 *            over-approximation
+		 * @return the bits of a character type escape like <code>\d</code>, or null if the escape denotes a single char
+		 */
+		private static long @Nullable [] escapeSet(final char ch, final boolean forComplement) {
+			final long[] ascii = switch (ch) {
+				case 'd', 'D' -> DIGIT;
+				case 'h', 'H' -> HEX_DIGIT;
+				case 'w', 'W' -> WORD;
+				case 's' -> forComplement ? SPACE_MIN : SPACE_MAX;
+				case 'S' -> forComplement ? SPACE_MAX : SPACE_MIN;
+				default -> null;
+			};
+			if (ascii == null)
+				return null;
+			// non-ASCII chars may match any of the types
+			return Character.isUpperCase(ch)
+					? new long[] { ~ascii[0], ~ascii[1], -1L, -1L }
+					: new long[] { ascii[0], ascii[1], -1L, -1L };
+		}
+
+		/**
+		 * @return the code point of an escaped single char
+		 */
+		private int parseEscapedChar(final char ch, final boolean inCharClass) {
+			switch (ch) {
+				case 'a':
+					return 0x07;
+				case 'b':
+					if (inCharClass)
+						return 0x08;
+					throw UnsupportedSyntaxException.INSTANCE;
+				case 'e':
+					return 0x1B;
+				case 'f':
+					return '\f';
+				case 'n':
+					return '\n';
+				case 'r':
+					return '\r';
+				case 't':
+					return '\t';
+				case 'v':
+					return 0x0B;
+				case 'x':
+					int value = 0;
+					int digits = 0;
+					while (digits < 2 && pos < pattern.length() && Character.digit(pattern.charAt(pos), 16) != -1) {
+						value = value * 16 + Character.digit(pattern.charAt(pos), 16);
+						digits++;
+						pos++;
+					}
+					if (digits == 0 || value >= 0x80)
+						throw UnsupportedSyntaxException.INSTANCE;
+					return value;
+				default:
+					if (Character.isLetterOrDigit(ch))
+						// \K, \p{..}, \k<..>, \g<..>, \R, \X, unicode and octal escapes, ...
+						throw UnsupportedSyntaxException.INSTANCE;
+					return parseLiteral(ch);
+			}
+		}
+
+		/**
+		 * Parses a bracket expression after the opening '['.
+		 */
+		private long[] parseCharClass() {
+			final boolean negated = hasNext('^');
+			if (negated) {
+				pos++;
+			}
+
+			final var items = new long[4];
+			boolean first = true;
+			while (true) {
+				final char ch = next();
+				if (ch == ']' && !first) {
+					break;
+				}
+				first = false;
+
+				if (ch == '[' || ch == '&' && hasNext('&'))
+					// nested classes, POSIX bracket expressions and intersections
+					throw UnsupportedSyntaxException.INSTANCE;
+
+				final int from;
+				if (ch == '\\') {
+					final char escaped = next();
+					final long[] set = escapeSet(escaped, negated);
+					if (set != null) {
+						for (int i = 0; i < 4; i++) {
+							items[i] |= set[i];
+						}
+						continue;
+					}
+					from = parseEscapedChar(escaped, true);
+				} else {
+					from = parseLiteral(ch);
+				}
+
+				if (hasNext('-') && pos + 1 < pattern.length() && pattern.charAt(pos + 1) != ']') {
+					pos++;
+					final char toCh = next();
+					if (toCh == '[')
+						throw UnsupportedSyntaxException.INSTANCE;
+					final int to = toCh == '\\' ? parseEscapedChar(next(), true) : parseLiteral(toCh);
+					if (to < from)
+						throw UnsupportedSyntaxException.INSTANCE;
+					for (int c = from; c <= Math.min(to, 0x7F); c++) {
+						setBit(items, c);
+					}
+					if (to >= 0x80) {
+						setNonAsciiBits(items);
+					}
+				} else {
+					addChar(items, from);
+				}
+			}
+
+			if (negated) {
+				// the ASCII part of the items is exact or an under-approximation, so its complement over-approximates
+				items[0] = ~items[0];
+				items[1] = ~items[1];
+				setNonAsciiBits(items);
+			}
+			return items;
+		}
+	}
+}
@@ -25,11 +25,12 @@
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tm4e.core.TMException;
 import org.eclipse.tm4e.core.internal.utils.StringUtils;
+import org.jcodings.Encoding;
 import org.jcodings.specific.NonStrictUTF8Encoding;
+import org.jcodings.specific.UTF16LEEncoding;
 import org.joni.Matcher;
 import org.joni.Option;
 import org.joni.Regex;
-import org.joni.Region;
 import org.joni.Syntax;
 import org.joni.WarnCallback;
 import org.joni.exception.SyntaxException;
@@ -46,15 +47,18 @@ public final class OnigRegExp {
 	 */
 	private static final WarnCallback LOGGER_WARN_CALLBACK = message -> LOGGER.log(Level.WARNING, message);
 
-	private @Nullable OnigString lastSearchString;
-	private int lastSearchPosition = -1;
-	private @Nullable OnigResult lastSearchResult;
-
 	private final String pattern;
+	private final int options;
 	private final Regex regex;
 
+	/** The regex compiled for {@link OnigString.UTF16String}s, compiled on first use */
+	private volatile @Nullable Regex regexUTF16;
+
 	private final boolean hasGAnchor;
 
+	/** Possible first bytes of a match, or null if a match can start with any byte */
+	private final @Nullable OnigPrefilter prefilter;
+
 	/**
 	 * @throws TMException if parsing fails
 	 */
@@ -68,28 +72,47 @@ public OnigRegExp(final String pattern) {
 	public OnigRegExp(final String pattern, final boolean ignoreCase) {
 		hasGAnchor = pattern.contains("\\G");
 
-		Regex regex;
-		try {
-			regex = parsePattern(pattern, ignoreCase);
-		} catch (final SyntaxException ex) {
-			try {
-				regex = parsePattern(rewritePatternIfRequired(pattern), ignoreCase);
-			} catch (final SyntaxException unused) {
-				throw new TMException("Parsing regex pattern \"" + pattern + "\" failed with " + ex, ex);
-			}
-		}
-
 		this.pattern = pattern;
-		this.regex = regex;
+		this.options = ignoreCase ? Option.CAPTURE_GROUP | Option.IGNORECASE : Option.CAPTURE_GROUP;
+		this.regex = compile(pattern, options, NonStrictUTF8Encoding.INSTANCE);
+
+		// a rewritten pattern matches differently than the analyzed one, so no prefilter is used if it may get rewritten
+		prefilter = rewritePatternIfRequired(pattern).equals(pattern) ? OnigPrefilter.of(pattern, ignoreCase) : null;
 	}
 
-	private Regex parsePattern(final String pattern, final boolean ignoreCase) throws SyntaxException {
-		int options = Option.CAPTURE_GROUP;
-		if (ignoreCase) {
-			options |= Option.IGNORECASE;
+	/**
+	 * @return the regex compiled for the encoding of the given string
+	 */
+	private Regex getRegex(final OnigString str) {
+		if (!str.isUTF16())
+			return regex;
+
+		var regexUTF16 = this.regexUTF16;
+		if (regexUTF16 == null) {
+			regexUTF16 = this.regexUTF16 = compile(pattern, options, UTF16LEEncoding.INSTANCE);
 		}
-		final byte[] patternBytes = pattern.getBytes(StandardCharsets.UTF_8);
-		return new Regex(patternBytes, 0, patternBytes.length, options, NonStrictUTF8Encoding.INSTANCE, Syntax.RUBY,
+		return regexUTF16;
+	}
+
+	private static Regex compile(final String pattern, final int options, final Encoding encoding) {
+		return OnigRegexCache.INSTANCE.get(pattern.getBytes(StandardCharsets.UTF_8), options, encoding, () -> {
+			try {
+				return parsePattern(pattern, options, encoding);
+			} catch (final SyntaxException ex) {
+				try {
+					return parsePattern(rewritePatternIfRequired(pattern), options, encoding);
+				} catch (final SyntaxException unused) {
+					throw new TMException("Parsing regex pattern \"" + pattern + "\" failed with " + ex, ex);
+				}
+			}
+		});
+	}
+
+	private static Regex parsePattern(final String pattern, final int options, final Encoding encoding) throws SyntaxException {
+		final byte[] patternBytes = pattern.getBytes(encoding == UTF16LEEncoding.INSTANCE
+				? StandardCharsets.UTF_16LE
+				: StandardCharsets.UTF_8);
+		return new Regex(patternBytes, 0, patternBytes.length, options, encoding, Syntax.RUBY,
 				LOGGER.isLoggable(Level.WARNING) ? LOGGER_WARN_CALLBACK : WarnCallback.NONE);
 	}
 
@@ -108,7 +131,7 @@ private Regex parsePattern(final String pattern, final boolean ignoreCase) throw
 	 *
 	 * @see <a href="https://github.com/eclipse-tm4e/tm4e/issues/677">github.com/eclipse-tm4e/tm4e/issues/677</a>
 	 */
-	private String rewritePatternIfRequired(final String pattern) {
+	private static String rewritePatternIfRequired(final String pattern) {
 		if (pattern.isEmpty())
 			return pattern;
 
@@ -152,7 +175,7 @@ private String rewritePatternIfRequired(final String pattern) {
 	 * Assumes 'start' points at '(' of a construct like (?<=...) or (?<!...).
 	 * Returns -1 if unbalanced.
 	 */
-	private int findBalancedGroupEnd(final String str, final int start) {
+	private static int findBalancedGroupEnd(final String str, final int start) {
 		int depth = 0;
 		boolean escaped = false;
 		for (int idx = start; idx < str.length(); idx++) {
@@ -183,7 +206,7 @@ private int findBalancedGroupEnd(final String str, final int start) {
 	 * - {m,} (open upper bound) or {m,n} with m != n
 	 * If unsure, returns false.
 	 */
-	private boolean isFixedLength(final String body) {
+	private static boolean isFixedLength(final String body) {
 		boolean escaped = false;
 		for (int idx = 0; idx < body.length(); idx++) {
 			final char ch = body.charAt(idx);
@@ -240,31 +263,67 @@ private boolean isFixedLength(final String body) {
 	 * @return null if not found
 	 */
 	public @Nullable OnigResult search(final OnigString str, final int startPosition) {
-		if (hasGAnchor)
-			// Should not use caching, because the regular expression
-			// targets the current search position (\G)
-			return search(str.bytesUTF8, startPosition, str.bytesCount);
-
-		final var lastSearchResult0 = lastSearchResult;
-		if (lastSearchString == str
-				&& lastSearchPosition <= startPosition
-				&& (lastSearchResult0 == null || lastSearchResult0.locationAt(0) >= startPosition))
-			return lastSearchResult0;
-
-		lastSearchString = str;
-		lastSearchPosition = startPosition;
-		lastSearchResult = search(str.bytesUTF8, startPosition, str.bytesCount);
-		return lastSearchResult;
+		final var searchState = searchState(str, startPosition);
+		return searchState == null ? null : new OnigResult(searchState.offsets, searchState.count);
 	}
 
-	private @Nullable OnigResult search(final byte[] data, final int startPosition, final int end) {
-		final Matcher matcher = regex.matcher(data);
-		final int status = matcher.search(startPosition, end, Option.DEFAULT);
-		if (status != Matcher.FAILED) {
-			final Region region = matcher.getEagerRegion();
-			return new OnigResult(region, -1);
+	/**
+	 * Allocation-free variant of {@link #search(OnigString, int)} which returns the reused search state of this regex on the
+	 * given string. The returned state is only valid until the next search of this regex on the same string.
+	 *
+	 * @return null if not found
+	 */
+	OnigString.@Nullable SearchState searchState(final OnigString str, final int startPosition) {
+		// The search state is kept by the searched string and not by this regex, which makes OnigRegExp instances
+		// stateless and thus shareable between threads tokenizing different lines with the same grammar at the same time.
+		final var searchState = str.getSearchState(this, getRegex(str));
+
+		// Searches of regexes with \G are not cached, because the regular expression targets the current search position
+		if (!hasGAnchor && searchState.position != -1 && searchState.position <= startPosition
+				&& (searchState.count == 0 || searchState.locationAt(0) >= startPosition))
+			return searchState.count == 0 ? null : searchState;
+
+		searchState.position = startPosition;
+		if (nextCandidatePosition(str, startPosition) == -1) {
+			// no byte in the remainder of the string can start a match
+			searchState.count = 0;
+			return null;
+		}
+
+		final Matcher matcher = searchState.matcher();
+		final int status = matcher.search(startPosition, str.bytesCount, Option.DEFAULT);
+		if (status == Matcher.FAILED) {
+			searchState.count = 0;
+			return null;
+		}
+		searchState.setMatch();
+		return searchState;
+	}
+
+	/**
+	 * @return the first byte index at or after the given start position at which a match of this regex can start
+	 *         according to its {@link OnigPrefilter}, or -1 if this regex cannot match at or after the start position
+	 */
+	int nextCandidatePosition(final OnigString str, final int startPosition) {
+		final var prefilter = this.prefilter;
+		if (prefilter == null)
+			return startPosition;
+
+		final var searchState = str.getSearchState(this, getRegex(str));
+		if (searchState.candidateSearchPosition != -1 && searchState.candidateSearchPosition <= startPosition
+				&& (searchState.candidatePosition == -1 || searchState.candidatePosition >= startPosition))
+			return searchState.candidatePosition;
+
+		final int candidatePosition;
+		if (str.isUTF16()) {
+			final int candidateCharPosition = prefilter.nextCandidateCharPosition(str.content, startPosition / 2);
+			candidatePosition = candidateCharPosition == -1 ? -1 : candidateCharPosition * 2;
+		} else {
+			candidatePosition = prefilter.nextCandidatePosition(str.bytes, startPosition, str.bytesCount);
 		}
-		return null;
+		searchState.candidateSearchPosition = startPosition;
+		searchState.candidatePosition = candidatePosition;
+		return candidatePosition;
 	}
 
 	public String pattern() {
@@ -0,0 +1,155 @@
+/**
+ * Copyright (c) 2026 Sebastian Thomschke and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.tm4e.core.internal.oniguruma;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.jcodings.Encoding;
+import org.joni.Regex;
+
+/**
+ * Process-wide, size-bounded interning cache for compiled Joni {@link Regex} objects.
+ * <p>
+ * A compiled {@link Regex} is immutable and can be used by multiple threads at the same time (each search creates its own
+ * {@link org.joni.Matcher}), so identical patterns used by different rules, anchor combinations, grammars, registries or
+ * language configurations can share one instance. This is especially relevant for embedded grammars like
+ * <code>source.js</code> which are included by HTML, Markdown, Vue and others.
+ * <p>
+ * The least recently used entries are evicted once more than {@link #getMaxSize()} patterns are cached. The max size
+ * defaults to {@value #DEFAULT_MAX_SIZE} and can be configured via the system property
+ * <code>tm4e.regexCache.maxSize</code>.
+ */
+public final class OnigRegexCache {
+
+	public static final int DEFAULT_MAX_SIZE = 8_192;
+
+	public static final OnigRegexCache INSTANCE = new OnigRegexCache(
+			Integer.getInteger("tm4e.regexCache.maxSize", DEFAULT_MAX_SIZE));
+
+	public record Stats(long hits, long misses, long evictions, int size) {
+
+		public double hitRate() {
+			final long requests = hits + misses;
+			return requests == 0 ? 0 : hits / (double) requests;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("OnigRegexCache[hits=%,d, misses=%,d, hitRate=%.1f%%, evictions=%,d, size=%,d]",
+					hits, misses, hitRate() * 100, evictions, size);
+		}
+	}
+
+	private static final class Key {
+		final byte[] patternBytes;
+		final int options;
+		final Encoding encoding;
+		final int hashCode;
+
+		Key(final byte[] patternBytes, final int options, final Encoding encoding) {
+			this.patternBytes = patternBytes;
+			this.options = options;
+			this.encoding = encoding;
+			hashCode = 31 * (31 * Arrays.hashCode(patternBytes) + options) + encoding.hashCode();
+		}
+
+		@Override
+		public boolean equals(final @Nullable Object obj) {
+			if (this == obj)
+				return true;
+			if (obj instanceof final Key other)
+				return hashCode == other.hashCode
+						&& options == other.options
+						&& encoding == other.encoding
+						&& Arrays.equals(patternBytes, other.patternBytes);
+			return false;
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+	}
+
+	private final int maxSize;
+	private final Map<Key, Regex> cache;
+
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	OnigRegexCache(final int maxSize) {
+		this.maxSize = Math.max(0, maxSize);
+		cache = new LinkedHashMap<>(64, 0.75f, true /* access order => LRU */) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<Key, Regex> eldest) {
+				if (size() > OnigRegexCache.this.maxSize) {
+					evictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Returns the cached regex for the given pattern, options and encoding or compiles and caches it using the given
+	 * compiler.
+	 * <p>
+	 * The compiler is invoked outside of the cache's lock, so a slow compilation does not block other threads. In the rare
+	 * case two threads compile the same pattern concurrently, the first result wins and is returned to both.
+	 *
+	 * @param patternBytes the UTF-8 encoded pattern, must not be modified afterwards
+	 * @param options the Joni {@link org.joni.Option}s the pattern is compiled with
+	 * @param encoding the encoding of the strings the compiled regex searches
+	 */
+	Regex get(final byte[] patternBytes, final int options, final Encoding encoding, final Supplier<Regex> compiler) {
+		final var key = new Key(patternBytes, options, encoding);
+		synchronized (cache) {
+			final var regex = cache.get(key);
+			if (regex != null) {
+				hits++;
+				return regex;
+			}
+			misses++;
+		}
+
+		final var regex = compiler.get();
+		if (maxSize == 0)
+			return regex;
+
+		synchronized (cache) {
+			final var existing = cache.putIfAbsent(key, regex);
+			return existing == null ? regex : existing;
+		}
+	}
+
+	public void clear() {
+		synchronized (cache) {
+			cache.clear();
+		}
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public Stats getStats() {
+		synchronized (cache) {
+			return new Stats(hits, misses, evictions, cache.size());
+		}
+	}
+}
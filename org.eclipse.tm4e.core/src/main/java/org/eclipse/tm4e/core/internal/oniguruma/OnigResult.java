@@ -16,7 +16,7 @@
  */
 package org.eclipse.tm4e.core.internal.oniguruma;
 
-import org.joni.Region;
+import java.util.Arrays;
 
 /**
  * @see <a href="https://github.com/atom/node-oniguruma/blob/master/src/onig-result.cc">
@@ -24,38 +24,32 @@
  */
 public final class OnigResult {
 
-	private int indexInScanner;
-	private final Region region;
+	private final int count;
 
-	OnigResult(final Region region, final int indexInScanner) {
-		this.region = region;
-		this.indexInScanner = indexInScanner;
-	}
-
-	public int getIndex() {
-		return indexInScanner;
-	}
+	/** Begin and end byte offsets of the capture groups as consecutive pairs */
+	private final int[] offsets;
 
-	void setIndex(final int index) {
-		indexInScanner = index;
+	OnigResult(final int[] offsets, final int count) {
+		this.count = count;
+		this.offsets = Arrays.copyOf(offsets, count * 2);
 	}
 
 	public int locationAt(final int index) {
-		final int bytes = region.getBeg(index);
+		final int bytes = offsets[index * 2];
 		return bytes > 0 ? bytes : 0;
 	}
 
 	public int count() {
-		return region.getNumRegs();
+		return count;
 	}
 
 	public int lengthAt(final int index) {
-		final int bytes = region.getEnd(index) - region.getBeg(index);
+		final int bytes = offsets[index * 2 + 1] - offsets[index * 2];
 		return bytes > 0 ? bytes : 0;
 	}
 
 	@Override
 	public String toString() {
-		return "OnigResult [indexInScanner=" + indexInScanner + ", region=" + region + "]";
+		return "OnigResult [offsets=" + Arrays.toString(offsets) + "]";
 	}
 }
@@ -32,11 +32,29 @@ public OnigScanner(final List<String> regexps) {
 		searcher = new OnigSearcher(regexps);
 	}
 
+	private OnigScanner(final OnigSearcher searcher) {
+		this.searcher = searcher;
+	}
+
+	/**
+	 * @return a new scanner where the regex at the given index is replaced and all other compiled regexes are reused
+	 */
+	public OnigScanner withRegExp(final int index, final String regexp) {
+		return new OnigScanner(searcher.withRegExp(index, regexp));
+	}
+
 	public @Nullable OnigScannerMatch findNextMatch(final OnigString source, final int startPosition) {
-		final OnigResult bestResult = searcher.search(source, startPosition);
-		if (bestResult != null) {
-			return new OnigScannerMatch(bestResult, source);
-		}
-		return null;
+		final var match = new OnigScannerMatch();
+		return findNextMatch(source, startPosition, match) ? match : null;
+	}
+
+	/**
+	 * Allocation-free variant of {@link #findNextMatch(OnigString, int)} which stores the match in the given reusable
+	 * instance.
+	 *
+	 * @return true if a match was found, false if not in which case the given match instance is left unchanged
+	 */
+	public boolean findNextMatch(final OnigString source, final int startPosition, final OnigScannerMatch match) {
+		return searcher.search(source, startPosition, match);
 	}
 }
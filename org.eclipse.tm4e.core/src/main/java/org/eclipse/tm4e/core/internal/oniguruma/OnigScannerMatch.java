@@ -27,30 +27,84 @@
  */
 public final class OnigScannerMatch {
 
-	public final int index;
-	private final OnigCaptureIndex[] captureIndices;
+	private static final int[] NO_CAPTURES = new int[0];
 
-	OnigScannerMatch(final OnigResult result, final OnigString source) {
-		this.index = result.getIndex();
-		this.captureIndices = captureIndicesOfMatch(result, source);
+	private int index = -1;
+	private int captureCount;
+
+	/** Start and end char offsets of the capture groups as consecutive pairs, reused between matches */
+	private int[] captureOffsets = NO_CAPTURES;
+
+	/** Lazily created by {@link #getCaptureIndices()} */
+	private OnigCaptureIndex @Nullable [] captureIndices;
+
+	/**
+	 * Creates an empty match instance that can be passed to
+	 * {@link OnigScanner#findNextMatch(OnigString, int, OnigScannerMatch)} repeatedly.
+	 */
+	public OnigScannerMatch() {
 	}
 
 	/**
 	 * @see <a href="https://github.com/atom/node-oniguruma/blob/0c6b95fc7d79ab7e60a7ed63df6d05677ace2642/src/onig-scanner.cc#L102">
 	 *      github.com/atom/node-oniguruma/blob/master/src/onig-scanner.cc#L102</a>
 	 */
-	private OnigCaptureIndex[] captureIndicesOfMatch(final OnigResult result, final OnigString source) {
-		final int resultCount = result.count();
-		final var captures = new @NonNull OnigCaptureIndex[resultCount];
-		for (int i = 0; i < resultCount; i++) {
-			final int loc = result.locationAt(i);
-			final int captureStart = source.getCharIndexOfByte(loc);
-			final int captureEnd = source.getCharIndexOfByte(loc + result.lengthAt(i));
-			captures[i] = captureStart == 0 && captureEnd == 0
-					? OnigCaptureIndex.EMPTY
-					: new OnigCaptureIndex(captureStart, captureEnd);
+	void set(final int index, final OnigString.SearchState searchState, final OnigString source) {
+		final int count = searchState.count;
+		var captureOffsets = this.captureOffsets;
+		if (captureOffsets.length < count * 2) {
+			captureOffsets = this.captureOffsets = new int[count * 2];
+		}
+		for (int i = 0; i < count; i++) {
+			final int loc = searchState.locationAt(i);
+			captureOffsets[i * 2] = source.getCharIndexOfByte(loc);
+			captureOffsets[i * 2 + 1] = source.getCharIndexOfByte(loc + searchState.lengthAt(i));
 		}
-		return captures;
+		this.index = index;
+		this.captureCount = count;
+		this.captureIndices = null;
+	}
+
+	/**
+	 * @return the index of the matching regex in the scanner
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	public int getCaptureCount() {
+		return captureCount;
+	}
+
+	public int getCaptureStart(final int captureIndex) {
+		return captureOffsets[captureIndex * 2];
+	}
+
+	public int getCaptureEnd(final int captureIndex) {
+		return captureOffsets[captureIndex * 2 + 1];
+	}
+
+	public int getCaptureLength(final int captureIndex) {
+		return captureOffsets[captureIndex * 2 + 1] - captureOffsets[captureIndex * 2];
+	}
+
+	/**
+	 * Creates the capture indices on first access. Prefer {@link #getCaptureStart(int)} and {@link #getCaptureEnd(int)}
+	 * in hot paths as they do not allocate.
+	 */
+	public OnigCaptureIndex[] getCaptureIndices() {
+		var captureIndices = this.captureIndices;
+		if (captureIndices == null) {
+			captureIndices = this.captureIndices = new @NonNull OnigCaptureIndex[captureCount];
+			for (int i = 0; i < captureCount; i++) {
+				final int captureStart = getCaptureStart(i);
+				final int captureEnd = getCaptureEnd(i);
+				captureIndices[i] = captureStart == 0 && captureEnd == 0
+						? OnigCaptureIndex.EMPTY
+						: new OnigCaptureIndex(captureStart, captureEnd);
+			}
+		}
+		return captureIndices;
 	}
 
 	@Override
@@ -59,17 +113,17 @@ public boolean equals(final @Nullable Object obj) {
 			return true;
 		if (obj instanceof final OnigScannerMatch other)
 			return index == other.index
-					&& Arrays.equals(captureIndices, other.captureIndices);
+					&& Arrays.equals(captureOffsets, 0, captureCount * 2, other.captureOffsets, 0, other.captureCount * 2);
 		return false;
 	}
 
-	public OnigCaptureIndex[] getCaptureIndices() {
-		return captureIndices;
-	}
-
 	@Override
 	public int hashCode() {
-		return 31 * (31 + index) + Arrays.hashCode(captureIndices);
+		int result = 31 + index;
+		for (int i = 0; i < captureCount * 2; i++) {
+			result = 31 * result + captureOffsets[i];
+		}
+		return result;
 	}
 
 	@Override
@@ -79,14 +133,12 @@ public String toString() {
 		result.append(index);
 		result.append(",\n");
 		result.append("  \"captureIndices\": [\n");
-		int i = 0;
-		for (final OnigCaptureIndex captureIndex : captureIndices) {
+		for (int i = 0; i < captureCount; i++) {
 			if (i > 0) {
 				result.append(",\n");
 			}
 			result.append("    ");
-			result.append(captureIndex);
-			i++;
+			result.append(getCaptureIndices()[i]);
 		}
 		result.append("\n");
 		result.append("  ]\n");
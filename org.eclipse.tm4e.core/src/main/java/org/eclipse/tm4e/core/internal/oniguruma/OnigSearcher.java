@@ -18,45 +18,74 @@
 
 import java.util.List;
 
-import org.eclipse.jdt.annotation.Nullable;
-
 /**
  * @see <a href="https://github.com/atom/node-oniguruma/blob/master/src/onig-searcher.cc">
  *      github.com/atom/node-oniguruma/blob/master/src/onig-searcher.cc</a>
  */
 final class OnigSearcher {
 
-	private final List<OnigRegExp> regExps;
+	private final OnigRegExp[] regExps;
 
 	OnigSearcher(final List<String> regExps) {
-		this.regExps = regExps.stream().map(OnigRegExp::new).toList();
+		this(regExps.stream().map(OnigRegExp::new).toArray(OnigRegExp[]::new));
+	}
+
+	private OnigSearcher(final OnigRegExp[] regExps) {
+		this.regExps = regExps;
+	}
+
+	/**
+	 * @return a new searcher where the regex at the given index is replaced and all other compiled regexes are reused
+	 */
+	OnigSearcher withRegExp(final int index, final String regExp) {
+		final var newRegExps = regExps.clone();
+		newRegExps[index] = new OnigRegExp(regExp);
+		return new OnigSearcher(newRegExps);
 	}
 
-	@Nullable
-	OnigResult search(final OnigString source, final int charOffset) {
+	/**
+	 * Searches for the leftmost match of all regexes, preferring the regex with the lower index for matches at the same
+	 * position, and stores it in the given reusable match instance. Other than
+	 * storing the capture offsets in the match, this performs no object allocation once the Joni matchers of the regexes
+	 * have been created for the given string.
+	 *
+	 * @return true if a match was found and stored in the given match instance
+	 */
+	boolean search(final OnigString source, final int charOffset, final OnigScannerMatch match) {
 		final int byteOffset = source.getByteIndexOfChar(charOffset);
 
 		int bestLocation = 0;
-		OnigResult bestResult = null;
-		int index = 0;
+		OnigString.SearchState bestState = null;
+		int bestIndex = -1;
 
-		for (final OnigRegExp regExp : regExps) {
-			final OnigResult result = regExp.search(source, byteOffset);
-			if (result != null && result.count() > 0) {
-				final int location = result.locationAt(0);
+		for (int index = 0; index < regExps.length; index++) {
+			final OnigRegExp regExp = regExps[index];
 
-				if (bestResult == null || location < bestLocation) {
+			// skip regexes which according to their prefilter cannot match before the best match found so far
+			final int candidatePosition = regExp.nextCandidatePosition(source, byteOffset);
+			if (candidatePosition == -1 || bestState != null && candidatePosition >= bestLocation) {
+				continue;
+			}
+
+			final OnigString.SearchState state = regExp.searchState(source, byteOffset);
+			if (state != null && state.count > 0) {
+				final int location = state.locationAt(0);
+
+				if (bestState == null || location < bestLocation) {
 					bestLocation = location;
-					bestResult = result;
-					bestResult.setIndex(index);
+					bestState = state;
+					bestIndex = index;
 				}
 
 				if (location == byteOffset) {
 					break;
 				}
 			}
-			index++;
 		}
-		return bestResult;
+
+		if (bestState == null)
+			return false;
+		match.set(bestIndex, bestState, source);
+		return true;
 	}
 }
@@ -20,9 +20,14 @@
 
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.jcodings.specific.UTF8Encoding;
+import org.joni.Matcher;
+import org.joni.Regex;
+import org.joni.Region;
 
 /**
  * Oniguruma string.
@@ -81,7 +86,7 @@ private int[] getByteToCharOffsets() {
 				int byteIndex = 0;
 				final int maxByteIndex = bytesCount - 1;
 				while (byteIndex <= maxByteIndex) {
-					final int charLenInBytes = UTF8Encoding.INSTANCE.length(bytesUTF8, byteIndex, bytesCount);
+					final int charLenInBytes = UTF8Encoding.INSTANCE.length(bytes, byteIndex, bytesCount);
 					// same as "Arrays.fill(offsets, byteIndex, byteIndex + charLenInBytes, charIndex)" but faster
 					for (final int l = byteIndex + charLenInBytes; byteIndex < l; byteIndex++) {
 						offsets[byteIndex] = charIndex;
@@ -147,7 +152,64 @@ int getCharIndexOfByte(final int byteIndex) {
 		}
 	}
 
+	/**
+	 * Represents a string that contains multi-byte characters, encoded as UTF-16LE so byte and char indexes can be converted
+	 * arithmetically without a byte-to-char offset table.
+	 */
+	static final class UTF16String extends OnigString {
+
+		private UTF16String(final String str) {
+			super(str, str.getBytes(StandardCharsets.UTF_16LE));
+		}
+
+		@Override
+		int getByteIndexOfChar(final int charIndex) {
+			// One off can happen when finding the end of a regexp (it's the right boundary).
+			if (charIndex < 0 || charIndex > content.length()) {
+				throwOutOfBoundsException("Char", charIndex, 0, content.length() - 1);
+			}
+			return charIndex * 2;
+		}
+
+		@Override
+		int getCharIndexOfByte(final int byteIndex) {
+			// One off can happen when finding the end of a regexp (it's the right boundary).
+			if (byteIndex < 0 || byteIndex > bytesCount) {
+				throwOutOfBoundsException("Byte", byteIndex, 0, bytesCount - 1);
+			}
+			return byteIndex / 2;
+		}
+
+		@Override
+		boolean isUTF16() {
+			return true;
+		}
+	}
+
+	/**
+	 * If true, strings with non-ASCII chars are matched as UTF-16 instead of UTF-8. ASCII-only strings are always matched
+	 * as single-byte strings.
+	 * <p>
+	 * Enabled via the system property <code>tm4e.oniguruma.encoding=UTF-16</code>, default is <code>UTF-8</code>.
+	 */
+	static final boolean UTF16_MODE = "UTF-16".equalsIgnoreCase(System.getProperty("tm4e.oniguruma.encoding"));
+
 	public static OnigString of(final String str) {
+		return of(str, UTF16_MODE);
+	}
+
+	/**
+	 * @param utf16 if true, a string with non-ASCII chars is encoded as UTF-16 instead of UTF-8
+	 */
+	static OnigString of(final String str, final boolean utf16) {
+		if (utf16) {
+			for (int i = 0, l = str.length(); i < l; i++) {
+				if (str.charAt(i) >= 0x80)
+					return new UTF16String(str);
+			}
+			return new SingleByteString(str, str.getBytes(StandardCharsets.ISO_8859_1));
+		}
+
 		final byte[] bytesUtf8 = str.getBytes(StandardCharsets.UTF_8);
 		if (bytesUtf8.length == str.length()) {
 			return new SingleByteString(str, bytesUtf8);
@@ -155,15 +217,111 @@ public static OnigString of(final String str) {
 		return new MultiByteString(str, bytesUtf8);
 	}
 
+	/**
+	 * Mutable state of the searches performed by an {@link OnigRegExp} on this string. It is reused for every search of the
+	 * same regex on this string, so repeated searches allocate neither a new {@link Matcher} nor a new result object.
+	 */
+	final class SearchState {
+
+		private final Regex regex;
+
+		/** Joni matcher bound to the bytes of this string, created on the first search */
+		private @Nullable Matcher matcher;
+
+		/** Start position of the last search in bytes, or -1 if no search was performed yet */
+		int position = -1;
+
+		/** Number of capture groups of the last match, or 0 if the last search did not match */
+		int count;
+
+		/** Begin and end byte offsets of the capture groups of the last match as consecutive pairs */
+		int[] offsets = NO_OFFSETS;
+
+		/** Start position of the last {@link OnigPrefilter} lookup in bytes, or -1 if no lookup was performed yet */
+		int candidateSearchPosition = -1;
+
+		/** Result of the last {@link OnigPrefilter} lookup */
+		int candidatePosition;
+
+		SearchState(final Regex regex) {
+			this.regex = regex;
+		}
+
+		Matcher matcher() {
+			var matcher = this.matcher;
+			if (matcher == null) {
+				matcher = this.matcher = regex.matcher(bytes, 0, bytesCount);
+			}
+			return matcher;
+		}
+
+		/**
+		 * Copies the capture group offsets of the last match of {@link #matcher} into the reused offsets array.
+		 */
+		void setMatch() {
+			final Matcher matcher = matcher();
+			// the region is null for regexes without capture groups, Matcher#getEagerRegion() would allocate one
+			final Region region = matcher.getRegion();
+			final int count = region == null ? 1 : region.getNumRegs();
+			var offsets = this.offsets;
+			if (offsets.length < count * 2) {
+				offsets = this.offsets = new int[count * 2];
+			}
+			if (region == null) {
+				offsets[0] = matcher.getBegin();
+				offsets[1] = matcher.getEnd();
+			} else {
+				for (int i = 0; i < count; i++) {
+					offsets[i * 2] = region.getBeg(i);
+					offsets[i * 2 + 1] = region.getEnd(i);
+				}
+			}
+			this.count = count;
+		}
+
+		/**
+		 * @return the begin byte offset of the given capture group of the last match, never negative
+		 */
+		int locationAt(final int index) {
+			final int bytes = offsets[index * 2];
+			return bytes > 0 ? bytes : 0;
+		}
+
+		/**
+		 * @return the byte length of the given capture group of the last match, never negative
+		 */
+		int lengthAt(final int index) {
+			final int bytes = offsets[index * 2 + 1] - offsets[index * 2];
+			return bytes > 0 ? bytes : 0;
+		}
+	}
+
+	private static final int[] NO_OFFSETS = new int[0];
+
 	public final String content;
 
 	public final int bytesCount;
-	final byte[] bytesUTF8;
 
-	private OnigString(final String content, final byte[] bytesUTF8) {
+	/** The UTF-8 encoded string or, for {@link UTF16String}s, the UTF-16LE encoded string */
+	final byte[] bytes;
+
+	/**
+	 * Search states keyed by regex. An OnigString is created per line by the thread tokenizing it, so these states are
+	 * thread-confined and require no synchronization.
+	 */
+	private @Nullable Map<OnigRegExp, SearchState> searchStates;
+
+	private OnigString(final String content, final byte[] bytes) {
 		this.content = content;
-		this.bytesUTF8 = bytesUTF8;
-		bytesCount = bytesUTF8.length;
+		this.bytes = bytes;
+		bytesCount = bytes.length;
+	}
+
+	/**
+	 * @return true if this string is UTF-16LE encoded and must be searched by regexes compiled for UTF-16LE
+	 */
+	boolean isUTF16() {
+		return false;
 	}
 
 	protected final void throwOutOfBoundsException(final String indexName, final int index, final int minIndex, final int maxIndex) {
@@ -173,6 +331,22 @@ protected final void throwOutOfBoundsException(final String indexName, final int
 
 	abstract int getByteIndexOfChar(int charIndex);
 
+	/**
+	 * @return the search state of the given regex on this string, created on first access
+	 */
+	SearchState getSearchState(final OnigRegExp regExp, final Regex regex) {
+		var searchStates = this.searchStates;
+		if (searchStates == null) {
+			searchStates = this.searchStates = new IdentityHashMap<>();
+		}
+		var searchState = searchStates.get(regExp);
+		if (searchState == null) {
+			searchState = new SearchState(regex);
+			searchStates.put(regExp, searchState);
+		}
+		return searchState;
+	}
+
 	abstract int getCharIndexOfByte(int byteIndex);
 
 	@Override
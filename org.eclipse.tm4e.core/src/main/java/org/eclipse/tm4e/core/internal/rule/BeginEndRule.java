@@ -41,7 +41,7 @@ public final class BeginEndRule extends Rule {
 	final boolean hasMissingPatterns;
 	final RuleId[] patterns;
 
-	private @Nullable RegExpSourceList cachedCompiledPatterns;
+	private volatile @Nullable RegExpSourceList cachedCompiledPatterns;
 
 	BeginEndRule(final RuleId id, final @Nullable String name, final @Nullable String contentName, final String begin,
 			final List<@Nullable CaptureRule> beginCaptures, final @Nullable String end,
@@ -77,16 +77,30 @@ public void collectPatterns(final IRuleRegistry grammar, final RegExpSourceList
 
 	@Override
 	public CompiledRule compile(final IRuleRegistry grammar, final @Nullable String endRegexSource) {
-		return getCachedCompiledPatterns(grammar, endRegexSource).compile();
+		final var cachedCompiledPatterns = getCachedCompiledPatterns(grammar);
+		if (this.endHasBackReferences && endRegexSource != null) {
+			return cachedCompiledPatterns.compileAGWithResolvedSource(getEndPatternIndex(cachedCompiledPatterns), endRegexSource, false,
+					false);
+		}
+		return cachedCompiledPatterns.compile();
 	}
 
 	@Override
 	public CompiledRule compileAG(final IRuleRegistry grammar, final @Nullable String endRegexSource, final boolean allowA,
 			final boolean allowG) {
-		return getCachedCompiledPatterns(grammar, endRegexSource).compileAG(allowA, allowG);
+		final var cachedCompiledPatterns = getCachedCompiledPatterns(grammar);
+		if (this.endHasBackReferences && endRegexSource != null) {
+			return cachedCompiledPatterns.compileAGWithResolvedSource(getEndPatternIndex(cachedCompiledPatterns), endRegexSource, allowA,
+					allowG);
+		}
+		return cachedCompiledPatterns.compileAG(allowA, allowG);
+	}
+
+	private int getEndPatternIndex(final RegExpSourceList cachedCompiledPatterns) {
+		return this.applyEndPatternLast ? cachedCompiledPatterns.length() - 1 : 0;
 	}
 
-	private RegExpSourceList getCachedCompiledPatterns(final IRuleRegistry grammar, final @Nullable String endRegexSource) {
+	private RegExpSourceList getCachedCompiledPatterns(final IRuleRegistry grammar) {
 		var cachedCompiledPatterns = this.cachedCompiledPatterns;
 		if (cachedCompiledPatterns == null) {
 			cachedCompiledPatterns = new RegExpSourceList();
@@ -97,19 +111,12 @@ private RegExpSourceList getCachedCompiledPatterns(final IRuleRegistry grammar,
 			}
 
 			if (this.applyEndPatternLast) {
-				cachedCompiledPatterns.add(this.endHasBackReferences ? this.end.clone() : this.end);
+				cachedCompiledPatterns.add(this.end);
 			} else {
-				cachedCompiledPatterns.remove(this.endHasBackReferences ? this.end.clone() : this.end);
+				cachedCompiledPatterns.remove(this.end);
 			}
 			this.cachedCompiledPatterns = cachedCompiledPatterns;
 		}
-		if (this.endHasBackReferences && endRegexSource != null) {
-			if (this.applyEndPatternLast) {
-				cachedCompiledPatterns.setSource(cachedCompiledPatterns.length() - 1, endRegexSource);
-			} else {
-				cachedCompiledPatterns.setSource(0, endRegexSource);
-			}
-		}
 		return cachedCompiledPatterns;
 	}
 }
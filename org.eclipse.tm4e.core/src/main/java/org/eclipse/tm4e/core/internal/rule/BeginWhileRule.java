@@ -38,8 +38,8 @@ public final class BeginWhileRule extends Rule {
 	final boolean hasMissingPatterns;
 	final RuleId[] patterns;
 
-	private @Nullable RegExpSourceList cachedCompiledPatterns;
-	private @Nullable RegExpSourceList cachedCompiledWhilePatterns;
+	private volatile @Nullable RegExpSourceList cachedCompiledPatterns;
+	private volatile @Nullable RegExpSourceList cachedCompiledWhilePatterns;
 
 	BeginWhileRule(final RuleId id, final @Nullable String name, final @Nullable String contentName,
 			final String begin, final List<@Nullable CaptureRule> beginCaptures,
@@ -79,35 +79,40 @@ private RegExpSourceList getCachedCompiledPatterns(final IRuleRegistry grammar)
 		var cachedCompiledPatterns = this.cachedCompiledPatterns;
 		if (cachedCompiledPatterns == null) {
 			cachedCompiledPatterns = new RegExpSourceList();
-			this.cachedCompiledPatterns = cachedCompiledPatterns;
 
 			for (final var pattern : this.patterns) {
 				final var rule = grammar.getRule(pattern);
 				rule.collectPatterns(grammar, cachedCompiledPatterns);
 			}
+			this.cachedCompiledPatterns = cachedCompiledPatterns;
 		}
 		return cachedCompiledPatterns;
 	}
 
 	public CompiledRule compileWhile(final @Nullable String endRegexSource) {
-		return getCachedCompiledWhilePatterns(endRegexSource).compile();
+		final var cachedCompiledWhilePatterns = getCachedCompiledWhilePatterns();
+		if (whileHasBackReferences) {
+			return cachedCompiledWhilePatterns.compileAGWithResolvedSource(0, defaultIfNull(endRegexSource, "\uFFFF"), false, false);
+		}
+		return cachedCompiledWhilePatterns.compile();
 	}
 
 	public CompiledRule compileWhileAG(final @Nullable String endRegexSource,
 			final boolean allowA, final boolean allowG) {
-		return getCachedCompiledWhilePatterns(endRegexSource).compileAG(allowA, allowG);
+		final var cachedCompiledWhilePatterns = getCachedCompiledWhilePatterns();
+		if (whileHasBackReferences) {
+			return cachedCompiledWhilePatterns.compileAGWithResolvedSource(0, defaultIfNull(endRegexSource, "\uFFFF"), allowA, allowG);
+		}
+		return cachedCompiledWhilePatterns.compileAG(allowA, allowG);
 	}
 
-	private RegExpSourceList getCachedCompiledWhilePatterns(final @Nullable String endRegexSource) {
+	private RegExpSourceList getCachedCompiledWhilePatterns() {
 		var cachedCompiledWhilePatterns = this.cachedCompiledWhilePatterns;
 		if (cachedCompiledWhilePatterns == null) {
 			cachedCompiledWhilePatterns = new RegExpSourceList();
-			cachedCompiledWhilePatterns.add(this.whileHasBackReferences ? this._while.clone() : this._while);
+			cachedCompiledWhilePatterns.add(this._while);
 			this.cachedCompiledWhilePatterns = cachedCompiledWhilePatterns;
 		}
-		if (whileHasBackReferences) {
-			cachedCompiledWhilePatterns.setSource(0, defaultIfNull(endRegexSource, "\uFFFF"));
-		}
 		return cachedCompiledWhilePatterns;
 	}
 }
@@ -16,6 +16,7 @@
  */
 package org.eclipse.tm4e.core.internal.rule;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.eclipse.tm4e.core.internal.oniguruma.OnigScanner;
@@ -36,4 +37,19 @@ public final class CompiledRule {
 		this.rules = rules;
 		this.scanner = new OnigScanner(regExps);
 	}
+
+	private CompiledRule(final List<String> regExps, final RuleId[] rules, final OnigScanner scanner) {
+		this.debugRegExps = regExps;
+		this.rules = rules;
+		this.scanner = scanner;
+	}
+
+	/**
+	 * @return a compiled rule where the regex at the given index is replaced, the other compiled regexes are reused
+	 */
+	CompiledRule withRegExp(final int index, final String regExp) {
+		final var regExps = new ArrayList<>(debugRegExps);
+		regExps.set(index, regExp);
+		return new CompiledRule(List.copyOf(regExps), rules, scanner.withRegExp(index, regExp));
+	}
 }
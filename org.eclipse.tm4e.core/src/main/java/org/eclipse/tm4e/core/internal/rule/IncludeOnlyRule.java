@@ -28,7 +28,7 @@ final class IncludeOnlyRule extends Rule {
 	final boolean hasMissingPatterns;
 	final RuleId[] patterns;
 
-	private @Nullable RegExpSourceList cachedCompiledPatterns;
+	private volatile @Nullable RegExpSourceList cachedCompiledPatterns;
 
 	IncludeOnlyRule(final RuleId id, final @Nullable String name, final @Nullable String contentName,
 			final CompilePatternsResult patterns, final @Nullable String grammarScope) {
@@ -30,7 +30,7 @@ public final class MatchRule extends Rule {
 	private final RegExpSource match;
 	public final List<@Nullable CaptureRule> captures;
 
-	private @Nullable RegExpSourceList cachedCompiledPatterns;
+	private volatile @Nullable RegExpSourceList cachedCompiledPatterns;
 
 	MatchRule(final RuleId id, final @Nullable String name, final String match, final List<@Nullable CaptureRule> captures,
 			final @Nullable String grammarScope) {
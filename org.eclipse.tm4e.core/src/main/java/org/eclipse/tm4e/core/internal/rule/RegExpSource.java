@@ -17,7 +17,6 @@
 package org.eclipse.tm4e.core.internal.rule;
 
 import java.util.ArrayList;
-import java.util.Objects;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -35,7 +34,7 @@ final class RegExpSource {
 	private static final Pattern HAS_BACK_REFERENCES = Pattern.compile("\\\\(\\d+)");
 	private static final Pattern BACK_REFERENCING_END = Pattern.compile("\\\\(\\d+)");
 
-	private String source;
+	private final String source;
 	final RuleId ruleId;
 	final boolean hasBackReferences;
 
@@ -88,22 +87,6 @@ final class RegExpSource {
 		this.hasBackReferences = HAS_BACK_REFERENCES.matcher(this.source).find();
 	}
 
-	@Override
-	protected RegExpSource clone() {
-		return new RegExpSource(source, this.ruleId);
-	}
-
-	void setSource(final String newSource) {
-		if (Objects.equals(source, newSource)) {
-			return;
-		}
-		this.source = newSource;
-
-		if (hasAnchor()) {
-			this.anchorCache = buildAnchorCache();
-		}
-	}
-
 	@SuppressWarnings("null")
 	String resolveBackReferences(final CharSequence lineText, final OnigCaptureIndex[] captureIndices) {
 		final var capturedValues = new ArrayList<String>(captureIndices.length);
@@ -17,8 +17,9 @@
 package org.eclipse.tm4e.core.internal.rule;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
 
 import org.eclipse.jdt.annotation.Nullable;
 
@@ -29,19 +30,39 @@
  */
 final class RegExpSourceList {
 
+	/**
+	 * Max number of distinct resolved back reference sources for which compiled rules are kept per list.
+	 */
+	private static final int MAX_RESOLVED_SOURCE_CACHE_SIZE = 32;
+
 	private final List<RegExpSource> items = new ArrayList<>();
 	private boolean hasAnchors;
 
-	private @Nullable CompiledRule cached;
+	/*
+	 * A CompiledRule is immutable and only has final fields, so it is safely published even through the non-volatile
+	 * anchorCache slots. Threads racing to fill the same slot at worst compile the same patterns twice.
+	 */
+	private volatile @Nullable CompiledRule cached;
 	private final @Nullable CompiledRule[][] anchorCache = new CompiledRule[2][2];
 
-	private void disposeCache() {
-		cached = null;
-		anchorCache[0][0] = null;
-		anchorCache[0][1] = null;
-		anchorCache[1][0] = null;
-		anchorCache[1][1] = null;
-	}
+	/**
+	 * Compiled rules per resolved back reference source (e.g. the end pattern of a heredoc with the captured delimiter filled
+	 * in) and anchor combination, least recently used entries are evicted.
+	 */
+	private final Map<String, @Nullable CompiledRule[][]> resolvedSourceCache = new LinkedHashMap<>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<String, @Nullable CompiledRule[][]> eldest) {
+			return size() > MAX_RESOLVED_SOURCE_CACHE_SIZE;
+		}
+	};
+
+	/**
+	 * The most recently compiled rule per anchor combination for any resolved source. Used as template so only the regex
+	 * of the resolved source needs to be compiled while all other compiled regexes are reused.
+	 */
+	private final @Nullable CompiledRule[][] resolvedSourceTemplates = new CompiledRule[2][2];
 
 	void add(final RegExpSource item) {
 		items.add(item);
@@ -61,14 +82,6 @@ int length() {
 		return items.size();
 	}
 
-	void setSource(final int index, final String newSource) {
-		final RegExpSource r = items.get(index);
-		if (!Objects.equals(r.getSource(), newSource)) {
-			disposeCache();
-			r.setSource(newSource);
-		}
-	}
-
 	CompiledRule compile() {
 		var cached = this.cached;
 		if (cached == null) {
@@ -93,6 +106,51 @@ CompiledRule compileAG(final boolean allowA, final boolean allowG) {
 		return rule;
 	}
 
+	/**
+	 * Compiles this list with the source at the given index replaced by a source with resolved back references, without
+	 * modifying this list. The compiled rules are cached per resolved source, and on a cache miss only the regex of the
+	 * resolved source is compiled while the compiled regexes of the other items are reused.
+	 */
+	CompiledRule compileAGWithResolvedSource(final int index, final String resolvedSource, final boolean allowA,
+			final boolean allowG) {
+		final var indexA = hasAnchors && allowA ? 1 : 0;
+		final var indexG = hasAnchors && allowG ? 1 : 0;
+
+		synchronized (resolvedSourceCache) {
+			var rules = resolvedSourceCache.get(resolvedSource);
+			if (rules == null) {
+				rules = new CompiledRule[2][2];
+				resolvedSourceCache.put(resolvedSource, rules);
+			}
+
+			var rule = rules[indexA][indexG];
+			if (rule == null) {
+				final var template = resolvedSourceTemplates[indexA][indexG];
+				rule = template == null
+						? compileWithResolvedSource(index, resolvedSource, allowA, allowG)
+						: template.withRegExp(index, resolveAnchors(new RegExpSource(resolvedSource, items.get(index).ruleId),
+								allowA, allowG));
+				rules[indexA][indexG] = rule;
+				resolvedSourceTemplates[indexA][indexG] = rule;
+			}
+			return rule;
+		}
+	}
+
+	private CompiledRule compileWithResolvedSource(final int index, final String resolvedSource, final boolean allowA,
+			final boolean allowG) {
+		final var regExps = new ArrayList<String>(items.size());
+		for (int i = 0; i < items.size(); i++) {
+			regExps.add(resolveAnchors(i == index ? new RegExpSource(resolvedSource, items.get(i).ruleId) : items.get(i), allowA,
+					allowG));
+		}
+		return new CompiledRule(regExps, items.stream().map(e -> e.ruleId).toArray(RuleId[]::new));
+	}
+
+	private String resolveAnchors(final RegExpSource item, final boolean allowA, final boolean allowG) {
+		return hasAnchors ? item.resolveAnchors(allowA, allowG) : item.getSource();
+	}
+
 	private CompiledRule resolveAnchors(final boolean allowA, final boolean allowG) {
 		final List<String> regexps = items.stream().map(e -> e.resolveAnchors(allowA, allowG)).toList();
 		return new CompiledRule(regexps, items.stream().map(e -> e.ruleId).toArray(RuleId[]::new));
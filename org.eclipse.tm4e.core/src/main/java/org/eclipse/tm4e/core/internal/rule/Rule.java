@@ -17,7 +17,7 @@
 package org.eclipse.tm4e.core.internal.rule;
 
 import org.eclipse.jdt.annotation.Nullable;
-import org.eclipse.tm4e.core.internal.oniguruma.OnigCaptureIndex;
+import org.eclipse.tm4e.core.internal.oniguruma.OnigScannerMatch;
 import org.eclipse.tm4e.core.internal.utils.RegexSource;
 import org.eclipse.tm4e.core.internal.utils.StringUtils;
 
@@ -48,20 +48,24 @@ public abstract class Rule {
 		this.grammarScope = grammarScope; // custom tm4e code - not from upstream (for TMPartitioner)
 	}
 
-	public @Nullable String getName(final @Nullable CharSequence lineText, final OnigCaptureIndex @Nullable [] captureIndices) {
+	/**
+	 * Takes the match instead of its capture indices, so the capture indices are only created for names referencing
+	 * captures.
+	 */
+	public @Nullable String getName(final @Nullable CharSequence lineText, final @Nullable OnigScannerMatch match) {
 		final var name = this.name;
-		if (!nameIsCapturing || name == null || lineText == null || captureIndices == null) {
+		if (!nameIsCapturing || name == null || lineText == null || match == null) {
 			return name;
 		}
-		return RegexSource.replaceCaptures(name, lineText, captureIndices);
+		return RegexSource.replaceCaptures(name, lineText, match.getCaptureIndices());
 	}
 
-	public @Nullable String getContentName(final CharSequence lineText, final OnigCaptureIndex[] captureIndices) {
+	public @Nullable String getContentName(final CharSequence lineText, final OnigScannerMatch match) {
 		final var contentName = this.contentName;
 		if (!contentNameIsCapturing || contentName == null) {
 			return contentName;
 		}
-		return RegexSource.replaceCaptures(contentName, lineText, captureIndices);
+		return RegexSource.replaceCaptures(contentName, lineText, match.getCaptureIndices());
 	}
 
 	public abstract void collectPatterns(IRuleRegistry grammar, RegExpSourceList out);
@@ -19,8 +19,6 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tm4e.core.internal.grammar.ScopeStack;
@@ -55,17 +53,17 @@ public static Theme createFromParsedTheme(final List<ParsedThemeRule> source, fi
 		return resolveParsedThemeRules(source, colorMap);
 	}
 
-	private final ConcurrentMap<String /* scopeName */, List<ThemeTrieElementRule>> _cachedMatchRoot = new ConcurrentHashMap<>();
-
 	private final ColorMap _colorMap;
 	private final StyleAttributes _defaults;
 	private final ThemeTrieElement _root;
+	private final ThemeMatcher _matcher;
 	private Map<String, String> editorColors = Collections.emptyMap(); // custom tm4e code, not from upstream
 
 	public Theme(final ColorMap colorMap, final StyleAttributes defaults, final ThemeTrieElement root) {
 		this._colorMap = colorMap;
 		this._root = root;
 		this._defaults = defaults;
+		this._matcher = new ThemeMatcher(root);
 	}
 
 	public List<String> getColorMap() {
@@ -84,67 +82,7 @@ public Map<String, String> getEditorColors() { // custom tm4e code, not from ups
 		if (scopePath == null) {
 			return this._defaults;
 		}
-		final var scopeName = scopePath.scopeName;
-		final var matchingTrieElements = this._cachedMatchRoot.computeIfAbsent(scopeName, _root::match);
-
-		final var effectiveRule = findFirstMatching(matchingTrieElements,
-				v -> _scopePathMatchesParentScopes(scopePath.parent, v.parentScopes));
-		if (effectiveRule == null) {
-			return null;
-		}
-
-		return StyleAttributes.of(
-				effectiveRule.fontStyle,
-				effectiveRule.foreground,
-				effectiveRule.background);
-	}
-
-	private boolean _scopePathMatchesParentScopes(@Nullable ScopeStack scopePath, final List<String> parentScopeNames) {
-		if (parentScopeNames.isEmpty()) {
-			return true;
-		}
-
-		// Starting with the deepest parent scope, look for a match in the scope path.
-		final var parentScopeNamesLen = parentScopeNames.size();
-		for (int index = 0; index < parentScopeNamesLen; index++) {
-			var scopePattern = parentScopeNames.get(index);
-			boolean scopeMustMatch = false;
-
-			// Check for a child combinator (a parent-child relationship)
-			if (">".equals(scopePattern)) {
-				if (index == parentScopeNamesLen - 1) {
-					// Invalid use of child combinator
-					return false;
-				}
-				scopePattern = parentScopeNames.get(++index);
-				scopeMustMatch = true;
-			}
-
-			while (scopePath != null) {
-				if (_matchesScope(scopePath.scopeName, scopePattern)) {
-					break;
-				}
-				if (scopeMustMatch) {
-					// If a child combinator was used, the parent scope must match.
-					return false;
-				}
-				scopePath = scopePath.parent;
-			}
-
-			if (scopePath == null) {
-				// No more potential matches
-				return false;
-			}
-			scopePath = scopePath.parent;
-		}
-
-		// All parent scopes were matched.
-		return true;
-	}
-
-	private boolean _matchesScope(final String scopeName, final String scopeNamePattern) {
-		return scopeNamePattern.equals(scopeName)
-				|| scopeName.startsWith(scopeNamePattern) && scopeName.charAt(scopeNamePattern.length()) == '.';
+		return this._matcher.match(scopePath);
 	}
 
 	/**
@@ -0,0 +1,221 @@
+/**
+ * Copyright (c) 2026 Sebastian Thomschke and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.tm4e.core.internal.theme;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tm4e.core.internal.grammar.ScopeStack;
+
+/**
+ * Resolves the style of scope paths against the rules of a {@link Theme}, used by {@link Theme#match(ScopeStack)}.
+ * <p>
+ * The rules are looked up in the {@link ThemeTrieElement} trie by the leaf scope name of the path, as in upstream. The
+ * parent scope selectors of these rules, including <code>&gt;</code> child combinators, are compiled once per leaf
+ * scope name into arrays of scope ids interned by this matcher. Each scope name is mapped to the ids of its dot
+ * delimited prefixes, e.g. <code>meta.tag.html</code> to the ids of <code>meta</code>, <code>meta.tag</code> and
+ * <code>meta.tag.html</code>. Whether a selector like <code>meta.tag</code> matches a scope name then is a single
+ * array lookup instead of string comparisons.
+ * <p>
+ * Results are memoized per {@link ScopeStack} instance in {@link ScopeStack#themeMatch}. The tokenizer reuses scope
+ * paths for repeatedly pushed scopes, so most paths are only resolved once per theme. A memo created by another
+ * matcher, i.e. for another theme, is ignored and replaced.
+ */
+public final class ThemeMatcher {
+
+	/**
+	 * Memo of a {@link ThemeMatcher} stored in a {@link ScopeStack} node. Instances are immutable so they can be
+	 * published to other threads via the volatile {@link ScopeStack#themeMatch} field.
+	 */
+	public static final class ScopeMatch {
+		final ThemeMatcher matcher;
+
+		/** ids of the dot delimited prefixes of the node's scope name or null if not computed yet */
+		final int @Nullable [] prefixIds;
+
+		/** true if {@link #style} holds the match result of the node's scope path */
+		final boolean resolved;
+		final @Nullable StyleAttributes style;
+
+		ScopeMatch(final ThemeMatcher matcher, final int @Nullable [] prefixIds, final boolean resolved,
+				final @Nullable StyleAttributes style) {
+			this.matcher = matcher;
+			this.prefixIds = prefixIds;
+			this.resolved = resolved;
+			this.style = style;
+		}
+	}
+
+	/**
+	 * A {@link ThemeTrieElementRule} with its parent scope selectors compiled to scope ids.
+	 */
+	private static final class CompiledRule {
+		final ThemeTrieElementRule rule;
+		final int[] parentScopeIds;
+		final int[] parentScopeSegments;
+		final boolean[] parentMustMatch;
+
+		/** true if the parent scopes end with a child combinator, which never matches */
+		final boolean invalid;
+
+		CompiledRule(final ThemeMatcher matcher, final ThemeTrieElementRule rule) {
+			this.rule = rule;
+			final List<String> parentScopes = rule.parentScopes;
+			final int len = parentScopes.size();
+			final var ids = new int[len];
+			final var segments = new int[len];
+			final var mustMatch = new boolean[len];
+			int count = 0;
+			boolean invalid = false;
+			for (int i = 0; i < len; i++) {
+				var scopePattern = parentScopes.get(i);
+				boolean scopeMustMatch = false;
+				if (">".equals(scopePattern)) {
+					if (i == len - 1) {
+						invalid = true;
+						break;
+					}
+					scopePattern = parentScopes.get(++i);
+					scopeMustMatch = true;
+				}
+				ids[count] = matcher.getScopeId(scopePattern);
+				segments[count] = countSegments(scopePattern);
+				mustMatch[count] = scopeMustMatch;
+				count++;
+			}
+			parentScopeIds = Arrays.copyOf(ids, count);
+			parentScopeSegments = Arrays.copyOf(segments, count);
+			parentMustMatch = Arrays.copyOf(mustMatch, count);
+			this.invalid = invalid;
+		}
+
+		/**
+		 * Same semantics as upstream's <code>_scopePathMatchesParentScopes</code>: starting with the deepest parent
+		 * scope, each selector is matched against the nearest not yet consumed ancestor it matches, or against the
+		 * direct next ancestor if preceded by a child combinator.
+		 */
+		boolean matchesParentScopes(final ThemeMatcher matcher, @Nullable ScopeStack scopePath) {
+			if (invalid)
+				return false;
+
+			for (int i = 0; i < parentScopeIds.length; i++) {
+				final int scopeId = parentScopeIds[i];
+				final int segments = parentScopeSegments[i];
+				while (scopePath != null) {
+					final var prefixIds = matcher.getPrefixIds(scopePath);
+					if (segments <= prefixIds.length && prefixIds[segments - 1] == scopeId) {
+						break;
+					}
+					if (parentMustMatch[i]) {
+						// If a child combinator was used, the parent scope must match.
+						return false;
+					}
+					scopePath = scopePath.parent;
+				}
+
+				if (scopePath == null) {
+					// No more potential matches
+					return false;
+				}
+				scopePath = scopePath.parent;
+			}
+			// All parent scopes were matched.
+			return true;
+		}
+	}
+
+	private static int countSegments(final String scopeName) {
+		int segments = 1;
+		for (int i = 0, len = scopeName.length(); i < len; i++) {
+			if (scopeName.charAt(i) == '.') {
+				segments++;
+			}
+		}
+		return segments;
+	}
+
+	private final ThemeTrieElement root;
+	private final ConcurrentMap<String /* scopeName */, CompiledRule[]> compiledRulesByScopeName = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String /* scopeName */, int[]> prefixIdsByScopeName = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String /* scopeName */, Integer> scopeIds = new ConcurrentHashMap<>();
+	private final AtomicInteger nextScopeId = new AtomicInteger();
+
+	ThemeMatcher(final ThemeTrieElement root) {
+		this.root = root;
+	}
+
+	/**
+	 * @return the style of the most specific rule matching the given scope path or null if no rule matches
+	 */
+	@Nullable
+	StyleAttributes match(final ScopeStack scopePath) {
+		var memo = scopePath.themeMatch;
+		if (memo != null && memo.matcher == this && memo.resolved)
+			return memo.style;
+
+		final var rules = compiledRulesByScopeName.computeIfAbsent(scopePath.scopeName, this::compileRules);
+		StyleAttributes style = null;
+		for (final var compiledRule : rules) {
+			if (compiledRule.matchesParentScopes(this, scopePath.parent)) {
+				final var rule = compiledRule.rule;
+				style = StyleAttributes.of(rule.fontStyle, rule.foreground, rule.background);
+				break;
+			}
+		}
+
+		// re-read the memo to keep prefix ids computed in the meantime
+		memo = scopePath.themeMatch;
+		scopePath.themeMatch = new ScopeMatch(this, memo != null && memo.matcher == this ? memo.prefixIds : null, true, style);
+		return style;
+	}
+
+	private CompiledRule[] compileRules(final String scopeName) {
+		final var rules = root.match(scopeName);
+		final var compiled = new CompiledRule[rules.size()];
+		for (int i = 0; i < compiled.length; i++) {
+			compiled[i] = new CompiledRule(this, rules.get(i));
+		}
+		return compiled;
+	}
+
+	private int[] getPrefixIds(final ScopeStack scopePath) {
+		final var memo = scopePath.themeMatch;
+		if (memo != null && memo.matcher == this) {
+			final var prefixIds = memo.prefixIds;
+			if (prefixIds != null)
+				return prefixIds;
+		}
+
+		final var prefixIds = prefixIdsByScopeName.computeIfAbsent(scopePath.scopeName, this::computePrefixIds);
+		scopePath.themeMatch = memo != null && memo.matcher == this
+				? new ScopeMatch(this, prefixIds, memo.resolved, memo.style)
+				: new ScopeMatch(this, prefixIds, false, null);
+		return prefixIds;
+	}
+
+	private int[] computePrefixIds(final String scopeName) {
+		final var prefixIds = new int[countSegments(scopeName)];
+		int segment = 0;
+		int dotIndex = -1;
+		while ((dotIndex = scopeName.indexOf('.', dotIndex + 1)) != -1) {
+			prefixIds[segment++] = getScopeId(scopeName.substring(0, dotIndex));
+		}
+		prefixIds[segment] = getScopeId(scopeName);
+		return prefixIds;
+	}
+
+	private int getScopeId(final String scopeName) {
+		return scopeIds.computeIfAbsent(scopeName, unused -> nextScopeId.getAndIncrement());
+	}
+}
@@ -11,6 +11,8 @@
  */
 package org.eclipse.tm4e.core.internal.theme.css;
 
+import java.util.Collection;
+
 final class CSSAndCondition extends AbstractCombinatorCondition {
 
 	/**
@@ -35,6 +37,12 @@ public int nbMatch(final String... cssClassNames) {
 		return firstCondition.nbMatch(cssClassNames) + secondCondition.nbMatch(cssClassNames);
 	}
 
+	@Override
+	public void collectClassNames(final Collection<String> classNames) {
+		firstCondition.collectClassNames(classNames);
+		secondCondition.collectClassNames(classNames);
+	}
+
 	@Override
 	public String toString() {
 		return "(" + getFirstCondition() + " and " + getSecondCondition() + ")";
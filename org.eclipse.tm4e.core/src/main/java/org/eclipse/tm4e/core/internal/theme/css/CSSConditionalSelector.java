@@ -11,6 +11,8 @@
  */
 package org.eclipse.tm4e.core.internal.theme.css;
 
+import java.util.Collection;
+
 import org.w3c.css.sac.Condition;
 import org.w3c.css.sac.ConditionalSelector;
 import org.w3c.css.sac.SimpleSelector;
@@ -49,4 +51,10 @@ public int nbClass() {
 	public int nbMatch(final String... cssClassNames) {
 		return selector.nbMatch(cssClassNames) + condition.nbMatch(cssClassNames);
 	}
+
+	@Override
+	public void collectClassNames(final Collection<String> classNames) {
+		selector.collectClassNames(classNames);
+		condition.collectClassNames(classNames);
+	}
 }
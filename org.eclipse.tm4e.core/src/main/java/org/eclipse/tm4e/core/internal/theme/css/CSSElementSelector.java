@@ -11,6 +11,8 @@
  */
 package org.eclipse.tm4e.core.internal.theme.css;
 
+import java.util.Collection;
+
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tm4e.core.internal.theme.css.util.AbstractElementSelector;
 
@@ -34,4 +36,8 @@ public int nbClass() {
 	public int nbMatch(final String... cssClassNames) {
 		return 0;
 	}
+
+	@Override
+	public void collectClassNames(final Collection<String> classNames) {
+	}
 }
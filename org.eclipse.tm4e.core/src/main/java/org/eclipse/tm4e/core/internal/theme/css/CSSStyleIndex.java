@@ -0,0 +1,121 @@
+/**
+ * Copyright (c) 2026 Sebastian Thomschke and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.tm4e.core.internal.theme.css;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tm4e.core.theme.IStyle;
+
+/**
+ * Inverted index from CSS class name to the selectors of a style sheet, used by
+ * {@link org.eclipse.tm4e.core.theme.css.CSSParser#getBestStyle(String...)}.
+ * <p>
+ * A selector only matches if all of its class names are contained in the queried class names. Each selector is
+ * therefore indexed only under its least frequently used class name, and a lookup only evaluates the selectors indexed
+ * under one of the queried class names.
+ * <p>
+ * The result is the same as scanning all selectors in declaration order: the style of the selector with the most class
+ * names wins, and of equally specific selectors the last declared one.
+ */
+public final class CSSStyleIndex {
+
+	private static final class Candidate {
+		final IStyle style;
+		final String[] classNames;
+		/** position of the selector in the style sheet */
+		final int ordinal;
+
+		Candidate(final IStyle style, final String[] classNames, final int ordinal) {
+			this.style = style;
+			this.classNames = classNames;
+			this.ordinal = ordinal;
+		}
+
+		boolean isMoreSpecificThan(final Candidate other) {
+			return classNames.length > other.classNames.length
+					|| classNames.length == other.classNames.length && ordinal > other.ordinal;
+		}
+
+		boolean matches(final String... cssClassNames) {
+			for (final String className : classNames) {
+				if (!contains(cssClassNames, className))
+					return false;
+			}
+			return true;
+		}
+	}
+
+	private static boolean contains(final String[] names, final String name) {
+		for (final String n : names) {
+			if (n.equals(name))
+				return true;
+		}
+		return false;
+	}
+
+	private final Map<String, Candidate[]> candidatesByClassName;
+
+	public CSSStyleIndex(final List<IStyle> styles) {
+		final var selectorClassNames = new ArrayList<String[]>();
+		final var selectorStyles = new ArrayList<IStyle>();
+		final var classNameUsages = new HashMap<String, Integer>();
+		for (final IStyle style : styles) {
+			final var list = ((CSSStyle) style).selectorList;
+			for (int i = 0, l = list.getLength(); i < l; i++) {
+				final var classNames = new ArrayList<String>();
+				((ExtendedSelector) list.item(i)).collectClassNames(classNames);
+				if (classNames.isEmpty())
+					continue; // selectors without class conditions never match
+
+				selectorClassNames.add(classNames.toArray(String[]::new));
+				selectorStyles.add(style);
+				for (final String className : classNames) {
+					classNameUsages.merge(className, 1, Integer::sum);
+				}
+			}
+		}
+
+		final var candidates = new HashMap<String, List<Candidate>>();
+		for (int ordinal = 0; ordinal < selectorClassNames.size(); ordinal++) {
+			final String[] classNames = selectorClassNames.get(ordinal);
+			String indexClassName = classNames[0];
+			for (final String className : classNames) {
+				if (classNameUsages.get(className) < classNameUsages.get(indexClassName)) {
+					indexClassName = className;
+				}
+			}
+			candidates.computeIfAbsent(indexClassName, k -> new ArrayList<>())
+					.add(new Candidate(selectorStyles.get(ordinal), classNames, ordinal));
+		}
+
+		candidatesByClassName = new HashMap<>(candidates.size() * 4 / 3 + 1);
+		candidates.forEach((className, list) -> candidatesByClassName.put(className, list.toArray(Candidate[]::new)));
+	}
+
+	public @Nullable IStyle getBestStyle(final String... cssClassNames) {
+		Candidate best = null;
+		for (final String className : cssClassNames) {
+			final var candidates = candidatesByClassName.get(className);
+			if (candidates == null)
+				continue;
+
+			for (final var candidate : candidates) {
+				if ((best == null || candidate.isMoreSpecificThan(best)) && candidate.matches(cssClassNames)) {
+					best = candidate;
+				}
+			}
+		}
+		return best == null ? null : best.style;
+	}
+}
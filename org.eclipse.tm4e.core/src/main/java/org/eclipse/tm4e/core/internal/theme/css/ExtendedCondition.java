@@ -11,6 +11,8 @@
  */
 package org.eclipse.tm4e.core.internal.theme.css;
 
+import java.util.Collection;
+
 import org.w3c.css.sac.Condition;
 
 interface ExtendedCondition extends Condition {
@@ -26,4 +28,10 @@ interface ExtendedCondition extends Condition {
 	 */
 	@SuppressWarnings("javadoc")
 	int nbMatch(String... cssClassNames);
+
+	/**
+	 * Adds the values of all recursively contained {@link CSSClassCondition}s to the given collection
+	 */
+	@SuppressWarnings("javadoc")
+	void collectClassNames(Collection<String> classNames);
 }
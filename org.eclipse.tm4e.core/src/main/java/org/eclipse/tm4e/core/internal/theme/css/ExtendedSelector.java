@@ -11,6 +11,8 @@
  */
 package org.eclipse.tm4e.core.internal.theme.css;
 
+import java.util.Collection;
+
 import org.w3c.css.sac.SimpleSelector;
 
 public interface ExtendedSelector extends SimpleSelector {
@@ -26,4 +28,10 @@ public interface ExtendedSelector extends SimpleSelector {
 	 */
 	@SuppressWarnings("javadoc")
 	int nbMatch(String... cssClassNames);
+
+	/**
+	 * Adds the values of all {@link CSSClassCondition}s of this selector to the given collection
+	 */
+	@SuppressWarnings("javadoc")
+	void collectClassNames(Collection<String> classNames);
 }
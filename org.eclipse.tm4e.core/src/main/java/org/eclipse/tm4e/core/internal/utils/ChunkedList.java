@@ -0,0 +1,329 @@
+/**
+ * Copyright (c) 2026 Sebastian Thomschke and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.tm4e.core.internal.utils;
+
+import static org.eclipse.tm4e.core.internal.utils.NullSafetyHelper.castNonNull;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * List backed by a B+-tree of chunks of elements, so that inserting or removing an element at any position costs
+ * O(log n) instead of shifting all following elements like {@link java.util.ArrayList}.
+ * <p>
+ * {@link #snapshot()} returns an immutable copy of the list in O(1). The copy shares all nodes with the list. Nodes
+ * shared with a snapshot are copied on the next modification of the list, so a modification only copies the nodes on
+ * the path to the modified element.
+ * <p>
+ * Not thread-safe, but snapshots can be safely read by multiple threads once published.
+ */
+public final class ChunkedList<T> extends AbstractList<T> implements RandomAccess {
+
+	static final int MAX_LEAF_SIZE = 64;
+	static final int MAX_BRANCH_SIZE = 32;
+
+	private abstract static sealed class Node permits Leaf, Branch {
+		/** the list instance that may modify this node in place, copies are created for all others */
+		final @Nullable Object owner;
+
+		/** number of elements in this subtree */
+		int size;
+
+		Node(final @Nullable Object owner) {
+			this.owner = owner;
+		}
+	}
+
+	private static final class Leaf extends Node {
+		final @Nullable Object[] items;
+
+		Leaf(final @Nullable Object owner) {
+			super(owner);
+			items = new Object[MAX_LEAF_SIZE];
+		}
+
+		Leaf(final @Nullable Object owner, final Leaf other) {
+			super(owner);
+			items = other.items.clone();
+			size = other.size;
+		}
+	}
+
+	private static final class Branch extends Node {
+		/** one more slot than allowed, for the overflow before the branch is split */
+		final @Nullable Node[] children;
+		final int[] sizes;
+		int childCount;
+
+		Branch(final @Nullable Object owner) {
+			super(owner);
+			children = new Node[MAX_BRANCH_SIZE + 1];
+			sizes = new int[MAX_BRANCH_SIZE + 1];
+		}
+
+		Branch(final @Nullable Object owner, final Branch other) {
+			super(owner);
+			children = other.children.clone();
+			sizes = other.sizes.clone();
+			childCount = other.childCount;
+			size = other.size;
+		}
+
+		void insertChild(final int index, final Node child) {
+			System.arraycopy(children, index, children, index + 1, childCount - index);
+			System.arraycopy(sizes, index, sizes, index + 1, childCount - index);
+			children[index] = child;
+			sizes[index] = child.size;
+			childCount++;
+		}
+
+		void removeChild(final int index) {
+			childCount--;
+			System.arraycopy(children, index + 1, children, index, childCount - index);
+			System.arraycopy(sizes, index + 1, sizes, index, childCount - index);
+			children[childCount] = null;
+		}
+	}
+
+	/** the token identifying nodes this list may modify in place, null for immutable snapshots */
+	private @Nullable Object owner;
+	private Node root;
+
+	public ChunkedList() {
+		owner = new Object();
+		root = new Leaf(owner);
+	}
+
+	private ChunkedList(final Node root) {
+		owner = null;
+		this.root = root;
+	}
+
+	/**
+	 * @return an immutable copy of this list
+	 */
+	public ChunkedList<T> snapshot() {
+		final var snapshot = new ChunkedList<T>(root);
+		if (owner != null) {
+			// nodes of the current owner are now shared with the snapshot and must no longer be modified in place
+			owner = new Object();
+		}
+		return snapshot;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public T get(final int index) {
+		Objects.checkIndex(index, root.size);
+		int localIndex = index;
+		Node node = root;
+		while (node instanceof final Branch branch) {
+			int c = 0;
+			while (localIndex >= branch.sizes[c]) {
+				localIndex -= branch.sizes[c];
+				c++;
+			}
+			node = castNonNull(branch.children[c]);
+		}
+		return (T) ((Leaf) node).items[localIndex];
+	}
+
+	@Override
+	public int size() {
+		return root.size;
+	}
+
+	@Override
+	public void add(final int index, final T element) {
+		final var owner = this.owner;
+		if (owner == null)
+			throw new UnsupportedOperationException("immutable snapshot");
+		Objects.checkIndex(index, root.size + 1);
+
+		final var root = this.root = editable(this.root, owner);
+		final var split = insert(root, index, element, owner);
+		if (split != null) {
+			final var newRoot = new Branch(owner);
+			newRoot.insertChild(0, root);
+			newRoot.insertChild(1, split);
+			newRoot.size = root.size + split.size;
+			this.root = newRoot;
+		}
+		modCount++;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public T remove(final int index) {
+		final var owner = this.owner;
+		if (owner == null)
+			throw new UnsupportedOperationException("immutable snapshot");
+		Objects.checkIndex(index, root.size);
+
+		var root = this.root = editable(this.root, owner);
+		final var removed = remove(root, index, owner);
+		while (root instanceof final Branch branch && branch.childCount == 1) {
+			root = this.root = castNonNull(branch.children[0]);
+		}
+		if (root instanceof final Branch branch && branch.childCount == 0) {
+			this.root = new Leaf(owner);
+		}
+		modCount++;
+		return (T) removed;
+	}
+
+	@Override
+	public void clear() {
+		final var owner = this.owner;
+		if (owner == null)
+			throw new UnsupportedOperationException("immutable snapshot");
+		root = new Leaf(owner);
+		modCount++;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <N extends Node> N editable(final N node, final Object owner) {
+		if (node.owner == owner)
+			return node;
+		return node instanceof final Leaf leaf
+				? (N) new Leaf(owner, leaf)
+				: (N) new Branch(owner, (Branch) node);
+	}
+
+	/**
+	 * @return the new right sibling if the node was split, otherwise null
+	 */
+	private static @Nullable Node insert(final Node node, final int index, final @Nullable Object element, final Object owner) {
+		if (node instanceof final Leaf leaf) {
+			if (leaf.size < MAX_LEAF_SIZE) {
+				System.arraycopy(leaf.items, index, leaf.items, index + 1, leaf.size - index);
+				leaf.items[index] = element;
+				leaf.size++;
+				return null;
+			}
+
+			// split the full leaf in half
+			final var right = new Leaf(owner);
+			final int half = MAX_LEAF_SIZE / 2;
+			System.arraycopy(leaf.items, half, right.items, 0, MAX_LEAF_SIZE - half);
+			Arrays.fill(leaf.items, half, MAX_LEAF_SIZE, null);
+			leaf.size = half;
+			right.size = MAX_LEAF_SIZE - half;
+			if (index <= half) {
+				insert(leaf, index, element, owner);
+			} else {
+				insert(right, index - half, element, owner);
+			}
+			return right;
+		}
+
+		final var branch = (Branch) node;
+		int c = 0;
+		int localIndex = index;
+		while (c < branch.childCount - 1 && localIndex > branch.sizes[c]) {
+			localIndex -= branch.sizes[c];
+			c++;
+		}
+		if (localIndex > branch.sizes[c]) // can only happen for the last child
+			throw new IndexOutOfBoundsException(index);
+
+		final var child = branch.children[c] = editable(castNonNull(branch.children[c]), owner);
+		final var split = insert(child, localIndex, element, owner);
+		branch.sizes[c] = child.size;
+		branch.size++;
+		if (split != null) {
+			branch.insertChild(c + 1, split);
+			if (branch.childCount > MAX_BRANCH_SIZE) {
+				// split the overflowing branch in half
+				final var right = new Branch(owner);
+				final int half = branch.childCount / 2;
+				for (int i = half; i < branch.childCount; i++) {
+					right.insertChild(right.childCount, castNonNull(branch.children[i]));
+					right.size += branch.sizes[i];
+					branch.children[i] = null;
+				}
+				branch.childCount = half;
+				branch.size -= right.size;
+				return right;
+			}
+		}
+		return null;
+	}
+
+	private static @Nullable Object remove(final Node node, final int index, final Object owner) {
+		if (node instanceof final Leaf leaf) {
+			final var removed = leaf.items[index];
+			leaf.size--;
+			System.arraycopy(leaf.items, index + 1, leaf.items, index, leaf.size - index);
+			leaf.items[leaf.size] = null;
+			return removed;
+		}
+
+		final var branch = (Branch) node;
+		int c = 0;
+		int localIndex = index;
+		while (localIndex >= branch.sizes[c]) {
+			localIndex -= branch.sizes[c];
+			c++;
+		}
+
+		final var child = branch.children[c] = editable(castNonNull(branch.children[c]), owner);
+		final var removed = remove(child, localIndex, owner);
+		branch.sizes[c] = child.size;
+		branch.size--;
+
+		if (child.size == 0) {
+			branch.removeChild(c);
+		} else if (isUnderfull(child)) {
+			// merge with a neighbor if both fit into one node
+			final int left = c > 0 ? c - 1 : c;
+			final int right = left + 1;
+			if (right < branch.childCount && canMerge(castNonNull(branch.children[left]), castNonNull(branch.children[right]))) {
+				final var merged = branch.children[left] = editable(castNonNull(branch.children[left]), owner);
+				merge(merged, castNonNull(branch.children[right]));
+				branch.sizes[left] = merged.size;
+				branch.removeChild(right);
+			}
+		}
+		return removed;
+	}
+
+	private static boolean isUnderfull(final Node node) {
+		return node instanceof final Branch branch
+				? branch.childCount < MAX_BRANCH_SIZE / 2
+				: node.size < MAX_LEAF_SIZE / 2;
+	}
+
+	private static boolean canMerge(final Node left, final Node right) {
+		return left instanceof final Branch leftBranch
+				? leftBranch.childCount + ((Branch) right).childCount <= MAX_BRANCH_SIZE
+				: left.size + right.size <= MAX_LEAF_SIZE;
+	}
+
+	/**
+	 * Appends the content of the right node to the given editable left node.
+	 */
+	private static void merge(final Node left, final Node right) {
+		if (left instanceof final Leaf leftLeaf) {
+			System.arraycopy(((Leaf) right).items, 0, leftLeaf.items, leftLeaf.size, right.size);
+		} else {
+			final var leftBranch = (Branch) left;
+			final var rightBranch = (Branch) right;
+			for (int i = 0; i < rightBranch.childCount; i++) {
+				leftBranch.insertChild(leftBranch.childCount, castNonNull(rightBranch.children[i]));
+			}
+		}
+		left.size += right.size;
+	}
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright (c) 2026 Sebastian Thomschke and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.tm4e.core.internal.utils;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * Thread-safe interning table that maps equal objects to one canonical instance without preventing the canonical
+ * instances from being garbage collected once they are no longer used elsewhere.
+ * <p>
+ * The table is split into segments by hash code that are locked independently, so threads interning different objects
+ * rarely contend for the same lock.
+ */
+public final class WeakInterner<T> {
+
+	private static final int SEGMENTS = 16; // must be a power of two
+
+	@SuppressWarnings("unchecked")
+	private final Map<T, WeakReference<T>>[] segments = new Map[SEGMENTS];
+
+	public WeakInterner() {
+		for (int i = 0; i < SEGMENTS; i++) {
+			segments[i] = new WeakHashMap<>();
+		}
+	}
+
+	private Map<T, WeakReference<T>> segmentFor(final T obj) {
+		final int hash = obj.hashCode();
+		return segments[(hash ^ hash >>> 16) & SEGMENTS - 1];
+	}
+
+	/**
+	 * @param candidate the object to look up, only used as lookup key
+	 * @param canonicalizer creates the canonical instance for the candidate if no equal object is interned yet. The created
+	 *            instance must be equal to the candidate.
+	 *
+	 * @return the canonical instance equal to the given candidate
+	 */
+	public T intern(final T candidate, final UnaryOperator<T> canonicalizer) {
+		final var canonicals = segmentFor(candidate);
+		synchronized (canonicals) {
+			final var ref = canonicals.get(candidate);
+			if (ref != null) {
+				final var canonical = ref.get();
+				if (canonical != null)
+					return canonical;
+			}
+			final var canonical = canonicalizer.apply(candidate);
+			canonicals.put(canonical, new WeakReference<>(canonical));
+			return canonical;
+		}
+	}
+
+	public int size() {
+		int size = 0;
+		for (final var canonicals : segments) {
+			synchronized (canonicals) {
+				size += canonicals.size();
+			}
+		}
+		return size;
+	}
+}
@@ -0,0 +1,627 @@
+/**
+ * Copyright (c) 2026 Sebastian Thomschke and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.tm4e.core.model;
+
+import static org.eclipse.tm4e.core.internal.utils.NullSafetyHelper.castNonNull;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Immutable, balanced tree over the lines of a {@link TMModel} that indexes the structural brackets of the lines, i.e.
+ * the brackets located in tokens with {@link TMToken#containsBalancedBrackets}. Used e.g. for bracket pair colorization
+ * and bracket pair guides.
+ * <p>
+ * Each line is a leaf storing the brackets of the line. Each node stores, per bracket kind, the number of closing brackets
+ * without an opening bracket and of opening brackets without a closing bracket within its lines. Brackets of different
+ * kinds nest independently of each other. This allows to find the matching bracket of a bracket, the innermost bracket
+ * pair enclosing a position and the nesting depth at the start of a line in O(log n) for n lines.
+ * <p>
+ * Trees are persistent: updates of lines by the {@link TMModel} create a new tree in O(log n), sharing all nodes of
+ * unchanged subtrees with the previous tree. Readers therefore always see a consistent state without locking, see
+ * {@link TMModel#getBracketPairTree()}.
+ */
+public final class BracketPairTree {
+
+	/**
+	 * @param open the text of the opening bracket, e.g. <code>{</code>
+	 * @param close the text of the closing bracket, e.g. <code>}</code>
+	 */
+	public record BracketKind(String open, String close) {
+	}
+
+	/**
+	 * @param openLineIndex 0-based
+	 * @param openColumn 0-based
+	 * @param closeLineIndex 0-based, -1 if the pair is not closed
+	 * @param closeColumn 0-based, -1 if the pair is not closed
+	 */
+	public record BracketPair(BracketKind kind, int openLineIndex, int openColumn, int closeLineIndex, int closeColumn) {
+
+		public boolean isClosed() {
+			return closeLineIndex != -1;
+		}
+	}
+
+	private abstract static class Node {
+		final int lineCount;
+		final int height;
+
+		/** per bracket kind k: [2k] unmatched closing brackets, [2k + 1] unmatched opening brackets */
+		final int[] summary;
+
+		Node(final int lineCount, final int height, final int[] summary) {
+			this.lineCount = lineCount;
+			this.height = height;
+			this.summary = summary;
+		}
+	}
+
+	private static final class Inner extends Node {
+		final Node left;
+		final Node right;
+
+		Inner(final Node left, final Node right, final int[] summary) {
+			super(left.lineCount + right.lineCount, Math.max(left.height, right.height) + 1, summary);
+			this.left = left;
+			this.right = right;
+		}
+	}
+
+	/**
+	 * The structural brackets of one line.
+	 */
+	private static final class Line extends Node {
+		final int[] columns;
+		/** per bracket: kind index << 1, | 1 for opening brackets */
+		final int[] codes;
+
+		Line(final int[] columns, final int[] codes, final int[] summary) {
+			super(1, 0, summary);
+			this.columns = columns;
+			this.codes = codes;
+		}
+	}
+
+	private record Split(@Nullable Node left, @Nullable Node right) {
+	}
+
+	private static final int[] NO_BRACKETS = new int[0];
+
+	private final BracketKind[] kinds;
+
+	/** the texts of all brackets, longest first, so e.g. <code>{{</code> is preferred over <code>{</code> */
+	private final String[] bracketTexts;
+	private final int[] bracketCodes;
+
+	/** summary of lines without brackets, shared by all nodes without brackets */
+	private final int[] emptySummary;
+	private final Line emptyLine;
+
+	private final @Nullable Node root;
+
+	/**
+	 * Creates a tree of the given number of lines without brackets.
+	 */
+	BracketPairTree(final List<BracketKind> kinds, final int lineCount) {
+		this.kinds = kinds.toArray(BracketKind[]::new);
+
+		final var texts = new String[this.kinds.length * 2];
+		final var codes = new Integer[texts.length];
+		for (int k = 0; k < this.kinds.length; k++) {
+			texts[2 * k] = this.kinds[k].open();
+			codes[2 * k] = k << 1 | 1;
+			texts[2 * k + 1] = this.kinds[k].close();
+			codes[2 * k + 1] = k << 1;
+		}
+		final var order = new Integer[texts.length];
+		Arrays.setAll(order, i -> i);
+		Arrays.sort(order, Comparator.comparingInt(i -> -texts[i].length()));
+		bracketTexts = new String[texts.length];
+		bracketCodes = new int[texts.length];
+		for (int i = 0; i < order.length; i++) {
+			bracketTexts[i] = texts[order[i]];
+			bracketCodes[i] = codes[order[i]];
+		}
+
+		emptySummary = new int[this.kinds.length * 2];
+		emptyLine = new Line(NO_BRACKETS, NO_BRACKETS, emptySummary);
+		root = emptyLines(lineCount);
+	}
+
+	private BracketPairTree(final BracketPairTree tree, final @Nullable Node root) {
+		kinds = tree.kinds;
+		bracketTexts = tree.bracketTexts;
+		bracketCodes = tree.bracketCodes;
+		emptySummary = tree.emptySummary;
+		emptyLine = tree.emptyLine;
+		this.root = root;
+	}
+
+	public List<BracketKind> getBracketKinds() {
+		return List.of(kinds);
+	}
+
+	public int getNumberOfLines() {
+		final var root = this.root;
+		return root == null ? 0 : root.lineCount;
+	}
+
+	/**
+	 * @param lineIndex 0-based
+	 *
+	 * @return the number of bracket pairs opened before and not closed before the start of the given line
+	 */
+	public int getNestingDepth(final int lineIndex) {
+		final int[] prefix = emptySummary.clone();
+		Node node = root;
+		int remaining = lineIndex;
+		while (node != null && remaining > 0) {
+			if (remaining >= node.lineCount) {
+				combineInto(prefix, node.summary);
+				break;
+			}
+			final var inner = (Inner) node;
+			if (remaining <= inner.left.lineCount) {
+				node = inner.left;
+			} else {
+				combineInto(prefix, inner.left.summary);
+				remaining -= inner.left.lineCount;
+				node = inner.right;
+			}
+		}
+		int depth = 0;
+		for (int k = 0; k < kinds.length; k++) {
+			depth += prefix[2 * k + 1];
+		}
+		return depth;
+	}
+
+	/**
+	 * @param lineIndex 0-based
+	 * @param column 0-based column of any character of a structural bracket
+	 *
+	 * @return the pair of the bracket at the given position, or null if there is no structural bracket
+	 */
+	public @Nullable BracketPair findBracketPair(final int lineIndex, final int column) {
+		final var line = getLine(lineIndex);
+		if (line == null)
+			return null;
+
+		for (int i = 0; i < line.columns.length; i++) {
+			final int code = line.codes[i];
+			final int k = code >>> 1;
+			final boolean isOpening = (code & 1) != 0;
+			final int start = line.columns[i];
+			if (column < start || column >= start + (isOpening ? kinds[k].open() : kinds[k].close()).length())
+				continue;
+
+			if (isOpening) {
+				final long close = findClosing(k, lineIndex, i + 1);
+				return new BracketPair(kinds[k], lineIndex, start, close == -1 ? -1 : lineOf(close),
+						close == -1 ? -1 : columnOf(close));
+			}
+			final long open = findOpening(k, lineIndex, i);
+			return open == -1 ? null : new BracketPair(kinds[k], lineOf(open), columnOf(open), lineIndex, start);
+		}
+		return null;
+	}
+
+	/**
+	 * @param lineIndex 0-based
+	 * @param column 0-based
+	 *
+	 * @return the innermost bracket pair whose opening bracket starts before the given position and whose closing bracket,
+	 *         if any, starts at or after it, or null if there is none
+	 */
+	public @Nullable BracketPair findEnclosingBracketPair(final int lineIndex, final int column) {
+		final var line = getLine(lineIndex);
+		if (line == null)
+			return null;
+
+		int bracketsBefore = 0;
+		while (bracketsBefore < line.columns.length && line.columns[bracketsBefore] < column) {
+			bracketsBefore++;
+		}
+
+		long bestOpen = -1;
+		int bestKind = -1;
+		for (int k = 0; k < kinds.length; k++) {
+			final long open = findOpening(k, lineIndex, bracketsBefore);
+			if (open > bestOpen) {
+				bestOpen = open;
+				bestKind = k;
+			}
+		}
+		if (bestOpen == -1)
+			return null;
+
+		final int openLineIndex = lineOf(bestOpen);
+		final int openColumn = columnOf(bestOpen);
+		final var openLine = openLineIndex == lineIndex ? line : castNonNull(getLine(openLineIndex));
+		final long close = findClosing(bestKind, openLineIndex, Arrays.binarySearch(openLine.columns, openColumn) + 1);
+		return new BracketPair(kinds[bestKind], openLineIndex, openColumn, close == -1 ? -1 : lineOf(close),
+				close == -1 ? -1 : columnOf(close));
+	}
+
+	private static long position(final int lineIndex, final int column) {
+		return (long) lineIndex << 32 | column;
+	}
+
+	private static int lineOf(final long position) {
+		return (int) (position >>> 32);
+	}
+
+	private static int columnOf(final long position) {
+		return (int) position;
+	}
+
+	/**
+	 * Finds the closing bracket of kind <code>k</code> that matches an opening bracket located right before the bracket with
+	 * the given index of the given line.
+	 *
+	 * @return the position of the closing bracket or -1
+	 */
+	private long findClosing(final int k, final int lineIndex, final int fromBracket) {
+		final var line = castNonNull(getLine(lineIndex));
+		int nesting = 0;
+		for (int i = fromBracket; i < line.codes.length; i++) {
+			final int code = line.codes[i];
+			if (code >>> 1 != k)
+				continue;
+			if ((code & 1) != 0) {
+				nesting++;
+			} else if (nesting == 0)
+				return position(lineIndex, line.columns[i]);
+			else {
+				nesting--;
+			}
+		}
+
+		// the closing bracket is located in the first following line where the unmatched closing brackets exceed the
+		// unmatched opening brackets
+		final var root = this.root;
+		if (root == null)
+			return -1;
+		final int pending = nesting + 1;
+		final int[] acc = new int[2];
+		final int mateLineIndex = findForward(root, lineIndex + 1, k, pending, acc);
+		if (mateLineIndex == -1)
+			return -1;
+
+		final var mateLine = castNonNull(getLine(mateLineIndex));
+		int remaining = pending - acc[0];
+		nesting = acc[1];
+		for (int i = 0; i < mateLine.codes.length; i++) {
+			final int code = mateLine.codes[i];
+			if (code >>> 1 != k)
+				continue;
+			if ((code & 1) != 0) {
+				nesting++;
+			} else if (nesting > 0) {
+				nesting--;
+			} else if (--remaining == 0)
+				return position(mateLineIndex, mateLine.columns[i]);
+		}
+		throw new IllegalStateException("Inconsistent bracket summary of line " + mateLineIndex);
+	}
+
+	/**
+	 * Finds the opening bracket of kind <code>k</code> that matches a closing bracket located right before the bracket with
+	 * the given index of the given line, i.e. the nearest unmatched opening bracket before that bracket.
+	 *
+	 * @return the position of the opening bracket or -1
+	 */
+	private long findOpening(final int k, final int lineIndex, final int toBracket) {
+		final var line = castNonNull(getLine(lineIndex));
+		int nesting = 0;
+		for (int i = toBracket - 1; i >= 0; i--) {
+			final int code = line.codes[i];
+			if (code >>> 1 != k)
+				continue;
+			if ((code & 1) == 0) {
+				nesting++;
+			} else if (nesting == 0)
+				return position(lineIndex, line.columns[i]);
+			else {
+				nesting--;
+			}
+		}
+
+		final var root = this.root;
+		if (root == null)
+			return -1;
+		final int pending = nesting + 1;
+		final int[] acc = new int[2];
+		final int mateLineIndex = findBackward(root, lineIndex, k, pending, acc);
+		if (mateLineIndex == -1)
+			return -1;
+
+		final var mateLine = castNonNull(getLine(mateLineIndex));
+		int remaining = pending - acc[1];
+		nesting = acc[0];
+		for (int i = mateLine.codes.length - 1; i >= 0; i--) {
+			final int code = mateLine.codes[i];
+			if (code >>> 1 != k)
+				continue;
+			if ((code & 1) == 0) {
+				nesting++;
+			} else if (nesting > 0) {
+				nesting--;
+			} else if (--remaining == 0)
+				return position(mateLineIndex, mateLine.columns[i]);
+		}
+		throw new IllegalStateException("Inconsistent bracket summary of line " + mateLineIndex);
+	}
+
+	/**
+	 * Walks the lines of the subtree starting at line <code>from</code> and accumulates the unmatched closing
+	 * (<code>acc[0]</code>) and opening (<code>acc[1]</code>) brackets of kind <code>k</code> until the unmatched closing
+	 * brackets reach <code>pending</code>.
+	 *
+	 * @return the index of that line relative to the subtree, -1 if not reached in the subtree
+	 */
+	private static int findForward(final Node node, final int from, final int k, final int pending, final int[] acc) {
+		if (from >= node.lineCount)
+			return -1;
+		if (from == 0) {
+			final int closes = node.summary[2 * k];
+			final int opens = node.summary[2 * k + 1];
+			final int c = acc[0] + Math.max(0, closes - acc[1]);
+			if (c < pending) {
+				acc[1] = opens + Math.max(0, acc[1] - closes);
+				acc[0] = c;
+				return -1;
+			}
+			if (node instanceof Line)
+				return 0;
+		}
+		final var inner = (Inner) node;
+		final int r = findForward(inner.left, from, k, pending, acc);
+		if (r != -1)
+			return r;
+		final int r2 = findForward(inner.right, Math.max(0, from - inner.left.lineCount), k, pending, acc);
+		return r2 == -1 ? -1 : inner.left.lineCount + r2;
+	}
+
+	/**
+	 * Walks the lines of the subtree before line <code>to</code> backwards and accumulates the unmatched closing
+	 * (<code>acc[0]</code>) and opening (<code>acc[1]</code>) brackets of kind <code>k</code> until the unmatched opening
+	 * brackets reach <code>pending</code>.
+	 *
+	 * @return the index of that line relative to the subtree, -1 if not reached in the subtree
+	 */
+	private static int findBackward(final Node node, final int to, final int k, final int pending, final int[] acc) {
+		if (to <= 0)
+			return -1;
+		if (to >= node.lineCount) {
+			final int closes = node.summary[2 * k];
+			final int opens = node.summary[2 * k + 1];
+			final int o = acc[1] + Math.max(0, opens - acc[0]);
+			if (o < pending) {
+				acc[0] = closes + Math.max(0, acc[0] - opens);
+				acc[1] = o;
+				return -1;
+			}
+			if (node instanceof Line)
+				return 0;
+		}
+		final var inner = (Inner) node;
+		final int r = findBackward(inner.right, to - inner.left.lineCount, k, pending, acc);
+		if (r != -1)
+			return inner.left.lineCount + r;
+		return findBackward(inner.left, to, k, pending, acc);
+	}
+
+	private @Nullable Line getLine(final int lineIndex) {
+		Node node = root;
+		if (node == null || lineIndex < 0 || lineIndex >= node.lineCount)
+			return null;
+		int index = lineIndex;
+		while (node instanceof final Inner inner) {
+			if (index < inner.left.lineCount) {
+				node = inner.left;
+			} else {
+				index -= inner.left.lineCount;
+				node = inner.right;
+			}
+		}
+		return (Line) node;
+	}
+
+	/**
+	 * @return a tree with the brackets of the given line replaced by the structural brackets found in the given text
+	 */
+	BracketPairTree withLine(final int lineIndex, final String lineText, final List<TMToken> tokens) {
+		final var root = this.root;
+		if (root == null || lineIndex < 0 || lineIndex >= root.lineCount)
+			return this;
+		return new BracketPairTree(this, replaceLine(root, lineIndex, scanLine(lineText, tokens)));
+	}
+
+	/**
+	 * @return a tree where the given number of lines at the given index are replaced by the given number of lines without
+	 *         brackets
+	 */
+	BracketPairTree withLinesReplaced(final int lineIndex, final int replacedCount, final int replacementCount) {
+		final int lineCount = getNumberOfLines();
+		final int from = Math.min(Math.max(0, lineIndex), lineCount);
+		final int to = Math.min(from + Math.max(0, replacedCount), lineCount);
+		final var head = split(root, from);
+		final var tail = split(head.right, to - from);
+		return new BracketPairTree(this, join(join(head.left, emptyLines(replacementCount)), tail.right));
+	}
+
+	private Line scanLine(final String lineText, final List<TMToken> tokens) {
+		int[] columns = NO_BRACKETS;
+		int[] codes = NO_BRACKETS;
+		int count = 0;
+		for (int t = 0, tokenCount = tokens.size(); t < tokenCount; t++) {
+			final var token = tokens.get(t);
+			if (!token.containsBalancedBrackets)
+				continue;
+			final int end = Math.min(lineText.length(), t + 1 < tokenCount ? tokens.get(t + 1).startIndex : lineText.length());
+			int column = Math.max(0, token.startIndex);
+			while (column < end) {
+				final char ch = lineText.charAt(column);
+				int matched = -1;
+				for (int b = 0; b < bracketTexts.length; b++) {
+					final String text = bracketTexts[b];
+					if (!text.isEmpty() && text.charAt(0) == ch && lineText.startsWith(text, column)) {
+						matched = b;
+						break;
+					}
+				}
+				if (matched == -1) {
+					column++;
+					continue;
+				}
+				if (count == columns.length) {
+					final int newLength = Math.max(4, count * 2);
+					columns = Arrays.copyOf(columns, newLength);
+					codes = Arrays.copyOf(codes, newLength);
+				}
+				columns[count] = column;
+				codes[count] = bracketCodes[matched];
+				count++;
+				column += bracketTexts[matched].length();
+			}
+		}
+		if (count == 0)
+			return emptyLine;
+
+		columns = Arrays.copyOf(columns, count);
+		codes = Arrays.copyOf(codes, count);
+		final var summary = new int[kinds.length * 2];
+		for (int i = 0; i < count; i++) {
+			final int k = codes[i] >>> 1;
+			if ((codes[i] & 1) != 0) {
+				summary[2 * k + 1]++;
+			} else if (summary[2 * k + 1] > 0) {
+				summary[2 * k + 1]--;
+			} else {
+				summary[2 * k]++;
+			}
+		}
+		return new Line(columns, codes, summary);
+	}
+
+	/**
+	 * Combines the summary of some lines with the summary of the lines following them.
+	 */
+	private void combineInto(final int[] target, final int[] following) {
+		for (int k = 0; k < kinds.length; k++) {
+			final int closes = target[2 * k];
+			final int opens = target[2 * k + 1];
+			target[2 * k] = closes + Math.max(0, following[2 * k] - opens);
+			target[2 * k + 1] = following[2 * k + 1] + Math.max(0, opens - following[2 * k]);
+		}
+	}
+
+	private Inner inner(final Node left, final Node right) {
+		if (left.summary == emptySummary && right.summary == emptySummary)
+			return new Inner(left, right, emptySummary);
+		final var summary = left.summary.clone();
+		combineInto(summary, right.summary);
+		return new Inner(left, right, Arrays.equals(summary, emptySummary) ? emptySummary : summary);
+	}
+
+	private @Nullable Node emptyLines(final int count) {
+		if (count <= 0)
+			return null;
+		if (count == 1)
+			return emptyLine;
+		final int half = count / 2;
+		// lines without brackets are all the same, so both halves share their subtrees if of equal size
+		final var left = emptyLines(half);
+		final var right = count - half == half ? left : emptyLines(count - half);
+		return inner(castNonNull(left), castNonNull(right));
+	}
+
+	private Node replaceLine(final Node node, final int index, final Line line) {
+		if (node instanceof final Inner inner) {
+			final int leftCount = inner.left.lineCount;
+			return index < leftCount
+					? inner(replaceLine(inner.left, index, line), inner.right)
+					: inner(inner.left, replaceLine(inner.right, index - leftCount, line));
+		}
+		return line;
+	}
+
+	/**
+	 * Splits the given subtree into its first <code>index</code> lines and the remaining lines.
+	 */
+	private Split split(final @Nullable Node node, final int index) {
+		if (node == null)
+			return new Split(null, null);
+		if (index <= 0)
+			return new Split(null, node);
+		if (index >= node.lineCount)
+			return new Split(node, null);
+		final var inner = (Inner) node;
+		final int leftCount = inner.left.lineCount;
+		if (index == leftCount)
+			return new Split(inner.left, inner.right);
+		if (index < leftCount) {
+			final var s = split(inner.left, index);
+			return new Split(s.left, join(s.right, inner.right));
+		}
+		final var s = split(inner.right, index - leftCount);
+		return new Split(join(inner.left, s.left), s.right);
+	}
+
+	/**
+	 * Concatenates two balanced subtrees to a balanced subtree, see AVL tree concatenation.
+	 */
+	private @Nullable Node join(final @Nullable Node left, final @Nullable Node right) {
+		if (left == null)
+			return right;
+		if (right == null)
+			return left;
+		if (left.height > right.height + 1) {
+			final var l = (Inner) left;
+			return rebalance(l.left, castNonNull(join(l.right, right)));
+		}
+		if (right.height > left.height + 1) {
+			final var r = (Inner) right;
+			return rebalance(castNonNull(join(left, r.left)), r.right);
+		}
+		return inner(left, right);
+	}
+
+	/**
+	 * Creates a node of two balanced subtrees whose heights differ by at most two.
+	 */
+	private Node rebalance(final Node left, final Node right) {
+		if (left.height > right.height + 1) {
+			final var l = (Inner) left;
+			if (l.left.height >= l.right.height)
+				return inner(l.left, inner(l.right, right));
+			final var lr = (Inner) l.right;
+			return inner(inner(l.left, lr.left), inner(lr.right, right));
+		}
+		if (right.height > left.height + 1) {
+			final var r = (Inner) right;
+			if (r.right.height >= r.left.height)
+				return inner(inner(left, r.left), r.right);
+			final var rl = (Inner) r.left;
+			return inner(inner(left, rl.left), inner(rl.right, r.right));
+		}
+		return inner(left, right);
+	}
+
+	@Override
+	public String toString() {
+		return "BracketPairTree{lines=" + getNumberOfLines() + ", kinds=" + Arrays.toString(kinds) + "}";
+	}
+}
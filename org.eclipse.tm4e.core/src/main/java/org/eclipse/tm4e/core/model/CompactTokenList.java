@@ -0,0 +1,112 @@
+/**
+ * Copyright (c) 2026 Sebastian Thomschke and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.tm4e.core.model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Memory efficient, immutable list of the tokens of one line, used by {@link TMModel} in compact token storage mode.
+ * <p>
+ * The tokens are stored as one <code>int[]</code> of (startIndex, token kind id) pairs. A token kind is the combination of
+ * type, scopes, grammar scope and balanced brackets flag of a token. The kinds are kept in a {@link TokenKinds} table
+ * shared by all lines of a model, so each distinct scopes list and type string is held only once per model and is released
+ * together with the model. {@link TMToken} instances are materialized on access.
+ */
+final class CompactTokenList extends AbstractList<TMToken> implements RandomAccess {
+
+	private record TokenKind(String type, List<String> scopes, @Nullable String grammarScope, boolean containsBalancedBrackets) {
+	}
+
+	/**
+	 * The token kinds of the compact token lists of one model, referenced by the lists, so the table is garbage collected
+	 * once the model and all its lists are gone.
+	 */
+	static final class TokenKinds {
+
+		/** guarded by this */
+		private final Map<TokenKind, Integer> ids = new HashMap<>();
+
+		/** token kinds by id, prototypes with startIndex 0 */
+		private volatile TMToken[] kinds = new TMToken[64];
+
+		synchronized int getId(final TMToken token) {
+			final var kind = new TokenKind(token.type, token.scopes, token.grammarScope, token.containsBalancedBrackets);
+			final var id = ids.get(kind);
+			if (id != null)
+				return id;
+
+			final int newId = ids.size();
+			var kinds = this.kinds;
+			if (newId == kinds.length) {
+				kinds = Arrays.copyOf(kinds, kinds.length * 2);
+			}
+			kinds[newId] = new TMToken(0, token.type, token.scopes, token.grammarScope, token.containsBalancedBrackets);
+			this.kinds = kinds; // volatile write publishes the new entry
+			ids.put(kind, newId);
+			return newId;
+		}
+
+		TMToken get(final int id) {
+			return kinds[id];
+		}
+
+		/**
+		 * @return the number of distinct token kinds stored so far
+		 */
+		synchronized int size() {
+			return ids.size();
+		}
+	}
+
+	/**
+	 * @return the given tokens as compact token list using the given table
+	 */
+	static CompactTokenList of(final List<TMToken> tokens, final TokenKinds kinds) {
+		if (tokens instanceof final CompactTokenList compact && compact.kinds == kinds)
+			return compact;
+
+		final var data = new int[tokens.size() * 2];
+		int i = 0;
+		for (final TMToken token : tokens) {
+			data[i++] = token.startIndex;
+			data[i++] = kinds.getId(token);
+		}
+		return new CompactTokenList(kinds, data);
+	}
+
+	private final TokenKinds kinds;
+
+	/** (startIndex, token kind id) pairs */
+	private final int[] data;
+
+	private CompactTokenList(final TokenKinds kinds, final int[] data) {
+		this.kinds = kinds;
+		this.data = data;
+	}
+
+	@Override
+	public TMToken get(final int index) {
+		final int startIndex = data[index * 2];
+		final var kind = kinds.get(data[index * 2 + 1]);
+		return new TMToken(startIndex, kind.type, kind.scopes, kind.grammarScope, kind.containsBalancedBrackets);
+	}
+
+	@Override
+	public int size() {
+		return data.length / 2;
+	}
+}
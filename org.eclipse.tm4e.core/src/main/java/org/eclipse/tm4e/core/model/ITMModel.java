@@ -41,6 +41,43 @@ public interface ITMModel extends ModelTokensChangedEvent.Listenable {
 
 	BackgroundTokenizationState getBackgroundTokenizationState();
 
+	/**
+	 * A view of the lines of a model that is not affected by line insertions or removals applied while reading it.
+	 */
+	interface LinesSnapshot {
+
+		int getNumberOfLines();
+
+		/**
+		 * @param lineIndex 0-based
+		 *
+		 * @return <code>null</code> if line does not exist in the snapshot or has not yet been tokenized.
+		 */
+		@Nullable
+		List<TMToken> getLineTokens(int lineIndex);
+	}
+
+	/**
+	 * Returns a view of the current lines to consistently read multiple lines in one pass without blocking the background
+	 * tokenization.
+	 * <p>
+	 * The default implementation returns a view delegating to this model, i.e. not a real snapshot.
+	 */
+	default LinesSnapshot getSnapshot() {
+		final var model = this;
+		return new LinesSnapshot() {
+			@Override
+			public int getNumberOfLines() {
+				return model.getNumberOfLines();
+			}
+
+			@Override
+			public @Nullable List<TMToken> getLineTokens(final int lineIndex) {
+				return model.getLineTokens(lineIndex);
+			}
+		};
+	}
+
 	/**
 	 * @see <a href=
 	 *      "https://github.com/microsoft/vscode/blob/ba2cf46e20df3edf77bdd905acde3e175d985f70/src/vs/editor/common/tokenizationTextModelPart.ts#L93">
@@ -56,7 +93,7 @@ enum BackgroundTokenizationState {
 	// -----------------------------------------------------
 
 	/**
-	 * stops the async tokenizer thread
+	 * stops the async tokenization
 	 */
 	void dispose();
 
@@ -79,4 +116,24 @@ enum BackgroundTokenizationState {
 	void setGrammar(IGrammar grammar);
 
 	int getNumberOfLines();
+
+	/**
+	 * Marks the model as prioritized, e.g. because it is shown in the focused editor, so its background tokenization is
+	 * processed before the one of other models.
+	 */
+	default void setPrioritized(final boolean prioritized) {
+	}
+
+	default boolean isPrioritized() {
+		return false;
+	}
+
+	/**
+	 * Informs the model about the lines currently shown to the user, so their background tokenization can be done first.
+	 *
+	 * @param firstLineIndex 0-based
+	 * @param lastLineIndex 0-based, inclusive
+	 */
+	default void setVisibleRange(final int firstLineIndex, final int lastLineIndex) {
+	}
 }
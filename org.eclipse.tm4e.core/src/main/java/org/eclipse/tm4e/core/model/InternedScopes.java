@@ -0,0 +1,71 @@
+/**
+ * Copyright (c) 2026 Sebastian Thomschke and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.tm4e.core.model;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tm4e.core.internal.utils.WeakInterner;
+
+/**
+ * Immutable scopes list of tokens, interned so tokens with equal scopes created by the tokenizer share one instance, see
+ * {@link TMToken#scopes}.
+ * <p>
+ * The instance identifies the scopes list independent of the theme, so theme dependent data like token styles can be
+ * cached per instance, e.g. with a {@link TokenStyleCache}, and the same tokens can be styled with any theme without
+ * re-tokenizing. The interned lists are only weakly referenced by the table, so lists of scopes no longer used by any
+ * token, e.g. scopes derived from captured document text, are garbage collected.
+ */
+final class InternedScopes extends AbstractList<String> implements RandomAccess {
+
+	private static final WeakInterner<InternedScopes> INTERNER = new WeakInterner<>();
+
+	/**
+	 * @return the interned list equal to the given scopes
+	 */
+	static InternedScopes of(final List<String> scopes) {
+		if (scopes instanceof final InternedScopes interned)
+			return interned;
+		return INTERNER.intern(new InternedScopes(scopes), candidate -> new InternedScopes(List.copyOf(candidate.scopes)));
+	}
+
+	private final List<String> scopes;
+	private final int hashCode;
+
+	/** the style last resolved for this list by a {@link TokenStyleCache}, so looking it up again needs no map access */
+	volatile TokenStyleCache.@Nullable CachedStyle cachedStyle;
+
+	private InternedScopes(final List<String> scopes) {
+		this.scopes = scopes;
+		hashCode = scopes.hashCode();
+	}
+
+	@Override
+	public String get(final int index) {
+		return scopes.get(index);
+	}
+
+	@Override
+	public int size() {
+		return scopes.size();
+	}
+
+	@Override
+	public int hashCode() {
+		return hashCode;
+	}
+
+	@Override
+	public boolean equals(final @Nullable Object obj) {
+		return obj == this || super.equals(obj);
+	}
+}
@@ -15,22 +15,33 @@
 package org.eclipse.tm4e.core.model;
 
 import static java.lang.System.Logger.Level.*;
-import static org.eclipse.tm4e.core.internal.utils.NullSafetyHelper.lateNonNull;
+import static org.eclipse.tm4e.core.internal.utils.NullSafetyHelper.*;
 
 import java.lang.System.Logger;
 import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Objects;
+import java.util.Queue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tm4e.core.grammar.IGrammar;
 import org.eclipse.tm4e.core.grammar.IStateStack;
 import org.eclipse.tm4e.core.internal.grammar.StateStack;
+import org.eclipse.tm4e.core.internal.utils.ChunkedList;
 import org.eclipse.tm4e.core.internal.utils.MoreCollections;
 import org.eclipse.tm4e.core.internal.utils.StringUtils;
 
@@ -70,16 +81,45 @@ public String toString() {
 
 	/** package visibility for tests **/
 	static final class LineTokens {
+
+		/** marker for tokens evicted in bounded memory mode, see {@link TMModel#setMaxResidentLineTokens(int)} */
+		static final List<TMToken> EVICTED_TOKENS = Collections.unmodifiableList(new ArrayList<>(0));
+
+		@SuppressWarnings("rawtypes")
+		private static final AtomicReferenceFieldUpdater<LineTokens, List> TOKENS_UPDATER = AtomicReferenceFieldUpdater
+				.newUpdater(LineTokens.class, List.class, "tokens");
+
 		volatile IStateStack startState = StateStack.NULL;
 		@Nullable
 		IStateStack endState;
 		@Nullable
 		volatile List<TMToken> tokens;
 
+		/** true if the tokens were computed from a guessed start state and are not yet validated */
+		volatile boolean provisional;
+
+		/** time stamp of the last access of the tokens in bounded memory mode, see {@link TMModel#lineTokensAccessClock} */
+		volatile long lastAccess;
+
+		/**
+		 * number of rules of the start state ended in this line (upper 16 bits) and number of rules begun in this line and
+		 * still open at its end (lower 16 bits), see {@link TMModel#getFoldingRanges()}
+		 */
+		volatile int foldingDelta;
+
 		void reset() {
 			startState = StateStack.NULL;
 			endState = null;
 			tokens = null;
+			provisional = false;
+			foldingDelta = 0;
+		}
+
+		/**
+		 * Sets the given tokens unless the tokens of the line changed since they were evicted.
+		 */
+		boolean restoreEvictedTokens(final List<TMToken> tokens) {
+			return TOKENS_UPDATER.compareAndSet(this, EVICTED_TOKENS, tokens);
 		}
 
 		@Override
@@ -88,28 +128,202 @@ public String toString() {
 		}
 	}
 
+	/**
+	 * A range of lines tokenized by a worker thread of the parallel initial tokenization, starting with a guessed state.
+	 */
+	private static final class SpeculativeChunk {
+		/** index of the first line of the chunk */
+		final int fromLineIndex;
+		final IStateStack[] startStates;
+		final TokenizationResult[] results;
+
+		/** number of lines tokenized, less than the chunk's size if the tokenization was cancelled */
+		int tokenizedCount;
+
+		/** the task tokenizing the chunk on a helper thread */
+		Future<?> future = lateNonNull();
+
+		SpeculativeChunk(final int fromLineIndex, final int toLineIndex, final IStateStack speculativeStartState) {
+			this.fromLineIndex = fromLineIndex;
+			startStates = new IStateStack[toLineIndex - fromLineIndex];
+			startStates[0] = speculativeStartState;
+			results = new TokenizationResult[toLineIndex - fromLineIndex];
+		}
+
+		int size() {
+			return results.length;
+		}
+	}
+
+	/**
+	 * Immutable view of the lines of the model at one point in time. The tokens of the lines are still updated by the
+	 * {@link TokenizerJob}, but the line structure is fixed, i.e. reading all lines does not block nor get confused by
+	 * concurrently applied edits.
+	 */
+	private final class Snapshot implements LinesSnapshot {
+		final List<LineTokens> lines;
+
+		Snapshot(final List<LineTokens> lines) {
+			this.lines = lines;
+		}
+
+		@Override
+		public int getNumberOfLines() {
+			return lines.size();
+		}
+
+		@Override
+		public @Nullable List<TMToken> getLineTokens(final int lineIndex) {
+			if (lineIndex < 0 || lineIndex >= lines.size())
+				return null;
+			final var lineTokens = lines.get(lineIndex);
+			final var tokens = lineTokens.tokens;
+			if (tokens == LineTokens.EVICTED_TOKENS)
+				return restoreEvictedTokens(this, lineIndex);
+			if (tokens != null && maxResidentLineTokens > 0) {
+				lineTokens.lastAccess = lineTokensAccessClock.incrementAndGet(); // mark as recently used
+			}
+			return tokens;
+		}
+	}
+
+	/**
+	 * The lines currently shown to the user.
+	 *
+	 * @param firstLineIndex 0-based
+	 * @param lastLineIndex 0-based, inclusive
+	 */
+	private record VisibleRange(int firstLineIndex, int lastLineIndex) {
+	}
+
+	/**
+	 * The pending work of the background tokenization of a model.
+	 *
+	 * @param pendingEdits number of edits not yet applied
+	 * @param linesToRevalidate number of lines that may need to be (re)tokenized, counted from the first such line
+	 */
+	public record Backlog(int pendingEdits, int linesToRevalidate) {
+	}
+
 	private static final Logger LOGGER = System.getLogger(TMModel.class.getName());
 
+	/** Min number of consecutive untokenized lines for which the tokenization is spread across multiple threads */
+	static final int PARALLEL_TOKENIZATION_MIN_LINES = 10_000;
+
+	/** Min number of lines tokenized by one worker thread task during parallel tokenization */
+	private static final int PARALLEL_TOKENIZATION_MIN_CHUNK_LINES = 1_000;
+
+	/**
+	 * Max number of lines tokenized by one worker thread task during parallel tokenization, bounds the memory held by
+	 * tokenized but not yet stitched chunks
+	 */
+	private static final int PARALLEL_TOKENIZATION_MAX_CHUNK_LINES = 5_000;
+
+	/** Number of chunks per worker thread, more chunks balance the load better but cause more speculation misses */
+	private static final int PARALLEL_TOKENIZATION_CHUNKS_PER_THREAD = 4;
+
+	/** Max number of visible lines tokenized ahead of the lines above them */
+	private static final int VISIBLE_RANGE_MAX_LINES = 500;
+
+	/**
+	 * Min number of lines between the first line to revalidate and the visible range for the visible lines to be tokenized
+	 * ahead, closer visible lines are reached quickly enough by the sequential tokenization
+	 */
+	static final int VISIBLE_RANGE_SPECULATION_MIN_DISTANCE = 1_000;
+
+	/**
+	 * In bounded memory mode, the states of evicted lines are only kept for every n-th line, from where the tokens of evicted
+	 * lines are re-computed on demand
+	 */
+	static final int TOKENS_CHECKPOINT_INTERVAL = 64;
+
 	/** The TextMate grammar to use to tokenize lines of the attached document **/
 	private @Nullable IGrammar grammar;
 
 	/** Listeners that are notified when (re)tokenization of changed lines was performed **/
 	private final ModelTokensChangedEvent.Listeners listeners = new ModelTokensChangedEvent.Listeners();
 
-	/** The background thread performing async line tokenizations */
-	private volatile @Nullable TokenizerThread tokenizerThread;
-	private volatile boolean tokenizerThreadHasWork;
+	/** The job performing async line tokenizations on the shared {@link TokenizerScheduler} */
+	private volatile @Nullable TokenizerJob tokenizerJob;
+	private volatile boolean tokenizerHasWork;
+	private volatile boolean prioritized;
+	private volatile @Nullable VisibleRange visibleRange;
+
+	/** set when the visible range changed to contain untokenized lines, so the tokenizer job handles these lines next */
+	private volatile boolean visibleRangeChanged;
 	private TMTokenizationSupport tokenizer = lateNonNull();
 
-	/** package visibility for tests **/
-	final ArrayList<LineTokens> lines;
-	final Object linesWriteLock;
+	/**
+	 * Idle tokenizers of the current grammar to re-compute evicted line tokens on demand. Each reader takes its own, since
+	 * {@link TMTokenizationSupport} is not thread-safe, so concurrent readers do not wait for each other.
+	 */
+	private record TokenizerPool(IGrammar grammar, Queue<TMTokenizationSupport> idleTokenizers) {
+
+		TMTokenizationSupport acquire() {
+			final var tokenizer = idleTokenizers.poll();
+			return tokenizer == null ? new TMTokenizationSupport(grammar) : tokenizer;
+		}
+
+		void release(final TMTokenizationSupport tokenizer) {
+			idleTokenizers.offer(tokenizer);
+		}
+	}
+
+	private volatile TokenizerPool evictedLinesTokenizers = lateNonNull();
+
+	/**
+	 * The lines of the model. Only modified and read by the {@link TokenizerJob}, all other threads read the
+	 * {@link #snapshot}. A {@link ChunkedList}, so that lines are inserted or removed in O(log n) and snapshots are taken
+	 * in O(1), also for very large documents.
+	 * <p>
+	 * package visibility for tests
+	 */
+	final ChunkedList<LineTokens> lines;
+
+	/** immutable copy of {@link #lines}, published by the {@link TokenizerJob} after structural changes */
+	private volatile Snapshot snapshot = new Snapshot(List.of());
 
 	private final BlockingQueue<Edit> edits = new LinkedBlockingQueue<>();
 
+	private volatile int initialTokenizationParallelism = Math.max(1, Integer.getInteger(
+			"tm4e.model.initialTokenizationParallelism", 1));
+
+	private volatile boolean compactTokenStorage = Boolean.getBoolean("tm4e.model.compactTokenStorage");
+
+	/** token kinds of the lines stored in compact token storage mode, replaced together with the grammar */
+	private volatile CompactTokenList.TokenKinds tokenKinds = new CompactTokenList.TokenKinds();
+
+	private volatile int maxResidentLineTokens = Math.max(0, Integer.getInteger("tm4e.model.maxResidentLineTokens", 0));
+
+	/**
+	 * Lines with tokens, mapped to their current line index, which is updated when lines are added or removed. Only
+	 * maintained in bounded memory mode and only accessed by the {@link TokenizerJob}, which evicts the least recently
+	 * accessed lines by their {@link LineTokens#lastAccess}.
+	 */
+	private final HashMap<LineTokens, Integer> residentLineTokens = new HashMap<>();
+
+	/** lines whose evicted tokens were restored by readers, added to the {@link #residentLineTokens} by the tokenizer job */
+	private final Queue<RestoredLineTokens> restoredLineTokens = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * @param lineIndex the line index at the time the tokens were restored
+	 */
+	private record RestoredLineTokens(LineTokens lineTokens, int lineIndex) {
+	}
+
+	/** source of the {@link LineTokens#lastAccess} time stamps, so readers mark lines as recently used without locking */
+	private final AtomicLong lineTokensAccessClock = new AtomicLong();
+
+	private volatile @Nullable List<BracketPairTree.BracketKind> bracketKinds;
+
+	/** set when the bracket kinds changed, so the tokenizer job rebuilds the {@link #bracketPairTree} */
+	private volatile boolean bracketPairTreeOutdated;
+
+	/** only updated by the {@link TokenizerJob}, together with the {@link #lines} */
+	private volatile @Nullable BracketPairTree bracketPairTree;
+
 	protected TMModel(final int initialNumberOfLines) {
-		lines = new ArrayList<>(Math.max(10, initialNumberOfLines));
-		linesWriteLock = lines;
+		lines = new ChunkedList<>();
 		onLinesReplaced(0, 0, initialNumberOfLines);
 	}
 
@@ -120,20 +334,21 @@ private void logDebug(final String msg, final Object... args) {
 			return;
 		final var t = Thread.currentThread();
 		final var caller = t.getStackTrace()[2];
-		final var threadName = t.getName().endsWith(TokenizerThread.class.getSimpleName()) ? "tknz" : t.getName();
+		final var threadName = t.getName().startsWith("tm4e." + TokenizerScheduler.class.getSimpleName()) ? "tknz" : t.getName();
 		LOGGER.log(DEBUG, "[" + threadName + "] " + caller.getMethodName() + String.format(msg, args));
 	}
 
 	/**
-	 * The {@link TokenizerThread} continuously runs tokenizing in background on the lines found in {@link TMModel#lines}.
+	 * The {@link TokenizerJob} tokenizes in background the lines found in {@link TMModel#lines} on the shared
+	 * {@link TokenizerScheduler}.
 	 *
 	 * The {@link TMModel#lines} are expected to be accessed through {@link TMModel#getLines()} and manipulated by the UI
-	 * part to inform of needs to (re)tokenize area, then the {@link TokenizerThread} processes them and emits events through the model.
+	 * part to inform of needs to (re)tokenize area, then the {@link TokenizerJob} processes them and emits events through the model.
 	 *
 	 * UI elements are supposed to subscribe and react to the events with
 	 * {@link TMModel#addModelTokensChangedListener(ModelTokensChangedListenerEvent.Listener)}.
 	 */
-	private final class TokenizerThread extends Thread {
+	private final class TokenizerJob extends TokenizerScheduler.Job {
 
 		/** max time allowed to tokenize a single line */
 		private static final Duration MAX_TIME_PER_LINE_TOKENIZATION = Duration.ofSeconds(1);
@@ -141,46 +356,64 @@ private final class TokenizerThread extends Thread {
 		/** max time in milliseconds for multi-line validations before a consolidated {@link ModelTokensChangedEvent} is emitted */
 		private static final int MAX_TIME_PER_MULTI_LINE_VALIDATIONS = Duration.ofMillis(200).getNano();
 
-		/** Creates a new background thread. The thread runs with minimal priority. */
-		TokenizerThread() {
-			super("tm4e." + TokenizerThread.class.getSimpleName());
-			setPriority(Thread.MIN_PRIORITY);
-			setDaemon(true);
+		/**
+		 * time to wait after an edit for further edits, so that edits made in fast succession (e.g. by a formatter) are applied
+		 * in one go before the token revalidation happens
+		 */
+		private static final long EDIT_COALESCING_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+		private long lastEditAppliedAtNanos;
+
+		private boolean isCancelled() {
+			return tokenizerJob != this;
 		}
 
 		@Override
-		public void run() {
-			try {
-				// loop as long as the thread is active
-				while (tokenizerThread == this) {
-					tokenizerThreadHasWork = !(isAllTokensAreValid() && edits.isEmpty());
-
-					if (!tokenizerThreadHasWork || !edits.isEmpty()) {
-						// wait for the first edit
-						applyEdit(edits.take());
-
-						// poll all subsequent edits
-						for (;;) {
-							// wait up to 50ms for the next edit, so that edits made in fast succession (e.g. by a formatter) are applied
-							// in one go before the token revalidation loop happens
-							final var edit = edits.poll(50, TimeUnit.MILLISECONDS);
-							if (edit == null) {
-								break;
-							}
-							applyEdit(edit);
-						}
-					}
+		boolean isPrioritized() {
+			return prioritized;
+		}
 
-					revalidateTokens();
-				}
-			} catch (final InterruptedException ex) {
-				interrupt();
-			} finally {
-				tokenizerThreadHasWork = false;
+		@Override
+		long runSlice() {
+			if (isCancelled())
+				return -1;
+
+			// apply all queued edits
+			Edit edit;
+			boolean isLinesStructureChanged = false;
+			while ((edit = edits.poll()) != null) {
+				isLinesStructureChanged |= applyEdit(edit);
+				lastEditAppliedAtNanos = System.nanoTime();
+			}
+			if (isLinesStructureChanged) {
+				snapshot = new Snapshot(lines.snapshot());
 			}
+			if (bracketPairTreeOutdated) {
+				rebuildBracketPairTree();
+			}
+
+			// wait up to 50ms for the next edit before revalidating
+			if (lastEditAppliedAtNanos != 0) {
+				final long nanosSinceLastEdit = System.nanoTime() - lastEditAppliedAtNanos;
+				if (nanosSinceLastEdit < EDIT_COALESCING_NANOS)
+					return EDIT_COALESCING_NANOS - nanosSinceLastEdit;
+				lastEditAppliedAtNanos = 0;
+			}
+
+			if (!isAllTokensAreValid()) {
+				revalidateTokens();
+			}
+
+			evictLineTokens();
+
+			if (isCancelled())
+				return -1;
+			final boolean hasWork = tokenizerHasWork = !(isAllTokensAreValid() && edits.isEmpty());
+			return hasWork ? 0 : -1;
 		}
 
-		private int firstLineToRevalidate = -1;
+		/** volatile for {@link TMModel#getBacklog()} */
+		private volatile int firstLineToRevalidate = -1;
 
 		private boolean isAllTokensAreValid() {
 			return firstLineToRevalidate == -1;
@@ -191,28 +424,49 @@ private void setAllTokensAreValid() {
 		}
 
 		/**
-		 * revalidates tokens of lines starting at {@link #firstLineToRevalidate} until all lines are processed or new {@link Edit} arrive.
+		 * revalidates tokens of lines starting at {@link #firstLineToRevalidate} until all lines are processed, new {@link Edit}s
+		 * arrive or the time slice of {@link #MAX_TIME_PER_MULTI_LINE_VALIDATIONS} is used up.
 		 */
 		private void revalidateTokens() {
+			// in bounded memory mode the states of evicted lines are only kept at checkpoints
+			int lineIndex = firstLineToRevalidate;
+			while (lineIndex > 0 && lines.get(lineIndex - 1).endState == null) {
+				lineIndex--;
+			}
+			firstLineToRevalidate = lineIndex;
+
+			tokenizeVisibleRange();
+			if (isCancelled() || !edits.isEmpty())
+				return;
+
+			if ((initialTokenizationParallelism > 1 || parallelTokenization != null) && tokenizeInParallel())
+				return;
+
 			final int startLineIndex = firstLineToRevalidate;
 			final int startLineNumber = startLineIndex + 1;
 			if (DEBUG_LOGGING) {
 				logDebug("(%d)", startLineNumber);
 			}
 
-			long startNanoTime = System.nanoTime();
-			var changedRanges = new ArrayList<Range>();
+			final long startNanoTime = System.nanoTime();
+			final var changedRanges = new ArrayList<Range>();
 			Range prevRange = null;
 			var prevLineTokens = getLineTokensOrNull(startLineIndex - 1);
 
+			// true if the previous line was up-to-date, i.e. the start state of the current line did not change
+			boolean isPrevLineUpToDate = false;
+
+			// lines up to this index are re-tokenized to re-compute the unknown end state of an evicted line above an outdated line
+			int forceTokenizeUntilLineIndex = -1;
+
 			final int linesCount = lines.size();
 			int currLineIndex = -1;
 
 			// iterate over all lines from startLineIndex to end of file to check if (re)tokenization is required
 			for (currLineIndex = startLineIndex; currLineIndex < linesCount; currLineIndex++) {
 
-				// check if TokenizerThread is still running and no new edits are queued
-				if (isInterrupted() || !edits.isEmpty()) {
+				// check if TokenizerJob is still active, no new edits are queued and no untokenized lines became visible
+				if (isCancelled() || !edits.isEmpty() || visibleRangeChanged) {
 					break;
 				}
 
@@ -225,45 +479,49 @@ private void revalidateTokens() {
 				final int currLineNumber = currLineIndex + 1;
 
 				// check if (re)tokenization is required
-				if (prevLineTokens != null) {
-					if (currLineTokens.tokens != null && currLineTokens.startState.equals(prevLineTokens.endState)) {
+				if (prevLineTokens != null && currLineIndex >= forceTokenizeUntilLineIndex) {
+					final var prevEndState = prevLineTokens.endState;
+					if (currLineTokens.tokens != null && (prevEndState != null && currLineTokens.startState.equals(prevEndState)
+							// in bounded memory mode the states of evicted lines are only kept at checkpoints, but the start
+							// state of a line did not change if the line above is up-to-date
+							|| isPrevLineUpToDate && !currLineTokens.provisional
+									&& (prevEndState == null || currLineTokens.endState == null))) {
 						// has matching start and has tokens ==> is up to date
 						if (DEBUG_LOGGING) {
 							logDebug("(%d) >> DONE - tokens of line %d are up-to-date", startLineNumber, currLineNumber);
 						}
 						firstLineToRevalidate = currLineIndex + 1;
+						currLineTokens.provisional = false;
 						prevLineTokens = currLineTokens;
+						isPrevLineUpToDate = true;
 						continue;
 					}
-					if (prevLineTokens.endState != null) {
-						currLineTokens.startState = prevLineTokens.endState;
+					if (prevEndState == null) {
+						// the end state of the evicted line above is unknown, so re-compute it starting at the nearest line
+						// above that has its states, i.e. at most TOKENS_CHECKPOINT_INTERVAL lines above
+						forceTokenizeUntilLineIndex = currLineIndex;
+						do {
+							currLineIndex--;
+						} while (currLineIndex > 0 && lines.get(currLineIndex - 1).endState == null);
+						prevLineTokens = getLineTokensOrNull(currLineIndex - 1);
+						currLineIndex--; // incremented by the loop
+						continue;
 					}
+					currLineTokens.startState = prevEndState;
+				} else if (prevLineTokens != null) {
+					currLineTokens.startState = castNonNull(prevLineTokens.endState);
 				}
 
 				// (re)tokenize the line
 				if (DEBUG_LOGGING) {
 					logDebug("(%d) >> tokenizing line %d...", startLineNumber, currLineNumber);
 				}
-				TokenizationResult r;
-				try {
-					final String lineText = getLineText(currLineIndex);
-					r = tokenizer.tokenize(lineText, currLineTokens.startState, 0, MAX_TIME_PER_LINE_TOKENIZATION);
-				} catch (final Exception ex) {
-					LOGGER.log(ERROR, ex.toString());
-					r = new TokenizationResult(new ArrayList<>(1), 0, currLineTokens.startState, true);
-				}
-
-				// check if complete line was tokenized
-				if (r.stoppedEarly) {
-					// treat the rest of the line as one default token
-					r.tokens.add(new TMToken(r.actualStopOffset, "", Collections.emptyList(), null));
-					// Use the line's starting state as end state in case of incomplete tokenization
-					r.endState = currLineTokens.startState;
-				}
-
+				final var r = tokenizeLine(tokenizer, currLineIndex, currLineTokens.startState);
 				currLineTokens.endState = r.endState;
-				currLineTokens.tokens = r.tokens;
+				storeTokens(currLineTokens, currLineIndex, r);
+				currLineTokens.provisional = false;
 				prevLineTokens = currLineTokens;
+				isPrevLineUpToDate = false;
 				firstLineToRevalidate = currLineIndex + 1;
 
 				// add the line number to the changed ranges
@@ -274,34 +532,477 @@ private void revalidateTokens() {
 					changedRanges.add(prevRange); // insert new range
 				}
 
-				// if MAX_TIME_PER_MULTI_LINE_VALIDATIONS reached, notify listeners about line changes
+				// if MAX_TIME_PER_MULTI_LINE_VALIDATIONS reached, end the time slice so that listeners are notified about the
+				// line changes and the scheduler can process other models before the remaining lines
 				if (System.nanoTime() - startNanoTime >= MAX_TIME_PER_MULTI_LINE_VALIDATIONS) {
-					if (DEBUG_LOGGING) {
-						logDebug("(%d) >> changedRanges: %s", startLineNumber, changedRanges);
-					}
-					if (!changedRanges.isEmpty()) {
-						listeners.dispatchEvent(changedRanges, TMModel.this);
-						changedRanges = new ArrayList<>();
-					}
-					prevRange = null;
-					startNanoTime = System.nanoTime();
+					currLineIndex++;
+					break;
 				}
 			}
 
-			// notify listeners about remaining line changes
+			// notify listeners about line changes
 			if (DEBUG_LOGGING) {
 				logDebug("(%d) >> changedRanges: %s", startLineNumber, changedRanges);
 			}
 			listeners.dispatchEvent(changedRanges, TMModel.this);
 
-			setAllTokensAreValid();
+			if (currLineIndex >= linesCount) {
+				setAllTokensAreValid();
+			}
+		}
+
+		/**
+		 * Tokenizes the untokenized lines of the {@link TMModel#setVisibleRange(int, int) visible range} ahead of the lines
+		 * above them if these are far from being tokenized, e.g. after jumping to the end of a freshly opened large document.
+		 * <p>
+		 * Since the actual start state of the visible lines is unknown, they are tokenized speculatively starting with the
+		 * end state of the nearest line above that has one, or the initial state. The lines are marked as provisional and
+		 * listeners are notified right away. Once the sequential tokenization reaches the visible lines, their start states
+		 * are validated and, on a mismatch, the lines are re-tokenized and listeners are notified again.
+		 */
+		private void tokenizeVisibleRange() {
+			visibleRangeChanged = false;
+			final var visibleRange = TMModel.this.visibleRange;
+			if (visibleRange == null)
+				return;
+
+			final int linesCount = lines.size();
+			final int toLineIndex = Math.min(Math.min(visibleRange.lastLineIndex + 1, linesCount),
+					visibleRange.firstLineIndex + VISIBLE_RANGE_MAX_LINES);
+			int fromLineIndex = Math.max(visibleRange.firstLineIndex, firstLineToRevalidate);
+			while (fromLineIndex < toLineIndex && lines.get(fromLineIndex).tokens != null) {
+				fromLineIndex++;
+			}
+			if (fromLineIndex >= toLineIndex || fromLineIndex - firstLineToRevalidate < VISIBLE_RANGE_SPECULATION_MIN_DISTANCE)
+				return;
+
+			IStateStack startState = tokenizer.getInitialState();
+			for (int i = fromLineIndex - 1; i >= 0 && i >= firstLineToRevalidate - 1; i--) {
+				final var endState = lines.get(i).endState;
+				if (endState != null) {
+					startState = endState;
+					break;
+				}
+			}
+
+			if (DEBUG_LOGGING) {
+				logDebug("(%d) >> speculatively tokenizing visible lines %d-%d", firstLineToRevalidate + 1, fromLineIndex + 1,
+						toLineIndex);
+			}
+
+			int currLineIndex;
+			for (currLineIndex = fromLineIndex; currLineIndex < toLineIndex; currLineIndex++) {
+				if (isCancelled() || !edits.isEmpty())
+					break;
+				final var currLineTokens = lines.get(currLineIndex);
+				final var r = tokenizeLine(tokenizer, currLineIndex, startState);
+				currLineTokens.startState = startState;
+				currLineTokens.endState = r.endState;
+				storeTokens(currLineTokens, currLineIndex, r);
+				currLineTokens.provisional = true;
+				startState = r.endState;
+			}
+			if (currLineIndex > fromLineIndex) {
+				listeners.dispatchEvent(List.of(new Range(fromLineIndex + 1, currLineIndex)), TMModel.this);
+			}
+		}
+
+		/** the parallel tokenization in progress, only accessed by the tokenizer job */
+		private @Nullable ParallelTokenization parallelTokenization;
+
+		/**
+		 * Tokenizes a large block of untokenized lines starting at {@link #firstLineToRevalidate}, e.g. of a freshly opened
+		 * document, on the shared helper threads of the {@link TokenizerScheduler}.
+		 * <p>
+		 * The block is split into chunks, preferably starting after a blank line. All chunks but the first are tokenized
+		 * speculatively with the state at the end of an empty first line, i.e. usually the grammar's root state. The chunks are
+		 * then stitched together in order: if the actual start state of a chunk differs from the speculative one, its lines
+		 * are re-tokenized until the computed end state converges with the speculative end state of the same line, from
+		 * where on the speculative results are known to be correct.
+		 * <p>
+		 * The chunks are stitched across multiple time slices of the job, so the job does not keep the scheduler from
+		 * processing other models. Only up to {@link TMModel#initialTokenizationParallelism} chunks are tokenized ahead of
+		 * the stitched lines, which bounds the memory held by not yet stitched results. Listeners are notified about stitched
+		 * lines the same way as during sequential tokenization.
+		 *
+		 * @return true if lines were tokenized in parallel during this time slice
+		 */
+		private boolean tokenizeInParallel() {
+			var parallelTokenization = this.parallelTokenization;
+			if (parallelTokenization == null) {
+				parallelTokenization = this.parallelTokenization = startParallelTokenization();
+				if (parallelTokenization == null)
+					return false;
+			}
+			if (!parallelTokenization.stitch()) {
+				parallelTokenization.abort();
+				this.parallelTokenization = null;
+			}
+			return true;
+		}
+
+		private void abortParallelTokenization() {
+			final var parallelTokenization = this.parallelTokenization;
+			if (parallelTokenization != null) {
+				parallelTokenization.abort();
+				this.parallelTokenization = null;
+			}
+		}
+
+		private @Nullable ParallelTokenization startParallelTokenization() {
+			final int startLineIndex = firstLineToRevalidate;
+			final int linesCount = lines.size();
+			int endLineIndex = startLineIndex;
+			while (endLineIndex < linesCount && lines.get(endLineIndex).tokens == null) {
+				endLineIndex++;
+			}
+			if (endLineIndex - startLineIndex < PARALLEL_TOKENIZATION_MIN_LINES)
+				return null;
+
+			final IStateStack startState;
+			if (startLineIndex == 0) {
+				startState = tokenizer.getInitialState();
+			} else {
+				final var endStateOfPrevLine = lines.get(startLineIndex - 1).endState;
+				if (endStateOfPrevLine == null)
+					return null;
+				startState = endStateOfPrevLine;
+			}
+
+			final var grammar = TMModel.this.grammar;
+			if (grammar == null)
+				return null;
+
+			final int parallelism = initialTokenizationParallelism;
+			final var speculativeStartState = tokenizer.tokenize("", tokenizer.getInitialState()).endState;
+			final var chunks = createSpeculativeChunks(startLineIndex, endLineIndex, startState, speculativeStartState,
+					parallelism);
+			if (DEBUG_LOGGING) {
+				logDebug("(%d) >> tokenizing lines %d-%d in %d chunks on up to %d threads", startLineIndex + 1,
+						startLineIndex + 1, endLineIndex, chunks.size(), parallelism);
+			}
+			return new ParallelTokenization(grammar, chunks, startState, parallelism);
+		}
+
+		private final class ParallelTokenization {
+			final IGrammar grammar;
+			final int parallelism;
+
+			/** chunks not yet submitted to the helper threads */
+			final ArrayDeque<SpeculativeChunk> pendingChunks;
+
+			/** submitted chunks not yet stitched, the first one is the chunk being stitched */
+			final ArrayDeque<SpeculativeChunk> submittedChunks = new ArrayDeque<>();
+
+			/** index of the next line to stitch of the first submitted chunk */
+			int lineInChunk;
+
+			/** the actual start state of the next line to stitch */
+			IStateStack actualStartState;
+
+			volatile boolean aborted;
+
+			ParallelTokenization(final IGrammar grammar, final List<SpeculativeChunk> chunks, final IStateStack startState,
+					final int parallelism) {
+				this.grammar = grammar;
+				this.parallelism = parallelism;
+				pendingChunks = new ArrayDeque<>(chunks);
+				actualStartState = startState;
+			}
+
+			boolean isAborted() {
+				return aborted || isCancelled();
+			}
+
+			void abort() {
+				aborted = true;
+				for (final var chunk : submittedChunks) {
+					chunk.future.cancel(false);
+				}
+				submittedChunks.clear();
+				pendingChunks.clear();
+			}
+
+			/**
+			 * Stitches the tokenized chunks in order until all chunks are stitched, the time slice of
+			 * {@link TokenizerJob#MAX_TIME_PER_MULTI_LINE_VALIDATIONS} is used up, new {@link Edit}s arrive or untokenized
+			 * lines became visible.
+			 *
+			 * @return true if chunks are left to stitch
+			 */
+			boolean stitch() {
+				final long startNanoTime = System.nanoTime();
+				final var firstChunk = submittedChunks.peek();
+				final int fromLineIndex = firstChunk == null
+						? castNonNull(pendingChunks.peek()).fromLineIndex
+						: firstChunk.fromLineIndex + lineInChunk;
+				int lineIndex = fromLineIndex;
+				try {
+					while (true) {
+						while (submittedChunks.size() < parallelism && !pendingChunks.isEmpty()) {
+							final var chunk = pendingChunks.poll();
+							chunk.future = TokenizerScheduler.INSTANCE.getParallelPool()
+									.submit(() -> tokenizeSpeculatively(chunk, new TMTokenizationSupport(grammar), this));
+							submittedChunks.add(chunk);
+						}
+						final var chunk = submittedChunks.peek();
+						if (chunk == null)
+							return false;
+
+						final long remainingNanos = MAX_TIME_PER_MULTI_LINE_VALIDATIONS - (System.nanoTime() - startNanoTime);
+						if (remainingNanos <= 0 || isCancelled() || !edits.isEmpty() || visibleRangeChanged)
+							return true;
+						try {
+							chunk.future.get(remainingNanos, TimeUnit.NANOSECONDS);
+						} catch (final TimeoutException ex) {
+							return true;
+						}
+
+						while (lineInChunk < chunk.tokenizedCount) {
+							lineIndex = chunk.fromLineIndex + lineInChunk;
+
+							// re-tokenize lines of a mis-speculated chunk until the states converge
+							var r = chunk.results[lineInChunk];
+							if (!actualStartState.equals(chunk.startStates[lineInChunk])) {
+								r = tokenizeLine(tokenizer, lineIndex, actualStartState);
+							}
+
+							final var currLineTokens = lines.get(lineIndex);
+							currLineTokens.startState = actualStartState;
+							currLineTokens.endState = r.endState;
+							storeTokens(currLineTokens, lineIndex, r);
+							currLineTokens.provisional = false;
+							actualStartState = r.endState;
+							lineInChunk++;
+							lineIndex++;
+							firstLineToRevalidate = lineIndex;
+
+							if (System.nanoTime() - startNanoTime >= MAX_TIME_PER_MULTI_LINE_VALIDATIONS)
+								return true;
+						}
+
+						// the tokenization of the chunk was aborted, the sequential tokenization takes over
+						if (chunk.tokenizedCount < chunk.size())
+							return false;
+
+						submittedChunks.poll();
+						lineInChunk = 0;
+					}
+				} catch (final InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					return false;
+				} catch (final ExecutionException ex) {
+					LOGGER.log(ERROR, ex.getMessage(), ex);
+					return false;
+				} finally {
+					if (lineIndex > fromLineIndex) {
+						listeners.dispatchEvent(List.of(new Range(fromLineIndex + 1, lineIndex)), TMModel.this);
+					}
+				}
+			}
+		}
+
+		private List<SpeculativeChunk> createSpeculativeChunks(final int startLineIndex, final int endLineIndex,
+				final IStateStack startState, final IStateStack speculativeStartState, final int parallelism) {
+			final int chunkSize = Math.clamp(
+					(endLineIndex - startLineIndex) / (parallelism * PARALLEL_TOKENIZATION_CHUNKS_PER_THREAD),
+					PARALLEL_TOKENIZATION_MIN_CHUNK_LINES, PARALLEL_TOKENIZATION_MAX_CHUNK_LINES);
+			final var chunks = new ArrayList<SpeculativeChunk>();
+			int chunkStart = startLineIndex;
+			while (chunkStart < endLineIndex) {
+				int chunkEnd = Math.min(chunkStart + chunkSize, endLineIndex);
+
+				// prefer to start the next chunk after a blank line, where the speculative start state is most likely correct
+				for (int i = chunkEnd, maxI = Math.min(chunkEnd + chunkSize / 4, endLineIndex - 1); i < maxI; i++) {
+					try {
+						if (getLineText(i).isBlank()) {
+							chunkEnd = i + 1;
+							break;
+						}
+					} catch (final Exception ex) {
+						break;
+					}
+				}
+				chunks.add(new SpeculativeChunk(chunkStart, chunkEnd, chunks.isEmpty() ? startState : speculativeStartState));
+				chunkStart = chunkEnd;
+			}
+			return chunks;
+		}
+
+		/**
+		 * Runs on a helper thread of the parallel tokenization. Stops early when the parallel tokenization is aborted, e.g.
+		 * because the model received edits, or the tokenizer job is cancelled.
+		 */
+		private void tokenizeSpeculatively(final SpeculativeChunk chunk, final TMTokenizationSupport tokenizer,
+				final ParallelTokenization parallelTokenization) {
+			var startState = chunk.startStates[0];
+			for (int i = 0, size = chunk.size(); i < size; i++) {
+				if (parallelTokenization.isAborted())
+					return;
+				final var r = tokenizeLine(tokenizer, chunk.fromLineIndex + i, startState);
+				chunk.startStates[i] = startState;
+				chunk.results[i] = r;
+				chunk.tokenizedCount = i + 1;
+				startState = r.endState;
+			}
+		}
+
+		/**
+		 * Evicts the tokens of the least recently used lines in bounded memory mode. Only called on the tokenizer job, so
+		 * evictions do not interfere with the line revalidation.
+		 */
+		private void evictLineTokens() {
+			final int maxResidentLineTokens = TMModel.this.maxResidentLineTokens;
+			if (maxResidentLineTokens <= 0) {
+				residentLineTokens.clear();
+				restoredLineTokens.clear();
+				return;
+			}
+
+			RestoredLineTokens restored;
+			while ((restored = restoredLineTokens.poll()) != null) {
+				residentLineTokens.putIfAbsent(restored.lineTokens, restored.lineIndex);
+			}
+			final int evictCount = residentLineTokens.size() - maxResidentLineTokens;
+			if (evictCount <= 0)
+				return;
+
+			// evict the lines accessed before the evictCount-th least recent access, lines accessed concurrently are kept
+			final var lastAccesses = new long[residentLineTokens.size()];
+			int i = 0;
+			for (final var lineTokens : residentLineTokens.keySet()) {
+				lastAccesses[i++] = lineTokens.lastAccess;
+			}
+			Arrays.sort(lastAccesses);
+			final long evictAccessedUntil = lastAccesses[evictCount - 1];
+
+			final var it = residentLineTokens.entrySet().iterator();
+			while (residentLineTokens.size() > maxResidentLineTokens && it.hasNext()) {
+				final var entry = it.next();
+				final var lineTokens = entry.getKey();
+				final var tokens = lineTokens.tokens;
+				if (tokens != null && tokens != LineTokens.EVICTED_TOKENS && lineTokens.lastAccess > evictAccessedUntil) {
+					continue;
+				}
+				it.remove();
+				if (tokens == null || tokens == LineTokens.EVICTED_TOKENS) {
+					continue;
+				}
+				lineTokens.tokens = LineTokens.EVICTED_TOKENS;
+
+				// keep the states at the checkpoints and, to be on the safe side, of lines with an outdated index,
+				// which may happen if the tokens of the line were restored while an edit was applied
+				final int lineIndex = entry.getValue();
+				if (lineIndex % TOKENS_CHECKPOINT_INTERVAL != 0 && lineIndex < lines.size() && lines.get(lineIndex) == lineTokens) {
+					lineTokens.startState = StateStack.NULL;
+					lineTokens.endState = null;
+				}
+			}
+		}
+
+		/**
+		 * Builds the bracket pair tree of all lines tokenized so far for the current {@link TMModel#bracketKinds}.
+		 * <p>
+		 * In bounded memory mode the tokens of evicted lines are re-computed in the same sequential pass, continuing from
+		 * the end state of the previous line, but are not stored, so the rebuild does not bring all lines back into memory.
+		 */
+		private void rebuildBracketPairTree() {
+			bracketPairTreeOutdated = false;
+			final var bracketKinds = TMModel.this.bracketKinds;
+			if (bracketKinds == null || bracketKinds.isEmpty()) {
+				bracketPairTree = null;
+				return;
+			}
+
+			var tree = new BracketPairTree(bracketKinds, lines.size());
+			@Nullable
+			TMTokenizationSupport evictedTokenizer = null;
+			@Nullable
+			IStateStack prevEndState = null;
+			for (int i = 0, linesCount = lines.size(); i < linesCount; i++) {
+				final var lineTokens = lines.get(i);
+				final var tokens = lineTokens.tokens;
+				if (tokens == LineTokens.EVICTED_TOKENS) {
+					// a dedicated tokenizer, since the line cache of the job's tokenizer is meant for re-tokenized lines
+					if (evictedTokenizer == null) {
+						evictedTokenizer = new TMTokenizationSupport(castNonNull(grammar));
+					}
+					final var r = tokenizeLine(evictedTokenizer, i, getStartStateOfEvictedLine(evictedTokenizer, i, prevEndState));
+					tree = withLineBrackets(tree, i, castNonNull(r.lineText), r.tokens);
+					prevEndState = r.endState;
+				} else {
+					// null for never tokenized lines and for lines whose evicted tokens were restored without their states
+					prevEndState = lineTokens.endState;
+					if (tokens != null) {
+						final String lineText;
+						try {
+							lineText = getLineText(i);
+						} catch (final Exception ex) {
+							LOGGER.log(ERROR, ex.getMessage(), ex);
+							continue;
+						}
+						tree = withLineBrackets(tree, i, lineText, tokens);
+					}
+				}
+			}
+			bracketPairTree = tree;
+		}
+
+		/**
+		 * @param prevEndState the end state of the previous line if known
+		 *
+		 * @return the start state of the given evicted line, if unknown re-computed from the nearest line above that still has
+		 *         its start state, i.e. at most {@value #TOKENS_CHECKPOINT_INTERVAL} lines above
+		 */
+		private IStateStack getStartStateOfEvictedLine(final TMTokenizationSupport tokenizer, final int lineIndex,
+				final @Nullable IStateStack prevEndState) {
+			final var startState = lines.get(lineIndex).startState;
+			if (startState != StateStack.NULL)
+				return startState;
+			if (prevEndState != null)
+				return prevEndState;
+
+			int fromLineIndex = lineIndex;
+			while (fromLineIndex > 0 && lines.get(fromLineIndex).startState == StateStack.NULL) {
+				fromLineIndex--;
+			}
+			var state = lines.get(fromLineIndex).startState;
+			if (state == StateStack.NULL) {
+				state = tokenizer.getInitialState();
+			}
+			for (int i = fromLineIndex; i < lineIndex; i++) {
+				state = tokenizeLine(tokenizer, i, state).endState;
+			}
+			return state;
+		}
+
+		/**
+		 * Updates the indexes of the resident lines at or after the given line index by the given number of added or
+		 * removed lines, so that the checkpoints of evicted lines stay evenly spaced.
+		 */
+		private void shiftResidentLineTokens(final int fromLineIndex, final int lineDiff, final List<LineTokens> removedLines) {
+			if (residentLineTokens.isEmpty())
+				return;
+			removedLines.forEach(residentLineTokens::remove);
+			for (final var entry : residentLineTokens.entrySet()) {
+				final int lineIndex = entry.getValue();
+				if (lineIndex >= fromLineIndex) {
+					entry.setValue(lineIndex + lineDiff);
+				}
+			}
 		}
 
-		private void applyEdit(final Edit edit) {
+		/**
+		 * @return true if lines were added or removed
+		 */
+		private boolean applyEdit(final Edit edit) {
 			if (DEBUG_LOGGING) {
 				logDebug("(%s)", edit);
 			}
 
+			// the line indexes of the chunks may have changed
+			abortParallelTokenization();
+
 			final var lineIndex = edit.lineIndex;
 			if (isAllTokensAreValid() || lineIndex < firstLineToRevalidate) {
 				firstLineToRevalidate = lineIndex;
@@ -311,10 +1012,10 @@ private void applyEdit(final Edit edit) {
 			if (edit.replacedCount == 1 && edit.replacementCount == 1) {
 				final var firstLineOfEdit = getLineTokensOrNull(lineIndex);
 				if (firstLineOfEdit == null)
-					return;
+					return false;
 				// reuse the LineToken instance by resetting it's state
 				firstLineOfEdit.reset();
-				return;
+				return false;
 			}
 
 			final int replacedCount = Math.min(edit.replacedCount, lines.size() - lineIndex);
@@ -325,7 +1026,7 @@ private void applyEdit(final Edit edit) {
 			if (lineDiff == 0) {
 				// reset tokenization state of affected lines
 				editRange.forEach(LineTokens::reset);
-				return;
+				return false;
 			}
 
 			// (2) new lines added by edit
@@ -338,32 +1039,136 @@ private void applyEdit(final Edit edit) {
 				for (int i = 0; i < lineDiff; i++) {
 					additionalLines.add(new LineTokens());
 				}
-				synchronized (linesWriteLock) {
-					editRange.addAll(additionalLines);
+				editRange.addAll(additionalLines);
+				shiftResidentLineTokens(lineIndex + replacedCount, lineDiff, List.of());
+				final var bracketPairTree = TMModel.this.bracketPairTree;
+				if (bracketPairTree != null) {
+					TMModel.this.bracketPairTree = bracketPairTree.withLinesReplaced(lineIndex + replacedCount, 0, lineDiff);
 				}
-				return;
+				return true;
 			}
 
 			// (3) lines removed by edit
 			/* if (lineDiff < 0) */ {
-				synchronized (linesWriteLock) {
-					editRange.subList(0, -lineDiff).clear();
-				}
+				final var removedLines = editRange.subList(0, -lineDiff);
+				shiftResidentLineTokens(lineIndex - lineDiff, lineDiff, removedLines);
+				removedLines.clear();
 				// reset tokenization state of the other affected lines
 				editRange.forEach(LineTokens::reset);
+				final var bracketPairTree = TMModel.this.bracketPairTree;
+				if (bracketPairTree != null) {
+					TMModel.this.bracketPairTree = bracketPairTree.withLinesReplaced(lineIndex, -lineDiff, 0);
+				}
+				return true;
 			}
 		}
 	}
 
+	private List<TMToken> toStoredTokens(final List<TMToken> tokens) {
+		return compactTokenStorage ? CompactTokenList.of(tokens, tokenKinds) : tokens;
+	}
+
+	private void storeTokens(final LineTokens lineTokens, final int lineIndex, final TokenizationResult r) {
+		final var endState = lineTokens.endState;
+		if (endState != null) {
+			final int commonDepth = StateStack.getCommonDepth(lineTokens.startState, endState);
+			final int pops = Math.min(lineTokens.startState.getDepth() - commonDepth, 0xFFFF);
+			final int pushes = Math.min(endState.getDepth() - commonDepth, 0xFFFF);
+			lineTokens.foldingDelta = pops << 16 | pushes;
+		}
+		lineTokens.tokens = toStoredTokens(r.tokens);
+		final var bracketPairTree = this.bracketPairTree;
+		if (bracketPairTree != null) {
+			this.bracketPairTree = withLineBrackets(bracketPairTree, lineIndex, castNonNull(r.lineText), r.tokens);
+		}
+		if (maxResidentLineTokens > 0) {
+			lineTokens.lastAccess = lineTokensAccessClock.incrementAndGet();
+			residentLineTokens.put(lineTokens, lineIndex);
+		}
+	}
+
+	private BracketPairTree withLineBrackets(final BracketPairTree tree, final int lineIndex, final String lineText,
+			final List<TMToken> tokens) {
+		try {
+			return tree.withLine(lineIndex, lineText, tokens);
+		} catch (final Exception ex) {
+			LOGGER.log(ERROR, ex.getMessage(), ex);
+			return tree;
+		}
+	}
+
+	private TokenizationResult tokenizeLine(final TMTokenizationSupport tokenizer, final int lineIndex,
+			final IStateStack startState) {
+		TokenizationResult r;
+		String lineText = "";
+		try {
+			lineText = getLineText(lineIndex);
+			r = tokenizer.tokenize(lineText, startState, 0, TokenizerJob.MAX_TIME_PER_LINE_TOKENIZATION);
+		} catch (final Exception ex) {
+			LOGGER.log(ERROR, ex.toString());
+			r = new TokenizationResult(new ArrayList<>(1), 0, startState, true);
+		}
+		r.lineText = lineText;
+
+		// check if complete line was tokenized
+		if (r.stoppedEarly) {
+			// treat the rest of the line as one default token
+			r.tokens.add(new TMToken(r.actualStopOffset, "", Collections.emptyList(), null));
+			// Use the line's starting state as end state in case of incomplete tokenization
+			r.endState = startState;
+		}
+		return r;
+	}
+
 	private @Nullable LineTokens getLineTokensOrNull(final int index) {
 		return index > -1 && index < lines.size()
 				? lines.get(index)
 				: null;
 	}
 
+	/**
+	 * @return the max number of threads used to tokenize large blocks of untokenized lines, e.g. after opening a document
+	 */
+	public int getInitialTokenizationParallelism() {
+		return initialTokenizationParallelism;
+	}
+
+	/**
+	 * Sets the max number of threads used to tokenize blocks of at least {@value #PARALLEL_TOKENIZATION_MIN_LINES}
+	 * untokenized lines, e.g. after opening a large document. A value of 1 disables the parallel tokenization. The threads
+	 * are taken from the shared pool of helper threads of the {@link TokenizerScheduler}, which bounds the number of
+	 * threads used by all models.
+	 * <p>
+	 * Disabled by default, can be configured via the system property
+	 * <code>tm4e.model.initialTokenizationParallelism</code>.
+	 */
+	public void setInitialTokenizationParallelism(final int parallelism) {
+		initialTokenizationParallelism = Math.max(1, parallelism);
+	}
+
+	/**
+	 * @return true if the tokens of newly tokenized lines are stored in a compact form
+	 */
+	public boolean isCompactTokenStorage() {
+		return compactTokenStorage;
+	}
+
+	/**
+	 * Enables or disables the compact token storage. In compact mode the tokens of a line are stored as one
+	 * <code>int[]</code> of start indexes and ids of the token types and scopes, which are shared by all models. The
+	 * {@link TMToken} instances returned by {@link #getLineTokens(int)} are then created on access. This considerably
+	 * reduces the memory used by large documents at the expense of some allocations while reading the tokens.
+	 * <p>
+	 * Only affects lines tokenized after the change. Disabled by default, can be enabled via the system property
+	 * <code>tm4e.model.compactTokenStorage</code>.
+	 */
+	public void setCompactTokenStorage(final boolean enabled) {
+		compactTokenStorage = enabled;
+	}
+
 	@Override
 	public BackgroundTokenizationState getBackgroundTokenizationState() {
-		return tokenizerThreadHasWork ? BackgroundTokenizationState.IN_PROGRESS : BackgroundTokenizationState.COMPLETED;
+		return tokenizerHasWork ? BackgroundTokenizationState.IN_PROGRESS : BackgroundTokenizationState.COMPLETED;
 	}
 
 	@Override
@@ -376,13 +1181,16 @@ public synchronized void setGrammar(final IGrammar grammar) {
 		if (!Objects.equals(grammar, this.grammar)) {
 			this.grammar = grammar;
 			final var tokenizer = this.tokenizer = new TMTokenizationSupport(grammar);
-			synchronized (linesWriteLock) {
-				if (!lines.isEmpty()) {
-					lines.get(0).startState = tokenizer.getInitialState();
-				}
-				onLinesReplaced(0, 1, 1);
+			// edits re-tokenize the same lines over and over, the other tokenizers of the model only tokenize lines once
+			tokenizer.setLineCacheEnabled(true);
+			evictedLinesTokenizers = new TokenizerPool(grammar, new ConcurrentLinkedQueue<>());
+			tokenKinds = new CompactTokenList.TokenKinds();
+			final var lines = snapshot.lines;
+			if (!lines.isEmpty()) {
+				lines.get(0).startState = tokenizer.getInitialState();
 			}
-			startTokenizerThread();
+			onLinesReplaced(0, 1, 1);
+			startTokenizer();
 		}
 	}
 
@@ -408,12 +1216,18 @@ public void onLinesReplaced(final int lineIndex, final int replacedLinesCount, f
 		}
 
 		edits.add(new Edit(lineIndex, replacedLinesCount, replacementLinesCount));
+
+		final var job = tokenizerJob;
+		if (job != null) {
+			tokenizerHasWork = true;
+			TokenizerScheduler.INSTANCE.schedule(job);
+		}
 	}
 
 	@Override
 	public synchronized boolean addModelTokensChangedListener(final ModelTokensChangedEvent.Listener listener) {
 		if (listeners.add(listener)) {
-			startTokenizerThread();
+			startTokenizer();
 			return true;
 		}
 		return false;
@@ -423,7 +1237,7 @@ public synchronized boolean addModelTokensChangedListener(final ModelTokensChang
 	public synchronized boolean removeModelTokensChangedListener(final ModelTokensChangedEvent.Listener listener) {
 		if (listeners.remove(listener)) {
 			if (listeners.isEmpty()) {
-				stopTokenizerThread(); // no need to keep tokenizing if no-one cares
+				stopTokenizer(); // no need to keep tokenizing if no-one cares
 			}
 			return true;
 		}
@@ -432,51 +1246,301 @@ public synchronized boolean removeModelTokensChangedListener(final ModelTokensCh
 
 	@Override
 	public void dispose() {
-		stopTokenizerThread();
+		stopTokenizer();
 	}
 
-	private synchronized void startTokenizerThread() {
-		if (grammar != null && listeners.isNotEmpty()) {
-			var thread = tokenizerThread;
-			if (thread == null || !thread.isAlive() || thread.isInterrupted()) {
-				thread = tokenizerThread = new TokenizerThread();
-				thread.start();
-			}
+	private synchronized void startTokenizer() {
+		if (grammar != null && listeners.isNotEmpty() && tokenizerJob == null) {
+			final var job = tokenizerJob = new TokenizerJob();
+			tokenizerHasWork = true;
+			TokenizerScheduler.INSTANCE.schedule(job);
 		}
 	}
 
-	/** Interrupt the thread if running. */
-	private synchronized void stopTokenizerThread() {
-		final var thread = tokenizerThread;
-		if (thread == null)
+	/** Cancels the tokenizer job if active. */
+	private synchronized void stopTokenizer() {
+		final var job = tokenizerJob;
+		if (job == null)
 			return;
 
-		thread.interrupt();
-		tokenizerThread = null;
+		tokenizerJob = null;
+		tokenizerHasWork = false;
+		TokenizerScheduler.INSTANCE.cancel(job);
 	}
 
+	/**
+	 * Marks the model as prioritized, e.g. because it belongs to the active editor, so its tokenization is processed
+	 * before the one of other models by the {@link TokenizerScheduler}.
+	 */
 	@Override
-	public int getNumberOfLines() {
-		synchronized (linesWriteLock) {
-			return lines.size();
+	public void setPrioritized(final boolean prioritized) {
+		if (this.prioritized == prioritized)
+			return;
+		this.prioritized = prioritized;
+		final var job = tokenizerJob;
+		if (job != null) {
+			TokenizerScheduler.INSTANCE.reprioritize(job);
 		}
 	}
 
+	@Override
+	public boolean isPrioritized() {
+		return prioritized;
+	}
+
+	/**
+	 * Informs the model about the lines currently shown to the user. If these lines are far below the lines tokenized so
+	 * far, they are tokenized first, speculatively, and later validated by the sequential tokenization.
+	 *
+	 * @param firstLineIndex 0-based
+	 * @param lastLineIndex 0-based, inclusive. If less than <code>firstLineIndex</code> the visible range is cleared.
+	 */
+	@Override
+	public void setVisibleRange(final int firstLineIndex, final int lastLineIndex) {
+		if (firstLineIndex < 0 || lastLineIndex < firstLineIndex) {
+			visibleRange = null;
+			return;
+		}
+
+		final var newVisibleRange = new VisibleRange(firstLineIndex, lastLineIndex);
+		if (newVisibleRange.equals(visibleRange))
+			return;
+		visibleRange = newVisibleRange;
+
+		boolean hasUntokenizedLines = false;
+		final var lines = snapshot.lines;
+		for (int i = firstLineIndex, to = Math.min(Math.min(lastLineIndex + 1, lines.size()),
+				firstLineIndex + VISIBLE_RANGE_MAX_LINES); i < to; i++) {
+			if (lines.get(i).tokens == null) {
+				hasUntokenizedLines = true;
+				break;
+			}
+		}
+		final var job = tokenizerJob;
+		if (hasUntokenizedLines && job != null) {
+			visibleRangeChanged = true;
+			TokenizerScheduler.INSTANCE.schedule(job);
+		}
+	}
+
+	/**
+	 * @param lineIndex 0-based
+	 *
+	 * @return true if the tokens of the given line were computed speculatively ahead of the lines above and are not yet
+	 *         validated, i.e. may still change
+	 */
+	public boolean isLineTokensProvisional(final int lineIndex) {
+		final var lines = snapshot.lines;
+		return lineIndex > -1 && lineIndex < lines.size() && lines.get(lineIndex).provisional;
+	}
+
+	/**
+	 * @return the pending work of the background tokenization of this model
+	 */
+	public Backlog getBacklog() {
+		final var job = tokenizerJob;
+		final int firstLineToRevalidate = job == null ? -1 : job.firstLineToRevalidate;
+		return new Backlog(edits.size(), firstLineToRevalidate == -1 ? 0 : Math.max(0, getNumberOfLines() - firstLineToRevalidate));
+	}
+
+	@Override
+	public int getNumberOfLines() {
+		return snapshot.getNumberOfLines();
+	}
+
 	@Override
 	public @Nullable List<TMToken> getLineTokens(final int lineIndex) {
-		synchronized (linesWriteLock) {
-			final var lineTokens = getLineTokensOrNull(lineIndex);
-			return lineTokens == null ? null : lineTokens.tokens;
+		return snapshot.getLineTokens(lineIndex);
+	}
+
+	/**
+	 * @return an immutable view of the current lines, which is read without locking and is not affected by edits applied
+	 *         while reading the lines. In bounded memory mode, reading the tokens of an evicted line re-computes them on
+	 *         the calling thread, see {@link #setMaxResidentLineTokens(int)}.
+	 */
+	@Override
+	public LinesSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * Re-computes the evicted tokens of the given line, starting at the nearest line above that still has its start state,
+	 * i.e. at most {@value #TOKENS_CHECKPOINT_INTERVAL} lines above. The tokens of all evicted lines on the way are
+	 * restored too, since lines are usually accessed in sequence.
+	 * <p>
+	 * Only sets the tokens but not the states of the lines, which are exclusively managed by the {@link TokenizerJob}. The
+	 * tokens are not stored if the snapshot is outdated or edits are pending, since the line texts may not match the lines
+	 * of the snapshot anymore.
+	 * <p>
+	 * Runs on the calling thread without taking any lock, so readers restoring lines do not wait for each other nor for the
+	 * tokenizer job.
+	 */
+	private @Nullable List<TMToken> restoreEvictedTokens(final Snapshot snapshot, final int lineIndex) {
+		final var lines = snapshot.lines;
+		int fromLineIndex = lineIndex;
+		IStateStack state = StateStack.NULL;
+		while (fromLineIndex > 0 && (state = lines.get(fromLineIndex).startState) == StateStack.NULL) {
+			fromLineIndex--;
 		}
+
+		final var tokenizers = evictedLinesTokenizers;
+		final var tokenizer = tokenizers.acquire();
+		try {
+			if (fromLineIndex == 0 && state == StateStack.NULL) {
+				state = tokenizer.getInitialState();
+			}
+			boolean isRestored = false;
+			List<TMToken> tokens = null;
+			for (int i = fromLineIndex; i <= lineIndex; i++) {
+				final var r = tokenizeLine(tokenizer, i, state);
+				final var lineTokens = lines.get(i);
+				tokens = toStoredTokens(r.tokens);
+				if (edits.isEmpty() && snapshot == this.snapshot && lineTokens.restoreEvictedTokens(tokens)) {
+					lineTokens.lastAccess = lineTokensAccessClock.incrementAndGet();
+					restoredLineTokens.add(new RestoredLineTokens(lineTokens, i));
+					isRestored = true;
+				}
+				state = r.endState;
+			}
+
+			// trigger the eviction of least recently used line tokens
+			final var job = tokenizerJob;
+			if (job != null && isRestored) {
+				TokenizerScheduler.INSTANCE.schedule(job);
+			}
+
+			final var currentTokens = lines.get(lineIndex).tokens;
+			return currentTokens == null || currentTokens == LineTokens.EVICTED_TOKENS ? tokens : currentTokens;
+		} finally {
+			tokenizers.release(tokenizer);
+		}
+	}
+
+	/**
+	 * @return the max number of lines whose tokens are kept in memory, 0 if unbounded
+	 */
+	public int getMaxResidentLineTokens() {
+		return maxResidentLineTokens;
+	}
+
+	/**
+	 * Enables the bounded memory mode, e.g. to keep syntax highlighting enabled for huge log files.
+	 * <p>
+	 * In bounded memory mode only the tokens of the given number of most recently tokenized or accessed lines are kept in
+	 * memory. The tokens of other lines are evicted and re-computed on demand by {@link #getLineTokens(int)}. The states of
+	 * evicted lines are only kept for every {@value #TOKENS_CHECKPOINT_INTERVAL}th line, from where the tokens of the
+	 * following lines are re-computed.
+	 * <p>
+	 * Disabled by default, can be configured via the system property <code>tm4e.model.maxResidentLineTokens</code>.
+	 *
+	 * @param maxLines the max number of lines with tokens in memory, 0 to disable the bounded memory mode
+	 */
+	public void setMaxResidentLineTokens(final int maxLines) {
+		maxResidentLineTokens = Math.max(0, maxLines);
+		final var job = tokenizerJob;
+		if (job != null) {
+			TokenizerScheduler.INSTANCE.schedule(job);
+		}
+	}
+
+	/**
+	 * @return the bracket kinds indexed by the {@link #getBracketPairTree() bracket pair tree}, null if disabled
+	 */
+	public @Nullable List<BracketPairTree.BracketKind> getBracketKinds() {
+		return bracketKinds;
+	}
+
+	/**
+	 * Enables the bracket pair tree for the given bracket kinds, e.g. the brackets of the language configuration, or
+	 * disables it if null or empty.
+	 * <p>
+	 * The tree is built by the tokenizer from the lines tokenized so far. Afterwards it is updated incrementally whenever
+	 * lines are re-tokenized or lines are added or removed, i.e. only the changed lines are re-scanned for brackets.
+	 * Disabled by default.
+	 */
+	public void setBracketKinds(final @Nullable List<BracketPairTree.BracketKind> kinds) {
+		bracketKinds = kinds == null ? null : List.copyOf(kinds);
+		bracketPairTreeOutdated = true;
+		final var job = tokenizerJob;
+		if (job != null) {
+			tokenizerHasWork = true;
+			TokenizerScheduler.INSTANCE.schedule(job);
+		}
+	}
+
+	/**
+	 * @return the bracket pair tree of the lines tokenized so far, or null if no bracket kinds are set or the tree is not
+	 *         built yet. The returned tree is immutable and replaced by a new one after each change, it may briefly lag
+	 *         behind the lines of the model while edits are applied.
+	 */
+	public @Nullable BracketPairTree getBracketPairTree() {
+		return bracketPairTree;
+	}
+
+	/**
+	 * Derives folding ranges from the begin/end and begin/while rules of the grammar that span multiple lines. The number of
+	 * rules begun and ended by each line is recorded while tokenizing, so no line text is evaluated here.
+	 * <p>
+	 * If several rules begin in the same line, only one range is returned for them, ending at the line where the last of
+	 * them ends. Rules not ended are ignored.
+	 *
+	 * @return the folding ranges of the lines tokenized so far, ordered by their last line, each starting at the line where
+	 *         a rule began and ending at the line where it ended
+	 */
+	public List<Range> getFoldingRanges() {
+		final var lines = snapshot.lines;
+		final var ranges = new ArrayList<Range>();
+		int[] openLineIndexes = new int[16];
+		int[] openRuleCounts = new int[16];
+		int openCount = 0;
+		for (int lineIndex = 0, linesCount = lines.size(); lineIndex < linesCount; lineIndex++) {
+			final var lineTokens = lines.get(lineIndex);
+			if (lineTokens.tokens == null)
+				break; // the following lines are not tokenized yet
+			final int foldingDelta = lineTokens.foldingDelta;
+
+			int pops = foldingDelta >>> 16;
+			while (pops > 0 && openCount > 0) {
+				final int popped = Math.min(pops, openRuleCounts[openCount - 1]);
+				openRuleCounts[openCount - 1] -= popped;
+				pops -= popped;
+				if (openRuleCounts[openCount - 1] == 0) {
+					openCount--;
+					ranges.add(new Range(openLineIndexes[openCount] + 1, lineIndex + 1));
+				}
+			}
+
+			final int pushes = foldingDelta & 0xFFFF;
+			if (pushes > 0) {
+				if (openCount == openLineIndexes.length) {
+					openLineIndexes = Arrays.copyOf(openLineIndexes, openCount * 2);
+					openRuleCounts = Arrays.copyOf(openRuleCounts, openCount * 2);
+				}
+				openLineIndexes[openCount] = lineIndex;
+				openRuleCounts[openCount] = pushes;
+				openCount++;
+			}
+		}
+		return ranges;
+	}
+
+	/** package visibility for tests, counts the lines whose tokens are in memory **/
+	int getResidentLineTokensCount() {
+		int count = 0;
+		for (final var lineTokens : snapshot.lines) {
+			final var tokens = lineTokens.tokens;
+			if (tokens != null && tokens != LineTokens.EVICTED_TOKENS) {
+				count++;
+			}
+		}
+		return count;
 	}
 
 	@Override
 	public String toString() {
 		return StringUtils.toString(this, sb -> {
 			sb.append("grammar=").append(grammar);
-			synchronized (linesWriteLock) {
-				sb.append(", lines=").append(MoreCollections.toStringWithIndex(lines));
-			}
+			sb.append(", lines=").append(MoreCollections.toStringWithIndex(snapshot.lines));
 		});
 	}
 }
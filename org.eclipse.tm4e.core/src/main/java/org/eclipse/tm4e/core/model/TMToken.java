@@ -30,16 +30,33 @@ public final class TMToken {
 	public final int startIndex;
 	public final String type;
 	// public readonly language: string
+
+	/**
+	 * The scopes of the token. Tokens created by the tokenizer share one interned list instance per distinct scopes list,
+	 * which is theme independent, so the style of tokens can be cached per list, see {@link TokenStyleCache}.
+	 */
 	public final List<String> scopes;
 
 	/** Effective grammar root scope for this token (e.g., "source.js"). May be null. */
 	public final @Nullable String grammarScope; // custom tm4e code - not from upstream (for TMPartitioner)
 
+	/**
+	 * True if brackets in this token are structural, i.e. not part of a comment, string or regular expression and matched by
+	 * the balanced bracket selectors of the grammar. See {@link BracketPairTree}.
+	 */
+	public final boolean containsBalancedBrackets; // custom tm4e code - not from upstream
+
 	public TMToken(final int startIndex, final String type, final List<String> scopes, final @Nullable String grammarScope) {
+		this(startIndex, type, scopes, grammarScope, false);
+	}
+
+	public TMToken(final int startIndex, final String type, final List<String> scopes, final @Nullable String grammarScope,
+			final boolean containsBalancedBrackets) {
 		this.startIndex = startIndex;
 		this.type = type;
 		this.scopes = scopes;
 		this.grammarScope = grammarScope; // custom tm4e code - not from upstream (for TMPartitioner)
+		this.containsBalancedBrackets = containsBalancedBrackets;
 	}
 
 	@Override
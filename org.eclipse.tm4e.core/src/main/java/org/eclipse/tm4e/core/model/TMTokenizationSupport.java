@@ -30,6 +30,8 @@
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tm4e.core.grammar.IGrammar;
 import org.eclipse.tm4e.core.grammar.IStateStack;
+import org.eclipse.tm4e.core.internal.grammar.Grammar;
+import org.eclipse.tm4e.core.internal.grammar.LineTokenizationCache;
 import org.eclipse.tm4e.core.internal.grammar.LineTokens.Token;
 import org.eclipse.tm4e.core.internal.grammar.StateStack;
 import org.eclipse.tm4e.core.internal.utils.MoreCollections;
@@ -52,6 +54,7 @@ public class TMTokenizationSupport implements ITokenizationSupport {
 	private final IGrammar _grammar;
 	private final IStateStack _initialState;
 	private final DecodeMap decodeMap = new DecodeMap();
+	private volatile boolean lineCacheEnabled;
 
 	public TMTokenizationSupport(final IGrammar grammar) {
 		this(grammar, StateStack.NULL);
@@ -67,6 +70,34 @@ public IStateStack getInitialState() {
 		return _initialState;
 	}
 
+	/**
+	 * @return true if tokenization results of lines are looked up in and recorded to the line tokenization cache of the
+	 *         grammar, disabled by default
+	 */
+	public boolean isLineCacheEnabled() {
+		return lineCacheEnabled;
+	}
+
+	/**
+	 * Enables or disables the use of the grammar's {@link LineTokenizationCache}, which memoizes the tokenization results of
+	 * lines by start state and line text and thus avoids re-tokenizing repeated lines like closing braces, blank lines or
+	 * import statements.
+	 * <p>
+	 * The cache is shared by all users of the grammar, so it should only be enabled for tokenizers that re-tokenize lines
+	 * repeatedly, e.g. the tokenizer of a document being edited, and not for one-shot tokenizers that would only fill it.
+	 */
+	public void setLineCacheEnabled(final boolean enabled) {
+		lineCacheEnabled = enabled;
+	}
+
+	/**
+	 * @return the statistics of the grammar's line tokenization cache, which is shared by all users of the grammar, or null
+	 *         if the grammar has no such cache
+	 */
+	public LineTokenizationCache.@Nullable Stats getLineCacheStats() {
+		return _grammar instanceof final Grammar grammar ? grammar.getLineTokenizationCache().getStats() : null;
+	}
+
 	@Override
 	public TokenizationResult tokenize(final String line, final @Nullable IStateStack state) {
 		return tokenize(line, state, 0, null);
@@ -78,17 +109,21 @@ public TokenizationResult tokenize(final String line,
 			final int offsetDelta,
 			final @Nullable Duration timeLimit) {
 
-		final var tokenizationResult = _grammar.tokenizeLine(line, state, timeLimit);
+		final var tokenizationResult = lineCacheEnabled && _grammar instanceof final Grammar grammar
+				? grammar.tokenizeLineCached(line, state, timeLimit)
+				: _grammar.tokenizeLine(line, state, timeLimit);
 		final var tokens = (Token[]) tokenizationResult.getTokens();
 
 		// Create the result early and fill in the tokens later
 		final var tmTokens = new ArrayList<TMToken>(tokens.length < 10 ? tokens.length : 10);
 		String lastTokenType = null;
+		boolean lastContainsBalancedBrackets = false;
 		for (final Token token : tokens) {
-			final String tokenType = decodeTextMateTokenCached.apply(decodeMap, token.scopes);
+			final var decodedToken = decodeTextMateTokenCached.apply(decodeMap, token.scopes);
+			final String tokenType = decodedToken.tokenType;
 
 			// do not push a new token if the type is exactly the same (also helps with ligatures)
-			if (!tokenType.equals(lastTokenType)) {
+			if (!tokenType.equals(lastTokenType) || token.containsBalancedBrackets != lastContainsBalancedBrackets) {
 
 				// custom tm4e code - not from upstream (for TMPartitioner)
 				// Why we look up a preferred root from scopes:
@@ -102,8 +137,10 @@ public TokenizationResult tokenize(final String line,
 						|| preferredFromScopes != null && !preferredFromScopes.equals(baseScope)
 								? preferredFromScopes
 								: token.grammarScope;
-				tmTokens.add(new TMToken(token.startIndex + offsetDelta, tokenType, token.scopes, tokenGrammarScope));
+				tmTokens.add(new TMToken(token.startIndex + offsetDelta, tokenType, decodedToken.scopes, tokenGrammarScope,
+						token.containsBalancedBrackets));
 				lastTokenType = tokenType;
+				lastContainsBalancedBrackets = token.containsBalancedBrackets;
 			}
 		}
 
@@ -147,31 +184,36 @@ public TokenizationResult tokenize(final String line,
 		return baseScope;
 	}
 
-	private final BiFunction<DecodeMap, List<String>, String> decodeTextMateTokenCached = new BiFunction<>() {
-		private static final long EXPIRE_AFTER_ACCESS_MS = 5_000;
-
-		static final class CacheEntry {
-			CacheEntry(final String tokenType) {
-				this.tokenType = tokenType;
-			}
-
-			final String tokenType;
-			long lastAccessed;
+	/**
+	 * The decoded token type and the interned form of a scopes list, so tokens with equal scopes share one list instance.
+	 */
+	private static final class DecodedToken {
+		final String tokenType;
+		final List<String> scopes;
+		long lastAccessed;
+
+		DecodedToken(final String tokenType, final List<String> scopes) {
+			this.tokenType = tokenType;
+			this.scopes = InternedScopes.of(scopes);
 		}
+	}
+
+	private final BiFunction<DecodeMap, List<String>, DecodedToken> decodeTextMateTokenCached = new BiFunction<>() {
+		private static final long EXPIRE_AFTER_ACCESS_MS = 5_000;
 
-		private final Map<List<String>, CacheEntry> cache = new HashMap<>();
+		private final Map<List<String>, DecodedToken> cache = new HashMap<>();
 		private long lastCacheCleanup = System.currentTimeMillis();
 
 		@Override
-		public String apply(final DecodeMap decodeMap, final List<String> scopes) {
-			final var entry = cache.computeIfAbsent(scopes, s -> new CacheEntry(decodeTextMateToken(decodeMap, s)));
+		public DecodedToken apply(final DecodeMap decodeMap, final List<String> scopes) {
+			final var entry = cache.computeIfAbsent(scopes, s -> new DecodedToken(decodeTextMateToken(decodeMap, s), s));
 			final var now = System.currentTimeMillis();
 			entry.lastAccessed = now;
 			if (now - lastCacheCleanup > EXPIRE_AFTER_ACCESS_MS) {
 				lastCacheCleanup = now;
 				cache.values().removeIf(e -> now - e.lastAccessed > EXPIRE_AFTER_ACCESS_MS);
 			}
-			return entry.tokenType;
+			return entry;
 		}
 	};
 
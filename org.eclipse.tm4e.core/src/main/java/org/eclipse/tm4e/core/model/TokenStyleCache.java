@@ -0,0 +1,86 @@
+/**
+ * Copyright (c) 2026 Sebastian Thomschke and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.tm4e.core.model;
+
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Theme dependent styles of tokens, resolved once per distinct scopes list and looked up by the interned
+ * {@link TMToken#scopes} list of a token.
+ * <p>
+ * The style last resolved for a scopes list is also stored on the interned list itself, so looking up the style of an
+ * already resolved scopes list with the same cache is a plain field read, i.e. it requires neither string building,
+ * hashing nor theme matching. A theme switch only requires a new cache, which lazily resolves the distinct scopes lists of
+ * the painted tokens again, but never a re-tokenization of the documents. The resolved styles are only weakly keyed by
+ * their scopes lists, so styles of scopes lists no longer used by any token are garbage collected.
+ * <p>
+ * Thread-safe. Styles may be resolved more than once if requested concurrently, so the resolver should be side-effect free.
+ *
+ * @param <T> the type of the resolved styles
+ */
+public final class TokenStyleCache<T> {
+
+	/**
+	 * @param cacheId the id of the {@link TokenStyleCache} that resolved the style
+	 */
+	record CachedStyle(int cacheId, Object style) {
+	}
+
+	private static final AtomicInteger NEXT_CACHE_ID = new AtomicInteger();
+
+	private final int id = NEXT_CACHE_ID.incrementAndGet();
+	private final Function<List<String>, T> resolver;
+
+	/** resolved styles by interned scopes list, guarded by this */
+	private final Map<InternedScopes, T> styles = new WeakHashMap<>();
+	private int resolvedCount;
+
+	/**
+	 * @param resolver computes the style of the tokens with the given scopes
+	 */
+	public TokenStyleCache(final Function<List<String>, T> resolver) {
+		this.resolver = resolver;
+	}
+
+	/**
+	 * @return the style of the given token
+	 */
+	@SuppressWarnings("unchecked")
+	public T get(final TMToken token) {
+		if (token.scopes instanceof final InternedScopes scopes) {
+			final var cachedStyle = scopes.cachedStyle;
+			if (cachedStyle != null && cachedStyle.cacheId == id)
+				return (T) cachedStyle.style;
+		}
+		return resolve(InternedScopes.of(token.scopes));
+	}
+
+	private synchronized T resolve(final InternedScopes scopes) {
+		var style = styles.get(scopes);
+		if (style == null) {
+			style = resolver.apply(scopes);
+			styles.put(scopes, style);
+			resolvedCount++;
+		}
+		scopes.cachedStyle = new CachedStyle(id, style);
+		return style;
+	}
+
+	/**
+	 * @return the number of distinct scopes lists resolved by this cache so far
+	 */
+	public synchronized int getResolvedCount() {
+		return resolvedCount;
+	}
+}
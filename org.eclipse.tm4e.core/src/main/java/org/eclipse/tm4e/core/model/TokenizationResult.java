@@ -18,6 +18,7 @@
 
 import java.util.List;
 
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tm4e.core.grammar.IStateStack;
 
 /**
@@ -29,6 +30,10 @@ public final class TokenizationResult {
 	final List<TMToken> tokens;
 	IStateStack endState;
 
+	/** the tokenized line text, set by {@link TMModel} so the text is not fetched again when storing the tokens */
+	@Nullable
+	String lineText;
+
 	final int actualStopOffset;
 	final boolean stoppedEarly;
 
@@ -0,0 +1,288 @@
+/**
+ * Copyright (c) 2026 Sebastian Thomschke and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.tm4e.core.model;
+
+import static java.lang.System.Logger.Level.ERROR;
+
+import java.lang.System.Logger;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Runs the background tokenization of all {@link TMModel}s on a small, shared pool of worker threads instead of one thread
+ * per model.
+ * <p>
+ * Models with pending work are queued and processed in time slices, i.e. a model whose revalidation takes long is put back
+ * at the end of the queue after each slice so other models get their turn. Models marked via
+ * {@link TMModel#setPrioritized(boolean)}, e.g. the one of the active editor, are always processed before all others.
+ * <p>
+ * The pool size defaults to half of the available processors, at least 1 and at most 4, and can be configured via the system
+ * property <code>tm4e.model.tokenizerThreads</code>. The worker threads are started on first use.
+ * <p>
+ * Models that tokenize a large block of lines in parallel, see {@link TMModel#setInitialTokenizationParallelism(int)}, run
+ * the chunks of the block on a separate, shared pool of helper threads. Its size defaults to the number of available
+ * processors minus 1, at least 1 and at most 4, and can be configured via the system property
+ * <code>tm4e.model.parallelTokenizerThreads</code>. The helper threads are started on first use and terminate when idle.
+ */
+public final class TokenizerScheduler {
+
+	public static final TokenizerScheduler INSTANCE = new TokenizerScheduler(Integer.getInteger("tm4e.model.tokenizerThreads",
+			Math.clamp(Runtime.getRuntime().availableProcessors() / 2, 1, 4)),
+			Integer.getInteger("tm4e.model.parallelTokenizerThreads",
+					Math.clamp(Runtime.getRuntime().availableProcessors() - 1, 1, 4)));
+
+	/** time after which idle helper threads of the parallel tokenization terminate */
+	private static final long PARALLEL_POOL_KEEP_ALIVE_SECONDS = 30;
+
+	public record Stats(int poolSize, int busyWorkers, int queuedJobs, int delayedJobs) {
+
+		@Override
+		public String toString() {
+			return String.format("TokenizerScheduler[poolSize=%d, busyWorkers=%d, queuedJobs=%d, delayedJobs=%d]",
+					poolSize, busyWorkers, queuedJobs, delayedJobs);
+		}
+	}
+
+	/**
+	 * A unit of work run in time slices by the scheduler, e.g. the background tokenization of one model.
+	 */
+	abstract static class Job {
+		private enum State {
+			IDLE,
+			QUEUED,
+			DELAYED,
+			RUNNING,
+			/** running and scheduled again in the meantime */
+			RUNNING_RESCHEDULED
+		}
+
+		/** guarded by the scheduler's lock */
+		private State state = State.IDLE;
+
+		/** guarded by the scheduler's lock */
+		private long runAtNanos;
+
+		/**
+		 * Runs one time slice of the job.
+		 *
+		 * @return 0 if the job has more work and wants to run again after the other queued jobs, a positive number of
+		 *         nanoseconds the job wants to wait before running again, or a negative number if the job has no more work
+		 */
+		abstract long runSlice();
+
+		abstract boolean isPrioritized();
+	}
+
+	private static final Logger LOGGER = System.getLogger(TokenizerScheduler.class.getName());
+
+	private final int poolSize;
+	private final Object lock = new Object();
+	private final ArrayDeque<Job> prioritizedQueue = new ArrayDeque<>();
+	private final ArrayDeque<Job> queue = new ArrayDeque<>();
+	private final PriorityQueue<Job> delayedQueue = new PriorityQueue<>(Comparator.comparingLong(job -> job.runAtNanos));
+	private int startedWorkers;
+	private int busyWorkers;
+
+	private final int parallelPoolSize;
+	private volatile @Nullable ExecutorService parallelPool;
+
+	TokenizerScheduler(final int poolSize) {
+		this(poolSize, 1);
+	}
+
+	TokenizerScheduler(final int poolSize, final int parallelPoolSize) {
+		this.poolSize = Math.max(1, poolSize);
+		this.parallelPoolSize = Math.max(1, parallelPoolSize);
+	}
+
+	/**
+	 * Queues the given job unless it is already queued. A delayed job is queued immediately. A running job is queued again
+	 * once the current time slice finished.
+	 */
+	void schedule(final Job job) {
+		synchronized (lock) {
+			switch (job.state) {
+				case IDLE -> enqueue(job);
+				case DELAYED -> {
+					delayedQueue.remove(job);
+					enqueue(job);
+				}
+				case RUNNING -> job.state = Job.State.RUNNING_RESCHEDULED;
+				case QUEUED, RUNNING_RESCHEDULED -> {
+					// nothing to do
+				}
+			}
+			startWorkerIfRequired();
+		}
+	}
+
+	/**
+	 * Moves a queued job to the queue matching its current {@link Job#isPrioritized() priority}.
+	 */
+	void reprioritize(final Job job) {
+		synchronized (lock) {
+			if (job.state == Job.State.QUEUED && (prioritizedQueue.remove(job) || queue.remove(job))) {
+				enqueue(job);
+			}
+		}
+	}
+
+	/**
+	 * Removes the given job from the queues. A running job is not queued again after its current time slice.
+	 */
+	void cancel(final Job job) {
+		synchronized (lock) {
+			switch (job.state) {
+				case QUEUED -> {
+					prioritizedQueue.remove(job);
+					queue.remove(job);
+					job.state = Job.State.IDLE;
+				}
+				case DELAYED -> {
+					delayedQueue.remove(job);
+					job.state = Job.State.IDLE;
+				}
+				case RUNNING_RESCHEDULED -> job.state = Job.State.RUNNING;
+				case IDLE, RUNNING -> {
+					// nothing to do
+				}
+			}
+		}
+	}
+
+	public int getPoolSize() {
+		return poolSize;
+	}
+
+	public int getParallelPoolSize() {
+		return parallelPoolSize;
+	}
+
+	/**
+	 * @return the shared pool of helper threads that tokenize chunks of large blocks of lines in parallel, created on first
+	 *         use
+	 */
+	ExecutorService getParallelPool() {
+		var parallelPool = this.parallelPool;
+		if (parallelPool == null) {
+			synchronized (lock) {
+				parallelPool = this.parallelPool;
+				if (parallelPool == null) {
+					final var threadCount = new AtomicInteger();
+					final var pool = new ThreadPoolExecutor(parallelPoolSize, parallelPoolSize,
+							PARALLEL_POOL_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+								final var thread = new Thread(runnable, "tm4e." + TokenizerScheduler.class.getSimpleName()
+										+ "-parallel-" + threadCount.incrementAndGet());
+								thread.setPriority(Thread.MIN_PRIORITY);
+								thread.setDaemon(true);
+								return thread;
+							});
+					pool.allowCoreThreadTimeOut(true);
+					parallelPool = this.parallelPool = pool;
+				}
+			}
+		}
+		return parallelPool;
+	}
+
+	public Stats getStats() {
+		synchronized (lock) {
+			return new Stats(poolSize, busyWorkers, prioritizedQueue.size() + queue.size(), delayedQueue.size());
+		}
+	}
+
+	/** must be called while holding the lock */
+	private void enqueue(final Job job) {
+		job.state = Job.State.QUEUED;
+		(job.isPrioritized() ? prioritizedQueue : queue).add(job);
+		lock.notify();
+	}
+
+	/** must be called while holding the lock */
+	private void startWorkerIfRequired() {
+		if (startedWorkers < poolSize && busyWorkers == startedWorkers) {
+			startedWorkers++;
+			final var worker = new Thread(this::runWorker, "tm4e." + TokenizerScheduler.class.getSimpleName() + "-" + startedWorkers);
+			worker.setPriority(Thread.MIN_PRIORITY);
+			worker.setDaemon(true);
+			worker.start();
+		}
+	}
+
+	private void runWorker() {
+		try {
+			while (true) {
+				final var job = take();
+				long nextRunInNanos;
+				try {
+					nextRunInNanos = job.runSlice();
+				} catch (final RuntimeException ex) {
+					LOGGER.log(ERROR, ex.getMessage(), ex);
+					nextRunInNanos = -1;
+				}
+
+				synchronized (lock) {
+					busyWorkers--;
+					if (job.state == Job.State.RUNNING_RESCHEDULED || job.state == Job.State.RUNNING && nextRunInNanos == 0) {
+						enqueue(job);
+					} else if (job.state == Job.State.RUNNING && nextRunInNanos > 0) {
+						job.state = Job.State.DELAYED;
+						job.runAtNanos = System.nanoTime() + nextRunInNanos;
+						delayedQueue.add(job);
+						lock.notify();
+					} else {
+						job.state = Job.State.IDLE;
+					}
+				}
+			}
+		} catch (final InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private Job take() throws InterruptedException {
+		synchronized (lock) {
+			while (true) {
+				final long now = System.nanoTime();
+				@Nullable
+				Job delayed;
+				while ((delayed = delayedQueue.peek()) != null && delayed.runAtNanos - now <= 0) {
+					delayedQueue.poll();
+					enqueue(delayed);
+				}
+
+				var job = prioritizedQueue.poll();
+				if (job == null) {
+					job = queue.poll();
+				}
+				if (job != null) {
+					job.state = Job.State.RUNNING;
+					busyWorkers++;
+					return job;
+				}
+
+				if (delayed == null) {
+					lock.wait();
+				} else {
+					final long waitNanos = delayed.runAtNanos - now;
+					lock.wait(waitNanos / 1_000_000, (int) (waitNanos % 1_000_000));
+				}
+			}
+		}
+	}
+}
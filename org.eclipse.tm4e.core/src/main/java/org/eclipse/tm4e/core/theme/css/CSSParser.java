@@ -20,14 +20,12 @@
 import org.eclipse.tm4e.core.internal.theme.css.CSSConditionFactory;
 import org.eclipse.tm4e.core.internal.theme.css.CSSDocumentHandler;
 import org.eclipse.tm4e.core.internal.theme.css.CSSSelectorFactory;
-import org.eclipse.tm4e.core.internal.theme.css.CSSStyle;
-import org.eclipse.tm4e.core.internal.theme.css.ExtendedSelector;
+import org.eclipse.tm4e.core.internal.theme.css.CSSStyleIndex;
 import org.eclipse.tm4e.core.internal.theme.css.sac.SACParserFactory;
 import org.eclipse.tm4e.core.theme.IStyle;
 import org.w3c.css.sac.CSSException;
 import org.w3c.css.sac.InputSource;
 import org.w3c.css.sac.Parser;
-import org.w3c.css.sac.SelectorList;
 
 /**
  * CSS Parser to parse style for TextMate syntax coloring.
@@ -42,6 +40,9 @@ private static InputSource toSource(final InputStream source) {
 
 	protected final CSSDocumentHandler handler = new CSSDocumentHandler();
 
+	/** class name index of the parsed styles, built after parsing or on the first lookup, see {@link #getBestStyle(String...)} */
+	private volatile @Nullable CSSStyleIndex index;
+
 	protected CSSParser() {
 	}
 
@@ -62,28 +63,15 @@ public CSSParser(final InputSource source, final Parser parser) throws CSSExcept
 		parser.setConditionFactory(CSSConditionFactory.INSTANCE);
 		parser.setSelectorFactory(CSSSelectorFactory.INSTANCE);
 		parser.parseStyleSheet(source);
+		index = new CSSStyleIndex(handler.getStyles());
 	}
 
 	public @Nullable IStyle getBestStyle(final String... cssClassNames) {
-		int bestSpecificity = 0;
-		IStyle bestStyle = null;
-		for (final IStyle style : handler.getStyles()) {
-			final SelectorList list = ((CSSStyle) style).selectorList;
-			for (int i = 0, l = list.getLength(); i < l; i++) {
-				final var selector = (ExtendedSelector) list.item(i);
-
-				final int nbMatch = selector.nbMatch(cssClassNames);
-				if (nbMatch < 1)
-					continue;
-
-				if ((nbMatch >= bestSpecificity || bestStyle == null)
-						&& nbMatch == selector.nbClass()) {
-					bestStyle = style;
-					bestSpecificity = nbMatch;
-				}
-			}
+		var index = this.index;
+		if (index == null) {
+			index = this.index = new CSSStyleIndex(handler.getStyles());
 		}
-		return bestStyle;
+		return index.getBestStyle(cssClassNames);
 	}
 
 	public List<IStyle> getStyles() {
@@ -19,6 +19,15 @@ public final class BenchmarkRunner {
 
 	public static void run(final int warmUpRounds, final int benchmarkRounds, final int opsPerBenchmarkRound, final Runnable benchmark)
 			throws InterruptedException {
+		run(warmUpRounds, benchmarkRounds, opsPerBenchmarkRound, 0, benchmark);
+	}
+
+	/**
+	 * @param linesPerOp number of lines processed by one run of the benchmark, used to report the bytes allocated per line,
+	 *            or 0 to not report the allocations per line
+	 */
+	public static void run(final int warmUpRounds, final int benchmarkRounds, final int opsPerBenchmarkRound, final int linesPerOp,
+			final Runnable benchmark) throws InterruptedException {
 		Locale.setDefault(Locale.ENGLISH);
 		System.out.println("JVM Vendor: " + System.getProperty("java.vendor"));
 		System.out.println("JVM Version: " + System.getProperty("java.version"));
@@ -37,20 +46,20 @@ public static void run(final int warmUpRounds, final int benchmarkRounds, final
 			runRound("warm-up", r, warmUpRounds,
 					5 * opsPerBenchmarkRound, // use more iterations to force JIT to kick in
 					false, // don't try to measure heap usage as warm-up rounds will trigger gc
-					benchmark);
+					linesPerOp, benchmark);
 		}
 
 		System.out.println(SEPARATOR);
 
 		// benchmark
 		for (int r = 1; r <= benchmarkRounds; r++) {
-			runRound("benchmark", r, benchmarkRounds, opsPerBenchmarkRound, true, benchmark);
+			runRound("benchmark", r, benchmarkRounds, opsPerBenchmarkRound, true, linesPerOp, benchmark);
 		}
 		System.out.println("DONE.");
 	}
 
 	private static void runRound(final String label, final int round, final int totalRounds, final int iterations,
-			final boolean measureHeapUsage, final Runnable benchmark) throws InterruptedException {
+			final boolean measureHeapUsage, final int linesPerOp, final Runnable benchmark) throws InterruptedException {
 		// spinning up a thread so the JVM hopefully runs the benchmark on different cores each round
 		final var t = new Thread(() -> {
 			System.out.println(label + " " + round + "/" + totalRounds + "...");
@@ -67,6 +76,7 @@ private static void runRound(final String label, final int round, final int tota
 			}
 
 			final var startFreeMem = RUNTIME.freeMemory();
+			final var startAllocatedBytes = getAllocatedBytesOfCurrentThread();
 			final var startAt = System.currentTimeMillis();
 
 			for (int i = 0; i < iterations; i++) {
@@ -74,6 +84,7 @@ private static void runRound(final String label, final int round, final int tota
 			}
 
 			final var durationMS = System.currentTimeMillis() - startAt;
+			final var allocatedBytes = getAllocatedBytesOfCurrentThread() - startAllocatedBytes;
 			final var durationMSPerIteration = durationMS / (float) iterations;
 			final var iterationsPerSecond = iterations / (float) durationMS * 1_000;
 
@@ -85,6 +96,15 @@ private static void runRound(final String label, final int round, final int tota
 						iterationsPerSecond,
 						durationMSPerIteration,
 						heapBytesPerIteration / 1024 / 1024));
+				if (startAllocatedBytes >= 0) {
+					final var allocatedBytesPerIteration = allocatedBytes / (float) iterations;
+					System.out.println(linesPerOp > 0
+							? String.format(" -> allocated: %,6.3f MB/op | %,9.1f bytes/line",
+									allocatedBytesPerIteration / 1024 / 1024,
+									allocatedBytesPerIteration / linesPerOp)
+							: String.format(" -> allocated: %,6.3f MB/op",
+									allocatedBytesPerIteration / 1024 / 1024));
+				}
 			} else {
 				System.out.println(String.format(
 						" -> result: %,5d ms/round | %,7.2f ops/s | %,5.2f ms/op",
@@ -98,6 +118,17 @@ private static void runRound(final String label, final int round, final int tota
 		t.join();
 	}
 
+	/**
+	 * @return the bytes allocated by the current thread so far, or -1 if the JVM does not support measuring it
+	 */
+	private static long getAllocatedBytesOfCurrentThread() {
+		if (ManagementFactory.getThreadMXBean() instanceof final com.sun.management.ThreadMXBean threadMXBean
+				&& threadMXBean.isThreadAllocatedMemorySupported()) {
+			return threadMXBean.getCurrentThreadAllocatedBytes();
+		}
+		return -1;
+	}
+
 	private BenchmarkRunner() {
 	}
 }
@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) 2026 Sebastian Thomschke and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.tm4e.core.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.tm4e.core.internal.utils.StringUtils;
+import org.eclipse.tm4e.core.theme.css.CSSParser;
+
+/**
+ * Loads a generated CSS theme with several hundred rules and looks up the styles of TextMate token types.
+ * <p>
+ * Run with the argument <code>load</code> to measure parsing the theme incl. building its class name index, otherwise
+ * {@link CSSParser#getBestStyle(String...)} lookups are measured.
+ */
+public final class CSSThemeBenchmark implements Runnable {
+
+	private static final int WARMUP_ROUNDS = 3;
+	private static final int BENCHMARK_ROUNDS = 3;
+
+	private static final String[] SCOPES = { "comment", "constant", "entity", "invalid", "keyword", "markup", "meta", "storage",
+			"string", "support", "variable", "punctuation" };
+	private static final String[] QUALIFIERS = { "block", "line", "numeric", "character", "name", "function", "class", "type",
+			"control", "operator", "other", "tag", "attribute", "quoted", "double", "single", "language", "definition",
+			"begin", "end" };
+	private static final String[] LANGUAGES = { "java", "js", "ts", "html", "css", "json", "yaml", "xml" };
+
+	public static void main(final String... args) throws Exception {
+		final boolean load = args.length > 0 && "load".equals(args[0]);
+		final var benchmark = new CSSThemeBenchmark(load);
+		System.out.println(String.format("CSS rules: %,d", benchmark.parser.getStyles().size()));
+		System.out.println(String.format("Token types: %,d", benchmark.tokenTypes.size()));
+		BenchmarkRunner.run(WARMUP_ROUNDS, BENCHMARK_ROUNDS, load ? 50 : 500, benchmark);
+	}
+
+	private final boolean load;
+	private final String css;
+	private final CSSParser parser;
+	private final List<String[]> tokenTypes = new ArrayList<>();
+
+	CSSThemeBenchmark(final boolean load) throws Exception {
+		this.load = load;
+
+		final var sb = new StringBuilder();
+		int color = 0;
+		for (final String scope : SCOPES) {
+			sb.append('.').append(scope).append(" { color: rgb(").append(color++ % 256).append(",0,0); }\n");
+			for (final String qualifier : QUALIFIERS) {
+				sb.append('.').append(scope).append('.').append(qualifier)
+						.append(" { color: rgb(0,").append(color++ % 256).append(",0); }\n");
+				for (final String language : LANGUAGES) {
+					sb.append('.').append(scope).append('.').append(qualifier).append('.').append(language)
+							.append(" { color: rgb(0,0,").append(color++ % 256).append("); font-weight: bold; }\n");
+				}
+			}
+		}
+		css = sb.toString();
+		parser = new CSSParser(css);
+
+		for (final String scope : SCOPES) {
+			for (int i = 0; i < QUALIFIERS.length; i++) {
+				final String language = LANGUAGES[i % LANGUAGES.length];
+				tokenTypes.add(StringUtils.splitToArray(scope + "." + QUALIFIERS[i] + "." + language, '.'));
+				tokenTypes.add(StringUtils.splitToArray(
+						"meta." + QUALIFIERS[(i + 1) % QUALIFIERS.length] + "." + scope + ".unknown." + language, '.'));
+			}
+		}
+	}
+
+	@Override
+	public void run() {
+		try {
+			if (load) {
+				new CSSParser(css);
+			} else {
+				for (final String[] tokenType : tokenTypes) {
+					parser.getBestStyle(tokenType);
+				}
+			}
+		} catch (final Exception ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright (c) 2026 Sebastian Thomschke and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.tm4e.core.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import org.eclipse.tm4e.core.internal.utils.ChunkedList;
+
+/**
+ * Replays an editing session of many multi-line edits in the middle of a 500k lines document against the line index
+ * structures used by the TMModel, i.e. applies the line insertions and removals the same way
+ * <code>TMModel.TokenizerJob#applyEdit</code> does and publishes a snapshot of the lines after each edit:
+ * <ul>
+ * <li>{@link ArrayList} with an array copy as snapshot, the previous implementation
+ * <li>{@link ChunkedList} with {@link ChunkedList#snapshot()}
+ * </ul>
+ * The session is recorded once with a fixed seed: pasting and deleting blocks of 1 to 500 lines and typing line breaks,
+ * at positions spread across the whole document.
+ */
+public final class EditReplayBenchmark implements Runnable {
+
+	private static final int WARMUP_ROUNDS = 2;
+	private static final int BENCHMARK_ROUNDS = 3;
+	private static final int OPS_PER_BENCHMARK_ROUND = 5;
+
+	private static final int LINES = 500_000;
+	private static final int EDITS = 2_000;
+
+	/** an edit as passed to <code>TMModel#onLinesReplaced</code> */
+	private record Edit(int lineIndex, int replacedCount, int replacementCount) {
+	}
+
+	public static void main(final String... args) throws Exception {
+		final var session = recordSession();
+
+		System.out.println("ArrayList:");
+		BenchmarkRunner.run(WARMUP_ROUNDS, BENCHMARK_ROUNDS, OPS_PER_BENCHMARK_ROUND,
+				new EditReplayBenchmark(session, ArrayList::new, lines -> List.of(lines.toArray())));
+
+		System.out.println("ChunkedList:");
+		BenchmarkRunner.run(WARMUP_ROUNDS, BENCHMARK_ROUNDS, OPS_PER_BENCHMARK_ROUND,
+				new EditReplayBenchmark(session, ChunkedList::new, lines -> ((ChunkedList<Object>) lines).snapshot()));
+	}
+
+	private static List<Edit> recordSession() {
+		final var random = new Random(42);
+		final var session = new ArrayList<Edit>(EDITS);
+		int linesCount = LINES;
+		for (int i = 0; i < EDITS; i++) {
+			final int lineIndex = random.nextInt(linesCount);
+			final var edit = switch (random.nextInt(3)) {
+				case 0 -> new Edit(lineIndex, 1, 2 + random.nextInt(500)); // paste
+				case 1 -> new Edit(lineIndex, Math.min(1 + random.nextInt(500), linesCount - lineIndex), 1); // delete
+				default -> new Edit(lineIndex, 1, 2); // line break
+			};
+			session.add(edit);
+			linesCount += edit.replacementCount - edit.replacedCount;
+		}
+		return session;
+	}
+
+	private interface SnapshotFactory {
+		List<Object> createSnapshot(List<Object> lines);
+	}
+
+	final List<Edit> session;
+	final Supplier<List<Object>> listFactory;
+	final SnapshotFactory snapshotFactory;
+
+	EditReplayBenchmark(final List<Edit> session, final Supplier<List<Object>> listFactory,
+			final SnapshotFactory snapshotFactory) {
+		this.session = session;
+		this.listFactory = listFactory;
+		this.snapshotFactory = snapshotFactory;
+	}
+
+	@Override
+	public void run() {
+		final var lines = listFactory.get();
+		for (int i = 0; i < LINES; i++) {
+			lines.add(new Object());
+		}
+
+		List<Object> snapshot = null;
+		for (final var edit : session) {
+			final int lineDiff = edit.replacementCount - edit.replacedCount;
+			final var editRange = lines.subList(edit.lineIndex, edit.lineIndex + edit.replacedCount);
+			if (lineDiff > 0) {
+				final var additionalLines = new ArrayList<>(lineDiff);
+				for (int i = 0; i < lineDiff; i++) {
+					additionalLines.add(new Object());
+				}
+				editRange.addAll(additionalLines);
+			} else if (lineDiff < 0) {
+				editRange.subList(0, -lineDiff).clear();
+			}
+			snapshot = snapshotFactory.createSnapshot(lines);
+		}
+		if (snapshot == null || snapshot.size() != lines.size())
+			throw new IllegalStateException();
+	}
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright (c) 2026 Sebastian Thomschke and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.tm4e.core.benchmark;
+
+import java.util.Arrays;
+
+import org.eclipse.tm4e.core.grammar.IGrammar;
+import org.eclipse.tm4e.core.grammar.IStateStack;
+import org.eclipse.tm4e.core.internal.utils.ResourceUtils;
+import org.eclipse.tm4e.core.registry.IGrammarSource;
+import org.eclipse.tm4e.core.registry.Registry;
+
+/**
+ * Tokenizes an ASCII-heavy and a CJK-heavy variant of the Java file used by {@link GrammarBenchmark}.
+ * <p>
+ * The CJK variant appends a comment and a string literal with CJK text to every line, so that almost no line can be
+ * matched on single-byte strings. Run once without and once with {@code -Dtm4e.oniguruma.encoding=UTF-16} to compare
+ * UTF-8 matching with UTF-16 matching.
+ */
+public final class EncodingBenchmark {
+
+	private static final int WARMUP_ROUNDS = 3;
+	private static final int BENCHMARK_ROUNDS = 3;
+	private static final int OPS_PER_BENCHMARK_ROUND = 30;
+
+	private static final String CJK_TEXT = "変数の値を確認する 处理用户输入的数据 문자열을 반환합니다";
+
+	public static void main(final String... args) throws Exception {
+		System.out.println("Oniguruma encoding: " + System.getProperty("tm4e.oniguruma.encoding", "UTF-8"));
+
+		final var grammar = new Registry().addGrammar(IGrammarSource.fromResource(GrammarBenchmark.class,
+				"GrammarBenchmark.Java.tmLanguage.json"));
+		final String[] asciiLines;
+		try (var sourceFileReader = ResourceUtils.getResourceReader(GrammarBenchmark.class, "GrammarBenchmark.JavaFile.txt")) {
+			asciiLines = sourceFileReader.lines().toArray(String[]::new);
+		}
+		final String[] cjkLines = Arrays.stream(asciiLines)
+				.map(line -> line.isBlank() || line.stripTrailing().endsWith("*/") || line.strip().startsWith("*")
+						? line
+						: line + " /* " + CJK_TEXT + " */ String s = \"" + CJK_TEXT + "\";")
+				.toArray(String[]::new);
+
+		System.out.println("ASCII-heavy corpus:");
+		BenchmarkRunner.run(WARMUP_ROUNDS, BENCHMARK_ROUNDS, OPS_PER_BENCHMARK_ROUND, asciiLines.length,
+				() -> tokenize(grammar, asciiLines));
+		System.out.println("CJK-heavy corpus:");
+		BenchmarkRunner.run(WARMUP_ROUNDS, BENCHMARK_ROUNDS, OPS_PER_BENCHMARK_ROUND, cjkLines.length,
+				() -> tokenize(grammar, cjkLines));
+	}
+
+	private static void tokenize(final IGrammar grammar, final String[] lines) {
+		IStateStack state = null;
+		for (final var line : lines) {
+			state = grammar.tokenizeLine(line, state, null).getRuleStack();
+		}
+	}
+
+	private EncodingBenchmark() {
+	}
+}
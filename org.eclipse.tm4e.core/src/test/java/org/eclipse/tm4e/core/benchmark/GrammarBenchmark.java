@@ -13,6 +13,8 @@
 
 import org.eclipse.tm4e.core.grammar.IGrammar;
 import org.eclipse.tm4e.core.grammar.IStateStack;
+import org.eclipse.tm4e.core.internal.grammar.Grammar;
+import org.eclipse.tm4e.core.internal.oniguruma.OnigRegexCache;
 import org.eclipse.tm4e.core.internal.utils.ResourceUtils;
 import org.eclipse.tm4e.core.registry.IGrammarSource;
 import org.eclipse.tm4e.core.registry.Registry;
@@ -24,7 +26,10 @@ public final class GrammarBenchmark implements Runnable {
 	private static final int OPS_PER_BENCHMARK_ROUND = 50;
 
 	public static void main(final String... args) throws Exception {
-		BenchmarkRunner.run(WARMUP_ROUNDS, BENCHMARK_ROUNDS, OPS_PER_BENCHMARK_ROUND, new GrammarBenchmark());
+		final var benchmark = new GrammarBenchmark();
+		BenchmarkRunner.run(WARMUP_ROUNDS, BENCHMARK_ROUNDS, OPS_PER_BENCHMARK_ROUND, benchmark.sourceCode.length, benchmark);
+		System.out.println(OnigRegexCache.INSTANCE.getStats());
+		System.out.println(((Grammar) benchmark.grammar).getAttributedScopeStackCacheStats());
 	}
 
 	final IGrammar grammar;
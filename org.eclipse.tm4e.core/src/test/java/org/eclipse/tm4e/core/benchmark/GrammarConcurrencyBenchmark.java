@@ -0,0 +1,73 @@
+/**
+ * Copyright (c) 2026 Sebastian Thomschke and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.tm4e.core.benchmark;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Measures the throughput of multiple threads tokenizing the {@link GrammarBenchmark} source file with one shared
+ * grammar instance.
+ * <p>
+ * The number of threads can be configured via the system property <code>tm4e.benchmark.threads</code> and defaults to the
+ * number of available processors. One operation tokenizes the source file once per thread.
+ */
+public final class GrammarConcurrencyBenchmark implements Runnable {
+
+	private static final int WARMUP_ROUNDS = 3;
+	private static final int BENCHMARK_ROUNDS = 3;
+	private static final int OPS_PER_BENCHMARK_ROUND = 20;
+
+	private static final int THREADS = Integer.getInteger("tm4e.benchmark.threads", Runtime.getRuntime().availableProcessors());
+
+	public static void main(final String... args) throws Exception {
+		System.out.println("Tokenizer Threads: " + THREADS);
+		final var benchmark = new GrammarConcurrencyBenchmark();
+		try {
+			BenchmarkRunner.run(WARMUP_ROUNDS, BENCHMARK_ROUNDS, OPS_PER_BENCHMARK_ROUND, benchmark);
+		} finally {
+			benchmark.executor.shutdownNow();
+		}
+	}
+
+	private final GrammarBenchmark singleThreaded;
+	private final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+	GrammarConcurrencyBenchmark() throws Exception {
+		singleThreaded = new GrammarBenchmark();
+	}
+
+	/**
+	 * Tokenize all lines of the pre-loaded source file on each thread in parallel
+	 */
+	@Override
+	public void run() {
+		final var tasks = new ArrayList<Callable<Void>>(THREADS);
+		for (int i = 0; i < THREADS; i++) {
+			tasks.add(() -> {
+				singleThreaded.run();
+				return null;
+			});
+		}
+		try {
+			for (final var future : executor.invokeAll(tasks)) {
+				future.get();
+			}
+		} catch (final InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(ex);
+		} catch (final ExecutionException ex) {
+			throw new RuntimeException(ex.getCause());
+		}
+	}
+}
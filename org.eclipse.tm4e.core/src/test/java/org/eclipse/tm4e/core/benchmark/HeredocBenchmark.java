@@ -0,0 +1,120 @@
+/**
+ * Copyright (c) 2026 Sebastian Thomschke and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.tm4e.core.benchmark;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.tm4e.core.grammar.IGrammar;
+import org.eclipse.tm4e.core.grammar.IStateStack;
+import org.eclipse.tm4e.core.internal.grammar.Grammar;
+import org.eclipse.tm4e.core.internal.grammar.ResolvedEndRules;
+import org.eclipse.tm4e.core.internal.oniguruma.OnigRegexCache;
+import org.eclipse.tm4e.core.internal.oniguruma.OnigScanner;
+import org.eclipse.tm4e.core.registry.IGrammarSource;
+import org.eclipse.tm4e.core.registry.Registry;
+
+/**
+ * Tokenizes a generated shell script consisting mostly of here-documents with varying delimiters.
+ * <p>
+ * The end pattern of a here-document contains a back reference to its delimiter, so each here-document requires a scanner
+ * for the resolved end pattern. The benchmark runs in two forked JVMs:
+ * <ul>
+ * <li>once as is, with the compiled rules cached per resolved source</li>
+ * <li>once as baseline with {@code -Dtm4e.regexCache.maxSize=0}, so {@link OnigRegexCache} compiles every regex it is
+ * asked for, and the benchmark itself additionally compiles all patterns of the rule for the resolved end pattern of
+ * every here-document, like the tokenizer did before compiled rules were cached per resolved source</li>
+ * </ul>
+ * The regex lookups and compilations reported by {@link OnigRegexCache} after each run show how many patterns had to be
+ * compiled in each mode.
+ */
+public final class HeredocBenchmark implements Runnable {
+
+	private static final int WARMUP_ROUNDS = 3;
+	private static final int BENCHMARK_ROUNDS = 3;
+	private static final int OPS_PER_BENCHMARK_ROUND = 20;
+
+	private static final String[] DELIMITERS = { "EOF", "END", "SQL", "JSON", "SCRIPT", "HTML", "DATA", "MSG" };
+
+	private static final String RUN_IN_PROCESS_ARG = "--in-process";
+	private static final String BASELINE_ARG = "--baseline";
+
+	public static void main(final String... args) throws Exception {
+		if (args.length > 0 && RUN_IN_PROCESS_ARG.equals(args[0])) {
+			final var benchmark = new HeredocBenchmark(args.length > 1 && BASELINE_ARG.equals(args[1]));
+			BenchmarkRunner.run(WARMUP_ROUNDS, BENCHMARK_ROUNDS, OPS_PER_BENCHMARK_ROUND, benchmark.sourceCode.length, benchmark);
+			final var stats = OnigRegexCache.INSTANCE.getStats();
+			System.out.println(String.format("Regex lookups: %,d | compiled regexes: %,d", stats.hits() + stats.misses(),
+					stats.misses()));
+			System.out.println(stats);
+			System.out.println(((Grammar) benchmark.grammar).getAttributedScopeStackCacheStats());
+			return;
+		}
+
+		System.out.println("=== compiled rules cached per resolved source ===");
+		fork(false);
+		System.out.println("=== baseline: all patterns compiled per here-document, regex cache disabled ===");
+		fork(true);
+	}
+
+	private static void fork(final boolean baseline) throws Exception {
+		final var command = new ArrayList<>(List.of(
+				ProcessHandle.current().info().command().orElse("java"),
+				"-cp", System.getProperty("java.class.path"),
+				"-Dtm4e.regexCache.maxSize=" + (baseline ? 0 : OnigRegexCache.DEFAULT_MAX_SIZE),
+				HeredocBenchmark.class.getName(), RUN_IN_PROCESS_ARG));
+		if (baseline) {
+			command.add(BASELINE_ARG);
+		}
+		final var process = new ProcessBuilder(command)
+				.inheritIO()
+				.start();
+		if (process.waitFor() != 0)
+			throw new IllegalStateException("Benchmark process failed with exit code " + process.exitValue());
+	}
+
+	final IGrammar grammar;
+	final String[] sourceCode;
+	final boolean baseline;
+
+	HeredocBenchmark(final boolean baseline) throws Exception {
+		this.baseline = baseline;
+		grammar = new Registry().addGrammar(IGrammarSource.fromFile(
+				Paths.get("../org.eclipse.tm4e.language_pack/syntaxes/shellscript/shellscript.tmLanguage.json")));
+
+		final var lines = new ArrayList<String>();
+		for (int i = 0; i < 2_000; i++) {
+			final var delimiter = DELIMITERS[i % DELIMITERS.length];
+			lines.add("cat > /tmp/file" + i + ".txt <<" + (i % 2 == 0 ? delimiter : "'" + delimiter + "'"));
+			lines.add("line one of document " + i + " with $VAR and ${OTHER}");
+			lines.add("  line two: " + delimiter.toLowerCase() + " is not the end");
+			lines.add(delimiter);
+			lines.add("echo \"done with " + i + "\"");
+		}
+		sourceCode = lines.toArray(String[]::new);
+		System.out.println(String.format("Source Code lines: %,d", sourceCode.length));
+	}
+
+	@Override
+	public void run() {
+		IStateStack state = null;
+		for (final var line : sourceCode) {
+			final var prevEndRule = state == null ? null : ResolvedEndRules.getEndRule(state);
+			state = grammar.tokenizeLine(line, state, null).getRuleStack();
+			if (baseline) {
+				final var endRule = ResolvedEndRules.getEndRule(state);
+				if (endRule != null && !endRule.equals(prevEndRule)) {
+					new OnigScanner(ResolvedEndRules.compile(grammar, state).debugRegExps);
+				}
+			}
+		}
+	}
+}
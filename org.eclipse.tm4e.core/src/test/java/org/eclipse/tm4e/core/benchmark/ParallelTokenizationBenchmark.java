@@ -0,0 +1,119 @@
+/**
+ * Copyright (c) 2026 Sebastian Thomschke and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.tm4e.core.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.tm4e.core.grammar.IGrammar;
+import org.eclipse.tm4e.core.internal.utils.ResourceUtils;
+import org.eclipse.tm4e.core.model.ITMModel.BackgroundTokenizationState;
+import org.eclipse.tm4e.core.model.TMModel;
+import org.eclipse.tm4e.core.model.TokenizerScheduler;
+import org.eclipse.tm4e.core.registry.IGrammarSource;
+import org.eclipse.tm4e.core.registry.Registry;
+
+/**
+ * Measures the time until a {@link TMModel} of a 200k lines document is fully tokenized, i.e. the time-to-fully-colored
+ * after opening the document, with the initial tokenization running on 1, 4 and 16 threads.
+ * <p>
+ * The chunks of the parallel tokenization run on the shared helper pool of the {@link TokenizerScheduler}, whose size is
+ * fixed when the scheduler is initialized. Each parallelism is therefore measured in a forked JVM with
+ * {@code -Dtm4e.model.parallelTokenizerThreads} set to the parallelism, and the effective pool size is printed.
+ * <p>
+ * The document consists of the {@link GrammarBenchmark} source file repeated many times. The line tokenization cache is
+ * disabled, since it would otherwise serve most of the repeated lines.
+ */
+public final class ParallelTokenizationBenchmark implements Runnable {
+
+	private static final int WARMUP_ROUNDS = 1;
+	private static final int BENCHMARK_ROUNDS = 2;
+	private static final int OPS_PER_BENCHMARK_ROUND = 1;
+
+	private static final int LINES = 200_000;
+	private static final int[] PARALLELISMS = { 1, 4, 16 };
+
+	private static final String RUN_IN_PROCESS_ARG = "--in-process";
+
+	public static void main(final String... args) throws Exception {
+		if (args.length > 1 && RUN_IN_PROCESS_ARG.equals(args[0])) {
+			final int parallelism = Integer.parseInt(args[1]);
+			System.out.println("Threads: " + parallelism + " | helper pool size: "
+					+ TokenizerScheduler.INSTANCE.getParallelPoolSize());
+			final var benchmark = new ParallelTokenizationBenchmark(parallelism);
+			BenchmarkRunner.run(WARMUP_ROUNDS, BENCHMARK_ROUNDS, OPS_PER_BENCHMARK_ROUND, benchmark);
+			return;
+		}
+
+		System.out.println("Available Processors: " + Runtime.getRuntime().availableProcessors());
+		for (final int parallelism : PARALLELISMS) {
+			fork(parallelism);
+		}
+	}
+
+	private static void fork(final int parallelism) throws Exception {
+		final var process = new ProcessBuilder(
+				ProcessHandle.current().info().command().orElse("java"),
+				"-cp", System.getProperty("java.class.path"),
+				"-Dtm4e.lineTokenizationCache.maxSize=0",
+				"-Dtm4e.model.parallelTokenizerThreads=" + parallelism,
+				ParallelTokenizationBenchmark.class.getName(), RUN_IN_PROCESS_ARG, Integer.toString(parallelism))
+				.inheritIO()
+				.start();
+		if (process.waitFor() != 0)
+			throw new IllegalStateException("Benchmark process failed with exit code " + process.exitValue());
+	}
+
+	final IGrammar grammar;
+	final List<String> sourceCode;
+	final int parallelism;
+
+	ParallelTokenizationBenchmark(final int parallelism) throws Exception {
+		this.parallelism = parallelism;
+		grammar = new Registry().addGrammar(IGrammarSource.fromResource(GrammarBenchmark.class, "GrammarBenchmark.Java.tmLanguage.json"));
+
+		final List<String> sourceFile;
+		try (var sourceFileReader = ResourceUtils.getResourceReader(GrammarBenchmark.class, "GrammarBenchmark.JavaFile.txt")) {
+			sourceFile = sourceFileReader.lines().toList();
+		}
+		sourceCode = new ArrayList<>(LINES);
+		while (sourceCode.size() < LINES) {
+			sourceCode.addAll(sourceFile.subList(0, Math.min(sourceFile.size(), LINES - sourceCode.size())));
+		}
+	}
+
+	/**
+	 * Opens the document and waits until all lines are tokenized
+	 */
+	@Override
+	public void run() {
+		final var model = new TMModel(sourceCode.size()) {
+			@Override
+			public String getLineText(final int lineIndex) throws Exception {
+				return sourceCode.get(lineIndex);
+			}
+		};
+		try {
+			model.setInitialTokenizationParallelism(parallelism);
+			model.setGrammar(grammar);
+			model.addModelTokensChangedListener(event -> {
+			});
+			while (model.getLineTokens(sourceCode.size() - 1) == null
+					|| model.getBackgroundTokenizationState() != BackgroundTokenizationState.COMPLETED) {
+				Thread.sleep(1);
+			}
+		} catch (final InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(ex);
+		} finally {
+			model.dispose();
+		}
+	}
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright (c) 2026 Sebastian Thomschke and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.tm4e.core.benchmark;
+
+import static org.eclipse.tm4e.core.internal.utils.NullSafetyHelper.castNonNull;
+
+import java.util.List;
+
+import org.eclipse.tm4e.core.internal.grammar.ScopeStack;
+import org.eclipse.tm4e.core.internal.theme.Theme;
+import org.eclipse.tm4e.core.internal.theme.raw.RawThemeReader;
+import org.eclipse.tm4e.core.registry.IThemeSource;
+
+/**
+ * Matches the scope paths of the <code>ThemeMatchingTest</code> fixtures against their themes.
+ * <p>
+ * Run with the argument <code>fresh</code> to create new scope paths for every match, which measures the compiled
+ * parent scope matching. Otherwise the same scope path instances are matched repeatedly, as the tokenizer does, which
+ * measures the per scope path memoization.
+ */
+public final class ThemeMatchingBenchmark implements Runnable {
+
+	private static final int WARMUP_ROUNDS = 3;
+	private static final int BENCHMARK_ROUNDS = 3;
+	private static final int OPS_PER_BENCHMARK_ROUND = 20_000;
+
+	private static final String CAN_MATCH_THEME = """
+		{"settings": [
+			{ "settings": { "foreground": "#F8F8F2", "background": "#272822" } },
+			{ "scope": "source, something", "settings": { "background": "#100000" } },
+			{ "scope": ["bar", "baz"], "settings": { "background": "#200000" } },
+			{ "scope": "source.css selector bar", "settings": { "fontStyle": "bold" } },
+			{ "scope": "constant", "settings": { "fontStyle": "italic", "foreground": "#300000" } },
+			{ "scope": "constant.numeric", "settings": { "foreground": "#400000" } },
+			{ "scope": "constant.numeric.hex", "settings": { "fontStyle": "bold" } },
+			{ "scope": "constant.numeric.oct", "settings": { "fontStyle": "bold italic underline" } },
+			{ "scope": "constant.numeric.dec", "settings": { "fontStyle": "", "foreground": "#500000" } },
+			{ "scope": "storage.object.bar", "settings": { "fontStyle": "", "foreground": "#600000" } }
+		]}""";
+
+	private static final String PARENT_MATCHES_THEME = """
+		{"settings": [
+			{ "settings": { "foreground": "#100000", "background": "#200000" } },
+			{ "scope": "punctuation.definition.string.begin.html", "settings": { "foreground": "#300000" } },
+			{ "scope": "meta.tag punctuation.definition.string", "settings": { "foreground": "#400000" } },
+			{ "scope": "c a", "settings": { "foreground": "#300000" } },
+			{ "scope": "d a.b", "settings": { "foreground": "#400000" } },
+			{ "scope": "a", "settings": { "foreground": "#500000" } },
+			{ "scope": "meta.tag entity", "settings": { "foreground": "#300000" } },
+			{ "scope": "meta.selector.css entity.name.tag", "settings": { "foreground": "#400000" } },
+			{ "scope": "entity", "settings": { "foreground": "#500000" } },
+			{ "scope": "meta.structure.dictionary.json string.quoted.double.json", "settings": { "foreground": "#ffffff" } },
+			{ "scope": "meta.structure.dictionary.value.json string.quoted.double.json", "settings": { "foreground": "#FF410D" } },
+			{ "scope": "source.json > meta.structure.dictionary.json > string", "settings": { "fontStyle": "italic" } }
+		]}""";
+
+	private static final List<String[]> CAN_MATCH_PATHS = List.of(
+			new String[] { "source" },
+			new String[] { "source.ts" },
+			new String[] { "something.tss" },
+			new String[] { "baz.ts" },
+			new String[] { "constant.string" },
+			new String[] { "constant.numeric.hex.baz" },
+			new String[] { "constant.numeric.oct" },
+			new String[] { "constant.numeric.dec.baz" },
+			new String[] { "storage.object.bart" },
+			new String[] { "asdfg" },
+			new String[] { "source.css", "selector", "bar" });
+
+	private static final List<String[]> PARENT_MATCHES_PATHS = List.of(
+			new String[] { "punctuation.definition.string.begin.html" },
+			new String[] { "text.html.basic", "meta.tag.inline.a.html", "punctuation.definition.string.begin.html" },
+			new String[] { "d", "a.b" },
+			new String[] { "c", "d", "a.b.c" },
+			new String[] { "text.html.cshtml", "meta.tag.structure.any.html", "entity.name.tag.structure.any.html" },
+			new String[] { "source.css", "meta.selector.css", "entity.name.tag.css" },
+			new String[] { "source.json", "meta.structure.dictionary.json", "meta.structure.dictionary.value.json",
+					"string.quoted.double.json" },
+			new String[] { "source.json", "meta.structure.dictionary.json", "string.quoted.double.json" });
+
+	public static void main(final String... args) throws Exception {
+		final boolean freshPaths = args.length > 0 && "fresh".equals(args[0]);
+		System.out.println("Scope paths: " + (freshPaths ? "fresh instance per match" : "reused instances"));
+		BenchmarkRunner.run(WARMUP_ROUNDS, BENCHMARK_ROUNDS, OPS_PER_BENCHMARK_ROUND, new ThemeMatchingBenchmark(freshPaths));
+	}
+
+	private final boolean freshPaths;
+	private final Theme canMatchTheme;
+	private final Theme parentMatchesTheme;
+	private final ScopeStack[] canMatchPaths;
+	private final ScopeStack[] parentMatchesPaths;
+
+	ThemeMatchingBenchmark(final boolean freshPaths) throws Exception {
+		this.freshPaths = freshPaths;
+		canMatchTheme = createTheme(CAN_MATCH_THEME);
+		parentMatchesTheme = createTheme(PARENT_MATCHES_THEME);
+		canMatchPaths = CAN_MATCH_PATHS.stream().map(path -> castNonNull(ScopeStack.from(path))).toArray(ScopeStack[]::new);
+		parentMatchesPaths = PARENT_MATCHES_PATHS.stream().map(path -> castNonNull(ScopeStack.from(path))).toArray(ScopeStack[]::new);
+	}
+
+	private static Theme createTheme(final String themeAsJsonString) throws Exception {
+		return Theme.createFromRawTheme(RawThemeReader.readTheme(
+				IThemeSource.fromString(IThemeSource.ContentType.JSON, themeAsJsonString)),
+				null);
+	}
+
+	@Override
+	public void run() {
+		if (freshPaths) {
+			for (final var path : CAN_MATCH_PATHS) {
+				canMatchTheme.match(ScopeStack.from(path));
+			}
+			for (final var path : PARENT_MATCHES_PATHS) {
+				parentMatchesTheme.match(ScopeStack.from(path));
+			}
+		} else {
+			for (final var path : canMatchPaths) {
+				canMatchTheme.match(path);
+			}
+			for (final var path : parentMatchesPaths) {
+				parentMatchesTheme.match(path);
+			}
+		}
+	}
+}
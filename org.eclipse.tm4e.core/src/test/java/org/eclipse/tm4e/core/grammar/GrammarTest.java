@@ -106,6 +106,34 @@ void testTokenizeConcurrent() throws Exception {
 		}
 	}
 
+	@Test
+	void testTokenizeConcurrentProducesSameTokensAsSequential() throws Exception {
+		final var registry = new Registry();
+		final var grammar = registry.addGrammar(fromResource(Data.class, "TypeScript.tmLanguage.json"));
+		final String content;
+		try (var reader = ResourceUtils.getResourceReader(Data.class, "raytracer.ts")) {
+			content = reader.lines().collect(Collectors.joining("\n"));
+		}
+
+		final List<String> expected = TokenizationUtils.tokenizeText(content, grammar)
+				.map(r -> Arrays.toString(r.getTokens()))
+				.toList();
+
+		final int numThreads = 8;
+		try (final var executor = Executors.newFixedThreadPool(numThreads)) {
+			final List<Future<List<String>>> futures = new ArrayList<>();
+			for (int i = 0; i < numThreads; i++) {
+				futures.add(executor.submit(() -> TokenizationUtils.tokenizeText(content, grammar)
+						.map(r -> Arrays.toString(r.getTokens()))
+						.toList()));
+			}
+
+			for (final var future : futures) {
+				assertThat(future.get()).isEqualTo(expected);
+			}
+		}
+	}
+
 	@Test
 	void testTokenizeSingleLineExpression() throws Exception {
 		final var registry = new Registry();
@@ -0,0 +1,40 @@
+/**
+ * Copyright (c) 2026 Sebastian Thomschke and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.tm4e.core.internal.grammar;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tm4e.core.grammar.IGrammar;
+import org.eclipse.tm4e.core.grammar.IStateStack;
+import org.eclipse.tm4e.core.internal.rule.CompiledRule;
+
+/**
+ * Gives benchmarks outside of this package access to the rule compiled for the resolved end pattern of a state.
+ */
+public final class ResolvedEndRules {
+
+	/**
+	 * @return the resolved end pattern of the innermost rule of the given state or <code>null</code> if it has none
+	 */
+	public static @Nullable String getEndRule(final IStateStack state) {
+		return ((StateStack) state).endRule;
+	}
+
+	/**
+	 * @return the rule of the given state compiled for its resolved end pattern
+	 */
+	public static CompiledRule compile(final IGrammar grammar, final IStateStack state) {
+		final var grammarImpl = (Grammar) grammar;
+		final var stateImpl = (StateStack) state;
+		return stateImpl.getRule(grammarImpl).compile(grammarImpl, stateImpl.endRule);
+	}
+
+	private ResolvedEndRules() {
+	}
+}
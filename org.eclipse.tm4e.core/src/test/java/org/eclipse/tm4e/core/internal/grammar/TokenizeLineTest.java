@@ -24,9 +24,12 @@
 import org.eclipse.tm4e.core.Data;
 import org.eclipse.tm4e.core.internal.grammar.tokenattrs.EncodedTokenAttributes;
 import org.eclipse.tm4e.core.internal.grammar.tokenattrs.OptionalStandardTokenType;
+import org.eclipse.tm4e.core.internal.theme.FontStyle;
 import org.eclipse.tm4e.core.registry.IGrammarConfiguration;
 import org.eclipse.tm4e.core.registry.IGrammarSource;
 import org.eclipse.tm4e.core.registry.IRegistryOptions;
+import org.eclipse.tm4e.core.registry.IThemeSource;
+import org.eclipse.tm4e.core.registry.IThemeSource.ContentType;
 import org.eclipse.tm4e.core.registry.Registry;
 import org.junit.jupiter.api.Test;
 
@@ -164,4 +167,66 @@ void testTokenizeMultiByteLine() throws Exception {
 					.isEqualTo(expected[i]);
 		}
 	}
+
+	@Test
+	void testEndStatesAreInterned() throws Exception {
+		final var grammar = new Registry().addGrammar(IGrammarSource.fromResource(Data.class, "JavaScript.tmLanguage"));
+
+		final var state1 = grammar.tokenizeLine("var a = 1; /* first").getRuleStack();
+		final var state2 = grammar.tokenizeLine("/* second").getRuleStack();
+		final var state3 = grammar.tokenizeLine("var b = 2;").getRuleStack();
+
+		// both lines end within a block comment
+		assertThat(state1).isSameAs(state2);
+		assertThat(state1).isNotEqualTo(state3);
+		assertThat(grammar.tokenizeLine("var c = 3;").getRuleStack()).isSameAs(state3);
+
+		// continuing with equal states yields the same state again
+		assertThat(grammar.tokenizeLine("still a comment", state1, null).getRuleStack()).isSameAs(state1);
+		assertThat(grammar.tokenizeLine("end */", state2, null).getRuleStack()).isSameAs(state3);
+
+		// states are interned per grammar
+		final var otherGrammar = new Registry().addGrammar(IGrammarSource.fromResource(Data.class, "JavaScript.tmLanguage"));
+		assertThat(otherGrammar.tokenizeLine("var a = 1; /* first").getRuleStack()).isNotSameAs(state1);
+	}
+
+	@Test
+	void testPushAttributedReusesCachedChildren() throws Exception {
+		final var registry = new Registry();
+		registry.setTheme(IThemeSource.fromString(ContentType.JSON, """
+			{"tokenColors": [{"scope": "keyword", "settings": {"foreground": "#00FF00"}}]}
+			"""));
+		final var grammar = (Grammar) registry.addGrammar(IGrammarSource.fromResource(Data.class, "JavaScript.tmLanguage"));
+		final var root = AttributedScopeStack.createRoot("source.js", 0);
+
+		final var keyword = root.pushAttributed("keyword.control.js", grammar);
+		assertThat(root.pushAttributed("keyword.control.js", grammar)).isSameAs(keyword);
+		assertThat(root.pushAttributed(new String("keyword.control.js"), grammar)).isSameAs(keyword);
+		assertThat(root.pushAttributed("comment.block.js", grammar)).isNotSameAs(keyword);
+		assertThat(root.pushAttributed("keyword.control.js comment.block.js", grammar).getScopeNames())
+				.containsExactly("source.js", "keyword.control.js", "comment.block.js");
+		assertThat(root.pushAttributed("keyword.control.js comment.block.js", grammar))
+				.isSameAs(keyword.pushAttributed("comment.block.js", grammar));
+		// only the three distinct children were computed
+		final var stats = grammar.getAttributedScopeStackCacheStats();
+		assertThat(stats.pushes()).isEqualTo(7);
+		assertThat(stats.misses()).isEqualTo(3);
+		assertThat(stats.hits()).isEqualTo(4);
+		assertThat(EncodedTokenAttributes.getFontStyle(keyword.tokenAttributes)).isEqualTo(FontStyle.None);
+
+		// a theme change must invalidate the cached children
+		registry.setTheme(IThemeSource.fromString(ContentType.JSON, """
+			{"tokenColors": [{"scope": "keyword", "settings": {"fontStyle": "italic"}}]}
+			"""));
+		final var keywordWithNewTheme = root.pushAttributed("keyword.control.js", grammar);
+		assertThat(keywordWithNewTheme).isNotSameAs(keyword);
+		assertThat(EncodedTokenAttributes.getFontStyle(keywordWithNewTheme.tokenAttributes)).isEqualTo(FontStyle.Italic);
+		assertThat(root.pushAttributed("keyword.control.js", grammar)).isSameAs(keywordWithNewTheme);
+
+		// the children are cached per grammar
+		final var otherGrammar = (Grammar) new Registry().addGrammar(IGrammarSource.fromResource(Data.class,
+				"JavaScript.tmLanguage"));
+		assertThat(root.pushAttributed("keyword.control.js", otherGrammar)).isNotSameAs(keywordWithNewTheme);
+		assertThat(root.pushAttributed("keyword.control.js", grammar)).isSameAs(keywordWithNewTheme);
+	}
 }
@@ -0,0 +1,109 @@
+/**
+ * Copyright (c) 2026 Sebastian Thomschke and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.tm4e.core.internal.oniguruma;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.jcodings.specific.NonStrictUTF8Encoding;
+import org.joni.Matcher;
+import org.joni.Option;
+import org.joni.Regex;
+import org.joni.Syntax;
+import org.junit.jupiter.api.Test;
+
+class OnigPrefilterTest {
+
+	/**
+	 * @return the ASCII chars a match of the given pattern can start with, or null if the pattern has no prefilter
+	 */
+	private static @Nullable String firstChars(final String pattern, final boolean ignoreCase) {
+		final var prefilter = OnigPrefilter.of(pattern, ignoreCase);
+		if (prefilter == null)
+			return null;
+		final var sb = new StringBuilder();
+		for (char ch = 0; ch < 0x80; ch++) {
+			if (prefilter.nextCandidatePosition(new byte[] { (byte) ch }, 0, 1) == 0) {
+				sb.append(ch);
+			}
+		}
+		return sb.toString();
+	}
+
+	@Test
+	void testFirstBytes() {
+		assertThat(firstChars("abc", false)).isEqualTo("a");
+		assertThat(firstChars("foo|bar", false)).isEqualTo("bf");
+		assertThat(firstChars("\\b(?:if|else)\\b", false)).isEqualTo("ei");
+		assertThat(firstChars("(?<name>[a-c])x", false)).isEqualTo("abc");
+		assertThat(firstChars("a?b", false)).isEqualTo("ab");
+		assertThat(firstChars("a{0,2}b", false)).isEqualTo("ab");
+		assertThat(firstChars("a{1,2}b", false)).isEqualTo("a");
+		assertThat(firstChars("(?<=\\.)\\d+", false)).isEqualTo("0123456789");
+		assertThat(firstChars("(?=x)y", false)).isEqualTo("y");
+		assertThat(firstChars("^\\s*(#)", false)).isEqualTo("\t\n\u000B\f\r\u001C\u001D\u001E\u001F #");
+		assertThat(firstChars("\\{|\\}", false)).isEqualTo("{}");
+		assertThat(firstChars("ab", true)).isEqualTo("Aa");
+
+		final var negated = firstChars("[^a-z]", false);
+		assertThat(negated).contains("A", "0", " ").doesNotContain("a", "z");
+
+		// no prefilter for patterns matching the empty string, any char or using unsupported syntax
+		assertThat(firstChars("a*", false)).isNull();
+		assertThat(firstChars("(?=x)", false)).isNull();
+		assertThat(firstChars("a|", false)).isNull();
+		assertThat(firstChars(".x", false)).isNull();
+		assertThat(firstChars("(?i)abc", false)).isNull();
+		assertThat(firstChars("a\\Kb", false)).isNull();
+		assertThat(firstChars("[[:alpha:]]", false)).isNull();
+		assertThat(firstChars("\\p{Alpha}", false)).isNull();
+		assertThat(firstChars("(a", false)).isNull();
+		assertThat(firstChars("a)", false)).isNull();
+	}
+
+	@Test
+	void testSearchResultsUnchanged() {
+		final String[] patterns = {
+				"abc", "foo|bar", "\\b(?:if|else|return)\\b", "[a-c]x", "a?b", "(?<=\\.)\\w+", "(?=\\()\\(", "[^\\s\\w]",
+				"\\S+", "\\W", "[^a-z]+", "//.*$", "\"", "\\d+(\\.\\d+)?", "[äöü]", "ü|x", "\\h+", "(?<!\\w)ret",
+		};
+		final String[] inputs = {
+				"if (a == b) { return \"x\"; } // comment\n",
+				"ÄÖÜ äöü 𝄞 text.member 0.5\n",
+				"  \t\n",
+				"foo.bar(1, 2) abc ax bx cx\n",
+		};
+
+		for (final var pattern : patterns) {
+			final byte[] patternBytes = pattern.getBytes(StandardCharsets.UTF_8);
+			final var joniRegex = new Regex(patternBytes, 0, patternBytes.length, Option.CAPTURE_GROUP, NonStrictUTF8Encoding.INSTANCE,
+					Syntax.RUBY);
+			final var regExp = new OnigRegExp(pattern);
+
+			for (final var input : inputs) {
+				final var str = OnigString.of(input);
+				final byte[] inputBytes = input.getBytes(StandardCharsets.UTF_8);
+				for (int start = 0; start <= inputBytes.length; start++) {
+					if (start < inputBytes.length && (inputBytes[start] & 0xC0) == 0x80) {
+						continue; // not a char boundary
+					}
+					final Matcher matcher = joniRegex.matcher(inputBytes);
+					final int expected = matcher.search(start, inputBytes.length, Option.DEFAULT);
+					final var result = regExp.search(str, start);
+					assertThat(result == null ? Matcher.FAILED : result.locationAt(0))
+							.withFailMessage("Pattern \"%s\" on \"%s\" at %d: expected %d", pattern, input, start, expected)
+							.isEqualTo(expected);
+				}
+			}
+		}
+	}
+}
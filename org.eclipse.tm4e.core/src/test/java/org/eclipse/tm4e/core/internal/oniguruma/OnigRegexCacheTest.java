@@ -0,0 +1,83 @@
+/**
+ * Copyright (c) 2026 Sebastian Thomschke and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.tm4e.core.internal.oniguruma;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jcodings.specific.NonStrictUTF8Encoding;
+import org.joni.Option;
+import org.joni.Regex;
+import org.junit.jupiter.api.Test;
+
+class OnigRegexCacheTest {
+
+	private static Regex compile(final OnigRegexCache cache, final String pattern, final int options, final AtomicInteger compilations) {
+		final byte[] bytes = pattern.getBytes(StandardCharsets.UTF_8);
+		return cache.get(bytes, options, NonStrictUTF8Encoding.INSTANCE, () -> {
+			compilations.incrementAndGet();
+			return new Regex(bytes, 0, bytes.length, options, NonStrictUTF8Encoding.INSTANCE);
+		});
+	}
+
+	@Test
+	void testInterning() {
+		final var cache = new OnigRegexCache(10);
+		final var compilations = new AtomicInteger();
+
+		final var regex1 = compile(cache, "\\b(foo|bar)\\b", Option.CAPTURE_GROUP, compilations);
+		final var regex2 = compile(cache, "\\b(foo|bar)\\b", Option.CAPTURE_GROUP, compilations);
+		final var regex3 = compile(cache, "\\b(foo|bar)\\b", Option.CAPTURE_GROUP | Option.IGNORECASE, compilations);
+
+		assertThat(regex2).isSameAs(regex1);
+		assertThat(regex3).isNotSameAs(regex1);
+		assertThat(compilations.get()).isEqualTo(2);
+
+		final var stats = cache.getStats();
+		assertThat(stats.hits()).isEqualTo(1);
+		assertThat(stats.misses()).isEqualTo(2);
+		assertThat(stats.size()).isEqualTo(2);
+	}
+
+	@Test
+	void testEviction() {
+		final var cache = new OnigRegexCache(2);
+		final var compilations = new AtomicInteger();
+
+		compile(cache, "a", Option.CAPTURE_GROUP, compilations);
+		compile(cache, "b", Option.CAPTURE_GROUP, compilations);
+		compile(cache, "a", Option.CAPTURE_GROUP, compilations); // marks "a" as recently used
+		compile(cache, "c", Option.CAPTURE_GROUP, compilations); // evicts "b"
+		assertThat(compilations.get()).isEqualTo(3);
+
+		compile(cache, "a", Option.CAPTURE_GROUP, compilations);
+		assertThat(compilations.get()).isEqualTo(3);
+		compile(cache, "b", Option.CAPTURE_GROUP, compilations);
+		assertThat(compilations.get()).isEqualTo(4);
+
+		final var stats = cache.getStats();
+		assertThat(stats.evictions()).isEqualTo(2);
+		assertThat(stats.size()).isEqualTo(2);
+	}
+
+	@Test
+	void testOnigRegExpSharesCompiledRegex() {
+		final var statsBefore = OnigRegexCache.INSTANCE.getStats();
+		final var regexp1 = new OnigRegExp("(?<=\\s*\\.)unique-pattern-of-OnigRegexCacheTest\\w+");
+		final var regexp2 = new OnigRegExp("(?<=\\s*\\.)unique-pattern-of-OnigRegexCacheTest\\w+");
+		final var statsAfter = OnigRegexCache.INSTANCE.getStats();
+
+		assertThat(statsAfter.hits() - statsBefore.hits()).isGreaterThanOrEqualTo(1);
+		assertThat(regexp1.search(OnigString.of("  .unique-pattern-of-OnigRegexCacheTestX"), 0)).isNotNull();
+		assertThat(regexp2.search(OnigString.of("  .unique-pattern-of-OnigRegexCacheTestX"), 0)).isNotNull();
+	}
+}
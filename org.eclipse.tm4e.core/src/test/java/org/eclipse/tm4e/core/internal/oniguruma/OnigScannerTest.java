@@ -23,7 +23,7 @@ void testOnigScanner() {
 		var scanner = new OnigScanner(Arrays.asList("c", "a(b)?"));
 		OnigScannerMatch result = scanner.findNextMatch(OnigString.of("abc"), 0);
 		assert result != null;
-		assertThat(result.index).isEqualTo(1);
+		assertThat(result.getIndex()).isEqualTo(1);
 		assertThat(result.getCaptureIndices())
 				.containsExactly(
 						new OnigCaptureIndex(0, 2),
@@ -32,10 +32,64 @@ void testOnigScanner() {
 		scanner = new OnigScanner(Arrays.asList("a([b-d])c"));
 		result = scanner.findNextMatch(OnigString.of("!abcdef"), 0);
 		assert result != null;
-		assertThat(result.index).isEqualTo(0);
+		assertThat(result.getIndex()).isEqualTo(0);
 		assertThat(result.getCaptureIndices())
 				.containsExactly(
 						new OnigCaptureIndex(1, 4),
 						new OnigCaptureIndex(2, 3));
 	}
+
+	@Test
+	void testOnigScannerReusableMatch() {
+		final var scanner = new OnigScanner(Arrays.asList("c", "a(b)?"));
+		final var source = OnigString.of("abc ac");
+		final var match = new OnigScannerMatch();
+
+		assertThat(scanner.findNextMatch(source, 0, match)).isTrue();
+		assertThat(match.getIndex()).isEqualTo(1);
+		assertThat(match.getCaptureCount()).isEqualTo(2);
+		assertThat(match.getCaptureStart(0)).isEqualTo(0);
+		assertThat(match.getCaptureEnd(0)).isEqualTo(2);
+
+		assertThat(scanner.findNextMatch(source, 2, match)).isTrue();
+		assertThat(match.getIndex()).isEqualTo(0);
+		assertThat(match.getCaptureIndices()).containsExactly(new OnigCaptureIndex(2, 3));
+
+		// unmatched optional group
+		assertThat(scanner.findNextMatch(source, 3, match)).isTrue();
+		assertThat(match.getIndex()).isEqualTo(1);
+		assertThat(match.getCaptureIndices())
+				.containsExactly(
+						new OnigCaptureIndex(4, 5),
+						OnigCaptureIndex.EMPTY);
+		assertThat(match).isEqualTo(scanner.findNextMatch(source, 3));
+
+		assertThat(scanner.findNextMatch(OnigString.of("xyz"), 0, match)).isFalse();
+	}
+
+	@Test
+	void testOnigScannerUTF16() {
+		final var scanner = new OnigScanner(Arrays.asList("f(o+)", "[üö]+", "\\w+$"));
+		for (final boolean utf16 : new boolean[] { false, true }) {
+			final var source = OnigString.of("äöü foo 😀 bär", utf16);
+
+			var result = scanner.findNextMatch(source, 0);
+			assert result != null;
+			assertThat(result.getIndex()).isEqualTo(1);
+			assertThat(result.getCaptureIndices()).containsExactly(new OnigCaptureIndex(1, 3));
+
+			result = scanner.findNextMatch(source, 3);
+			assert result != null;
+			assertThat(result.getIndex()).isEqualTo(0);
+			assertThat(result.getCaptureIndices())
+					.containsExactly(
+							new OnigCaptureIndex(4, 7),
+							new OnigCaptureIndex(5, 7));
+
+			result = scanner.findNextMatch(source, 7);
+			assert result != null;
+			assertThat(result.getIndex()).isEqualTo(2);
+			assertThat(result.getCaptureIndices()).containsExactly(new OnigCaptureIndex(11, 14));
+		}
+	}
 }
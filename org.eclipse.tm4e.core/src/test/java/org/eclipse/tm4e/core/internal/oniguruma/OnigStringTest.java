@@ -19,12 +19,16 @@
 class OnigStringTest {
 
 	private OnigString verifyBasics(final String string, final Class<? extends OnigString> expectedType) {
-		final OnigString onigString = OnigString.of(string);
+		return verifyBasics(string, false, expectedType);
+	}
+
+	private OnigString verifyBasics(final String string, final boolean utf16, final Class<? extends OnigString> expectedType) {
+		final OnigString onigString = OnigString.of(string, utf16);
 		assertThat(onigString).isInstanceOf(expectedType);
 		assertThat(onigString.content).isEqualTo(string);
 		assertThat(onigString.toString()).contains(string);
 
-		assertThat(onigString.bytesCount).isEqualTo(onigString.bytesUTF8.length);
+		assertThat(onigString.bytesCount).isEqualTo(onigString.bytes.length);
 
 		/*
 		 * getByteIndexOfChar tests
@@ -168,4 +172,20 @@ void testMixedMultiByteString() {
 		assertThatThrownBy(() -> onigString.getCharIndexOfByte(17))
 				.isInstanceOf(ArrayIndexOutOfBoundsException.class);
 	}
+
+	@Test
+	void testUTF16Mode() {
+		// ASCII-only strings are single-byte strings in UTF-16 mode too
+		verifyBasics("ab", true, OnigString.SingleByteString.class);
+
+		final var string = "mYáé😀b";
+		final OnigString onigString = verifyBasics(string, true, OnigString.UTF16String.class);
+
+		assertThat(onigString.bytesCount).isEqualTo(string.length() * 2);
+
+		for (int i = 0; i <= string.length(); i++) {
+			assertThat(onigString.getByteIndexOfChar(i)).isEqualTo(i * 2);
+			assertThat(onigString.getCharIndexOfByte(i * 2)).isEqualTo(i);
+		}
+	}
 }
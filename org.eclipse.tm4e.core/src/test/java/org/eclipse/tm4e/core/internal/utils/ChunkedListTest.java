@@ -0,0 +1,111 @@
+/**
+ * Copyright (c) 2026 Sebastian Thomschke and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.tm4e.core.internal.utils;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class ChunkedListTest {
+
+	@Test
+	void testAddGetRemove() {
+		final var list = new ChunkedList<Integer>();
+		assertThat(list).isEmpty();
+
+		final int count = ChunkedList.MAX_LEAF_SIZE * ChunkedList.MAX_BRANCH_SIZE * 3;
+		for (int i = 0; i < count; i++) {
+			list.add(i);
+		}
+		assertThat(list).hasSize(count);
+		for (int i = 0; i < count; i++) {
+			assertThat(list.get(i)).isEqualTo(i);
+		}
+
+		list.add(0, -1);
+		assertThat(list.get(0)).isEqualTo(-1);
+		assertThat(list.get(1)).isEqualTo(0);
+		assertThat(list.remove(0)).isEqualTo(-1);
+
+		list.subList(10, count - 10).clear();
+		assertThat(list).containsExactly(0, 1, 2, 3, 4, 5, 6, 7, 8, 9,
+				count - 10, count - 9, count - 8, count - 7, count - 6, count - 5, count - 4, count - 3, count - 2, count - 1);
+
+		assertThatThrownBy(() -> list.get(20)).isInstanceOf(IndexOutOfBoundsException.class);
+		assertThatThrownBy(() -> list.get(-1)).isInstanceOf(IndexOutOfBoundsException.class);
+		assertThatThrownBy(() -> list.add(22, 1)).isInstanceOf(IndexOutOfBoundsException.class);
+
+		list.clear();
+		assertThat(list).isEmpty();
+	}
+
+	@Test
+	void testSnapshot() {
+		final var list = new ChunkedList<Integer>();
+		for (int i = 0; i < 10_000; i++) {
+			list.add(i);
+		}
+
+		final var snapshot = list.snapshot();
+		list.subList(100, 200).clear();
+		list.add(5_000, -1);
+		list.add(-2);
+
+		assertThat(snapshot).hasSize(10_000);
+		for (int i = 0; i < 10_000; i++) {
+			assertThat(snapshot.get(i)).isEqualTo(i);
+		}
+		assertThat(list).hasSize(10_000 - 100 + 2);
+		assertThat(list.get(5_000)).isEqualTo(-1);
+
+		assertThatThrownBy(() -> snapshot.add(1)).isInstanceOf(UnsupportedOperationException.class);
+		assertThatThrownBy(() -> snapshot.remove(0)).isInstanceOf(UnsupportedOperationException.class);
+		assertThatThrownBy(snapshot::clear).isInstanceOf(UnsupportedOperationException.class);
+	}
+
+	@Test
+	void testRandomEditsMatchArrayList() {
+		final var random = new Random(42);
+		final var expected = new ArrayList<Integer>();
+		final var actual = new ChunkedList<Integer>();
+		final var expectedSnapshots = new ArrayList<List<Integer>>();
+		final var actualSnapshots = new ArrayList<List<Integer>>();
+
+		int nextValue = 0;
+		for (int i = 0; i < 5_000; i++) {
+			final int op = random.nextInt(10);
+			if (op < 5 || expected.isEmpty()) {
+				final int index = random.nextInt(expected.size() + 1);
+				final var inserted = new ArrayList<Integer>();
+				for (int j = 0, count = 1 + random.nextInt(random.nextBoolean() ? 3 : 300); j < count; j++) {
+					inserted.add(nextValue++);
+				}
+				expected.addAll(index, inserted);
+				actual.subList(index, index).addAll(inserted);
+			} else if (op < 9) {
+				final int from = random.nextInt(expected.size());
+				final int to = Math.min(expected.size(), from + 1 + random.nextInt(random.nextBoolean() ? 3 : 400));
+				expected.subList(from, to).clear();
+				actual.subList(from, to).clear();
+			} else {
+				expectedSnapshots.add(List.copyOf(expected));
+				actualSnapshots.add(actual.snapshot());
+			}
+			assertThat(actual).hasSameSizeAs(expected);
+		}
+
+		assertThat(actual).isEqualTo(expected);
+		assertThat(actualSnapshots).isEqualTo(expectedSnapshots);
+	}
+}
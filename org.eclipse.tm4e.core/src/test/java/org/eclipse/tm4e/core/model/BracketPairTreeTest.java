@@ -0,0 +1,225 @@
+/**
+ * Copyright (c) 2026 Sebastian Thomschke and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.tm4e.core.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tm4e.core.model.BracketPairTree.BracketKind;
+import org.eclipse.tm4e.core.model.BracketPairTree.BracketPair;
+import org.junit.jupiter.api.Test;
+
+class BracketPairTreeTest {
+
+	private static final List<BracketKind> KINDS = List.of(
+			new BracketKind("{", "}"),
+			new BracketKind("(", ")"),
+			new BracketKind("begin", "end"));
+
+	/**
+	 * Tokens marking the text after a <code>#</code> as comment.
+	 */
+	private static List<TMToken> tokenize(final String line) {
+		final int comment = line.indexOf('#');
+		final var code = new TMToken(0, "", List.of("source.test"), null, true);
+		if (comment == -1)
+			return List.of(code);
+		return List.of(code, new TMToken(comment, "comment", List.of("source.test", "comment.line.test"), null, false));
+	}
+
+	/**
+	 * A structural bracket found by scanning all lines.
+	 */
+	private record Bracket(int kind, boolean isOpening, int lineIndex, int column) {
+	}
+
+	private static List<Bracket> scan(final List<String> lines) {
+		final var brackets = new ArrayList<Bracket>();
+		for (int l = 0; l < lines.size(); l++) {
+			final String line = lines.get(l);
+			final int comment = line.indexOf('#');
+			final int end = comment == -1 ? line.length() : comment;
+			int c = 0;
+			outer: while (c < end) {
+				for (int k = 0; k < KINDS.size(); k++) {
+					if (line.startsWith(KINDS.get(k).open(), c)) {
+						brackets.add(new Bracket(k, true, l, c));
+						c += KINDS.get(k).open().length();
+						continue outer;
+					}
+					if (line.startsWith(KINDS.get(k).close(), c)) {
+						brackets.add(new Bracket(k, false, l, c));
+						c += KINDS.get(k).close().length();
+						continue outer;
+					}
+				}
+				c++;
+			}
+		}
+		return brackets;
+	}
+
+	private static @Nullable BracketPair naiveFindBracketPair(final List<Bracket> brackets, final int index) {
+		final var bracket = brackets.get(index);
+		final var kind = KINDS.get(bracket.kind);
+		int nesting = 0;
+		if (bracket.isOpening) {
+			for (int i = index + 1; i < brackets.size(); i++) {
+				final var b = brackets.get(i);
+				if (b.kind != bracket.kind)
+					continue;
+				if (b.isOpening) {
+					nesting++;
+				} else if (nesting-- == 0)
+					return new BracketPair(kind, bracket.lineIndex, bracket.column, b.lineIndex, b.column);
+			}
+			return new BracketPair(kind, bracket.lineIndex, bracket.column, -1, -1);
+		}
+		for (int i = index - 1; i >= 0; i--) {
+			final var b = brackets.get(i);
+			if (b.kind != bracket.kind)
+				continue;
+			if (!b.isOpening) {
+				nesting++;
+			} else if (nesting-- == 0)
+				return new BracketPair(kind, b.lineIndex, b.column, bracket.lineIndex, bracket.column);
+		}
+		return null;
+	}
+
+	private static int naiveNestingDepth(final List<Bracket> brackets, final int lineIndex) {
+		final var opens = new int[KINDS.size()];
+		for (final var b : brackets) {
+			if (b.lineIndex >= lineIndex)
+				break;
+			if (b.isOpening) {
+				opens[b.kind]++;
+			} else if (opens[b.kind] > 0) {
+				opens[b.kind]--;
+			}
+		}
+		int depth = 0;
+		for (final int o : opens) {
+			depth += o;
+		}
+		return depth;
+	}
+
+	private static @Nullable BracketPair naiveFindEnclosingBracketPair(final List<Bracket> brackets, final int lineIndex,
+			final int column) {
+		final var openIndexes = new ArrayList<List<Integer>>();
+		KINDS.forEach(k -> openIndexes.add(new ArrayList<>()));
+		for (int i = 0; i < brackets.size(); i++) {
+			final var b = brackets.get(i);
+			if (b.lineIndex > lineIndex || b.lineIndex == lineIndex && b.column >= column)
+				break;
+			final var stack = openIndexes.get(b.kind);
+			if (b.isOpening) {
+				stack.add(i);
+			} else if (!stack.isEmpty()) {
+				stack.remove(stack.size() - 1);
+			}
+		}
+		int innermost = -1;
+		for (final var stack : openIndexes) {
+			if (!stack.isEmpty()) {
+				innermost = Math.max(innermost, stack.get(stack.size() - 1));
+			}
+		}
+		return innermost == -1 ? null : naiveFindBracketPair(brackets, innermost);
+	}
+
+	private static String randomLine(final Random random) {
+		final String[] parts = { "{", "}", "(", ")", "begin", "end", "x", " ", "#", "a(b)" };
+		final var sb = new StringBuilder();
+		for (int i = 0, len = random.nextInt(8); i < len; i++) {
+			sb.append(parts[random.nextInt(parts.length)]);
+		}
+		return sb.toString();
+	}
+
+	private static void assertMatchesNaive(final BracketPairTree tree, final List<String> lines) {
+		assertThat(tree.getNumberOfLines()).isEqualTo(lines.size());
+		final var brackets = scan(lines);
+		for (int i = 0; i < brackets.size(); i++) {
+			final var b = brackets.get(i);
+			assertThat(tree.findBracketPair(b.lineIndex, b.column)).as("pair of %s", b)
+					.isEqualTo(naiveFindBracketPair(brackets, i));
+		}
+		for (int l = 0; l <= lines.size(); l++) {
+			assertThat(tree.getNestingDepth(l)).as("depth of line %d", l).isEqualTo(naiveNestingDepth(brackets, l));
+		}
+		for (int l = 0; l < lines.size(); l++) {
+			for (int c = 0; c <= lines.get(l).length(); c += 3) {
+				assertThat(tree.findEnclosingBracketPair(l, c)).as("pair enclosing %d:%d", l, c)
+						.isEqualTo(naiveFindEnclosingBracketPair(brackets, l, c));
+			}
+		}
+	}
+
+	private static BracketPairTree withLines(BracketPairTree tree, final List<String> lines, final int from, final int to) {
+		for (int l = from; l < to; l++) {
+			tree = tree.withLine(l, lines.get(l), tokenize(lines.get(l)));
+		}
+		return tree;
+	}
+
+	@Test
+	void testFindBracketPair() {
+		final var lines = List.of(
+				"begin { # } end",
+				"  ( { x } ) begin",
+				"  end )",
+				"}");
+		final var tree = withLines(new BracketPairTree(KINDS, lines.size()), lines, 0, lines.size());
+
+		assertThat(tree.findBracketPair(0, 6)).isEqualTo(new BracketPair(KINDS.get(0), 0, 6, 3, 0));
+		assertThat(tree.findBracketPair(3, 0)).isEqualTo(new BracketPair(KINDS.get(0), 0, 6, 3, 0));
+		assertThat(tree.findBracketPair(0, 10)).isNull(); // inside comment
+		assertThat(tree.findBracketPair(0, 2)).isEqualTo(new BracketPair(KINDS.get(2), 0, 0, -1, -1));
+		assertThat(tree.findBracketPair(1, 14)).isEqualTo(new BracketPair(KINDS.get(2), 1, 12, 2, 2));
+		assertThat(tree.findBracketPair(2, 6)).isNull(); // unmatched closing bracket
+		assertThat(tree.findEnclosingBracketPair(1, 6)).isEqualTo(new BracketPair(KINDS.get(0), 1, 4, 1, 8));
+		assertThat(tree.findEnclosingBracketPair(2, 0)).isEqualTo(new BracketPair(KINDS.get(2), 1, 12, 2, 2));
+		assertThat(tree.findEnclosingBracketPair(0, 0)).isNull();
+		assertThat(tree.getNestingDepth(1)).isEqualTo(2);
+		assertThat(tree.getNestingDepth(2)).isEqualTo(3);
+	}
+
+	@Test
+	void testIncrementalUpdatesMatchFullScan() {
+		final var random = new Random(42);
+		final var lines = new ArrayList<String>();
+		for (int i = 0; i < 300; i++) {
+			lines.add(randomLine(random));
+		}
+		var tree = withLines(new BracketPairTree(KINDS, lines.size()), lines, 0, lines.size());
+		assertMatchesNaive(tree, lines);
+
+		for (int round = 0; round < 100; round++) {
+			final int lineIndex = random.nextInt(lines.size() + 1);
+			final int replacedCount = Math.min(random.nextInt(4), lines.size() - lineIndex);
+			final int replacementCount = random.nextInt(4);
+			for (int i = 0; i < replacedCount; i++) {
+				lines.remove(lineIndex);
+			}
+			for (int i = 0; i < replacementCount; i++) {
+				lines.add(lineIndex, randomLine(random));
+			}
+			tree = tree.withLinesReplaced(lineIndex, replacedCount, replacementCount);
+			tree = withLines(tree, lines, lineIndex, lineIndex + replacementCount);
+			assertMatchesNaive(tree, lines);
+		}
+	}
+}
@@ -10,9 +10,18 @@
 package org.eclipse.tm4e.core.model;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.eclipse.tm4e.core.internal.utils.NullSafetyHelper.castNonNull;
 import static org.eclipse.tm4e.core.registry.IGrammarSource.fromResource;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
 import org.eclipse.tm4e.core.Data;
+import org.eclipse.tm4e.core.grammar.IGrammar;
+import org.eclipse.tm4e.core.grammar.IStateStack;
 import org.eclipse.tm4e.core.internal.grammar.StateStack;
 import org.eclipse.tm4e.core.model.ITMModel.BackgroundTokenizationState;
 import org.eclipse.tm4e.core.registry.Registry;
@@ -45,7 +54,7 @@ public String getLineText(final int lineIndex) throws Exception {
 
 			assertThat(tmModel.getBackgroundTokenizationState()).isEqualTo(BackgroundTokenizationState.COMPLETED);
 
-			// adding a listener will spawn the TokenizerThread
+			// adding a listener will schedule the tokenizer job
 			tmModel.addModelTokensChangedListener(event -> {
 			});
 
@@ -76,4 +85,490 @@ public String getLineText(final int lineIndex) throws Exception {
 			tmModel.dispose();
 		}
 	}
+
+	@Test
+	void testParallelInitialTokenization() throws Exception {
+		final var grammar = new Registry().addGrammar(fromResource(Data.class, "TypeScript.tmLanguage.json"));
+
+		final var textLines = new ArrayList<String>();
+		while (textLines.size() < TMModel.PARALLEL_TOKENIZATION_MIN_LINES * 2) {
+			textLines.add("function addNumbers(a: number, b: number) {");
+			textLines.add("	return a + b;");
+			textLines.add("}");
+			textLines.add("");
+			if (textLines.size() % 3_000 < 4) {
+				// a long block comment with blank lines, so that some chunks start with a wrongly guessed state
+				textLines.add("/*");
+				for (int i = 0; i < 1_500; i++) {
+					textLines.add(i % 100 == 0 ? "" : "  comment " + i);
+				}
+				textLines.add("*/");
+			}
+		}
+
+		final var tmModel = new TMModel(textLines.size()) {
+			@Override
+			public String getLineText(final int lineIndex) throws Exception {
+				return textLines.get(lineIndex);
+			}
+		};
+
+		try {
+			tmModel.setInitialTokenizationParallelism(4);
+			tmModel.setGrammar(grammar);
+			tmModel.addModelTokensChangedListener(event -> {
+			});
+
+			await(() -> tmModel.lines.get(textLines.size() - 1).tokens != null
+					&& tmModel.getBackgroundTokenizationState() == BackgroundTokenizationState.COMPLETED,
+					"Tokenization did not complete in time");
+
+			final var tokenizer = new TMTokenizationSupport(grammar);
+			IStateStack state = tokenizer.getInitialState();
+			for (int i = 0; i < textLines.size(); i++) {
+				final var expected = tokenizer.tokenize(textLines.get(i), state);
+				final var line = tmModel.lines.get(i);
+				assertThat(line.startState).as("Start state of line " + i).isEqualTo(state);
+				assertThat(line.tokens).as("Tokens of line " + i).isEqualTo(expected.getTokens());
+				state = expected.getEndState();
+			}
+		} finally {
+			tmModel.dispose();
+		}
+	}
+
+	@Test
+	void testSharedTokenizerScheduler() throws Exception {
+		final var grammar = new Registry().addGrammar(fromResource(Data.class, "TypeScript.tmLanguage.json"));
+
+		final var textLines = new ArrayList<String>();
+		for (int i = 0; i < 2_000; i++) {
+			textLines.add("const sum" + i + " = addNumbers(10, " + i + "); // " + i);
+		}
+
+		final var scheduler = TokenizerScheduler.INSTANCE;
+		final var models = new ArrayList<TMModel>();
+		for (int i = 0; i < scheduler.getPoolSize() * 3; i++) {
+			final var tmModel = new TMModel(textLines.size()) {
+				@Override
+				public String getLineText(final int lineIndex) throws Exception {
+					return textLines.get(lineIndex);
+				}
+			};
+			tmModel.setInitialTokenizationParallelism(1);
+			tmModel.setPrioritized(i == 0);
+			models.add(tmModel);
+		}
+		assertThat(models.get(0).isPrioritized()).isTrue();
+
+		try {
+			for (final var tmModel : models) {
+				tmModel.setGrammar(grammar);
+				tmModel.addModelTokensChangedListener(event -> {
+				});
+			}
+
+			await(() -> models.stream().allMatch(m -> m.getBackgroundTokenizationState() == BackgroundTokenizationState.COMPLETED),
+					"Tokenization did not complete in time");
+
+			for (final var tmModel : models) {
+				assertThat(tmModel.getBacklog()).isEqualTo(new TMModel.Backlog(0, 0));
+				for (int i = 0; i < textLines.size(); i++) {
+					assertThat(tmModel.lines.get(i).tokens).as("Line " + i + " is expected to be up-to-date").isNotNull();
+				}
+			}
+
+			// edits are coalesced and revalidated by the scheduler
+			final var tmModel = models.get(1);
+			textLines.set(5, "/* unterminated comment");
+			tmModel.onLinesReplaced(5, 1, 1);
+			awaitRevalidation(tmModel);
+			assertThat(tmModel.lines.get(textLines.size() - 1).tokens).isNotNull();
+			assertThat(castNonNull(tmModel.lines.get(textLines.size() - 1).tokens).get(0).type).contains("comment");
+		} finally {
+			models.forEach(TMModel::dispose);
+		}
+
+		final var stats = scheduler.getStats();
+		assertThat(stats.poolSize()).isEqualTo(scheduler.getPoolSize());
+		assertThat(stats.queuedJobs()).isZero();
+		assertThat(stats.delayedJobs()).isZero();
+	}
+
+	@Test
+	void testVisibleRangeIsTokenizedFirst() throws Exception {
+		final var grammar = new Registry().addGrammar(fromResource(Data.class, "TypeScript.tmLanguage.json"));
+
+		final var textLines = new ArrayList<String>();
+		for (int i = 0; i < 30_000; i++) {
+			textLines.add("const sum" + i + " = addNumbers(10, " + i + ");");
+		}
+		// the visible lines are within a block comment, i.e. the speculative tokenization starts with a wrong state
+		textLines.set(24_990, "/*");
+		textLines.set(25_100, "*/");
+		final int firstVisibleLineIndex = 25_000;
+		final int lastVisibleLineIndex = 25_049;
+
+		final var tmModel = new TMModel(textLines.size()) {
+			@Override
+			public String getLineText(final int lineIndex) throws Exception {
+				return textLines.get(lineIndex);
+			}
+		};
+
+		try {
+			final var events = new ArrayList<ModelTokensChangedEvent>();
+			tmModel.setInitialTokenizationParallelism(1);
+			tmModel.setVisibleRange(firstVisibleLineIndex, lastVisibleLineIndex);
+			tmModel.setGrammar(grammar);
+			tmModel.addModelTokensChangedListener(event -> {
+				synchronized (events) {
+					events.add(event);
+				}
+			});
+
+			await(() -> tmModel.getBackgroundTokenizationState() == BackgroundTokenizationState.COMPLETED,
+					"Tokenization did not complete in time");
+
+			synchronized (events) {
+				assertThat(events.get(0).ranges).containsExactly(new Range(firstVisibleLineIndex + 1, lastVisibleLineIndex + 1));
+				// the provisional tokens are corrected once the sequential tokenization reaches the visible lines
+				assertThat(events.subList(1, events.size()).stream().flatMap(e -> e.ranges.stream()))
+						.anyMatch(r -> r.fromLineNumber <= firstVisibleLineIndex + 1 && r.toLineNumber >= firstVisibleLineIndex + 1);
+			}
+
+			final var tokenizer = new TMTokenizationSupport(grammar);
+			IStateStack state = tokenizer.getInitialState();
+			for (int i = 0; i < textLines.size(); i++) {
+				final var expected = tokenizer.tokenize(textLines.get(i), state);
+				assertThat(tmModel.isLineTokensProvisional(i)).as("Line " + i + " is provisional").isFalse();
+				assertThat(tmModel.lines.get(i).tokens).as("Tokens of line " + i).isEqualTo(expected.getTokens());
+				state = expected.getEndState();
+			}
+		} finally {
+			tmModel.dispose();
+		}
+	}
+
+	@Test
+	void testCompactTokenStorage() throws Exception {
+		final var grammar = new Registry().addGrammar(fromResource(Data.class, "TypeScript.tmLanguage.json"));
+
+		final var textLines = new ArrayList<String>();
+		for (int i = 0; i < 1_000; i++) {
+			textLines.add("function addNumbers" + i + "(a: number, b: number) { // " + i);
+			textLines.add("	return a + b; /* comment */");
+			textLines.add("}");
+		}
+
+		final var tmModel = new TMModel(textLines.size()) {
+			@Override
+			public String getLineText(final int lineIndex) throws Exception {
+				return textLines.get(lineIndex);
+			}
+		};
+
+		try {
+			tmModel.setCompactTokenStorage(true);
+			assertThat(tmModel.isCompactTokenStorage()).isTrue();
+			tmModel.setGrammar(grammar);
+			tmModel.addModelTokensChangedListener(event -> {
+			});
+
+			await(() -> tmModel.getLineTokens(textLines.size() - 1) != null
+					&& tmModel.getBackgroundTokenizationState() == BackgroundTokenizationState.COMPLETED,
+					"Tokenization did not complete in time");
+
+			final var tokenizer = new TMTokenizationSupport(grammar);
+			IStateStack state = tokenizer.getInitialState();
+			for (int i = 0; i < textLines.size(); i++) {
+				final var result = tokenizer.tokenize(textLines.get(i), state);
+				final var expected = result.getTokens();
+				final var actual = castNonNull(tmModel.getLineTokens(i));
+				assertThat(actual).isInstanceOf(CompactTokenList.class).isEqualTo(expected);
+				for (int t = 0; t < expected.size(); t++) {
+					assertThat(actual.get(t).scopes).isEqualTo(expected.get(t).scopes);
+					assertThat(actual.get(t).grammarScope).isEqualTo(expected.get(t).grammarScope);
+				}
+				state = result.getEndState();
+			}
+		} finally {
+			tmModel.dispose();
+		}
+	}
+
+	@Test
+	void testBoundedMemory() throws Exception {
+		final var grammar = new Registry().addGrammar(fromResource(Data.class, "TypeScript.tmLanguage.json"));
+
+		final var textLines = new ArrayList<String>();
+		for (int i = 0; i < 3_000; i++) {
+			textLines.add(i % 500 == 10 ? "/*" : i % 500 == 20 ? "*/" : "const sum" + i + " = addNumbers(10, " + i + ");");
+		}
+		final int maxResidentLines = 200;
+
+		final var tmModel = new TMModel(textLines.size()) {
+			@Override
+			public String getLineText(final int lineIndex) throws Exception {
+				return textLines.get(lineIndex);
+			}
+		};
+
+		try {
+			tmModel.setMaxResidentLineTokens(maxResidentLines);
+			assertThat(tmModel.getMaxResidentLineTokens()).isEqualTo(maxResidentLines);
+			tmModel.setGrammar(grammar);
+			final var tokenizedLines = new AtomicInteger();
+			tmModel.addModelTokensChangedListener(event -> {
+				for (final var range : event.ranges) {
+					tokenizedLines.addAndGet(range.toLineNumber - range.fromLineNumber + 1);
+				}
+			});
+
+			await(() -> tmModel.getBackgroundTokenizationState() == BackgroundTokenizationState.COMPLETED,
+					"Tokenization did not complete in time");
+			assertThat(tmModel.getResidentLineTokensCount()).isLessThanOrEqualTo(maxResidentLines);
+			assertThat(tmModel.lines.stream().filter(l -> l.tokens == TMModel.LineTokens.EVICTED_TOKENS).count())
+					.isGreaterThanOrEqualTo(textLines.size() - maxResidentLines);
+
+			// evicted line tokens are re-computed on demand, in and out of order
+			assertLineTokens(tmModel, grammar, textLines);
+			for (int i = textLines.size() - 1; i >= 0; i -= 97) {
+				assertThat(tmModel.getLineTokens(i)).isEqualTo(tokenize(grammar, textLines, i));
+			}
+
+			// revalidation after an edit converges at the checkpoints of evicted lines, i.e. only the lines from the
+			// checkpoint above the edit up to the checkpoint below the lines whose state changed are re-tokenized
+			final int maxTokenizedLinesPerEdit = 2 * TMModel.TOKENS_CHECKPOINT_INTERVAL + 4 /* max lines added by the edits */;
+			tokenizedLines.set(0);
+			textLines.set(5, "/* unterminated comment");
+			tmModel.onLinesReplaced(5, 1, 1);
+			awaitRevalidation(tmModel);
+			assertThat(tokenizedLines.get()).isPositive().isLessThanOrEqualTo(maxTokenizedLinesPerEdit);
+			assertLineTokens(tmModel, grammar, textLines);
+
+			// inserting and removing lines keeps the checkpoints evenly spaced
+			for (int i = 0; i < 10; i++) {
+				tokenizedLines.set(0);
+				final int lineIndex = 1_000 + i * 97;
+				if (i % 2 == 0) {
+					textLines.add(lineIndex, "const inserted" + i + " = 1;");
+					textLines.add(lineIndex, "const inserted" + i + " = 2;");
+					textLines.add(lineIndex, "const inserted" + i + " = 3;");
+					tmModel.onLinesReplaced(lineIndex, 1, 4);
+				} else {
+					textLines.subList(lineIndex, lineIndex + 5).clear();
+					tmModel.onLinesReplaced(lineIndex, 6, 1);
+				}
+				awaitRevalidation(tmModel);
+				assertThat(tokenizedLines.get()).as("Re-tokenized lines after edit " + i)
+						.isLessThanOrEqualTo(maxTokenizedLinesPerEdit);
+			}
+			assertLineTokens(tmModel, grammar, textLines);
+
+			// the bracket pair tree built after the eviction includes the brackets of evicted lines
+			assertThat(tmModel.lines.stream().filter(l -> l.tokens == TMModel.LineTokens.EVICTED_TOKENS).count()).isPositive();
+			final var paren = new BracketPairTree.BracketKind("(", ")");
+			tmModel.setBracketKinds(List.of(paren));
+			await(() -> tmModel.getBracketPairTree() != null, "Bracket pair tree was not built in time");
+			final var tree = castNonNull(tmModel.getBracketPairTree());
+			assertThat(tree.getNumberOfLines()).isEqualTo(textLines.size());
+			boolean isInComment = false;
+			for (int i = 0; i < textLines.size(); i++) {
+				final var text = textLines.get(i);
+				if (text.startsWith("/*")) {
+					isInComment = true;
+				} else if (text.equals("*/")) {
+					isInComment = false;
+				} else if (!isInComment && text.indexOf('(') >= 0) {
+					final int openColumn = text.indexOf('(');
+					assertThat(tree.findBracketPair(i, openColumn))
+							.isEqualTo(new BracketPairTree.BracketPair(paren, i, openColumn, i, text.lastIndexOf(')')));
+				}
+			}
+		} finally {
+			tmModel.dispose();
+		}
+	}
+
+	@Test
+	void testLinesSnapshot() throws Exception {
+		final var grammar = new Registry().addGrammar(fromResource(Data.class, "TypeScript.tmLanguage.json"));
+
+		final var textLines = new ArrayList<String>();
+		for (int i = 0; i < 100; i++) {
+			textLines.add("const sum" + i + " = addNumbers(10, " + i + ");");
+		}
+
+		final var tmModel = new TMModel(textLines.size()) {
+			@Override
+			public String getLineText(final int lineIndex) throws Exception {
+				return textLines.get(lineIndex);
+			}
+		};
+
+		try {
+			tmModel.setGrammar(grammar);
+			tmModel.addModelTokensChangedListener(event -> {
+			});
+
+			await(() -> tmModel.getBackgroundTokenizationState() == BackgroundTokenizationState.COMPLETED,
+					"Tokenization did not complete in time");
+
+			final var snapshot = tmModel.getSnapshot();
+			assertThat(snapshot.getNumberOfLines()).isEqualTo(textLines.size());
+			final var tokensOfLastLine = snapshot.getLineTokens(textLines.size() - 1);
+			assertThat(tokensOfLastLine).isNotNull();
+
+			// insert 10 lines at the top
+			for (int i = 0; i < 10; i++) {
+				textLines.add(0, "// inserted " + i);
+			}
+			tmModel.onLinesReplaced(0, 0, 10);
+			awaitRevalidation(tmModel);
+
+			// the old snapshot is not affected by the edit
+			assertThat(snapshot.getNumberOfLines()).isEqualTo(textLines.size() - 10);
+			assertThat(snapshot.getLineTokens(textLines.size() - 11)).isEqualTo(tokensOfLastLine);
+			assertThat(snapshot.getLineTokens(textLines.size() - 10)).isNull();
+
+			assertThat(tmModel.getSnapshot()).isNotSameAs(snapshot);
+			assertThat(tmModel.getNumberOfLines()).isEqualTo(textLines.size());
+			assertThat(tmModel.getLineTokens(textLines.size() - 1)).isEqualTo(tokensOfLastLine);
+			assertLineTokens(tmModel, grammar, textLines);
+		} finally {
+			tmModel.dispose();
+		}
+	}
+
+	@Test
+	void testBracketPairTree() throws Exception {
+		final var grammar = new Registry().addGrammar(fromResource(Data.class, "TypeScript.tmLanguage.json"));
+
+		final var textLines = new ArrayList<>(List.of(
+				"function addNumbers(a: number, b: number) {",
+				"	const s = '{(['; // }",
+				"	if (a > b) {",
+				"		return [a, b];",
+				"	}",
+				"	return a + b;",
+				"}"));
+
+		final var tmModel = new TMModel(textLines.size()) {
+			@Override
+			public String getLineText(final int lineIndex) throws Exception {
+				return textLines.get(lineIndex);
+			}
+		};
+
+		try {
+			final var curly = new BracketPairTree.BracketKind("{", "}");
+			tmModel.setBracketKinds(List.of(curly, new BracketPairTree.BracketKind("(", ")"),
+					new BracketPairTree.BracketKind("[", "]")));
+			tmModel.setGrammar(grammar);
+			tmModel.addModelTokensChangedListener(event -> {
+			});
+
+			awaitRevalidation(tmModel);
+
+			var tree = castNonNull(tmModel.getBracketPairTree());
+			assertThat(tree.getNumberOfLines()).isEqualTo(textLines.size());
+			// brackets in strings and comments are ignored
+			assertThat(tree.findBracketPair(0, 42)).isEqualTo(new BracketPairTree.BracketPair(curly, 0, 42, 6, 0));
+			assertThat(tree.findBracketPair(1, 12)).isNull();
+			assertThat(tree.findBracketPair(4, 1)).isEqualTo(new BracketPairTree.BracketPair(curly, 2, 12, 4, 1));
+			assertThat(tree.findEnclosingBracketPair(3, 2)).isEqualTo(new BracketPairTree.BracketPair(curly, 2, 12, 4, 1));
+			assertThat(tree.getNestingDepth(0)).isZero();
+			assertThat(tree.getNestingDepth(3)).isEqualTo(2);
+			assertThat(tree.getNestingDepth(6)).isEqualTo(1);
+
+			// inserted lines are indexed incrementally
+			textLines.addAll(3, List.of("		while (true) {", "		}"));
+			tmModel.onLinesReplaced(3, 0, 2);
+			awaitRevalidation(tmModel);
+			tree = castNonNull(tmModel.getBracketPairTree());
+			assertThat(tree.getNumberOfLines()).isEqualTo(textLines.size());
+			assertThat(tree.findBracketPair(0, 42)).isEqualTo(new BracketPairTree.BracketPair(curly, 0, 42, 8, 0));
+			assertThat(tree.findBracketPair(3, 15)).isEqualTo(new BracketPairTree.BracketPair(curly, 3, 15, 4, 2));
+			assertThat(tree.getNestingDepth(4)).isEqualTo(3);
+
+			tmModel.setBracketKinds(null);
+			await(() -> tmModel.getBracketPairTree() == null, "Bracket pair tree was not removed in time");
+		} finally {
+			tmModel.dispose();
+		}
+	}
+
+	@Test
+	void testFoldingRanges() throws Exception {
+		final var grammar = new Registry().addGrammar(fromResource(Data.class, "TypeScript.tmLanguage.json"));
+
+		final var textLines = new ArrayList<>(List.of(
+				"/**",
+				" * Adds numbers.",
+				" */",
+				"function addNumbers(a: number, b: number) {",
+				"	if (a > b) {",
+				"		return a + b;",
+				"	}",
+				"	return a + b + 1;",
+				"}"));
+
+		final var tmModel = new TMModel(textLines.size()) {
+			@Override
+			public String getLineText(final int lineIndex) throws Exception {
+				return textLines.get(lineIndex);
+			}
+		};
+
+		try {
+			tmModel.setGrammar(grammar);
+			tmModel.addModelTokensChangedListener(event -> {
+			});
+
+			awaitRevalidation(tmModel);
+
+			// one range for the function declaration and its block
+			assertThat(tmModel.getFoldingRanges()).containsExactly(new Range(1, 3), new Range(5, 7), new Range(4, 9));
+
+			textLines.add(5, "		// note");
+			tmModel.onLinesReplaced(5, 0, 1);
+			awaitRevalidation(tmModel);
+			assertThat(tmModel.getFoldingRanges()).containsExactly(new Range(1, 3), new Range(5, 8), new Range(4, 10));
+		} finally {
+			tmModel.dispose();
+		}
+	}
+
+	private static void awaitRevalidation(final TMModel tmModel) throws InterruptedException {
+		await(() -> tmModel.getBackgroundTokenizationState() == BackgroundTokenizationState.COMPLETED
+				&& tmModel.getBacklog().equals(new TMModel.Backlog(0, 0)), "Tokenization did not complete in time");
+	}
+
+	private static void await(final BooleanSupplier condition, final String message) throws InterruptedException {
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+		while (!condition.getAsBoolean()) {
+			assertThat(System.nanoTime()).as(message).isLessThan(deadline);
+			Thread.sleep(10);
+		}
+	}
+
+	private static void assertLineTokens(final TMModel tmModel, final IGrammar grammar, final List<String> textLines) {
+		final var tokenizer = new TMTokenizationSupport(grammar);
+		IStateStack state = tokenizer.getInitialState();
+		for (int i = 0; i < textLines.size(); i++) {
+			final var expected = tokenizer.tokenize(textLines.get(i), state);
+			assertThat(tmModel.getLineTokens(i)).as("Tokens of line " + i).isEqualTo(expected.getTokens());
+			state = expected.getEndState();
+		}
+	}
+
+	private static List<TMToken> tokenize(final IGrammar grammar, final List<String> textLines, final int lineIndex) {
+		final var tokenizer = new TMTokenizationSupport(grammar);
+		IStateStack state = tokenizer.getInitialState();
+		for (int i = 0; i < lineIndex; i++) {
+			state = tokenizer.tokenize(textLines.get(i), state).getEndState();
+		}
+		return tokenizer.tokenize(textLines.get(lineIndex), state).getTokens();
+	}
 }
@@ -14,9 +14,14 @@
 
 import java.io.IOException;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.stream.Collectors;
 
 import org.eclipse.tm4e.core.Data;
+import org.eclipse.tm4e.core.grammar.IStateStack;
 import org.eclipse.tm4e.core.internal.utils.ResourceUtils;
 import org.eclipse.tm4e.core.registry.Registry;
 import org.junit.jupiter.api.Test;
@@ -39,4 +44,91 @@ void testTokenizeWithTimeout() throws IOException {
 			assertThat(result1.tokens.size()).isNotEqualTo(result2.tokens.size());
 		}
 	}
+
+	@Test
+	void testTokenizeWithLineCache() throws IOException {
+		final var grammar = new Registry().addGrammar(fromResource(Data.class, "TypeScript.tmLanguage.json"));
+
+		final List<String> lines;
+		try (var reader = ResourceUtils.getResourceReader(Data.class, "raytracer.ts")) {
+			lines = reader.lines().toList();
+		}
+
+		final var uncachedTokenizer = new TMTokenizationSupport(grammar);
+		assertThat(uncachedTokenizer.isLineCacheEnabled()).isFalse();
+		final var cachedTokenizer = new TMTokenizationSupport(grammar);
+		cachedTokenizer.setLineCacheEnabled(true);
+
+		for (int round = 0; round < 2; round++) {
+			IStateStack uncachedState = uncachedTokenizer.getInitialState();
+			IStateStack cachedState = cachedTokenizer.getInitialState();
+			for (final var line : lines) {
+				final var expected = uncachedTokenizer.tokenize(line, uncachedState);
+				final var actual = cachedTokenizer.tokenize(line, cachedState);
+				assertThat(actual.getTokens()).isEqualTo(expected.getTokens());
+				assertThat(actual.getTokens()).map(t -> t.scopes)
+						.isEqualTo(expected.getTokens().stream().map(t -> t.scopes).toList());
+				assertThat(actual.getEndState()).isEqualTo(expected.getEndState());
+				uncachedState = expected.getEndState();
+				cachedState = actual.getEndState();
+			}
+		}
+
+		final var stats = cachedTokenizer.getLineCacheStats();
+		assert stats != null;
+		// the second round is served from the cache completely
+		assertThat(stats.hits()).isGreaterThanOrEqualTo(lines.size());
+		assertThat(stats.size()).isPositive();
+	}
+
+	@Test
+	void testInternedScopesAndTokenStyleCache() throws IOException {
+		final var grammar = new Registry().addGrammar(fromResource(Data.class, "TypeScript.tmLanguage.json"));
+
+		final List<String> lines;
+		try (var reader = ResourceUtils.getResourceReader(Data.class, "raytracer.ts")) {
+			lines = reader.lines().toList();
+		}
+
+		final var tokens = new ArrayList<TMToken>();
+		final var tokenizer = new TMTokenizationSupport(grammar);
+		IStateStack state = tokenizer.getInitialState();
+		for (final String line : lines) {
+			final var result = tokenizer.tokenize(line, state);
+			tokens.addAll(result.getTokens());
+			state = result.getEndState();
+		}
+
+		// tokens with equal scopes share the scopes list instance, also across tokenizers
+		final var otherTokenizer = new TMTokenizationSupport(grammar);
+		final var otherTokens = otherTokenizer.tokenize(lines.get(0), otherTokenizer.getInitialState()).getTokens();
+		for (final var token : otherTokens) {
+			final var sameScopesToken = tokens.stream().filter(t -> t.scopes.equals(token.scopes)).findFirst().orElseThrow();
+			assertThat(token.scopes).isSameAs(sameScopesToken.scopes);
+		}
+
+		final var distinctScopes = tokens.stream().map(t -> t.scopes).distinct().count();
+		final var distinctScopesInstances = Collections.newSetFromMap(new IdentityHashMap<List<String>, Boolean>());
+		tokens.forEach(t -> distinctScopesInstances.add(t.scopes));
+		assertThat(distinctScopesInstances).hasSize((int) distinctScopes);
+
+		// each distinct scopes list is resolved once per cache, e.g. once per theme, without re-tokenizing
+		for (int theme = 0; theme < 2; theme++) {
+			final var resolvedScopes = new ArrayList<List<String>>();
+			final var cache = new TokenStyleCache<>(scopes -> {
+				resolvedScopes.add(scopes);
+				return String.join(" ", scopes);
+			});
+			for (int round = 0; round < 2; round++) {
+				for (final var token : tokens) {
+					assertThat(cache.get(token)).isEqualTo(String.join(" ", token.scopes));
+				}
+			}
+			// tokens not created by the tokenizer are looked up by their equal interned scopes list
+			final var copiedScopesToken = new TMToken(0, "", List.copyOf(tokens.get(0).scopes), null);
+			assertThat(cache.get(copiedScopesToken)).isEqualTo(String.join(" ", tokens.get(0).scopes));
+			assertThat(resolvedScopes).hasSize((int) distinctScopes).doesNotHaveDuplicates();
+			assertThat(cache.getResolvedCount()).isEqualTo(distinctScopes);
+		}
+	}
 }
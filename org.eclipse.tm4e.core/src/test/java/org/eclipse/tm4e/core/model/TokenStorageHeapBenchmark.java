@@ -0,0 +1,120 @@
+/**
+ * Copyright (c) 2026 Sebastian Thomschke and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.tm4e.core.model;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+import org.eclipse.tm4e.core.registry.IGrammarSource;
+import org.eclipse.tm4e.core.registry.Registry;
+
+/**
+ * Compares the heap used to keep the tokens of all lines of the language pack sample files, i.e. the
+ * <code>*.example.*</code> files, as regular token lists and as {@link CompactTokenList}s.
+ * <p>
+ * Each sample file is repeated up to {@value #LINES_PER_SAMPLE} lines, to resemble large documents.
+ * <p>
+ * Located in the model package since {@link CompactTokenList} is package-private. Run with a fixed heap size, e.g.
+ * <code>-Xms2g -Xmx2g</code>, for stable results.
+ */
+public final class TokenStorageHeapBenchmark {
+
+	private static final int LINES_PER_SAMPLE = 20_000;
+
+	private record Sample(Path grammarFile, List<String> lines) {
+	}
+
+	public static void main(final String... args) throws Exception {
+		final var samples = findSamples(Paths.get("../org.eclipse.tm4e.language_pack/syntaxes"));
+		System.out.println(String.format("Samples: %d, lines per sample: %,d", samples.size(), LINES_PER_SAMPLE));
+
+		// warm up, so that static caches, e.g. of compiled regexes, are filled before measuring
+		tokenize(samples, UnaryOperator.identity());
+
+		final long regularBytes = measureRetainedHeap(samples, UnaryOperator.identity());
+		// the lines of all samples share one token kinds table, like the lines of one model
+		final var kinds = new CompactTokenList.TokenKinds();
+		final long compactBytes = measureRetainedHeap(samples, tokens -> CompactTokenList.of(tokens, kinds));
+		System.out.println(String.format("List<TMToken>:    %,12d bytes", regularBytes));
+		System.out.println(String.format("CompactTokenList: %,12d bytes (%.1f%%)", compactBytes, 100.0 * compactBytes / regularBytes));
+		System.out.println(String.format("Shared token kinds: %,d", kinds.size()));
+	}
+
+	private static List<Sample> findSamples(final Path syntaxesDir) throws IOException {
+		final var samples = new ArrayList<Sample>();
+		try (var files = Files.walk(syntaxesDir)) {
+			for (final Path sampleFile : files.filter(f -> f.getFileName().toString().contains(".example.")).sorted().toList()) {
+				final var fileName = sampleFile.getFileName().toString();
+				final var languageName = fileName.substring(0, fileName.indexOf(".example."));
+				for (final var ext : new String[] { ".tmLanguage.json", ".tmLanguage.yaml", ".tmLanguage" }) {
+					final var grammarFile = sampleFile.resolveSibling(languageName + ext);
+					if (Files.exists(grammarFile)) {
+						samples.add(new Sample(grammarFile, Files.readAllLines(sampleFile)));
+						break;
+					}
+				}
+			}
+		}
+		return samples;
+	}
+
+	/**
+	 * Tokenizes the samples the way a {@link TMModel} does, i.e. each line individually, and returns the token lists of all
+	 * lines converted with the given function.
+	 */
+	private static List<List<TMToken>> tokenize(final List<Sample> samples, final UnaryOperator<List<TMToken>> converter)
+			throws IOException {
+		final var tokenLists = new ArrayList<List<TMToken>>(samples.size() * LINES_PER_SAMPLE);
+		for (final var sample : samples) {
+			final var grammar = new Registry().addGrammar(IGrammarSource.fromFile(sample.grammarFile));
+			final var tokenizer = new TMTokenizationSupport(grammar);
+			var state = tokenizer.getInitialState();
+			int tokenizedLines = 0;
+			while (!sample.lines.isEmpty() && tokenizedLines < LINES_PER_SAMPLE) {
+				for (final String line : sample.lines) {
+					final var result = tokenizer.tokenize(line, state);
+					tokenLists.add(converter.apply(result.getTokens()));
+					state = result.getEndState();
+					if (++tokenizedLines == LINES_PER_SAMPLE)
+						break;
+				}
+			}
+		}
+		return tokenLists;
+	}
+
+	/**
+	 * @return the heap retained by the token lists of all samples after converting them with the given function
+	 */
+	private static long measureRetainedHeap(final List<Sample> samples, final UnaryOperator<List<TMToken>> converter)
+			throws IOException {
+		final long before = usedHeap();
+		final var tokenLists = tokenize(samples, converter);
+		final long after = usedHeap();
+		System.out.println(String.format("Tokenized lines: %,d", tokenLists.size()));
+		return after - before;
+	}
+
+	private static long usedHeap() {
+		final var runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private TokenStorageHeapBenchmark() {
+	}
+}
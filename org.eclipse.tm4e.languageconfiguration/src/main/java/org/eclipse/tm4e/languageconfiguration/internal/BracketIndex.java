@@ -0,0 +1,305 @@
+/**
+ * Copyright (c) 2026 Sebastian Thomschke and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.tm4e.languageconfiguration.internal;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.tm4e.core.model.ITMModel;
+import org.eclipse.tm4e.core.model.ModelTokensChangedEvent;
+import org.eclipse.tm4e.core.model.TMToken;
+
+/**
+ * Per document index of the structural brackets of each line, i.e. the bracket characters not located inside of
+ * string, comment or character tokens, used by {@link LanguageConfigurationCharacterPairMatcher}.
+ * <p>
+ * Besides the bracket offsets each line stores, per bracket pair, the net nesting depth change of the line and the
+ * lowest nesting depth reached while walking the line forwards and backwards. Searching the mate of a bracket therefore
+ * only evaluates the brackets of the line containing the mate and skips all other lines in constant time.
+ * <p>
+ * Lines are indexed lazily on first access. An entry is dropped when a {@link ModelTokensChangedEvent} reports new
+ * tokens for its line, and is only used as long as the line still has the token list instance and length it was
+ * computed from. Line insertions and removals that shift lines without re-tokenizing them are detected this way too.
+ * <p>
+ * Lookups are expected to be done by a single thread, usually the UI thread.
+ */
+final class BracketIndex implements ModelTokensChangedEvent.Listener {
+
+	private static final int[] NO_COLUMNS = new int[0];
+
+	/**
+	 * Structural brackets of one line.
+	 */
+	private static final class LineBrackets {
+		/** the tokens the entry was computed from, null if the line was not tokenized */
+		final @Nullable List<TMToken> tokens;
+		final int lineLength;
+		final int[] columns;
+		final char[] chars;
+
+		/** per bracket pair: number of opening minus number of closing brackets */
+		final int[] delta;
+		/** per bracket pair: lowest nesting depth reached when walking the line from its start, <= 0 */
+		final int[] minForward;
+		/** per bracket pair: lowest nesting depth reached when walking the line from its end, <= 0 */
+		final int[] minBackward;
+
+		LineBrackets(final @Nullable List<TMToken> tokens, final int lineLength, final int[] columns, final char[] chars,
+				final char[] bracketPairs) {
+			this.tokens = tokens;
+			this.lineLength = lineLength;
+			this.columns = columns;
+			this.chars = chars;
+
+			final int pairs = bracketPairs.length / 2;
+			delta = new int[pairs];
+			minForward = new int[pairs];
+			minBackward = new int[pairs];
+			for (int p = 0; p < pairs; p++) {
+				final char open = bracketPairs[2 * p];
+				final char close = bracketPairs[2 * p + 1];
+				int depth = 0;
+				int min = 0;
+				for (final char c : chars) {
+					if (c == open) {
+						depth++;
+					} else if (c == close) {
+						depth--;
+						min = Math.min(min, depth);
+					}
+				}
+				delta[p] = depth;
+				minForward[p] = min;
+
+				depth = 0;
+				min = 0;
+				for (int i = chars.length - 1; i >= 0; i--) {
+					final char c = chars[i];
+					if (c == close) {
+						depth++;
+					} else if (c == open) {
+						depth--;
+						min = Math.min(min, depth);
+					}
+				}
+				minBackward[p] = min;
+			}
+		}
+
+		int indexOfColumn(final int column) {
+			return Arrays.binarySearch(columns, column);
+		}
+	}
+
+	static boolean isStringCommentOrCharacterToken(final TMToken token) {
+		for (final String scope : token.scopes) {
+			if (scope.startsWith("string.") || scope.contains(".string.")
+					|| scope.startsWith("comment.") || scope.contains(".comment.")
+					|| scope.contains("constant.character")) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	final ITMModel model;
+	final IDocument document;
+	final char[] bracketPairs;
+
+	/**
+	 * Only resized by the thread doing the lookups. Entries are also cleared by the tokenizer thread, which is harmless
+	 * since entries are validated against the current tokens of their line before use.
+	 */
+	private volatile @Nullable LineBrackets[] lines = new @Nullable LineBrackets[0];
+
+	BracketIndex(final ITMModel model, final IDocument document, final char[] bracketPairs) {
+		this.model = model;
+		this.document = document;
+		this.bracketPairs = bracketPairs;
+		model.addModelTokensChangedListener(this);
+	}
+
+	void dispose() {
+		model.removeModelTokensChangedListener(this);
+		lines = new @Nullable LineBrackets[0];
+	}
+
+	@Override
+	public void onModelTokensChanged(final ModelTokensChangedEvent event) {
+		final var lines = this.lines;
+		for (final var range : event.ranges) {
+			final int from = Math.max(0, range.fromLineNumber - 1);
+			final int to = Math.min(lines.length, range.toLineNumber);
+			if (from < to) {
+				Arrays.fill(lines, from, to, null);
+			}
+		}
+	}
+
+	/**
+	 * @return true if the bracket character at the given offset is not located inside of a string, comment or character
+	 *         token
+	 */
+	boolean isStructuralBracket(final int offset) throws BadLocationException {
+		final int lineIndex = document.getLineOfOffset(offset);
+		return getLineBrackets(lineIndex).indexOfColumn(offset - document.getLineOffset(lineIndex)) >= 0;
+	}
+
+	/**
+	 * Same semantics as a character by character search that skips characters inside of string, comment or character
+	 * tokens: searching forward, each further <code>bracketChar</code> increases the nesting and the first
+	 * <code>mate</code> at nesting 0 is the match; searching backward likewise.
+	 *
+	 * @return the offset of the matching bracket or -1 if none was found
+	 */
+	int findMatchingBracket(final int bracketOffset, final char bracketChar, final char mate,
+			final boolean searchForward) throws BadLocationException {
+		final int startLine = document.getLineOfOffset(bracketOffset);
+		final int startColumn = bracketOffset - document.getLineOffset(startLine);
+
+		// the per line depth summaries can only be used if bracketChar and mate form a pair in this order
+		int pair = -1;
+		for (int p = 0; p < bracketPairs.length / 2; p++) {
+			if (searchForward && bracketPairs[2 * p] == bracketChar && bracketPairs[2 * p + 1] == mate
+					|| !searchForward && bracketPairs[2 * p] == mate && bracketPairs[2 * p + 1] == bracketChar) {
+				pair = p;
+				break;
+			}
+		}
+
+		int nesting = 0;
+		if (searchForward) {
+			for (int line = startLine, lineCount = document.getNumberOfLines(); line < lineCount; line++) {
+				final var brackets = getLineBrackets(line);
+				if (line != startLine && pair != -1 && nesting + brackets.minForward[pair] >= 0) {
+					// the mate is not located in this line
+					nesting += brackets.delta[pair];
+					continue;
+				}
+				for (int i = 0; i < brackets.columns.length; i++) {
+					if (line == startLine && brackets.columns[i] <= startColumn) {
+						continue;
+					}
+					final char c = brackets.chars[i];
+					if (c == bracketChar) {
+						nesting++;
+					} else if (c == mate) {
+						if (nesting == 0)
+							return document.getLineOffset(line) + brackets.columns[i];
+						nesting--;
+					}
+				}
+			}
+		} else {
+			for (int line = startLine; line >= 0; line--) {
+				final var brackets = getLineBrackets(line);
+				if (line != startLine && pair != -1 && nesting + brackets.minBackward[pair] >= 0) {
+					// the mate is not located in this line
+					nesting -= brackets.delta[pair];
+					continue;
+				}
+				for (int i = brackets.columns.length - 1; i >= 0; i--) {
+					if (line == startLine && brackets.columns[i] >= startColumn) {
+						continue;
+					}
+					final char c = brackets.chars[i];
+					if (c == bracketChar) {
+						nesting++;
+					} else if (c == mate) {
+						if (nesting == 0)
+							return document.getLineOffset(line) + brackets.columns[i];
+						nesting--;
+					}
+				}
+			}
+		}
+		return -1;
+	}
+
+	private LineBrackets getLineBrackets(final int lineIndex) throws BadLocationException {
+		final var tokens = model.getLineTokens(lineIndex);
+		final int lineLength = document.getLineLength(lineIndex);
+
+		var lines = this.lines;
+		if (lineIndex < lines.length) {
+			final var cached = lines[lineIndex];
+			if (cached != null && tokens != null && cached.tokens == tokens && cached.lineLength == lineLength)
+				return cached;
+		}
+
+		final var brackets = computeLineBrackets(lineIndex, tokens, lineLength);
+		if (tokens == null)
+			return brackets; // the line will be tokenized soon, so don't cache it
+
+		final int lineCount = document.getNumberOfLines();
+		if (lines.length != lineCount) {
+			this.lines = lines = Arrays.copyOf(lines, lineCount);
+		}
+		if (lineIndex < lines.length) {
+			lines[lineIndex] = brackets;
+		}
+		return brackets;
+	}
+
+	private LineBrackets computeLineBrackets(final int lineIndex, final @Nullable List<TMToken> tokens, final int lineLength)
+			throws BadLocationException {
+		final String lineText = document.get(document.getLineOffset(lineIndex), lineLength);
+
+		int[] columns = NO_COLUMNS;
+		char[] chars = new char[0];
+		int count = 0;
+		int tokenIndex = -1;
+		boolean excluded = false;
+		final int tokenCount = tokens == null ? 0 : tokens.size();
+		for (int column = 0; column < lineLength; column++) {
+			if (tokens != null) {
+				// advance to the last token starting at or before this column
+				boolean tokenChanged = false;
+				while (tokenIndex + 1 < tokenCount && tokens.get(tokenIndex + 1).startIndex <= column) {
+					tokenIndex++;
+					tokenChanged = true;
+				}
+				if (tokenChanged) {
+					excluded = isStringCommentOrCharacterToken(tokens.get(tokenIndex));
+				}
+			}
+			if (excluded)
+				continue;
+
+			final char c = lineText.charAt(column);
+			if (!isBracketChar(c))
+				continue;
+
+			if (count == columns.length) {
+				final int newLength = Math.max(4, count * 2);
+				columns = Arrays.copyOf(columns, newLength);
+				chars = Arrays.copyOf(chars, newLength);
+			}
+			columns[count] = column;
+			chars[count] = c;
+			count++;
+		}
+		return new LineBrackets(tokens, lineLength,
+				count == columns.length ? columns : Arrays.copyOf(columns, count),
+				count == chars.length ? chars : Arrays.copyOf(chars, count),
+				bracketPairs);
+	}
+
+	private boolean isBracketChar(final char ch) {
+		for (final char c : bracketPairs) {
+			if (c == ch)
+				return true;
+		}
+		return false;
+	}
+}
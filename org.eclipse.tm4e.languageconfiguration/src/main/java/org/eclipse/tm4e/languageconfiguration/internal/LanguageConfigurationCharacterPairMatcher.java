@@ -46,6 +46,7 @@ public class LanguageConfigurationCharacterPairMatcher implements ICharacterPair
 	private char[] bracketPairs = NO_BRACKETS;
 	private char[] quoteChars = NO_QUOTES;
 	private int anchor = -1;
+	private @Nullable BracketIndex bracketIndex;
 
 	@Override
 	public @Nullable IRegion match(final IDocument document, final int offset) {
@@ -137,6 +138,7 @@ public void dispose() {
 			matcher.dispose();
 		}
 		matcher = null;
+		disposeBracketIndex();
 		bracketPairs = NO_BRACKETS;
 		quoteChars = NO_QUOTES;
 		anchor = -1;
@@ -290,8 +292,10 @@ private char getMatchingBracket(final char ch) {
 				return null;
 			}
 
+			final var bracketIndex = getBracketIndex(tmModel, document);
+
 			// do not treat brackets inside string/comment/character tokens as structural
-			if (isInsideStringCommentOrCharacterToken(tmModel, document, bracketOffset)) {
+			if (!bracketIndex.isStructuralBracket(bracketOffset)) {
 				return null;
 			}
 
@@ -299,46 +303,10 @@ private char getMatchingBracket(final char ch) {
 			if (mate == '\0')
 				return null;
 
-			if (searchForward) {
-				final int startPos = bracketOffset + 1;
-				int nesting = 0;
-				for (int pos = startPos; pos < docLength; pos++) {
-					if (isInsideStringCommentOrCharacterToken(tmModel, document, pos)) {
-						continue;
-					}
-					final char c = document.getChar(pos);
-					if (c == bracketChar) {
-						nesting++;
-					} else if (c == mate) {
-						if (nesting == 0) {
-							anchor = ICharacterPairMatcher.LEFT;
-							final int start = bracketOffset;
-							final int end = pos;
-							return new Region(Math.min(start, end), Math.abs(end - start) + 1);
-						}
-						nesting--;
-					}
-				}
-			} else {
-				final int startPos = bracketOffset - 1;
-				int nesting = 0;
-				for (int pos = startPos; pos >= 0; pos--) {
-					if (isInsideStringCommentOrCharacterToken(tmModel, document, pos)) {
-						continue;
-					}
-					final char c = document.getChar(pos);
-					if (c == bracketChar) {
-						nesting++;
-					} else if (c == mate) {
-						if (nesting == 0) {
-							anchor = ICharacterPairMatcher.RIGHT;
-							final int start = pos;
-							final int end = bracketOffset;
-							return new Region(Math.min(start, end), Math.abs(end - start) + 1);
-						}
-						nesting--;
-					}
-				}
+			final int mateOffset = bracketIndex.findMatchingBracket(bracketOffset, bracketChar, mate, searchForward);
+			if (mateOffset != -1) {
+				anchor = searchForward ? ICharacterPairMatcher.LEFT : ICharacterPairMatcher.RIGHT;
+				return new Region(Math.min(bracketOffset, mateOffset), Math.abs(mateOffset - bracketOffset) + 1);
 			}
 		} catch (final BadLocationException e) {
 			// ignore and fall through to default matcher
@@ -346,6 +314,29 @@ private char getMatchingBracket(final char ch) {
 		return null;
 	}
 
+	/**
+	 * @return the bracket index of the given model, (re-)created if the model, the document or the bracket pairs changed
+	 */
+	private BracketIndex getBracketIndex(final ITMModel tmModel, final IDocument document) {
+		var bracketIndex = this.bracketIndex;
+		if (bracketIndex == null
+				|| bracketIndex.model != tmModel
+				|| bracketIndex.document != document
+				|| bracketIndex.bracketPairs != bracketPairs) {
+			disposeBracketIndex();
+			this.bracketIndex = bracketIndex = new BracketIndex(tmModel, document, bracketPairs);
+		}
+		return bracketIndex;
+	}
+
+	private void disposeBracketIndex() {
+		final var bracketIndex = this.bracketIndex;
+		if (bracketIndex != null) {
+			bracketIndex.dispose();
+			this.bracketIndex = null;
+		}
+	}
+
 	private @Nullable IRegion filterBracketRegion(final IDocument document, final @Nullable IRegion region) {
 		if (region == null)
 			return null;
@@ -634,14 +625,7 @@ private static boolean isInsideStringCommentOrCharacterToken(final ITMModel tmMo
 			if (column < tokenStart || column >= tokenEnd) {
 				continue;
 			}
-			for (final String scope : token.scopes) {
-				if (scope.startsWith("string.") || scope.contains(".string.")
-						|| scope.startsWith("comment.") || scope.contains(".comment.")
-						|| scope.contains("constant.character")) {
-					return true;
-				}
-			}
-			return false;
+			return BracketIndex.isStringCommentOrCharacterToken(token);
 		}
 		return false;
 	}
@@ -52,6 +52,7 @@ public void projectionEnabled() {
 			if (projectionViewer != null) {
 				projectionAnnotationModel = projectionViewer.getProjectionAnnotationModel();
 			}
+			onProjectionEnabled();
 		}
 	};
 
@@ -78,6 +79,12 @@ protected boolean modifyAnnotations(final Collection<? extends Annotation> delet
 		return true;
 	}
 
+	/**
+	 * Called when projection got (re-)enabled, i.e. when the annotation model may not contain any folding annotations.
+	 */
+	protected void onProjectionEnabled() {
+	}
+
 	@Override
 	public void initialReconcile() {
 		reconcile(null);
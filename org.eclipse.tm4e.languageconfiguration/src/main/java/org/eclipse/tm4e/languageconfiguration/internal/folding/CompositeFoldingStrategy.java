@@ -25,68 +25,72 @@
 import org.eclipse.jface.text.reconciler.IReconcilingStrategyExtension;
 
 /**
- * Applies annotations from both the indent‐based and the language‐configuration‐based
+ * Applies annotations from the indent‐based, the language‐configuration‐based and the grammar‐scope‐based
  * folding strategies for a single Eclipse editor.
  * <p>
  * Since only one {@code foldingReconcilingStrategy} can be active per editor
- * at a time, this class delegates to {@link IndentationFoldingStrategy} and {@link TMFoldingStrategy}.
+ * at a time, this class delegates to {@link IndentationFoldingStrategy}, {@link TMFoldingStrategy} and
+ * {@link ScopeFoldingStrategy}. The indentation based folding ranges are only applied while the scope based folding
+ * strategy is inactive, i.e. for documents with folding markers or without a connected TM model.
  * </p>
  */
 public final class CompositeFoldingStrategy
 		implements IReconcilingStrategy, IReconcilingStrategyExtension, ITextViewerLifecycle {
 
-	private static final List<AbstractFoldingStrategy> DELEGATES = List.of(
+	// per instance, as the delegates cache per document state
+	private final List<AbstractFoldingStrategy> delegates = List.of(
 			new IndentationFoldingStrategy(),
-			new TMFoldingStrategy());
+			new TMFoldingStrategy(),
+			new ScopeFoldingStrategy());
 
 	public CompositeFoldingStrategy() {
 	}
 
 	@Override
 	public void initialReconcile() {
-		for (final AbstractFoldingStrategy delegate : DELEGATES) {
+		for (final AbstractFoldingStrategy delegate : delegates) {
 			delegate.initialReconcile();
 		}
 	}
 
 	@Override
 	public void install(final ITextViewer textViewer) {
-		for (final AbstractFoldingStrategy delegate : DELEGATES) {
+		for (final AbstractFoldingStrategy delegate : delegates) {
 			delegate.install(textViewer);
 		}
 	}
 
 	@Override
 	public void reconcile(final DirtyRegion dirtyRegion, final @Nullable IRegion subRegion) {
-		for (final AbstractFoldingStrategy delegate : DELEGATES) {
+		for (final AbstractFoldingStrategy delegate : delegates) {
 			delegate.reconcile(dirtyRegion, subRegion);
 		}
 	}
 
 	@Override
 	public void reconcile(final IRegion partition) {
-		for (final AbstractFoldingStrategy delegate : DELEGATES) {
+		for (final AbstractFoldingStrategy delegate : delegates) {
 			delegate.reconcile(partition);
 		}
 	}
 
 	@Override
 	public void setDocument(final @Nullable IDocument document) {
-		for (final AbstractFoldingStrategy delegate : DELEGATES) {
+		for (final AbstractFoldingStrategy delegate : delegates) {
 			delegate.setDocument(document);
 		}
 	}
 
 	@Override
 	public void setProgressMonitor(final @Nullable IProgressMonitor monitor) {
-		for (final AbstractFoldingStrategy delegate : DELEGATES) {
+		for (final AbstractFoldingStrategy delegate : delegates) {
 			delegate.setProgressMonitor(monitor);
 		}
 	}
 
 	@Override
 	public void uninstall() {
-		for (final AbstractFoldingStrategy delegate : DELEGATES) {
+		for (final AbstractFoldingStrategy delegate : delegates) {
 			delegate.uninstall();
 		}
 	}
@@ -0,0 +1,325 @@
+/**
+ * Copyright (c) 2026 Sebastian Thomschke and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.tm4e.languageconfiguration.internal.folding;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.UnaryOperator;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentListener;
+
+/**
+ * Per document cache of a folding strategy, holding for each line
+ * <ul>
+ * <li>a value computed from the line's text only, e.g. the folding marker found in the line or its indentation level,
+ * <li>the state of the folding range computation before the line, e.g. the folding ranges still open at that line.
+ * </ul>
+ * and the folding ranges computed by the last reconcile.
+ * <p>
+ * The cache listens to document changes: the values and states of the edited lines are reset, so that the next reconcile
+ * only evaluates the edited lines and resumes the folding range computation at the first edited line. The states of the
+ * lines after the edited lines are kept, so that the computation can stop at the first of these lines where the
+ * recomputed state equals the cached one, see {@link Snapshot#converge(int, Object, UnaryOperator)}.
+ * </p>
+ * The reconciler thread works on a {@link #snapshot(Object) snapshot} which it writes back via {@link #update(Snapshot)}
+ * unless the document was modified meanwhile.
+ *
+ * @param <S> type of the folding range computation state
+ * @param <R> type of the folding ranges
+ */
+final class FoldingLineCache<S, R> implements IDocumentListener {
+
+	/** Value of lines that were not evaluated since their last modification */
+	static final int UNKNOWN = Integer.MIN_VALUE;
+
+	static final class Snapshot<S, R> {
+		private final int modificationStamp;
+		final int lineCount;
+		private final int[] values;
+		private final @Nullable Object[] states;
+
+		/**
+		 * Index of the first line whose state is not known, i.e. the line from where the folding ranges must be
+		 * recomputed. The state of this line itself is known.
+		 */
+		int resumeLineIndex;
+
+		/** the folding ranges ordered by the index of the line that closed them */
+		List<R> ranges;
+
+		/**
+		 * Index of the first line after the lines edited since the last update. The cached states from this line on and the
+		 * cached {@link #ranges} closed after the edited lines were computed before the edits, i.e. they refer to lines by
+		 * their index before the edits.
+		 */
+		final int editEndLineIndex;
+
+		/** number of lines inserted (positive) or removed (negative) by the edits since the last update */
+		final int lineDelta;
+
+		private final int editStartLineIndex;
+
+		Snapshot(final int modificationStamp, final int lineCount, final int[] values, final @Nullable Object[] states,
+				final int resumeLineIndex, final List<R> ranges, final int editEndLineIndex, final int lineDelta) {
+			this.modificationStamp = modificationStamp;
+			this.lineCount = lineCount;
+			this.values = values;
+			this.states = states;
+			this.resumeLineIndex = resumeLineIndex;
+			this.ranges = ranges;
+			this.editStartLineIndex = resumeLineIndex;
+			this.editEndLineIndex = editEndLineIndex;
+			this.lineDelta = lineDelta;
+		}
+
+		/**
+		 * Maps the index of a line before the edits to its index after the edits.
+		 *
+		 * @return the index after the edits, or -1 if the line was edited
+		 */
+		int shiftLineIndex(final int lineIndex) {
+			if (lineIndex < editStartLineIndex)
+				return lineIndex;
+			return lineIndex >= editEndLineIndex - lineDelta ? lineIndex + lineDelta : -1;
+		}
+
+		/**
+		 * Checks if the state recomputed for a line after the edited lines equals the state cached for it before the edits.
+		 * If so, the cached states of all following lines are still valid and are kept with their line indexes shifted. Must be
+		 * called before the recomputed state is stored via {@link #setState(int, Object)}.
+		 *
+		 * @param state the recomputed state of the line
+		 * @param shiftState returns the given state computed before the edits with its line indexes mapped via
+		 *            {@link #shiftLineIndex(int)}, or the given state itself if no index changes
+		 *
+		 * @return true if the states of the given line and all following lines are known, i.e. the folding ranges
+		 *         closed after the edited lines do not need to be recomputed
+		 */
+		@SuppressWarnings("unchecked")
+		boolean converge(final int lineIndex, final @Nullable S state, final UnaryOperator<S> shiftState) {
+			if (lineIndex < editEndLineIndex || lineIndex >= lineCount)
+				return false;
+
+			// also shifted without inserted or removed lines, so that states referring to edited lines never match
+			final var cachedState = (S) states[lineIndex];
+			if (!Objects.equals(state, cachedState == null ? null : shiftState.apply(cachedState)))
+				return false;
+
+			states[lineIndex] = state;
+			if (lineDelta != 0) {
+				// consecutive lines mostly share the same state
+				@Nullable
+				Object prevState = null;
+				@Nullable
+				Object prevShiftedState = null;
+				for (int i = lineIndex + 1; i <= lineCount; i++) {
+					final var s = states[i];
+					if (s != prevState) {
+						prevState = s;
+						prevShiftedState = s == null ? null : shiftState.apply((S) s);
+					}
+					states[i] = prevShiftedState;
+				}
+			}
+			return true;
+		}
+
+		int getValue(final int lineIndex) {
+			return values[lineIndex];
+		}
+
+		void setValue(final int lineIndex, final int value) {
+			values[lineIndex] = value;
+		}
+
+		/**
+		 * @param lineIndex 0..{@link #lineCount}, the latter denoting the state at the end of the document
+		 */
+		@SuppressWarnings("unchecked")
+		@Nullable
+		S getState(final int lineIndex) {
+			return (S) states[lineIndex];
+		}
+
+		/**
+		 * @param lineIndex 0..{@link #lineCount}, the latter denoting the state at the end of the document
+		 */
+		void setState(final int lineIndex, final @Nullable S state) {
+			states[lineIndex] = state;
+		}
+	}
+
+	private final IDocument document;
+
+	private @Nullable Object configKey;
+	private int modificationStamp;
+	private int lineCount;
+	private int[] values;
+	private @Nullable Object[] states;
+	private int resumeLineIndex;
+	private List<R> ranges = List.of();
+
+	/**
+	 * Index of the first line after the lines edited since the last update, 0 if there were no edits and greater than
+	 * {@link #lineCount} if the cached states are unknown
+	 */
+	private int editEndLineIndex;
+
+	/** number of lines inserted (positive) or removed (negative) by the edits since the last update */
+	private int lineDelta;
+
+	/** first and last line index affected by the document change currently in progress, -1 if unknown */
+	private int changeStartLineIndex = -1;
+	private int changeEndLineIndex = -1;
+
+	FoldingLineCache(final IDocument document) {
+		this.document = document;
+		lineCount = document.getNumberOfLines();
+		values = new int[lineCount];
+		Arrays.fill(values, UNKNOWN);
+		states = new @Nullable Object[lineCount + 1];
+		editEndLineIndex = lineCount + 1;
+	}
+
+	void connect() {
+		document.addDocumentListener(this);
+	}
+
+	void disconnect() {
+		document.removeDocumentListener(this);
+	}
+
+	/**
+	 * @param configKey the configuration the cached values and states were computed with, e.g. the folding markers. If it
+	 *            differs from the one of the previous snapshot, all cached values and states are discarded.
+	 *
+	 * @return a copy of the cache that can be modified without synchronization
+	 */
+	synchronized Snapshot<S, R> snapshot(final Object configKey) {
+		if (!Objects.equals(configKey, this.configKey)) {
+			this.configKey = configKey;
+			invalidate();
+		}
+		return new Snapshot<>(modificationStamp, lineCount, Arrays.copyOf(values, lineCount),
+				Arrays.copyOf(states, lineCount + 1), resumeLineIndex, ranges, editEndLineIndex, lineDelta);
+	}
+
+	/**
+	 * Replaces the cached values and states with the ones of the given snapshot.
+	 *
+	 * @return false if the document was modified since the snapshot was taken, in which case the cache is not updated
+	 */
+	synchronized boolean update(final Snapshot<S, R> snapshot) {
+		if (snapshot.modificationStamp != modificationStamp)
+			return false;
+		values = snapshot.values;
+		states = snapshot.states;
+		resumeLineIndex = snapshot.resumeLineIndex;
+		ranges = snapshot.ranges;
+		editEndLineIndex = 0;
+		lineDelta = 0;
+		return true;
+	}
+
+	/**
+	 * Discards the computed folding ranges but keeps the cached line values, so that the next reconcile recomputes and
+	 * re-applies all folding ranges without re-evaluating unchanged lines.
+	 */
+	synchronized void invalidateRanges() {
+		modificationStamp++;
+		resumeLineIndex = 0;
+		ranges = List.of();
+		editEndLineIndex = lineCount + 1;
+	}
+
+	private void invalidate() {
+		Arrays.fill(values, 0, lineCount, UNKNOWN);
+		Arrays.fill(states, 0, lineCount + 1, null);
+		resumeLineIndex = 0;
+		ranges = List.of();
+		editEndLineIndex = lineCount + 1;
+	}
+
+	@Override
+	public synchronized void documentAboutToBeChanged(final DocumentEvent event) {
+		try {
+			changeStartLineIndex = document.getLineOfOffset(event.getOffset());
+			changeEndLineIndex = document.getLineOfOffset(event.getOffset() + event.getLength());
+		} catch (final BadLocationException ex) {
+			changeStartLineIndex = changeEndLineIndex = -1;
+		}
+	}
+
+	@Override
+	public synchronized void documentChanged(final DocumentEvent event) {
+		modificationStamp++;
+		final int startLineIndex = changeStartLineIndex;
+		final int replacedCount = changeEndLineIndex - startLineIndex + 1;
+		changeStartLineIndex = changeEndLineIndex = -1;
+
+		final int newLineCount = document.getNumberOfLines();
+		int replacementCount;
+		try {
+			final String text = event.getText();
+			replacementCount = document.getLineOfOffset(event.getOffset() + (text == null ? 0 : text.length()))
+					- startLineIndex + 1;
+		} catch (final BadLocationException ex) {
+			replacementCount = -1;
+		}
+
+		if (startLineIndex < 0 || replacementCount < 0 || lineCount - replacedCount + replacementCount != newLineCount) {
+			// unexpected event sequence -> start over
+			values = new int[newLineCount];
+			states = new @Nullable Object[newLineCount + 1];
+			lineCount = newLineCount;
+			invalidate();
+			return;
+		}
+
+		replaceLines(startLineIndex, replacedCount, replacementCount);
+	}
+
+	/**
+	 * Marks the given lines as unknown and invalidates their states, except the state of the first of them. The states of the
+	 * following lines are moved along with their lines but keep referring to lines by their index before the edit.
+	 */
+	private void replaceLines(final int startLineIndex, final int replacedCount, final int replacementCount) {
+		final int delta = replacementCount - replacedCount;
+		if (delta != 0) {
+			final int newLineCount = lineCount + delta;
+			final var newValues = new int[newLineCount];
+			System.arraycopy(values, 0, newValues, 0, startLineIndex);
+			System.arraycopy(values, startLineIndex + replacedCount, newValues, startLineIndex + replacementCount,
+					lineCount - startLineIndex - replacedCount);
+			values = newValues;
+
+			final var newStates = new @Nullable Object[newLineCount + 1];
+			System.arraycopy(states, 0, newStates, 0, startLineIndex + 1);
+			System.arraycopy(states, startLineIndex + replacedCount, newStates, startLineIndex + replacementCount,
+					lineCount - startLineIndex - replacedCount + 1);
+			states = newStates;
+			lineCount = newLineCount;
+		}
+		Arrays.fill(values, startLineIndex, startLineIndex + replacementCount, UNKNOWN);
+		Arrays.fill(states, startLineIndex + 1, startLineIndex + replacementCount, null);
+		resumeLineIndex = Math.min(resumeLineIndex, startLineIndex);
+
+		// the lines edited since the last update now end after this edit, unless a previous edit ends further down
+		editEndLineIndex = editEndLineIndex > startLineIndex + replacedCount
+				? editEndLineIndex + delta
+				: startLineIndex + replacementCount;
+		lineDelta += delta;
+	}
+}
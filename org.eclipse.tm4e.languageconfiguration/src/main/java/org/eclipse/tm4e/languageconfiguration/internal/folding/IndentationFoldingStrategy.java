@@ -12,17 +12,16 @@
  */
 package org.eclipse.tm4e.languageconfiguration.internal.folding;
 
-import static org.eclipse.tm4e.core.internal.utils.NullSafetyHelper.castNonNull;
-
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.IRegion;
 import org.eclipse.jface.text.Position;
 import org.eclipse.jface.text.reconciler.DirtyRegion;
@@ -31,6 +30,8 @@
 import org.eclipse.tm4e.languageconfiguration.LanguageConfigurationPlugin;
 import org.eclipse.tm4e.languageconfiguration.internal.utils.TextEditorPrefs;
 import org.eclipse.tm4e.ui.internal.model.DocumentHelper;
+import org.eclipse.tm4e.ui.internal.utils.ContentTypeHelper;
+import org.eclipse.tm4e.ui.internal.utils.ContentTypeInfo;
 
 /**
  * Folding strategy that derives foldable regions from indentation levels.
@@ -39,6 +40,10 @@
  * The range ends one line <em>before</em> the indentation decreases back to the same or lower level.
  * Blank lines are ignored for indentation comparison.
  * </p>
+ * <p>
+ * The strategy is inactive while the {@link ScopeFoldingStrategy} provides the folding ranges of the document, since both
+ * would mostly annotate the same blocks.
+ * </p>
  */
 public final class IndentationFoldingStrategy extends AbstractFoldingStrategy {
 
@@ -51,17 +56,48 @@ private static final class IndentationFoldingAnno extends ProjectionAnnotation {
 	private record FoldingRange(int startLineIndex, int endLineIndex) {
 	}
 
-	/** Represents an indentation block by recording its indentation level and the line index where that block began. */
-	private record IndentationBlock(int startLineIndex, int indentLevel) {
+	/**
+	 * Represents the indentation blocks open at a line, innermost first, by recording their indentation level and the line
+	 * index where the block began.
+	 */
+	private record IndentationBlock(int startLineIndex, int indentLevel, @Nullable IndentationBlock outer) {
 	}
 
+	/** Cached per line value of blank lines, other lines cache their indentation level */
+	private static final int BLANK_LINE = -1;
+
+	private @Nullable ContentTypeInfo contentTypeInfo;
+	private volatile @Nullable FoldingLineCache<IndentationBlock, FoldingRange> lineCache;
+
+	/** true while the folding ranges of the document are provided by the {@link ScopeFoldingStrategy} */
+	private boolean isReplacedByScopeFolding;
+
 	@Override
 	public void reconcile(final DirtyRegion dirtyRegion, final @Nullable IRegion subRegion) {
 		final var document = this.document;
 		final var annoModel = projectionAnnotationModel;
 		final var textViewer = this.textViewer;
-		if (document == null || annoModel == null || textViewer == null)
+		final var contentTypeInfo = this.contentTypeInfo;
+		final var lineCache = this.lineCache;
+		if (document == null || annoModel == null || textViewer == null || contentTypeInfo == null || lineCache == null)
+			return;
+
+		if (ScopeFoldingStrategy.getFoldingModel(document, contentTypeInfo) != null) {
+			if (!isReplacedByScopeFolding) {
+				isReplacedByScopeFolding = true;
+				final var deletions = new ArrayList<IndentationFoldingAnno>();
+				for (final Iterator<Annotation> it = annoModel.getAnnotationIterator(); it.hasNext();) {
+					if (it.next() instanceof final IndentationFoldingAnno anno) {
+						deletions.add(anno);
+					}
+				}
+				modifyAnnotations(deletions, Map.of(), List.of());
+				// recompute and re-apply all folding ranges once scope based folding becomes inactive
+				lineCache.invalidateRanges();
+			}
 			return;
+		}
+		isReplacedByScopeFolding = false;
 
 		final int tabSize = TextEditorPrefs.getCursorConfiguration(null).indentSize;
 		if (tabSize < 1)
@@ -71,68 +107,121 @@ public void reconcile(final DirtyRegion dirtyRegion, final @Nullable IRegion sub
 			/*
 			 * Compute folding ranges
 			 */
-			final int startLineIndex = 0;
-			final int endLineIndexExclusive = document.getNumberOfLines();
+			final var cache = lineCache.snapshot(tabSize);
+
+			// scanning resumes at the first line changed since the last reconcile with the blocks open at that line
+			final int startLineIndex = cache.resumeLineIndex;
+			final int endLineIndexExclusive = cache.lineCount;
 			final int endLineIndex = endLineIndexExclusive - 1;
 
-			final var foldingRanges = new ArrayList<FoldingRange>();
-			final var openRanges = new ArrayDeque<IndentationBlock>();
+			// ranges closed before the changed area are not affected by the changes
+			final var foldingRanges = new ArrayList<FoldingRange>(cache.ranges.size());
+			for (final FoldingRange range : cache.ranges) {
+				if (range.endLineIndex + 1 >= startLineIndex) {
+					break;
+				}
+				foldingRanges.add(range);
+			}
 
-			int prevIndent = -1;
-			int prevLineIdx = -1;
+			@Nullable
+			IndentationBlock openRanges = cache.getState(startLineIndex);
 
+			int prevLineIdx = startLineIndex - 1;
+			while (prevLineIdx >= 0 && cache.getValue(prevLineIdx) == BLANK_LINE) {
+				prevLineIdx--;
+			}
+			int prevIndent = prevLineIdx < 0 ? -1 : cache.getValue(prevLineIdx);
+
+			// ranges starting before the outermost open block and the last non-blank line are not affected either
+			int diffStartLineIndex = prevLineIdx < 0 ? startLineIndex : Math.min(startLineIndex, prevLineIdx);
+			for (var b = openRanges; b != null; b = b.outer) {
+				diffStartLineIndex = Math.min(diffStartLineIndex, b.startLineIndex);
+			}
+
+			// scanning stops at the first line after the changed area where the open blocks and the last non-blank line are the
+			// same as before the changes
+			int convergedLineIndex = -1;
 			for (int lineIndex = startLineIndex; lineIndex < endLineIndexExclusive; lineIndex++) {
 				if (document != this.document)
 					return; // abort on changed document
 
-				final String lineText = DocumentHelper.getLineText(document, lineIndex, false);
-				final boolean isBlank = lineText.isBlank();
-				final int indentLevel = isBlank ? prevIndent : getIndentLevel(lineText, tabSize);
+				int indentLevel = cache.getValue(lineIndex);
+				if (indentLevel == FoldingLineCache.UNKNOWN) {
+					final String lineText = DocumentHelper.getLineText(document, lineIndex, false);
+					indentLevel = lineText.isBlank() ? BLANK_LINE : getIndentLevel(lineText, tabSize);
+					cache.setValue(lineIndex, indentLevel);
+				}
 
-				if (!isBlank) {
+				if (indentLevel != BLANK_LINE) {
 					if (prevIndent >= 0 && prevLineIdx >= 0 && indentLevel > prevIndent) {
 						// increased indent -> remember block starting at previous line
-						openRanges.push(new IndentationBlock(prevLineIdx, prevIndent));
+						openRanges = new IndentationBlock(prevLineIdx, prevIndent, openRanges);
 					} else if (indentLevel < prevIndent) {
 						// decreased indent -> close blocks whose indent >= new indent
-						while (!openRanges.isEmpty() && castNonNull(openRanges.peek()).indentLevel >= indentLevel) {
-							final IndentationBlock block = openRanges.pop();
-							final int startL = block.startLineIndex;
+						while (openRanges != null && openRanges.indentLevel >= indentLevel) {
+							final int startL = openRanges.startLineIndex;
 							final int endL = lineIndex - 1;
 							if (endL > startL) {
 								foldingRanges.add(new FoldingRange(startL, endL));
 							}
+							openRanges = openRanges.outer;
 						}
 					}
 					prevIndent = indentLevel;
 					prevLineIdx = lineIndex;
 				}
+				if (prevLineIdx >= cache.editEndLineIndex && cache.converge(lineIndex + 1, openRanges, b -> shift(b, cache))) {
+					convergedLineIndex = lineIndex + 1;
+					break;
+				}
+				cache.setState(lineIndex + 1, openRanges);
 			}
+			final boolean isConverged = convergedLineIndex >= 0;
 
 			// close remaining open blocks at EOF
-			while (!openRanges.isEmpty()) {
-				final IndentationBlock block = openRanges.pop();
-				final int startL = block.startLineIndex;
+			while (!isConverged && openRanges != null) {
+				final int startL = openRanges.startLineIndex;
 				final int endL = endLineIndex;
 				if (endL > startL) {
 					foldingRanges.add(new FoldingRange(startL, endL));
 				}
+				openRanges = openRanges.outer;
 			}
 
-			// ignore single line foldingRanges
-			foldingRanges.removeIf(r -> r.endLineIndex - r.startLineIndex == 0);
+			// ranges closed at or after the line where scanning stopped, i.e. ending at or after the line before it, are the
+			// same as before the changes
+			final int diffEndLineIndex = isConverged ? convergedLineIndex - 1 : Integer.MAX_VALUE;
+			final var newRanges = new HashSet<FoldingRange>();
+			for (final FoldingRange range : foldingRanges) {
+				if (range.startLineIndex >= diffStartLineIndex) {
+					newRanges.add(range);
+				}
+			}
+			if (isConverged) {
+				final int oldDiffEndLineIndex = diffEndLineIndex - cache.lineDelta;
+				for (final FoldingRange range : cache.ranges) {
+					if (range.endLineIndex >= oldDiffEndLineIndex) {
+						// shifted via the line closing the range, since the line before it may have been edited
+						foldingRanges.add(cache.lineDelta == 0 ? range
+								: new FoldingRange(cache.shiftLineIndex(range.startLineIndex),
+										cache.shiftLineIndex(range.endLineIndex + 1) - 1));
+					}
+				}
+			}
+			cache.resumeLineIndex = endLineIndexExclusive;
+			cache.ranges = foldingRanges;
 
 			/*
 			 * Diff against existing annotations
 			 */
 			final var additions = new HashMap<IndentationFoldingAnno, Position>();
 			final var deletions = new ArrayList<IndentationFoldingAnno>();
-			final var newRanges = new HashSet<>(foldingRanges);
 
-			// Iterate over existing annotations to find those that must be kept or removed
-			final var scanOffset = document.getLineOffset(startLineIndex);
-			final var scanLength = document.getLength() - scanOffset;
-			for (final Iterator<Annotation> it = annoModel.getAnnotationIterator(scanOffset, scanLength, true, true); it.hasNext();) {
+			// Iterate over existing annotations of possibly affected ranges to find those that must be kept or removed
+			final var scanOffset = document.getLineOffset(diffStartLineIndex);
+			final var scanLength = (isConverged ? document.getLineOffset(convergedLineIndex) : document.getLength()) - scanOffset;
+			for (final Iterator<Annotation> it = annoModel.getAnnotationIterator(scanOffset, scanLength,
+					diffStartLineIndex == 0, true); it.hasNext();) {
 				if (document != this.document)
 					return; // abort on changed document
 
@@ -150,6 +239,9 @@ public void reconcile(final DirtyRegion dirtyRegion, final @Nullable IRegion sub
 					final int annStartLine = document.getLineOfOffset(pos.getOffset());
 					// + (length - 1) because last char belongs to the range
 					final int annEndLine = document.getLineOfOffset(pos.getOffset() + pos.getLength() - 1);
+					if (annEndLine >= diffEndLineIndex) {
+						continue; // not affected by the changes -> keep
+					}
 					final var existing = new FoldingRange(annStartLine, annEndLine);
 					if (newRanges.remove(existing)) {
 						continue; // still valid -> keep
@@ -175,7 +267,7 @@ public void reconcile(final DirtyRegion dirtyRegion, final @Nullable IRegion sub
 			/*
 			 * Apply changes to the annotation model
 			 */
-			if (document != this.document)
+			if (document != this.document || !lineCache.update(cache))
 				return; // abort on changed document
 			modifyAnnotations(deletions, additions, List.of());
 		} catch (final BadLocationException ex) {
@@ -183,6 +275,45 @@ public void reconcile(final DirtyRegion dirtyRegion, final @Nullable IRegion sub
 		}
 	}
 
+	@Override
+	public void setDocument(final @Nullable IDocument doc) {
+		super.setDocument(doc);
+		contentTypeInfo = doc == null ? null : ContentTypeHelper.findContentTypes(doc);
+		isReplacedByScopeFolding = false;
+
+		final var oldLineCache = lineCache;
+		if (oldLineCache != null) {
+			oldLineCache.disconnect();
+		}
+		if (doc == null) {
+			lineCache = null;
+		} else {
+			final var newLineCache = new FoldingLineCache<IndentationBlock, FoldingRange>(doc);
+			newLineCache.connect();
+			lineCache = newLineCache;
+		}
+	}
+
+	@Override
+	protected void onProjectionEnabled() {
+		final var lineCache = this.lineCache;
+		if (lineCache != null) {
+			lineCache.invalidateRanges();
+		}
+	}
+
+	/**
+	 * @return the given blocks computed before the last changes with their line indexes mapped to the current lines
+	 */
+	private static IndentationBlock shift(final IndentationBlock block,
+			final FoldingLineCache.Snapshot<IndentationBlock, FoldingRange> cache) {
+		final var outer = block.outer == null ? null : shift(block.outer, cache);
+		final int startLineIndex = cache.shiftLineIndex(block.startLineIndex);
+		return startLineIndex == block.startLineIndex && outer == block.outer
+				? block
+				: new IndentationBlock(startLineIndex, block.indentLevel, outer);
+	}
+
 	/**
 	 * Computes the indentation level of a line based on leading whitespace.
 	 */
@@ -0,0 +1,295 @@
+/**
+ * Copyright (c) 2026 Sebastian Thomschke and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.tm4e.languageconfiguration.internal.folding;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.Position;
+import org.eclipse.jface.text.reconciler.DirtyRegion;
+import org.eclipse.jface.text.source.Annotation;
+import org.eclipse.jface.text.source.projection.ProjectionAnnotation;
+import org.eclipse.tm4e.core.model.ModelTokensChangedEvent;
+import org.eclipse.tm4e.core.model.Range;
+import org.eclipse.tm4e.core.model.TMModel;
+import org.eclipse.tm4e.languageconfiguration.LanguageConfigurationPlugin;
+import org.eclipse.tm4e.ui.internal.model.TMModelManager;
+import org.eclipse.tm4e.ui.internal.utils.ContentTypeHelper;
+import org.eclipse.tm4e.ui.internal.utils.ContentTypeInfo;
+
+/**
+ * Folding strategy based on the begin/end rules of TextMate grammars that span multiple lines.
+ * <p>
+ * The folding ranges are recorded by the tokenizer thread while tokenizing, see {@link TMModel#getFoldingRanges()}, so
+ * no line text is evaluated. The annotations are fully updated by the reconciler when the document changes. Token changes
+ * reported by the tokenizer thread only mark their lines as dirty and are applied in batches by a background job, which
+ * only diffs the annotations of the folding ranges overlapping the dirty lines. The strategy is only active for documents
+ * without folding markers, which are handled by {@link TMFoldingStrategy}, and replaces the
+ * {@link IndentationFoldingStrategy} while active.
+ * </p>
+ */
+public final class ScopeFoldingStrategy extends AbstractFoldingStrategy implements ModelTokensChangedEvent.Listener {
+
+	private static final class ScopeFoldingAnno extends ProjectionAnnotation {
+		ScopeFoldingAnno() {
+			super(false /* expanded by default */);
+		}
+	}
+
+	private record FoldingRange(int startLineIndex, int endLineIndex) {
+
+		boolean overlaps(final int fromLineIndex, final int toLineIndex) {
+			return startLineIndex <= toLineIndex && endLineIndex >= fromLineIndex;
+		}
+	}
+
+	/** delay to batch the token changes reported by the tokenizer thread, e.g. during the initial tokenization */
+	private static final long DIRTY_LINES_UPDATE_DELAY_MS = 200;
+
+	private @Nullable ContentTypeInfo contentTypeInfo;
+
+	/** the model of the {@link #document} this strategy listens to, null if inactive */
+	private volatile @Nullable TMModel model;
+
+	/** guards the dirty lines, separate from this, so the tokenizer thread is not blocked by running updates */
+	private final Object dirtyLinesLock = new Object();
+	/** 0-based range of lines with changed tokens not yet reflected by the annotations, empty if from > to */
+	private int dirtyFromLineIndex = Integer.MAX_VALUE;
+	private int dirtyToLineIndex = -1;
+	private boolean isDirtyLinesUpdateScheduled;
+
+	private final Job dirtyLinesUpdateJob = Job.createSystem("Updating scope based folding", monitor -> updateDirtyLines());
+
+	@Override
+	public void reconcile(final DirtyRegion dirtyRegion, final @Nullable IRegion subRegion) {
+		final var document = this.document;
+		final var contentTypeInfo = this.contentTypeInfo;
+		if (document == null || contentTypeInfo == null)
+			return;
+
+		final var model = getFoldingModel(document, contentTypeInfo);
+		setModel(model);
+		clearDirtyLines();
+		if (!updateAnnotations(document, model, 0, Integer.MAX_VALUE)) {
+			// retry once the tokenizer thread applied the latest edits
+			addDirtyLines(0, Integer.MAX_VALUE, true);
+		}
+	}
+
+	/**
+	 * @return the model providing the folding ranges of the given document, or null if this strategy is inactive for it,
+	 *         i.e. if the document has folding markers or is not connected to a TM model
+	 */
+	static @Nullable TMModel getFoldingModel(final IDocument document, final ContentTypeInfo contentTypeInfo) {
+		return FoldingSupport.getFoldingRules(contentTypeInfo) == null
+				? TMModelManager.INSTANCE.getConnectedModel(document)
+				: null;
+	}
+
+	@Override
+	public void onModelTokensChanged(final ModelTokensChangedEvent event) {
+		if (document == null || model != event.model)
+			return;
+
+		int fromLineIndex = Integer.MAX_VALUE;
+		int toLineIndex = -1;
+		for (final Range range : event.ranges) {
+			fromLineIndex = Math.min(fromLineIndex, range.fromLineNumber - 1);
+			toLineIndex = Math.max(toLineIndex, range.toLineNumber - 1);
+		}
+		addDirtyLines(fromLineIndex, toLineIndex, true);
+	}
+
+	private void addDirtyLines(final int fromLineIndex, final int toLineIndex, final boolean scheduleUpdate) {
+		if (fromLineIndex > toLineIndex)
+			return;
+		synchronized (dirtyLinesLock) {
+			dirtyFromLineIndex = Math.min(dirtyFromLineIndex, fromLineIndex);
+			dirtyToLineIndex = Math.max(dirtyToLineIndex, toLineIndex);
+			if (scheduleUpdate && !isDirtyLinesUpdateScheduled) {
+				isDirtyLinesUpdateScheduled = true;
+				dirtyLinesUpdateJob.schedule(DIRTY_LINES_UPDATE_DELAY_MS);
+			}
+		}
+	}
+
+	private void clearDirtyLines() {
+		synchronized (dirtyLinesLock) {
+			dirtyFromLineIndex = Integer.MAX_VALUE;
+			dirtyToLineIndex = -1;
+		}
+	}
+
+	private void cancelDirtyLinesUpdate() {
+		synchronized (dirtyLinesLock) {
+			dirtyLinesUpdateJob.cancel();
+			isDirtyLinesUpdateScheduled = false;
+			dirtyFromLineIndex = Integer.MAX_VALUE;
+			dirtyToLineIndex = -1;
+		}
+	}
+
+	private void updateDirtyLines() {
+		final int fromLineIndex;
+		final int toLineIndex;
+		synchronized (dirtyLinesLock) {
+			isDirtyLinesUpdateScheduled = false;
+			fromLineIndex = dirtyFromLineIndex;
+			toLineIndex = dirtyToLineIndex;
+			dirtyFromLineIndex = Integer.MAX_VALUE;
+			dirtyToLineIndex = -1;
+		}
+		final var document = this.document;
+		final var model = this.model;
+		if (document == null || model == null || fromLineIndex > toLineIndex)
+			return;
+
+		if (!updateAnnotations(document, model, fromLineIndex, toLineIndex)) {
+			// keep the lines dirty until the next token change or reconciliation
+			addDirtyLines(fromLineIndex, toLineIndex, false);
+		}
+	}
+
+	private synchronized void setModel(final @Nullable TMModel model) {
+		final var oldModel = this.model;
+		if (oldModel == model)
+			return;
+		if (oldModel != null) {
+			oldModel.removeModelTokensChangedListener(this);
+		}
+		this.model = model;
+		if (model != null) {
+			model.addModelTokensChangedListener(this);
+		}
+	}
+
+	/**
+	 * Updates the annotations of the folding ranges overlapping the given lines. The folding ranges not overlapping them are
+	 * not affected by token changes of these lines, since a range only depends on the lines it spans.
+	 *
+	 * @param model if null, all annotations of this strategy overlapping the given lines are removed
+	 * @param fromLineIndex 0-based
+	 * @param toLineIndex 0-based, inclusive, {@link Integer#MAX_VALUE} for the end of the document
+	 *
+	 * @return false if the update was skipped because the model's lines do not match the document's lines yet
+	 */
+	private synchronized boolean updateAnnotations(final IDocument document, final @Nullable TMModel model,
+			final int fromLineIndex, final int toLineIndex) {
+		final var annoModel = projectionAnnotationModel;
+		if (annoModel == null)
+			return true;
+
+		// the model's lines lag behind the document until its tokenizer thread applied the latest edits
+		final int numberOfLines = document.getNumberOfLines();
+		if (model != null && model.getNumberOfLines() != numberOfLines)
+			return false;
+
+		final int lastLineIndex = Math.min(toLineIndex, numberOfLines - 1);
+		if (fromLineIndex > lastLineIndex)
+			return true;
+		final boolean isFullUpdate = fromLineIndex <= 0 && lastLineIndex == numberOfLines - 1;
+		final Iterator<Annotation> existingAnnotations;
+		if (isFullUpdate) {
+			existingAnnotations = annoModel.getAnnotationIterator();
+		} else {
+			try {
+				final int startOffset = document.getLineOffset(fromLineIndex);
+				final int endOffset = document.getLineOffset(lastLineIndex) + document.getLineLength(lastLineIndex);
+				existingAnnotations = annoModel.getAnnotationIterator(startOffset, endOffset - startOffset, true, true);
+			} catch (final BadLocationException ex) {
+				return true; // the document changed in the meantime, the reconciler will do a full update
+			}
+		}
+
+		final var newRanges = new HashSet<FoldingRange>();
+		if (model != null) {
+			for (final Range range : model.getFoldingRanges()) {
+				final var newRange = new FoldingRange(range.fromLineNumber - 1, range.toLineNumber - 1);
+				if (isFullUpdate || newRange.overlaps(fromLineIndex, lastLineIndex)) {
+					newRanges.add(newRange);
+				}
+			}
+		}
+
+		/*
+		 * Diff against existing annotations
+		 */
+		final var additions = new HashMap<ScopeFoldingAnno, Position>();
+		final var deletions = new ArrayList<ScopeFoldingAnno>();
+
+		// Iterate over existing annotations to find those that must be kept or removed
+		for (final Iterator<Annotation> it = existingAnnotations; it.hasNext();) {
+			if (document != this.document)
+				return true; // abort on changed document
+
+			if (!(it.next() instanceof final ScopeFoldingAnno anno)) {
+				continue; // ignore foreign annotations
+			}
+
+			final Position pos = annoModel.getPosition(anno);
+			if (pos == null || pos.getLength() == 0) { // zero-length = bogus
+				deletions.add(anno);
+				continue;
+			}
+
+			try {
+				final int annStartLineIndex = document.getLineOfOffset(pos.getOffset());
+				// + (length - 1) because last char belongs to the range
+				final int annEndLineIndex = document.getLineOfOffset(pos.getOffset() + pos.getLength() - 1);
+				final var existing = new FoldingRange(annStartLineIndex, annEndLineIndex);
+				if (!isFullUpdate && !existing.overlaps(fromLineIndex, lastLineIndex)) {
+					continue; // outside of the updated lines -> keep
+				}
+				if (newRanges.remove(existing)) {
+					continue; // still valid -> keep
+				}
+				deletions.add(anno); // stale -> delete
+			} catch (final BadLocationException ex) {
+				// unable to map position -> recreate via deletions/additions
+				deletions.add(anno);
+			}
+		}
+
+		// Create Position + Annotation objects for new ranges
+		for (final FoldingRange range : newRanges) {
+			try {
+				final int startOffset = document.getLineOffset(range.startLineIndex);
+				final int endOffset = document.getLineOffset(range.endLineIndex) + document.getLineLength(range.endLineIndex);
+				additions.put(new ScopeFoldingAnno(), new Position(startOffset, endOffset - startOffset));
+			} catch (final BadLocationException ex) {
+				LanguageConfigurationPlugin.logError(ex);
+			}
+		}
+
+		/*
+		 * Apply changes to the annotation model
+		 */
+		if (document != this.document)
+			return true; // abort on changed document
+		modifyAnnotations(deletions, additions, List.of());
+		return true;
+	}
+
+	@Override
+	public void setDocument(final @Nullable IDocument doc) {
+		super.setDocument(doc);
+		contentTypeInfo = doc == null ? null : ContentTypeHelper.findContentTypes(doc);
+		setModel(null);
+		cancelDirtyLinesUpdate();
+	}
+}
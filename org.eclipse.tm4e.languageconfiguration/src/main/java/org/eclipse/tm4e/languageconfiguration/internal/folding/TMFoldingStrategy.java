@@ -26,7 +26,6 @@
 import org.eclipse.jface.text.reconciler.DirtyRegion;
 import org.eclipse.jface.text.source.Annotation;
 import org.eclipse.jface.text.source.projection.ProjectionAnnotation;
-import org.eclipse.tm4e.core.internal.utils.MoreCollections;
 import org.eclipse.tm4e.languageconfiguration.LanguageConfigurationPlugin;
 import org.eclipse.tm4e.ui.internal.model.DocumentHelper;
 import org.eclipse.tm4e.ui.internal.utils.ContentTypeHelper;
@@ -46,57 +45,121 @@ private static final class TMFoldingAnno extends ProjectionAnnotation {
 	private record FoldingRange(int startLineIndex, int endLineIndex) {
 	}
 
+	/** The folding ranges still open at a line, innermost first. */
+	private record OpenRanges(int startLineIndex, @Nullable OpenRanges outer) {
+	}
+
+	/** Cached per line values */
+	private static final int NO_MARKER = 0;
+	private static final int START_MARKER = 1;
+	private static final int END_MARKER = 2;
+
 	private @Nullable ContentTypeInfo contentTypeInfo;
+	private volatile @Nullable FoldingLineCache<OpenRanges, FoldingRange> lineCache;
 
 	@Override
 	public void reconcile(final DirtyRegion dirtyRegion, final @Nullable IRegion subRegion) {
 		final var document = this.document;
 		final var annoModel = projectionAnnotationModel;
 		final var contentTypeInfo = this.contentTypeInfo;
-		if (document == null || annoModel == null || contentTypeInfo == null)
+		final var lineCache = this.lineCache;
+		if (document == null || annoModel == null || contentTypeInfo == null || lineCache == null)
 			return;
 
 		final var folding = FoldingSupport.getFoldingRules(contentTypeInfo);
 		if (folding == null)
 			return;
+		final var markers = folding.markers;
 
 		try {
 			/*
 			 * Compute folding ranges
 			 */
-			final int startLineIndex = 0; // always start scanning from line 0 (not just the dirty region) so that an end‐marker
-											// in the changed area can still match a start‐marker that appears earlier in the document
-			final int endLineIndexExclusive = document.getNumberOfLines();
+			final var cache = lineCache.snapshot(markers.start.pattern() + '\n' + markers.end.pattern());
+
+			// scanning resumes at the first line changed since the last reconcile with the ranges open at that line, so that an
+			// end‐marker in the changed area can still match a start‐marker that appears earlier in the document
+			final int startLineIndex = cache.resumeLineIndex;
+			final int endLineIndexExclusive = cache.lineCount;
+
+			// ranges closed before the changed area are not affected by the changes
+			final var foldingRanges = new ArrayList<FoldingRange>(cache.ranges.size());
+			for (final FoldingRange range : cache.ranges) {
+				if (range.endLineIndex >= startLineIndex) {
+					break;
+				}
+				foldingRanges.add(range);
+			}
+
+			@Nullable
+			OpenRanges openRanges = cache.getState(startLineIndex);
 
-			final var foldingRanges = new ArrayList<FoldingRange>();
-			final var openRanges = new ArrayList<Integer>();
+			// ranges starting before the outermost range still open are not affected either
+			int diffStartLineIndex = startLineIndex;
+			for (var r = openRanges; r != null; r = r.outer) {
+				diffStartLineIndex = r.startLineIndex;
+			}
 
+			// scanning stops at the first line after the changed area where the ranges open are the same as before the changes
+			int convergedLineIndex = -1;
 			for (int lineIndex = startLineIndex; lineIndex < endLineIndexExclusive; lineIndex++) {
 				if (document != this.document)
 					return; // abort on changed document
 
-				final String lineText = DocumentHelper.getLineText(document, lineIndex, false);
-				if (folding.markers.start.matchesPartially(lineText)) {
-					openRanges.add(lineIndex);
-				} else if (folding.markers.end.matchesPartially(lineText) && !openRanges.isEmpty()) {
-					foldingRanges.add(new FoldingRange(MoreCollections.removeLastElement(openRanges), lineIndex));
+				int marker = cache.getValue(lineIndex);
+				if (marker == FoldingLineCache.UNKNOWN) {
+					final String lineText = DocumentHelper.getLineText(document, lineIndex, false);
+					marker = markers.start.matchesPartially(lineText) ? START_MARKER
+							: markers.end.matchesPartially(lineText) ? END_MARKER : NO_MARKER;
+					cache.setValue(lineIndex, marker);
 				}
+
+				if (marker == START_MARKER) {
+					openRanges = new OpenRanges(lineIndex, openRanges);
+				} else if (marker == END_MARKER && openRanges != null) {
+					foldingRanges.add(new FoldingRange(openRanges.startLineIndex, lineIndex));
+					openRanges = openRanges.outer;
+				}
+				if (cache.converge(lineIndex + 1, openRanges, r -> shift(r, cache))) {
+					convergedLineIndex = lineIndex + 1;
+					break;
+				}
+				cache.setState(lineIndex + 1, openRanges);
 			}
 
-			// ignore single line foldingRanges
-			foldingRanges.removeIf(r -> r.endLineIndex - r.startLineIndex == 0);
+			// ranges ending at or after the line where scanning stopped are the same as before the changes
+			final boolean isConverged = convergedLineIndex >= 0;
+			final int diffEndLineIndex = isConverged ? convergedLineIndex : Integer.MAX_VALUE;
+			final var newRanges = new HashSet<FoldingRange>();
+			for (final FoldingRange range : foldingRanges) {
+				if (range.startLineIndex >= diffStartLineIndex) {
+					newRanges.add(range);
+				}
+			}
+			if (isConverged) {
+				final int oldDiffEndLineIndex = diffEndLineIndex - cache.lineDelta;
+				for (final FoldingRange range : cache.ranges) {
+					if (range.endLineIndex >= oldDiffEndLineIndex) {
+						foldingRanges.add(cache.lineDelta == 0 ? range
+								: new FoldingRange(cache.shiftLineIndex(range.startLineIndex),
+										cache.shiftLineIndex(range.endLineIndex)));
+					}
+				}
+			}
+			cache.resumeLineIndex = endLineIndexExclusive;
+			cache.ranges = foldingRanges;
 
 			/*
 			 * Diff against existing annotations
 			 */
 			final var additions = new HashMap<TMFoldingAnno, Position>();
 			final var deletions = new ArrayList<TMFoldingAnno>();
-			final var newRanges = new HashSet<>(foldingRanges);
 
-			// Iterate over existing annotations to find those that must be kept or removed
-			final var scanOffset = document.getLineOffset(startLineIndex);
-			final var scanLength = document.getLength() - scanOffset;
-			for (final Iterator<Annotation> it = annoModel.getAnnotationIterator(scanOffset, scanLength, true, true); it.hasNext();) {
+			// Iterate over existing annotations of possibly affected ranges to find those that must be kept or removed
+			final var scanOffset = document.getLineOffset(diffStartLineIndex);
+			final var scanLength = (isConverged ? document.getLineOffset(diffEndLineIndex) : document.getLength()) - scanOffset;
+			for (final Iterator<Annotation> it = annoModel.getAnnotationIterator(scanOffset, scanLength,
+					diffStartLineIndex == 0, true); it.hasNext();) {
 				if (document != this.document)
 					return; // abort on changed document
 
@@ -114,6 +177,9 @@ public void reconcile(final DirtyRegion dirtyRegion, final @Nullable IRegion sub
 					final int annStartLineIndex = document.getLineOfOffset(pos.getOffset());
 					// + (length - 1) because last char belongs to the range
 					final int annEndLineIndex = document.getLineOfOffset(pos.getOffset() + pos.getLength() - 1);
+					if (annEndLineIndex >= diffEndLineIndex) {
+						continue; // not affected by the changes -> keep
+					}
 					final var existing = new FoldingRange(annStartLineIndex, annEndLineIndex);
 					if (newRanges.remove(existing)) {
 						continue; // still valid -> keep
@@ -139,7 +205,7 @@ public void reconcile(final DirtyRegion dirtyRegion, final @Nullable IRegion sub
 			/*
 			 * Apply changes to the annotation model
 			 */
-			if (document != this.document)
+			if (document != this.document || !lineCache.update(cache))
 				return; // abort on changed document
 			modifyAnnotations(deletions, additions, List.of());
 		} catch (final BadLocationException ex) {
@@ -147,9 +213,40 @@ public void reconcile(final DirtyRegion dirtyRegion, final @Nullable IRegion sub
 		}
 	}
 
+	/**
+	 * @return the given ranges computed before the last changes with their line indexes mapped to the current lines
+	 */
+	private static OpenRanges shift(final OpenRanges openRanges, final FoldingLineCache.Snapshot<OpenRanges, FoldingRange> cache) {
+		final var outer = openRanges.outer == null ? null : shift(openRanges.outer, cache);
+		final int startLineIndex = cache.shiftLineIndex(openRanges.startLineIndex);
+		return startLineIndex == openRanges.startLineIndex && outer == openRanges.outer
+				? openRanges
+				: new OpenRanges(startLineIndex, outer);
+	}
+
 	@Override
 	public void setDocument(final @Nullable IDocument doc) {
 		super.setDocument(doc);
 		contentTypeInfo = doc == null ? null : ContentTypeHelper.findContentTypes(doc);
+
+		final var oldLineCache = lineCache;
+		if (oldLineCache != null) {
+			oldLineCache.disconnect();
+		}
+		if (doc == null) {
+			lineCache = null;
+		} else {
+			final var newLineCache = new FoldingLineCache<OpenRanges, FoldingRange>(doc);
+			newLineCache.connect();
+			lineCache = newLineCache;
+		}
+	}
+
+	@Override
+	protected void onProjectionEnabled() {
+		final var lineCache = this.lineCache;
+		if (lineCache != null) {
+			lineCache.invalidateRanges();
+		}
 	}
 }
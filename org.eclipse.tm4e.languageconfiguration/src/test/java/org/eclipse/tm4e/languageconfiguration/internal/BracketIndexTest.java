@@ -0,0 +1,212 @@
+/**
+ * Copyright (c) 2026 Sebastian Thomschke and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.tm4e.languageconfiguration.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tm4e.core.grammar.IGrammar;
+import org.eclipse.tm4e.core.model.ITMModel;
+import org.eclipse.tm4e.core.model.ModelTokensChangedEvent;
+import org.eclipse.tm4e.core.model.Range;
+import org.eclipse.tm4e.core.model.TMToken;
+import org.eclipse.tm4e.languageconfiguration.internal.utils.MockDocument;
+import org.junit.jupiter.api.Test;
+
+class BracketIndexTest {
+
+	private static final char[] BRACKET_PAIRS = "{}[]()".toCharArray();
+
+	/**
+	 * Model with tokens marking "..." as strings and // and /* *&#47; as comments.
+	 */
+	private static final class FakeModel implements ITMModel {
+		final List<@Nullable List<TMToken>> lines = new ArrayList<>();
+		final List<ModelTokensChangedEvent.Listener> listeners = new ArrayList<>();
+
+		FakeModel(final String text) {
+			for (final String line : text.split("\n")) {
+				lines.add(tokenize(line));
+			}
+		}
+
+		static List<TMToken> tokenize(final String line) {
+			final var tokens = new ArrayList<TMToken>();
+			tokens.add(new TMToken(0, "", List.of("source.test"), null));
+			for (int i = 0; i < line.length(); i++) {
+				final int end;
+				final String scope;
+				if (line.charAt(i) == '"') {
+					final int close = line.indexOf('"', i + 1);
+					end = close == -1 ? line.length() : close + 1;
+					scope = "string.quoted.double.test";
+				} else if (line.startsWith("//", i)) {
+					end = line.length();
+					scope = "comment.line.double-slash.test";
+				} else if (line.startsWith("/*", i)) {
+					final int close = line.indexOf("*/", i + 2);
+					end = close == -1 ? line.length() : close + 2;
+					scope = "comment.block.test";
+				} else {
+					continue;
+				}
+				tokens.add(new TMToken(i, "", List.of("source.test", scope), null));
+				tokens.add(new TMToken(end, "", List.of("source.test"), null));
+				i = end - 1;
+			}
+			return tokens;
+		}
+
+		@Override
+		public @Nullable List<TMToken> getLineTokens(final int lineIndex) {
+			return lineIndex < lines.size() ? lines.get(lineIndex) : null;
+		}
+
+		@Override
+		public boolean addModelTokensChangedListener(final ModelTokensChangedEvent.Listener listener) {
+			return listeners.add(listener);
+		}
+
+		@Override
+		public boolean removeModelTokensChangedListener(final ModelTokensChangedEvent.Listener listener) {
+			return listeners.remove(listener);
+		}
+
+		@Override
+		public BackgroundTokenizationState getBackgroundTokenizationState() {
+			return BackgroundTokenizationState.COMPLETED;
+		}
+
+		@Override
+		public void dispose() {
+		}
+
+		@Override
+		public String getLineText(final int lineIndex) throws Exception {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public @Nullable IGrammar getGrammar() {
+			return null;
+		}
+
+		@Override
+		public void setGrammar(final IGrammar grammar) {
+		}
+
+		@Override
+		public int getNumberOfLines() {
+			return lines.size();
+		}
+	}
+
+	/**
+	 * Character by character search as done by {@link LanguageConfigurationCharacterPairMatcher} before the index was
+	 * introduced.
+	 */
+	private static int findMatchingBracketNaive(final MockDocument doc, final FakeModel model, final int bracketOffset,
+			final char bracketChar, final char mate, final boolean searchForward) throws Exception {
+		int nesting = 0;
+		final int step = searchForward ? 1 : -1;
+		for (int pos = bracketOffset + step; pos >= 0 && pos < doc.getLength(); pos += step) {
+			if (!isStructural(doc, model, pos))
+				continue;
+			final char c = doc.getChar(pos);
+			if (c == bracketChar) {
+				nesting++;
+			} else if (c == mate) {
+				if (nesting == 0)
+					return pos;
+				nesting--;
+			}
+		}
+		return -1;
+	}
+
+	private static boolean isStructural(final MockDocument doc, final FakeModel model, final int offset) throws Exception {
+		final int line = doc.getLineOfOffset(offset);
+		final int column = offset - doc.getLineOffset(line);
+		final var tokens = model.getLineTokens(line);
+		if (tokens == null)
+			return true;
+		@Nullable TMToken containing = null;
+		for (final var token : tokens) {
+			if (token.startIndex <= column) {
+				containing = token;
+			}
+		}
+		return containing == null || !BracketIndex.isStringCommentOrCharacterToken(containing);
+	}
+
+	@Test
+	void testFindMatchingBracket() throws Exception {
+		final var text = """
+			{ "a": "x{", // }
+			  [ ( 1, 2 ),
+			    "]" ],
+			  /* { */ b: { c: [] } ) (
+			  d: [[[
+			  ]]]
+			}""";
+		final var doc = new MockDocument("", text);
+		final var model = new FakeModel(text);
+		final var index = new BracketIndex(model, doc, BRACKET_PAIRS);
+
+		assertThat(index.isStructuralBracket(0)).isTrue();
+		assertThat(index.isStructuralBracket(text.indexOf("x{") + 1)).isFalse();
+		assertThat(index.findMatchingBracket(0, '{', '}', true)).isEqualTo(text.length() - 1);
+		assertThat(index.findMatchingBracket(text.length() - 1, '}', '{', false)).isZero();
+		assertThat(index.findMatchingBracket(text.indexOf("["), '[', ']', true)).isEqualTo(text.indexOf("\" ]") + 2);
+		assertThat(index.findMatchingBracket(text.lastIndexOf("("), '(', ')', true)).isEqualTo(-1);
+
+		// compare with the character by character search for every structural bracket
+		for (int offset = 0; offset < text.length(); offset++) {
+			final char c = text.charAt(offset);
+			final int pairIndex = new String(BRACKET_PAIRS).indexOf(c);
+			if (pairIndex == -1 || !isStructural(doc, model, offset))
+				continue;
+			final boolean forward = pairIndex % 2 == 0;
+			final char mate = BRACKET_PAIRS[forward ? pairIndex + 1 : pairIndex - 1];
+			assertThat(index.isStructuralBracket(offset)).isTrue();
+			assertThat(index.findMatchingBracket(offset, c, mate, forward))
+					.describedAs("bracket %s at offset %d", c, offset)
+					.isEqualTo(findMatchingBracketNaive(doc, model, offset, c, mate, forward));
+		}
+	}
+
+	@Test
+	void testTokenChangesAreApplied() throws Exception {
+		final var text = """
+			{
+			  "}"
+			}""";
+		final var doc = new MockDocument("", text);
+		final var model = new FakeModel(text);
+		final var index = new BracketIndex(model, doc, BRACKET_PAIRS);
+		assertThat(model.listeners).containsExactly(index);
+		assertThat(index.findMatchingBracket(0, '{', '}', true)).isEqualTo(text.length() - 1);
+
+		// the string on line 2 is not tokenized as string anymore
+		model.lines.set(1, List.of(new TMToken(0, "", List.of("source.test"), null)));
+		index.onModelTokensChanged(new ModelTokensChangedEvent(new Range(2), model));
+		assertThat(index.findMatchingBracket(0, '{', '}', true)).isEqualTo(text.indexOf('}'));
+
+		// new token list instance without event
+		model.lines.set(1, FakeModel.tokenize("  \"}\""));
+		assertThat(index.findMatchingBracket(0, '{', '}', true)).isEqualTo(text.length() - 1);
+
+		index.dispose();
+		assertThat(model.listeners).isEmpty();
+	}
+}
@@ -0,0 +1,187 @@
+/**
+ * Copyright (c) 2026 Sebastian Thomschke and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.tm4e.languageconfiguration.internal.folding;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.tm4e.languageconfiguration.internal.utils.MockDocument;
+import org.junit.jupiter.api.Test;
+
+class FoldingLineCacheTest {
+
+	private static void replace(final MockDocument doc, final FoldingLineCache<Integer, String> cache, final int offset,
+			final int length, final String text) throws Exception {
+		final var event = new DocumentEvent(doc, offset, length, text);
+		cache.documentAboutToBeChanged(event);
+		doc.replace(offset, length, text);
+		cache.documentChanged(event);
+	}
+
+	/**
+	 * Evaluates the lines not cached yet using the line length as value and records the line index as state.
+	 *
+	 * @return the number of evaluated lines
+	 */
+	private static int evaluate(final MockDocument doc, final FoldingLineCache.Snapshot<Integer, String> snapshot) {
+		final String[] lines = doc.get().split("\n", -1);
+		int evaluated = 0;
+		for (int i = snapshot.resumeLineIndex; i < snapshot.lineCount; i++) {
+			if (snapshot.getValue(i) == FoldingLineCache.UNKNOWN) {
+				snapshot.setValue(i, lines[i].length());
+				evaluated++;
+			}
+			snapshot.setState(i + 1, i + 1);
+		}
+		snapshot.resumeLineIndex = snapshot.lineCount;
+		snapshot.ranges = List.of("range");
+		return evaluated;
+	}
+
+	private static void assertValues(final FoldingLineCache.Snapshot<Integer, String> snapshot, final int... values) {
+		assertThat(snapshot.lineCount).isEqualTo(values.length);
+		for (int i = 0; i < values.length; i++) {
+			assertThat(snapshot.getValue(i)).as("value of line %d", i).isEqualTo(values[i]);
+		}
+	}
+
+	@Test
+	void testEditsInvalidateChangedLines() throws Exception {
+		final var doc = new MockDocument("", "a\nbb\nccc\ndddd\neeeee");
+		final var cache = new FoldingLineCache<Integer, String>(doc);
+
+		var snapshot = cache.snapshot("config");
+		assertThat(snapshot.resumeLineIndex).isZero();
+		assertThat(evaluate(doc, snapshot)).isEqualTo(5);
+		assertThat(cache.update(snapshot)).isTrue();
+
+		// unchanged document
+		snapshot = cache.snapshot("config");
+		assertThat(snapshot.resumeLineIndex).isEqualTo(5);
+		assertThat(snapshot.ranges).containsExactly("range");
+		assertValues(snapshot, 1, 2, 3, 4, 5);
+
+		// edit within a line
+		replace(doc, cache, doc.get().indexOf("ccc") + 1, 0, "X");
+		snapshot = cache.snapshot("config");
+		assertThat(snapshot.resumeLineIndex).isEqualTo(2);
+		assertThat(snapshot.getState(2)).isEqualTo(2);
+		assertValues(snapshot, 1, 2, FoldingLineCache.UNKNOWN, 4, 5);
+		assertThat(evaluate(doc, snapshot)).isEqualTo(1);
+		assertThat(cache.update(snapshot)).isTrue();
+
+		// insert lines
+		replace(doc, cache, doc.get().indexOf("bb") + 1, 0, "\nXX\n");
+		snapshot = cache.snapshot("config");
+		assertThat(snapshot.resumeLineIndex).isEqualTo(1);
+		assertThat(snapshot.getState(1)).isEqualTo(1);
+		assertValues(snapshot, 1, FoldingLineCache.UNKNOWN, FoldingLineCache.UNKNOWN, FoldingLineCache.UNKNOWN, 4, 4, 5);
+		assertThat(evaluate(doc, snapshot)).isEqualTo(3);
+		assertThat(cache.update(snapshot)).isTrue();
+		assertValues(cache.snapshot("config"), 1, 1, 2, 1, 4, 4, 5);
+
+		// remove lines
+		replace(doc, cache, doc.get().indexOf("cXcc"), "cXcc\ndddd\n".length(), "");
+		snapshot = cache.snapshot("config");
+		assertThat(snapshot.resumeLineIndex).isEqualTo(4);
+		assertValues(snapshot, 1, 1, 2, 1, FoldingLineCache.UNKNOWN);
+		assertThat(evaluate(doc, snapshot)).isEqualTo(1);
+		assertThat(cache.update(snapshot)).isTrue();
+		assertValues(cache.snapshot("config"), 1, 1, 2, 1, 5);
+	}
+
+	@Test
+	void testConvergenceKeepsStatesAfterEditedLines() throws Exception {
+		final var doc = new MockDocument("", "a\nbb\nccc\ndddd\neeeee");
+		final var cache = new FoldingLineCache<Integer, String>(doc);
+
+		final var initial = cache.snapshot("config");
+		assertThat(initial.converge(1, 1, i -> i)).as("unknown states must not converge").isFalse();
+		evaluate(doc, initial);
+		assertThat(cache.update(initial)).isTrue();
+
+		// insert a line before "ccc"
+		replace(doc, cache, doc.get().indexOf("ccc"), 0, "XX\n");
+		final var snapshot = cache.snapshot("config");
+		assertThat(snapshot.resumeLineIndex).isEqualTo(2);
+		assertThat(snapshot.editEndLineIndex).isEqualTo(4);
+		assertThat(snapshot.lineDelta).isEqualTo(1);
+		assertThat(snapshot.shiftLineIndex(1)).isEqualTo(1);
+		assertThat(snapshot.shiftLineIndex(2)).as("edited line").isEqualTo(-1);
+		assertThat(snapshot.shiftLineIndex(3)).isEqualTo(4);
+
+		// the states of the lines after the edited lines are kept with the line indexes before the edit
+		assertThat(snapshot.getState(2)).isEqualTo(2);
+		assertThat(snapshot.getState(3)).isNull();
+		assertThat(snapshot.getState(4)).isEqualTo(3);
+		assertThat(snapshot.getState(6)).isEqualTo(5);
+
+		assertThat(snapshot.converge(3, 3, snapshot::shiftLineIndex)).as("edited line").isFalse();
+		assertThat(snapshot.converge(4, 99, snapshot::shiftLineIndex)).as("different state").isFalse();
+		assertThat(snapshot.converge(4, 4, snapshot::shiftLineIndex)).isTrue();
+		assertThat(snapshot.getState(5)).isEqualTo(5);
+		assertThat(snapshot.getState(6)).isEqualTo(6);
+		snapshot.resumeLineIndex = snapshot.lineCount;
+		assertThat(cache.update(snapshot)).isTrue();
+
+		var next = cache.snapshot("config");
+		assertThat(next.editEndLineIndex).isZero();
+		assertThat(next.lineDelta).isZero();
+
+		// recomputing all ranges must not stop early
+		cache.invalidateRanges();
+		next = cache.snapshot("config");
+		assertThat(next.converge(4, 4, i -> i)).isFalse();
+	}
+
+	@Test
+	void testUpdateAfterConcurrentEditIsRejected() throws Exception {
+		final var doc = new MockDocument("", "a\nbb\nccc");
+		final var cache = new FoldingLineCache<Integer, String>(doc);
+
+		var snapshot = cache.snapshot("config");
+		evaluate(doc, snapshot);
+		replace(doc, cache, 0, 0, "\n");
+		assertThat(cache.update(snapshot)).isFalse();
+
+		snapshot = cache.snapshot("config");
+		assertThat(snapshot.resumeLineIndex).isZero();
+		assertThat(snapshot.ranges).isEmpty();
+		assertValues(snapshot, FoldingLineCache.UNKNOWN, FoldingLineCache.UNKNOWN, FoldingLineCache.UNKNOWN,
+				FoldingLineCache.UNKNOWN);
+	}
+
+	@Test
+	void testInvalidation() throws Exception {
+		final var doc = new MockDocument("", "a\nbb\nccc");
+		final var cache = new FoldingLineCache<Integer, String>(doc);
+
+		var snapshot = cache.snapshot("config");
+		evaluate(doc, snapshot);
+		assertThat(cache.update(snapshot)).isTrue();
+
+		// ranges must be recomputed but the line values are kept
+		cache.invalidateRanges();
+		snapshot = cache.snapshot("config");
+		assertThat(snapshot.resumeLineIndex).isZero();
+		assertThat(snapshot.ranges).isEmpty();
+		assertValues(snapshot, 1, 2, 3);
+		assertThat(evaluate(doc, snapshot)).isZero();
+		assertThat(cache.update(snapshot)).isTrue();
+
+		// changed configuration discards everything
+		snapshot = cache.snapshot("other config");
+		assertThat(snapshot.resumeLineIndex).isZero();
+		assertThat(snapshot.ranges).isEmpty();
+		assertValues(snapshot, FoldingLineCache.UNKNOWN, FoldingLineCache.UNKNOWN, FoldingLineCache.UNKNOWN);
+	}
+}
@@ -0,0 +1,295 @@
+/**
+ * Copyright (c) 2026 Sebastian Thomschke and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.tm4e.ui.internal.text;
+
+import static org.eclipse.tm4e.core.internal.utils.NullSafetyHelper.castNonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Immutable interval tree of non-overlapping, non-empty entries ordered by document offset.
+ * <p>
+ * The tree is a persistent AVL tree where each node stores the distance of its entry to the end of the preceding entry
+ * (its <i>gap</i>) instead of an absolute offset. Replacing a range of the document therefore shifts all following
+ * entries implicitly and only the O(log n) nodes along the affected paths are copied, see
+ * {@link #replace(int, int, int, List)}. Instances can be read concurrently without synchronization.
+ * </p>
+ *
+ * @param <V> type of the values attached to the entries
+ */
+final class PartitionTree<V> {
+
+	record Entry<V>(int offset, int length, V value) {
+
+		int end() {
+			return offset + length;
+		}
+	}
+
+	private static final class Node<V> {
+		/** distance from the end of the preceding entry (or the start of the tree) to the start of this entry */
+		final int gap;
+		final int length;
+		final V value;
+		final @Nullable Node<V> left;
+		final @Nullable Node<V> right;
+		final int height;
+		/** distance from the start of this subtree to the end of its last entry */
+		final int span;
+
+		Node(final @Nullable Node<V> left, final int gap, final int length, final V value, final @Nullable Node<V> right) {
+			this.gap = gap;
+			this.length = length;
+			this.value = value;
+			this.left = left;
+			this.right = right;
+			height = Math.max(height(left), height(right)) + 1;
+			span = span(left) + gap + length + span(right);
+		}
+
+		Node<V> with(final @Nullable Node<V> left, final int gap, final @Nullable Node<V> right) {
+			return new Node<>(left, gap, length, value, right);
+		}
+
+		Node<V> with(final @Nullable Node<V> left, final @Nullable Node<V> right) {
+			return with(left, gap, right);
+		}
+	}
+
+	private record Split<V>(@Nullable Node<V> left, @Nullable Node<V> right) {
+	}
+
+	private static final PartitionTree<?> EMPTY = new PartitionTree<>(null);
+
+	@SuppressWarnings("unchecked")
+	static <V> PartitionTree<V> empty() {
+		return (PartitionTree<V>) EMPTY;
+	}
+
+	private final @Nullable Node<V> root;
+
+	private PartitionTree(final @Nullable Node<V> root) {
+		this.root = root;
+	}
+
+	boolean isEmpty() {
+		return root == null;
+	}
+
+	/**
+	 * @return the last entry starting at or before the given offset
+	 */
+	@Nullable
+	Entry<V> floor(final int offset) {
+		@Nullable
+		Entry<V> result = null;
+		var node = root;
+		int base = 0;
+		while (node != null) {
+			final int start = base + span(node.left) + node.gap;
+			if (offset < start) {
+				node = node.left;
+			} else {
+				result = new Entry<>(start, node.length, node.value);
+				base = start + node.length;
+				node = node.right;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the first entry starting at or after the given offset
+	 */
+	@Nullable
+	Entry<V> ceiling(final int offset) {
+		@Nullable
+		Entry<V> result = null;
+		var node = root;
+		int base = 0;
+		while (node != null) {
+			final int start = base + span(node.left) + node.gap;
+			if (offset <= start) {
+				result = new Entry<>(start, node.length, node.value);
+				node = node.left;
+			} else {
+				base = start + node.length;
+				node = node.right;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the entries intersecting the range <code>[from, to)</code> ordered by offset
+	 */
+	List<Entry<V>> overlapping(final int from, final int to) {
+		final var result = new ArrayList<Entry<V>>();
+		collect(root, 0, from, to, result);
+		return result;
+	}
+
+	List<Entry<V>> toList() {
+		return overlapping(Integer.MIN_VALUE, Integer.MAX_VALUE);
+	}
+
+	private static <V> void collect(final @Nullable Node<V> node, final int base, final int from, final int to,
+			final List<Entry<V>> result) {
+		if (node == null || base >= to || base + node.span <= from)
+			return;
+		final int start = base + span(node.left) + node.gap;
+		collect(node.left, base, from, to, result);
+		if (start < to && start + node.length > from) {
+			result.add(new Entry<>(start, node.length, node.value));
+		}
+		collect(node.right, start + node.length, from, to, result);
+	}
+
+	/**
+	 * Replaces the range <code>[start, oldEnd)</code> of the document with the range <code>[start, newEnd)</code>.
+	 * <p>
+	 * Entries within the replaced range are removed, entries crossing its boundaries are cut at them, entries after it are
+	 * shifted by <code>newEnd - oldEnd</code>, and the given entries are inserted.
+	 * </p>
+	 *
+	 * @param entries entries ordered by offset, not overlapping each other and located within
+	 *            <code>[start, newEnd)</code>
+	 */
+	PartitionTree<V> replace(final int start, final int oldEnd, final int newEnd, final List<Entry<V>> entries) {
+		final var head = split(root, start);
+		final var tail = split(head.right, oldEnd - start).right;
+
+		var result = head.left;
+		int cursor = span(result);
+		for (final var entry : entries) {
+			if (entry.length <= 0) {
+				continue;
+			}
+			result = join(result, new Node<>(null, entry.offset - cursor, entry.length, entry.value, null), null);
+			cursor = entry.end();
+		}
+		return new PartitionTree<>(concat(result, shiftFirst(tail, newEnd - cursor)));
+	}
+
+	private static int height(final @Nullable Node<?> node) {
+		return node == null ? 0 : node.height;
+	}
+
+	private static int span(final @Nullable Node<?> node) {
+		return node == null ? 0 : node.span;
+	}
+
+	/**
+	 * Splits the given subtree into the entries before and after the given offset relative to the start of the subtree.
+	 * An entry crossing the offset is cut into two entries. The gap of the first entry of the right subtree is relative to
+	 * the offset.
+	 */
+	private static <V> Split<V> split(final @Nullable Node<V> node, final int offset) {
+		if (node == null)
+			return new Split<>(null, null);
+		final int leftSpan = span(node.left);
+		final int start = leftSpan + node.gap;
+		final int end = start + node.length;
+		if (offset <= leftSpan) {
+			final var s = split(node.left, offset);
+			return new Split<>(s.left, join(s.right, node.with(null, null), node.right));
+		}
+		if (offset >= end) {
+			final var s = split(node.right, offset - end);
+			return new Split<>(join(node.left, node.with(null, null), s.left), s.right);
+		}
+		if (offset <= start)
+			return new Split<>(node.left, join(null, node.with(null, start - offset, null), node.right));
+		return new Split<>(
+				join(node.left, new Node<>(null, node.gap, offset - start, node.value, null), null),
+				join(null, new Node<>(null, 0, end - offset, node.value, null), node.right));
+	}
+
+	/**
+	 * Increases the gap of the first entry of the given subtree.
+	 */
+	private static <V> @Nullable Node<V> shiftFirst(final @Nullable Node<V> node, final int delta) {
+		if (node == null || delta == 0)
+			return node;
+		if (node.left == null)
+			return node.with(null, node.gap + delta, node.right);
+		return node.with(shiftFirst(node.left, delta), node.right);
+	}
+
+	private static <V> Node<V> first(Node<V> node) {
+		for (var left = node.left; left != null; left = node.left) {
+			node = left;
+		}
+		return node;
+	}
+
+	private static <V> @Nullable Node<V> removeFirst(final Node<V> node) {
+		final var left = node.left;
+		if (left == null)
+			return node.right;
+		return rebalance(removeFirst(left), node, node.right);
+	}
+
+	/**
+	 * Concatenates two subtrees, the gap of the first entry of the right one being relative to the end of the left one.
+	 */
+	private static <V> @Nullable Node<V> concat(final @Nullable Node<V> left, final @Nullable Node<V> right) {
+		if (left == null)
+			return right;
+		if (right == null)
+			return left;
+		return join(left, first(right), removeFirst(right));
+	}
+
+	/**
+	 * Concatenates two balanced subtrees and the entry of the given node in between to a balanced subtree, see AVL tree
+	 * concatenation.
+	 */
+	private static <V> Node<V> join(final @Nullable Node<V> left, final Node<V> middle, final @Nullable Node<V> right) {
+		if (height(left) > height(right) + 1) {
+			final var l = castNonNull(left);
+			return rebalance(l.left, l, join(l.right, middle, right));
+		}
+		if (height(right) > height(left) + 1) {
+			final var r = castNonNull(right);
+			return rebalance(join(left, middle, r.left), r, r.right);
+		}
+		return middle.with(left, right);
+	}
+
+	/**
+	 * Creates a node with the entry of the given node and two balanced subtrees whose heights differ by at most two.
+	 */
+	private static <V> Node<V> rebalance(final @Nullable Node<V> left, final Node<V> middle, final @Nullable Node<V> right) {
+		if (height(left) > height(right) + 1) {
+			final var l = castNonNull(left);
+			if (height(l.left) >= height(l.right))
+				return l.with(l.left, middle.with(l.right, right));
+			final var lr = castNonNull(l.right);
+			return lr.with(l.with(l.left, lr.left), middle.with(lr.right, right));
+		}
+		if (height(right) > height(left) + 1) {
+			final var r = castNonNull(right);
+			if (height(r.right) >= height(r.left))
+				return r.with(middle.with(left, r.left), r.right);
+			final var rl = castNonNull(r.left);
+			return rl.with(middle.with(left, rl.left), r.with(rl.right, r.right));
+		}
+		return middle.with(left, right);
+	}
+
+	@Override
+	public String toString() {
+		return "PartitionTree" + toList();
+	}
+}
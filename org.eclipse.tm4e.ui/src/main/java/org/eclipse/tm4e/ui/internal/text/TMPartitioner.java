@@ -18,9 +18,7 @@
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.TreeMap;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.jface.text.BadLocationException;
@@ -35,6 +33,7 @@
 import org.eclipse.tm4e.ui.TMUIPlugin;
 import org.eclipse.tm4e.ui.internal.model.TMDocumentModel;
 import org.eclipse.tm4e.ui.internal.model.TMModelManager;
+import org.eclipse.tm4e.ui.internal.text.PartitionTree.Entry;
 import org.eclipse.tm4e.ui.internal.utils.GrammarUtils;
 import org.eclipse.tm4e.ui.text.ITMPartitionRegion;
 import org.eclipse.tm4e.ui.text.ITMPartitioner;
@@ -54,10 +53,6 @@ private static String getGrammarScope(final String type, final @Nullable IGramma
 			return scopeFromPartitionType(type);
 		}
 
-		public TMPartitionRegion(final int offset, final int length, final TMPartitionRegion region) {
-			this(offset, length, region.type, region.grammarScope);
-		}
-
 		public TMPartitionRegion(final int offset, final int length, final String type, final @Nullable IGrammar grammar) {
 			this(offset, length, type, getGrammarScope(type, grammar));
 		}
@@ -136,6 +131,50 @@ public static String scopeToPartitionType(final String scope) {
 		return TMPartitions.PARTITION_TYPE_PREFIX + normalizeBaseScope(scope);
 	}
 
+	/**
+	 * The normalized forms of a token's grammar scope.
+	 *
+	 * @param variantScope the unqualified grammar scope, e.g. {@code source.js.jsx}
+	 * @param baseScope the root language scope, e.g. {@code source.js}
+	 * @param partitionType the partition type of the root language scope, e.g. {@code tm4e:source.js}
+	 */
+	private record NormalizedScope(String variantScope, String baseScope, String partitionType) {
+	}
+
+	/**
+	 * Normalized grammar scopes keyed by the (possibly qualified) grammar scope of the tokens. The number of grammar scopes
+	 * is bounded by the number of registered grammars, so the cache is never cleared.
+	 */
+	private static final Map<String, NormalizedScope> NORMALIZED_SCOPES = new ConcurrentHashMap<>();
+
+	private static @Nullable NormalizedScope normalizeTokenScope(final @Nullable String grammarScope) {
+		if (grammarScope == null)
+			return null;
+		return NORMALIZED_SCOPES.computeIfAbsent(grammarScope, scope -> {
+			final String variantScope = TMScope.toUnqualified(scope);
+			final String baseScope = Objects.requireNonNull(normalizeBaseScope(variantScope));
+			return new NormalizedScope(variantScope, baseScope, TMPartitions.PARTITION_TYPE_PREFIX + baseScope);
+		});
+	}
+
+	/**
+	 * @return true if the given range of the document consists of whitespace only, evaluated without copying it into a
+	 *         string
+	 */
+	private static boolean isBlank(final IDocument doc, final int offset, final int length) throws BadLocationException {
+		for (int i = offset, end = offset + length; i < end; i++) {
+			if (!Character.isWhitespace(doc.getChar(i)))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Type and grammar scope of a stored partition.
+	 */
+	private record PartitionKind(String type, String grammarScope) {
+	}
+
 	/**
 	 * Partition type used for the document's base language when no embedded scope applies.
 	 * Initialized to {@code tm4e:base} and switched to {@code tm4e:<root-scope>} once a grammar is known.
@@ -143,28 +182,27 @@ public static String scopeToPartitionType(final String scope) {
 	private volatile String basePartitionType = TMPartitions.BASE_PARTITION_TYPE;
 
 	/**
-	 * Partition index keyed by region start offset. Rules:
-	 * <li>Keys grow from left to right; regions do not overlap.
+	 * Immutable partition index. Rules:
+	 * <li>Entries are ordered by offset; they do not overlap.
 	 * <li>Offsets/lengths use document offsets.
-	 * <li>Between indexed regions there can be gaps; these are treated as base type.
+	 * <li>Between indexed entries there can be gaps; these are treated as base type.
+	 * <p>
+	 * Readers use the current instance without locking; writers replace it while holding {@link #partitionsWriteLock}.
 	 */
-	private final TreeMap<Integer, TMPartitionRegion> partitions = new TreeMap<>();
+	private volatile PartitionTree<PartitionKind> partitions = PartitionTree.empty();
 
 	/**
-	 * Discovered partition types for this document. Semantics:
+	 * Discovered partition types for this document, an immutable set replaced on change. Semantics:
 	 * <li>Always contains {@code basePartitionType} after connect/init.
 	 * <li>More types are added when we see embedded languages; cleared on disconnect/init.
 	 */
-	private final Set<String> legalTypes = new HashSet<>();
+	private volatile Set<String> legalTypes = Set.of();
 
 	/**
-	 * Read/write lock that protects the mutable partition state:
-	 * <li>{@link #partitions}: read with the read lock, write with the write lock
-	 * <li>{@link #legalTypes}: read with the read lock, write with the write lock
-	 * <li>{@link #basePartitionType}: writes happen under the write lock together with the above structures to keep them consistent;
-	 * reads may occur without a lock because the field is {@code volatile}
+	 * Serializes the writers of {@link #partitions}, {@link #legalTypes} and {@link #basePartitionType}, so that no
+	 * concurrent update gets lost. Readers do not lock.
 	 */
-	private final ReadWriteLock partitionsLock = new ReentrantReadWriteLock();
+	private final Object partitionsWriteLock = new Object();
 
 	private final ModelTokensChangedEvent.Listener modelListener = this::onTokensChanged;
 
@@ -225,6 +263,7 @@ private static void addSeg(final List<TMPartitionRegion> out, final int start, f
 	 * <p>
 	 * Strategy:
 	 * <ol>
+	 * <li>Take the current partition tree; it is immutable, so no lock is needed.
 	 * <li>Clamp the requested range to the document boundaries.
 	 * <li>If no partitions are known, return one base segment covering the range.
 	 * <li>Iterate the stored partitions that overlap the range and:
@@ -240,136 +279,108 @@ private static void addSeg(final List<TMPartitionRegion> out, final int start, f
 	public ITMPartitionRegion[] computePartitioning(final int offset, final int length) {
 		ensureActivated();
 
-		partitionsLock.readLock().lock();
-		try {
-			final var doc = document;
-			if (doc == null)
-				return new ITMPartitionRegion[] { new TMPartitionRegion(0, 0, basePartitionType, (IGrammar) null) };
-			final var grammar = this.grammar;
-
-			// Fast path for empty ranges to keep intent obvious
-			if (length <= 0) {
-				final int start = Math.clamp(offset, 0, doc.getLength());
-				return new ITMPartitionRegion[] { new TMPartitionRegion(start, 0, basePartitionType, grammar) };
-			}
+		final var doc = document;
+		final var basePartitionType = this.basePartitionType;
+		if (doc == null)
+			return new ITMPartitionRegion[] { new TMPartitionRegion(0, 0, basePartitionType, (IGrammar) null) };
+		final var grammar = this.grammar;
 
-			final int docLen = doc.getLength();
-			final int start = Math.clamp(offset, 0, docLen);
-			final int end = Math.clamp(offset + length, start, docLen);
-
-			if (partitions.isEmpty())
-				// no known partitions -> everything is base
-				return new ITMPartitionRegion[] { new TMPartitionRegion(start, Math.max(0, end - start), basePartitionType, grammar) };
-
-			final var list = new ArrayList<TMPartitionRegion>();
-
-			int cursor = start;
-			// Handle partition that starts before 'start' but overlaps it
-			final Map.Entry<Integer, TMPartitionRegion> floor = partitions.floorEntry(start);
-			if (floor != null) {
-				final TMPartitionRegion r = floor.getValue();
-				final int rStart = r.getOffset();
-				final int rEnd = rStart + r.getLength();
-				if (rStart < start && rEnd > start) {
-					final int to = Math.min(end, rEnd);
-					if (to > cursor) {
-						list.add(new TMPartitionRegion(cursor, to - cursor, r));
-						cursor = to;
-					}
-				}
-			}
+		// Fast path for empty ranges to keep intent obvious
+		if (length <= 0) {
+			final int start = Math.clamp(offset, 0, doc.getLength());
+			return new ITMPartitionRegion[] { new TMPartitionRegion(start, 0, basePartitionType, grammar) };
+		}
 
-			// Walk only entries that can overlap [start, end)
-			for (final var e : partitions.subMap(start, true, Math.max(start, end - 1), true).entrySet()) {
-				if (cursor >= end) {
-					break;
-				}
-				final int rStart = e.getKey();
-				final TMPartitionRegion r = e.getValue();
-				final int rEnd = rStart + r.getLength();
-
-				if (rStart > cursor) {
-					final int gapEnd = Math.min(end, rStart);
-					if (gapEnd > cursor) {
-						list.add(new TMPartitionRegion(cursor, gapEnd - cursor, basePartitionType, grammar));
-						cursor = gapEnd;
-					}
-				}
+		final int docLen = doc.getLength();
+		final int start = Math.clamp(offset, 0, docLen);
+		final int end = Math.clamp(offset + length, start, docLen);
 
-				if (rEnd > cursor) {
-					final int to = Math.min(end, rEnd);
-					list.add(new TMPartitionRegion(cursor, to - cursor, r));
-					cursor = to;
-				}
-			}
+		final var partitions = this.partitions;
+		if (partitions.isEmpty())
+			// no known partitions -> everything is base
+			return new ITMPartitionRegion[] { new TMPartitionRegion(start, Math.max(0, end - start), basePartitionType, grammar) };
+
+		final var list = new ArrayList<TMPartitionRegion>();
+
+		int cursor = start;
+		// Walk only entries that overlap [start, end)
+		for (final var e : partitions.overlapping(start, end)) {
+			final int rStart = e.offset();
+			final int rEnd = e.end();
 
-			// fill trailing base gap
-			if (cursor < end) {
-				list.add(new TMPartitionRegion(cursor, end - cursor, basePartitionType, grammar));
+			if (rStart > cursor) {
+				list.add(new TMPartitionRegion(cursor, rStart - cursor, basePartitionType, grammar));
+				cursor = rStart;
 			}
 
-			/*
-			 * Post-process for read consistency:
-			 * ---------------------------------
-			 * At this point {@code partitions} already reflects the latest incremental recompute ranges. In most cases recomputeRange()
-			 * has already absorbed whitespace-only base lines that occur inside an embedded run (via skipWhitespaceBaseLineInEmbeddedRun).
-			 * However, when the TM model reports ranges that do not fully cover the surrounding embedded region (for example a range that
-			 * starts exactly on the blank line), {@code currentType} may be base when that line is visited and a tiny base partition can
-			 * slip through.
-			 *
-			 * To make callers of computePartitioning() robust against such timing and range-boundary effects, we perform a cheap, local
-			 * clean-up here: whenever we see a whitespace-only base segment that is sandwiched between two segments of the same non-base
-			 * type, we merge all three into a single embedded region. This is exactly the shape produced by fenced code blocks in Markdown
-			 * where a blank line separates two embedded lines (e.g. JS, XML, ...).
-			 *
-			 * This logic intentionally does NOT merge arbitrary base content: it only triggers when:
-			 * - the middle segment is base AND consists solely of whitespace, and
-			 * - the left and right neighbours both have the same non-base partition type.
-			 * Regular HTML between CSS/JS blocks and base text outside embedded regions therefore remain untouched.
-			 */
-			final int listSize = list.size();
-			if (listSize > 2) {
-				final var adjusted = new ArrayList<TMPartitionRegion>(listSize);
-				int i = 0;
-				while (i < listSize) {
-					if (i > 0 && i < listSize - 1) {
-						final TMPartitionRegion prev = list.get(i - 1);
-						final TMPartitionRegion cur = list.get(i);
-						final TMPartitionRegion next = list.get(i + 1);
-						if (basePartitionType.equals(cur.getType())
-								&& prev.getType().equals(next.getType())
-								&& !prev.getType().equals(basePartitionType)) {
-							try {
-								final String slice = doc.get(cur.getOffset(), cur.getLength());
-								if (slice.isBlank()) {
-									// merge prev + cur + next into a single embedded region
-									if (!adjusted.isEmpty()) {
-										adjusted.remove(adjusted.size() - 1);
-									}
-									final int newOffset = prev.getOffset();
-									final int newLen = next.getOffset() + next.getLength() - newOffset;
-									adjusted.add(new TMPartitionRegion(newOffset, newLen, prev.getType(), prev.getGrammarScope()));
-									i += 2; // skip cur and next
-									continue;
+			final int to = Math.min(end, rEnd);
+			list.add(new TMPartitionRegion(cursor, to - cursor, e.value().type, e.value().grammarScope));
+			cursor = to;
+		}
+
+		// fill trailing base gap
+		if (cursor < end) {
+			list.add(new TMPartitionRegion(cursor, end - cursor, basePartitionType, grammar));
+		}
+
+		/*
+		 * Post-process for read consistency:
+		 * ---------------------------------
+		 * At this point {@code partitions} already reflects the latest incremental recompute ranges. In most cases recomputeRange()
+		 * has already absorbed whitespace-only base lines that occur inside an embedded run (via skipWhitespaceBaseLineInEmbeddedRun).
+		 * However, when the TM model reports ranges that do not fully cover the surrounding embedded region (for example a range that
+		 * starts exactly on the blank line), {@code currentType} may be base when that line is visited and a tiny base partition can
+		 * slip through.
+		 *
+		 * To make callers of computePartitioning() robust against such timing and range-boundary effects, we perform a cheap, local
+		 * clean-up here: whenever we see a whitespace-only base segment that is sandwiched between two segments of the same non-base
+		 * type, we merge all three into a single embedded region. This is exactly the shape produced by fenced code blocks in Markdown
+		 * where a blank line separates two embedded lines (e.g. JS, XML, ...).
+		 *
+		 * This logic intentionally does NOT merge arbitrary base content: it only triggers when:
+		 * - the middle segment is base AND consists solely of whitespace, and
+		 * - the left and right neighbours both have the same non-base partition type.
+		 * Regular HTML between CSS/JS blocks and base text outside embedded regions therefore remain untouched.
+		 */
+		final int listSize = list.size();
+		if (listSize > 2) {
+			final var adjusted = new ArrayList<TMPartitionRegion>(listSize);
+			int i = 0;
+			while (i < listSize) {
+				if (i > 0 && i < listSize - 1) {
+					final TMPartitionRegion prev = list.get(i - 1);
+					final TMPartitionRegion cur = list.get(i);
+					final TMPartitionRegion next = list.get(i + 1);
+					if (basePartitionType.equals(cur.getType())
+							&& prev.getType().equals(next.getType())
+							&& !prev.getType().equals(basePartitionType)) {
+						try {
+							if (isBlank(doc, cur.getOffset(), cur.getLength())) {
+								// merge prev + cur + next into a single embedded region
+								if (!adjusted.isEmpty()) {
+									adjusted.remove(adjusted.size() - 1);
 								}
-							} catch (final BadLocationException ex) {
-								// If we cannot read the slice, fall through and keep the original regions.
+								final int newOffset = prev.getOffset();
+								final int newLen = next.getOffset() + next.getLength() - newOffset;
+								adjusted.add(new TMPartitionRegion(newOffset, newLen, prev.getType(), prev.getGrammarScope()));
+								i += 2; // skip cur and next
+								continue;
 							}
+						} catch (final BadLocationException ex) {
+							// If we cannot read the slice, fall through and keep the original regions.
 						}
 					}
-					adjusted.add(list.get(i));
-					i++;
 				}
-				list.clear();
-				list.addAll(adjusted);
+				adjusted.add(list.get(i));
+				i++;
 			}
-
-			if (list.isEmpty())
-				return new ITMPartitionRegion[] { new TMPartitionRegion(start, Math.max(0, end - start), basePartitionType, grammar) };
-			return list.toArray(ITMPartitionRegion[]::new);
-		} finally {
-			partitionsLock.readLock().unlock();
+			list.clear();
+			list.addAll(adjusted);
 		}
+
+		if (list.isEmpty())
+			return new ITMPartitionRegion[] { new TMPartitionRegion(start, Math.max(0, end - start), basePartitionType, grammar) };
+		return list.toArray(ITMPartitionRegion[]::new);
 	}
 
 	@Override
@@ -378,13 +389,9 @@ public void connect(final IDocument doc) {
 		activated = false;
 
 		// start with no indexed partitions; callers get base type until activation
-		partitionsLock.writeLock().lock();
-		try {
-			partitions.clear();
-			legalTypes.clear();
-			legalTypes.add(basePartitionType);
-		} finally {
-			partitionsLock.writeLock().unlock();
+		synchronized (partitionsWriteLock) {
+			partitions = PartitionTree.empty();
+			legalTypes = Set.of(basePartitionType);
 		}
 	}
 
@@ -399,13 +406,10 @@ public void disconnect() {
 		activated = false;
 		grammar = null;
 
-		partitionsLock.writeLock().lock();
-		try {
-			partitions.clear();
-			legalTypes.clear();
+		synchronized (partitionsWriteLock) {
+			partitions = PartitionTree.empty();
+			legalTypes = Set.of();
 			basePartitionType = TMPartitions.BASE_PARTITION_TYPE;
-		} finally {
-			partitionsLock.writeLock().unlock();
 		}
 	}
 
@@ -466,51 +470,38 @@ public String getContentType(final int offset) {
 	@Override
 	public String[] getLegalContentTypes() {
 		ensureActivated();
-
-		partitionsLock.readLock().lock();
-		try {
-			return legalTypes.toArray(String[]::new);
-		} finally {
-			partitionsLock.readLock().unlock();
-		}
+		return legalTypes.toArray(String[]::new);
 	}
 
 	@Override
 	public ITMPartitionRegion getPartition(final int offset) {
 		ensureActivated();
 
-		partitionsLock.readLock().lock();
-		try {
-			final var doc = document;
-			if (doc == null)
-				return new TMPartitionRegion(0, 0, basePartitionType, grammar);
-			final int docLen = doc.getLength();
-			if (docLen == 0)
-				return new TMPartitionRegion(0, 0, basePartitionType, grammar);
-
-			if (partitions.isEmpty())
-				return new TMPartitionRegion(0, docLen, basePartitionType, grammar);
-
-			// clamp offset to [0, docLen-1] to handle EOF and negatives
-			final int clamped = Math.clamp(offset, 0, docLen - 1);
-
-			final Map.Entry<Integer, TMPartitionRegion> floor = partitions.floorEntry(clamped);
-			if (floor != null) {
-				final TMPartitionRegion region = floor.getValue();
-				final int regionEnd = region.getOffset() + region.getLength();
-				if (clamped >= region.getOffset() && clamped < regionEnd)
-					return region;
-			}
-
-			// no covering partition found: we are in a base gap.
-			// build a base region spanning from the end of the previous region (or 0) to the next region start (or doc end)
-			final int baseStart = floor != null ? Math.max(0, floor.getValue().getOffset() + floor.getValue().getLength()) : 0;
-			final Map.Entry<Integer, TMPartitionRegion> next = partitions.ceilingEntry(clamped);
-			final int baseEnd = next != null ? next.getKey() : docLen;
-			return new TMPartitionRegion(baseStart, Math.max(0, baseEnd - baseStart), basePartitionType, grammar);
-		} finally {
-			partitionsLock.readLock().unlock();
-		}
+		final var doc = document;
+		final var basePartitionType = this.basePartitionType;
+		if (doc == null)
+			return new TMPartitionRegion(0, 0, basePartitionType, grammar);
+		final int docLen = doc.getLength();
+		if (docLen == 0)
+			return new TMPartitionRegion(0, 0, basePartitionType, grammar);
+
+		final var partitions = this.partitions;
+		if (partitions.isEmpty())
+			return new TMPartitionRegion(0, docLen, basePartitionType, grammar);
+
+		// clamp offset to [0, docLen-1] to handle EOF and negatives
+		final int clamped = Math.clamp(offset, 0, docLen - 1);
+
+		final var floor = partitions.floor(clamped);
+		if (floor != null && clamped < floor.end())
+			return new TMPartitionRegion(floor.offset(), floor.length(), floor.value().type, floor.value().grammarScope);
+
+		// no covering partition found: we are in a base gap.
+		// build a base region spanning from the end of the previous region (or 0) to the next region start (or doc end)
+		final int baseStart = floor != null ? floor.end() : 0;
+		final var next = partitions.ceiling(clamped);
+		final int baseEnd = next != null ? next.offset() : docLen;
+		return new TMPartitionRegion(baseStart, Math.max(0, baseEnd - baseStart), basePartitionType, grammar);
 	}
 
 	private void initializeModelAndBase() {
@@ -530,22 +521,14 @@ private void initializeModelAndBase() {
 		final var grammar = this.grammar;
 		if (grammar != null) {
 			model.setGrammar(grammar);
-			partitionsLock.writeLock().lock();
-			try {
+			synchronized (partitionsWriteLock) {
 				basePartitionType = scopeToPartitionType(grammar.getScopeName());
-				legalTypes.clear();
-				legalTypes.add(basePartitionType);
-			} finally {
-				partitionsLock.writeLock().unlock();
+				legalTypes = Set.of(basePartitionType);
 			}
 		} else {
-			partitionsLock.writeLock().lock();
-			try {
+			synchronized (partitionsWriteLock) {
 				basePartitionType = TMPartitions.BASE_PARTITION_TYPE;
-				legalTypes.clear();
-				legalTypes.add(basePartitionType);
-			} finally {
-				partitionsLock.writeLock().unlock();
+				legalTypes = Set.of(basePartitionType);
 			}
 		}
 
@@ -553,93 +536,61 @@ private void initializeModelAndBase() {
 	}
 
 	/**
-	 * Add {@code newSegs} into the current partition map.
+	 * Add {@code newSegs} into the current partition tree. Must be called while holding {@link #partitionsWriteLock}.
 	 * <p>
 	 * Strategy:
 	 * <ol>
-	 * <li>Adjust the partition that crosses the left boundary.
-	 * <li>Remove all partitions that start inside [startOffset, endOffset).
-	 * <li>Adjust the partition that crosses the right boundary.
-	 * <li>Insert {@code newSegs}; if a new segment touches a neighbour with the same type, merge them.
+	 * <li>If the first segment starts at {@code startOffset} and the partition ending there has the same type, extend the
+	 * replaced range and the segment to the left to merge them.
+	 * <li>If the last segment ends at {@code endOffset}, likewise merge it with the following partitions of the same type.
+	 * <li>Replace [startOffset, endOffset) in the tree with the segments; partitions crossing the boundaries are cut.
 	 * </ol>
 	 * Assumptions:
 	 * <ol>
-	 * <li>{@code newSegs} are sorted by offset and do not overlap.
+	 * <li>{@code newSegs} are sorted by offset, do not overlap, and neighbouring segments have different types.
 	 * <li>Offsets use document positions and lie within [startOffset, endOffset].
 	 * </ol>
 	 */
 	private void integratePartitions(final int startOffset, final int endOffset, final List<TMPartitionRegion> newSegs) {
-		// capture right-crossing region BEFORE mutating the map so we can rebuild its right remainder later
-		TMPartitionRegion rightCrossing = null;
-		int rightCrossingEnd = -1;
-		final Map.Entry<Integer, TMPartitionRegion> rightCand = partitions.floorEntry(endOffset);
-		if (rightCand != null) {
-			final TMPartitionRegion region = rightCand.getValue();
-			final int regionEnd = region.getOffset() + region.getLength();
-			if (region.getOffset() < endOffset && regionEnd > endOffset) {
-				rightCrossing = region;
-				rightCrossingEnd = regionEnd;
-			}
-		}
-
-		// prepare left remainder if any
-		final Map.Entry<Integer, TMPartitionRegion> left = partitions.floorEntry(startOffset);
-		if (left != null) {
-			final TMPartitionRegion region = left.getValue();
-			final int regionEnd = region.getOffset() + region.getLength();
-			if (regionEnd > startOffset) {
-				// overlap -> replace with left remainder
-				partitions.remove(left.getKey());
-				if (region.getOffset() < startOffset) {
-					partitions.put(region.getOffset(), new TMPartitionRegion(region.getOffset(), startOffset - region.getOffset(), region));
-				}
-			}
-		}
-
-		// drop all entries starting in [startOffset, endOffset) using a bounded view
-		final var bounded = partitions.subMap(startOffset, true, endOffset, false);
-		if (!bounded.isEmpty()) {
-			bounded.clear();
-		}
-
-		// recreate right remainder if a region originally crossed endOffset
-		if (rightCrossing != null) {
-			partitions.put(endOffset, new TMPartitionRegion(endOffset, rightCrossingEnd - endOffset, rightCrossing));
-		}
-
-		// insert new segments; merge with neighbours of the same type when they touch (both sides)
+		final var partitions = this.partitions;
+		final var entries = new ArrayList<Entry<PartitionKind>>(newSegs.size());
 		for (final TMPartitionRegion seg : newSegs) {
-			int newStart = seg.getOffset();
-			int newLen = seg.getLength();
-			final String type = seg.getType();
-			final String grammarScope = seg.getGrammarScope();
-
-			// merge with previous neighbour if it touches and has same type
-			final Map.Entry<Integer, TMPartitionRegion> prev = partitions.floorEntry(newStart);
-			if (prev != null) {
-				final TMPartitionRegion pr = prev.getValue();
-				final int pEnd = pr.getOffset() + pr.getLength();
-				if (pEnd == newStart && pr.getType().equals(type)) {
-					newStart = pr.getOffset();
-					newLen += pr.getLength();
-					partitions.remove(prev.getKey());
+			entries.add(new Entry<>(seg.offset, seg.length, new PartitionKind(seg.type, seg.grammarScope)));
+		}
+
+		int replaceStart = startOffset;
+		int replaceEnd = endOffset;
+		if (!entries.isEmpty()) {
+			// merge with the previous neighbour if it touches and has the same type
+			final var first = entries.get(0);
+			if (first.offset() == startOffset) {
+				final var prev = partitions.floor(startOffset - 1);
+				if (prev != null && prev.end() >= startOffset && prev.value().type.equals(first.value().type)) {
+					replaceStart = prev.offset();
+					entries.set(0, new Entry<>(prev.offset(), first.end() - prev.offset(), first.value()));
 				}
 			}
 
-			// merge repeatedly with following neighbours while contiguous and of same type
-			while (true) {
-				final int expectedNextStart = newStart + newLen;
-				final TMPartitionRegion nr = partitions.get(expectedNextStart);
-				if (nr != null && nr.getType().equals(type)) {
-					newLen += nr.getLength();
-					partitions.remove(expectedNextStart);
-					continue;
+			// merge repeatedly with following neighbours while contiguous and of the same type
+			final var last = entries.get(entries.size() - 1);
+			if (last.end() == endOffset) {
+				int mergedEnd = endOffset;
+				var next = partitions.floor(mergedEnd);
+				if (next == null || next.end() <= mergedEnd) {
+					next = partitions.ceiling(mergedEnd);
+				}
+				while (next != null && next.offset() <= mergedEnd && next.value().type.equals(last.value().type)) {
+					mergedEnd = next.end();
+					next = partitions.ceiling(mergedEnd);
+				}
+				if (mergedEnd > endOffset) {
+					replaceEnd = mergedEnd;
+					entries.set(entries.size() - 1, new Entry<>(last.offset(), mergedEnd - last.offset(), last.value()));
 				}
-				break;
 			}
-
-			partitions.put(newStart, new TMPartitionRegion(newStart, newLen, type, grammarScope));
 		}
+
+		this.partitions = partitions.replace(replaceStart, replaceEnd, replaceEnd, entries);
 	}
 
 	/**
@@ -709,14 +660,10 @@ private void onTokensChanged(final ModelTokensChangedEvent event) {
 	 * <p>
 	 * Steps:
 	 * <ol>
-	 * <li>Normalize inputs and compute {@code delta = newEndOffset - oldEndOffset}.</li>
-	 * <li>Capture any partition that crosses {@code oldEndOffset} so its right remainder can be restored at {@code newEndOffset}.</li>
-	 * <li>Collect all partitions starting at or after {@code oldEndOffset} to shift them by {@code delta} later.</li>
-	 * <li>Remove all partitions whose start lies within {@code [startOffset, oldEndOffset)}.</li>
-	 * <li>If a partition crosses {@code startOffset}, shrink it to end at {@code startOffset}.</li>
-	 * <li>Shift all collected right-side partitions by {@code delta} so they retain their logical position after the edit.</li>
-	 * <li>Recreate the captured right remainder at {@code newEndOffset} (keeping its original type and length).</li>
-	 * <li>Insert a single base partition covering {@code [startOffset, newEndOffset)}.</li>
+	 * <li>Normalize inputs.</li>
+	 * <li>Replace {@code [startOffset, oldEndOffset)} in the partition tree with a single base partition covering
+	 * {@code [startOffset, newEndOffset)}. The tree cuts partitions crossing the boundaries and shifts the partitions to the
+	 * right by {@code newEndOffset - oldEndOffset} in O(log n).</li>
 	 * </ol>
 	 * Assumptions:
 	 * <ol>
@@ -735,89 +682,27 @@ private void onTokensChanged(final ModelTokensChangedEvent event) {
 	 * @return true if the partition map was modified; false otherwise
 	 */
 	private boolean pruneAndFillBase(final int startOffset, final int oldEndOffset, final int newEndOffset) {
-		partitionsLock.writeLock().lock();
-		try {
-			final var grammar = this.grammar;
-			boolean changed = false;
+		synchronized (partitionsWriteLock) {
+			final var partitions = this.partitions;
 			final int boundedStart = Math.clamp(startOffset, 0, oldEndOffset);
 			final int boundedOldEnd = Math.max(boundedStart, oldEndOffset);
 			final int boundedNewEnd = Math.max(boundedStart, newEndOffset);
-			final int delta = boundedNewEnd - boundedOldEnd;
-
-			if (partitions.isEmpty()) {
-				// Only add a base region when there is an actual span to bridge
-				if (boundedNewEnd > boundedStart) {
-					partitions.put(boundedStart,
-							new TMPartitionRegion(boundedStart, boundedNewEnd - boundedStart, basePartitionType, grammar));
-					return true;
-				}
-				return false;
-			}
-
-			// capture right-crossing region BEFORE mutating the map so we can rebuild its right remainder later
-			TMPartitionRegion rightCrossing = null;
-			int rightCrossingEnd = -1;
-			final Map.Entry<Integer, TMPartitionRegion> rightCand = partitions.floorEntry(boundedOldEnd);
-			if (rightCand != null) {
-				final TMPartitionRegion region = rightCand.getValue();
-				final int regionEnd = region.getOffset() + region.getLength();
-				if (region.getOffset() < boundedOldEnd && regionEnd > boundedOldEnd) {
-					rightCrossing = region;
-					rightCrossingEnd = regionEnd;
-				}
-			}
-
-			// remove entries starting within [boundedStart, boundedOldEnd) using a bounded view
-			final var toDrop = partitions.subMap(boundedStart, true, boundedOldEnd, false);
-			if (!toDrop.isEmpty()) {
-				toDrop.clear();
-				changed = true;
-			}
-
-			// adjust possible left partition that overlaps startOffset
-			final Map.Entry<Integer, TMPartitionRegion> left = partitions.floorEntry(boundedStart);
-			if (left != null) {
-				final TMPartitionRegion region = left.getValue();
-				final int regionEnd = region.getOffset() + region.getLength();
-				if (regionEnd > boundedStart) {
-					partitions.put(region.getOffset(),
-							new TMPartitionRegion(region.getOffset(), boundedStart - region.getOffset(), region));
-					changed = true;
-				}
-			}
-
-			// shift tail entries (>= oldEnd) by delta so they keep their position
-			if (delta != 0) {
-				final var tailView = partitions.tailMap(boundedOldEnd, true);
-				if (!tailView.isEmpty()) {
-					final var shifted = new TreeMap<Integer, TMPartitionRegion>();
-					for (final var e : tailView.entrySet()) {
-						final int oldKey = e.getKey();
-						final TMPartitionRegion region = e.getValue();
-						final int newStart = oldKey + delta;
-						shifted.put(newStart, new TMPartitionRegion(newStart, region.getLength(), region));
-					}
-					// remove all tail entries in one shot and insert shifted ones
-					tailView.clear();
-					partitions.putAll(shifted);
-					changed = true;
-				}
-			}
 
-			// recreate right remainder if a region originally crossed oldEnd
-			if (rightCrossing != null) {
-				partitions.put(boundedNewEnd, new TMPartitionRegion(boundedNewEnd, rightCrossingEnd - boundedOldEnd, rightCrossing));
-				changed = true;
-			}
+			final boolean changed = boundedNewEnd > boundedStart
+					// partitions within or crossing the replaced span are cut
+					|| !partitions.overlapping(boundedStart, boundedOldEnd).isEmpty()
+					// partitions after the replaced span are shifted
+					|| boundedNewEnd != boundedOldEnd && partitions.ceiling(boundedOldEnd) != null;
+			if (!changed)
+				return false;
 
-			// add a base region spanning [boundedStart, boundedNewEnd)
-			if (boundedNewEnd > boundedStart) {
-				partitions.put(boundedStart, new TMPartitionRegion(boundedStart, boundedNewEnd - boundedStart, basePartitionType, grammar));
-				changed = true;
-			}
-			return changed;
-		} finally {
-			partitionsLock.writeLock().unlock();
+			// a single base region spanning [boundedStart, boundedNewEnd)
+			final var base = boundedNewEnd > boundedStart
+					? List.of(new Entry<>(boundedStart, boundedNewEnd - boundedStart, new PartitionKind(basePartitionType,
+							TMPartitionRegion.getGrammarScope(basePartitionType, grammar))))
+					: List.<Entry<PartitionKind>> of();
+			this.partitions = partitions.replace(boundedStart, boundedOldEnd, boundedNewEnd, base);
+			return true;
 		}
 	}
 
@@ -840,7 +725,8 @@ private void rebuildAll() {
 	 * <p>
 	 * Strategy and invariants:
 	 * <ul>
-	 * <li>Iterate the model line by line and normalize each token's grammar scope at most once per token.</li>
+	 * <li>Iterate the model line by line and look up each token's normalized grammar scope once per token in the
+	 * {@link #NORMALIZED_SCOPES} cache, so no scope strings are parsed or allocated in the hot path.</li>
 	 * <li>Prefer embedded scopes (e.g., {@code source.*}) over base scopes (e.g., {@code text.*}).</li>
 	 * <li>Precompute whether a line contains any embedded token to avoid nested lookahead scans in the hot path
 	 * (indentation case: base token at column 0 followed by embedded content later on the same line).</li>
@@ -877,10 +763,12 @@ private void recomputeRange(final int startOffset, final int endOffset) throws B
 		String currentGrammarScopeStr = null;
 		int currentStart = startOffset;
 
+		var scopes = new @Nullable NormalizedScope[16];
+		final var lines = model.getSnapshot();
 		for (int line = startLine; line <= endLine; line++) {
 			final int lineOffset = doc.getLineOffset(line);
 			final int lineEnd = lineOffset + doc.getLineLength(line);
-			final List<TMToken> tokens = model.getLineTokens(line);
+			final List<TMToken> tokens = lines.getLineTokens(line);
 
 			if (tokens == null || tokens.isEmpty()) {
 				// No tokens for this line: extend current segment using base when not initialized yet
@@ -894,11 +782,16 @@ private void recomputeRange(final int startOffset, final int endOffset) throws B
 				// Precompute embedded token boundaries on this line to reduce nested lookahead work.
 				// We keep both the first and the last embedded token start indices so we can
 				// treat transient base tokens between embedded tokens as part of the embedded run.
+				final int tokenCount = tokens.size();
+				if (scopes.length < tokenCount) {
+					scopes = new @Nullable NormalizedScope[Math.max(tokenCount, scopes.length * 2)];
+				}
 				int firstEmbeddedStart = -1;
 				int lastEmbeddedStart = -1;
-				for (final TMToken t : tokens) {
-					final String prefNorm = t.grammarScope == null ? null : normalizeVariantScope(t.grammarScope);
-					if (prefNorm != null && !Objects.equals(normalizeBaseScope(prefNorm), baseRootNN)) {
+				for (int i = 0; i < tokenCount; i++) {
+					final TMToken t = tokens.get(i);
+					final var scope = scopes[i] = normalizeTokenScope(t.grammarScope);
+					if (scope != null && !scope.baseScope.equals(baseRootNN)) {
 						if (firstEmbeddedStart < 0) {
 							firstEmbeddedStart = t.startIndex;
 						}
@@ -913,26 +806,25 @@ private void recomputeRange(final int startOffset, final int endOffset) throws B
 					// treat it as part of the embedded partition instead of starting a base segment.
 					final int spanStart = Math.max(lineOffset, startOffset);
 					final int spanEnd = Math.min(lineEnd, endOffset);
-					if (spanEnd > spanStart) {
-						final String slice = doc.get(spanStart, spanEnd - spanStart);
-						if (slice.isBlank()) {
-							skipWhitespaceBaseLineInEmbeddedRun = true;
-						}
+					if (spanEnd > spanStart && isBlank(doc, spanStart, spanEnd - spanStart)) {
+						skipWhitespaceBaseLineInEmbeddedRun = true;
 					}
 				}
 
 				if (!skipWhitespaceBaseLineInEmbeddedRun) {
-					for (final TMToken tok : tokens) {
-						final String prefNorm = tok.grammarScope == null ? null : normalizeVariantScope(tok.grammarScope);
-						final boolean isBase = prefNorm == null || Objects.equals(normalizeBaseScope(prefNorm), baseRootNN);
-						final String root = isBase ? basePartitionType : scopeToPartitionType(prefNorm != null ? prefNorm : baseRootNN);
+					for (int i = 0; i < tokenCount; i++) {
+						final TMToken tok = tokens.get(i);
+						final var scope = scopes[i];
+						final boolean isBase = scope == null || scope.baseScope.equals(baseRootNN);
+						final String root = scope == null || isBase ? basePartitionType : scope.partitionType;
+						final String tokenGrammarScope = scope == null || isBase ? baseRootNN : scope.variantScope;
 
 						if (currentType == null) {
 							currentType = root;
 							final boolean isEmbedded = !isBase;
 							final int firstTokenStart = lineOffset + tok.startIndex;
 							currentStart = Math.max(currentStart, isEmbedded ? lineOffset : firstTokenStart);
-							currentGrammarScopeStr = isBase ? baseRootNN : prefNorm;
+							currentGrammarScopeStr = tokenGrammarScope;
 							continue;
 						}
 
@@ -953,7 +845,7 @@ private void recomputeRange(final int startOffset, final int endOffset) throws B
 							addSeg(newSegs, currentStart, segEnd, currentType, currentGrammarScopeStr, baseScope);
 							currentType = root;
 							currentStart = segEnd;
-							currentGrammarScopeStr = isBase ? baseRootNN : prefNorm;
+							currentGrammarScopeStr = tokenGrammarScope;
 						}
 					}
 				}
@@ -981,16 +873,22 @@ private void recomputeRange(final int startOffset, final int endOffset) throws B
 		// merge new segments that are next to each other and have the same type
 		final List<TMPartitionRegion> merged = coalesce(newSegs);
 		// add them to the map: remove overlaps and keep the other parts
-		final Set<String> newTypes = new HashSet<>();
-		for (final TMPartitionRegion r : merged) {
-			newTypes.add(r.getType());
-		}
-		partitionsLock.writeLock().lock();
-		try {
-			legalTypes.addAll(newTypes);
+		synchronized (partitionsWriteLock) {
+			final var legalTypes = this.legalTypes;
+			@Nullable
+			Set<String> newLegalTypes = null;
+			for (final TMPartitionRegion r : merged) {
+				if (!legalTypes.contains(r.getType())) {
+					if (newLegalTypes == null) {
+						newLegalTypes = new HashSet<>(legalTypes);
+					}
+					newLegalTypes.add(r.getType());
+				}
+			}
+			if (newLegalTypes != null) {
+				this.legalTypes = Set.copyOf(newLegalTypes);
+			}
 			integratePartitions(startOffset, endOffset, merged);
-		} finally {
-			partitionsLock.writeLock().unlock();
 		}
 	}
 
@@ -14,8 +14,6 @@
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.jface.text.rules.IToken;
@@ -28,6 +26,7 @@
 import org.eclipse.tm4e.core.internal.theme.raw.RawThemeReader;
 import org.eclipse.tm4e.core.internal.utils.ScopeNames;
 import org.eclipse.tm4e.core.model.TMToken;
+import org.eclipse.tm4e.core.model.TokenStyleCache;
 import org.eclipse.tm4e.core.registry.IThemeSource;
 import org.eclipse.tm4e.core.theme.IStyle;
 import org.eclipse.tm4e.core.theme.RGB;
@@ -40,7 +39,7 @@ public class TMThemeTokenProvider extends AbstractTokenProvider {
 
 	private final Theme theme;
 	private final List<String> colors;
-	private final ConcurrentMap<String, IToken> tokenCacheByScopeStack = new ConcurrentHashMap<>();
+	private final TokenStyleCache<IToken> tokenCache = new TokenStyleCache<>(this::getTokenUncached);
 
 	public TMThemeTokenProvider(final IThemeSource.ContentType contentType, final InputStream in) throws Exception {
 		final var rawTheme = RawThemeReader
@@ -49,32 +48,23 @@ public TMThemeTokenProvider(final IThemeSource.ContentType contentType, final In
 		colors = theme.getColorMap();
 	}
 
+	/**
+	 * Looks up the token by the theme independent {@link TMToken#scopes} list, so the theme is only matched once per distinct
+	 * scopes list and never while painting already seen tokens.
+	 */
 	@Override
 	public IToken getToken(final TMToken token) {
-		if (token.scopes.isEmpty())
+		return tokenCache.get(token);
+	}
+
+	private IToken getTokenUncached(final List<String> scopes) {
+		if (scopes.isEmpty())
 			return DEFAULT_TOKEN;
 
-		final String[] scopeNames = new String[token.scopes.size()];
-		final var keyBuilder = new StringBuilder(token.scopes.size() * 24);
-		for (int i = 0, size = token.scopes.size(); i < size; i++) {
-			final var scope = ScopeNames.withoutContributor(token.scopes.get(i));
-			scopeNames[i] = scope;
-			if (i > 0) {
-				keyBuilder.append('\n');
-			}
-			keyBuilder.append(scope);
+		final String[] scopeNames = new String[scopes.size()];
+		for (int i = 0; i < scopeNames.length; i++) {
+			scopeNames[i] = ScopeNames.withoutContributor(scopes.get(i));
 		}
-		final var cacheKey = keyBuilder.toString();
-		final var cachedToken = tokenCacheByScopeStack.get(cacheKey);
-		if (cachedToken != null)
-			return cachedToken;
-
-		final IToken computedToken = getTokenUncached(scopeNames);
-		final var existingToken = tokenCacheByScopeStack.putIfAbsent(cacheKey, computedToken);
-		return existingToken == null ? computedToken : existingToken;
-	}
-
-	private IToken getTokenUncached(final String[] scopeNames) {
 		final var scopePath = ScopeStack.from(scopeNames);
 		final var styleAttrs = theme.match(scopePath);
 		if (styleAttrs == null || styleAttrs.equals(StyleAttributes.NO_STYLE))
@@ -115,10 +115,11 @@ private static void updateTextMarkers(final ITMDocumentModel docModel, final int
 		final var tagSelectorPattern = markerConfigs.tagSelectorPattern;
 
 		// iterate over all lines
+		final var lines = docModel.getSnapshot();
 		for (int lineNumber = startLineNumber; lineNumber <= numberOfLines; lineNumber++) {
 			final var lineNumberObj = Integer.valueOf(lineNumber);
 			final int lineIndex = lineNumber - 1;
-			final var tokens = docModel.getLineTokens(lineIndex);
+			final var tokens = lines.getLineTokens(lineIndex);
 			if (tokens == null)
 				continue;
 			final int tokensCount = tokens.size();
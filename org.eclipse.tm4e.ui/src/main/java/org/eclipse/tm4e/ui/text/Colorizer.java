@@ -108,9 +108,10 @@ void colorize(final IRegion damageRegion, final ITMDocumentModel tmModel) throws
 			IToken lastToken = Token.UNDEFINED;
 			TextAttribute lastAttribute = getTokenTextAttribute(lastToken);
 
+			final var lines = tmModel.getSnapshot();
 			List<TMToken> tokens = null;
 			for (int lineIndex = fromLineIndex; lineIndex <= toLineIndex; lineIndex++) {
-				tokens = tmModel.getLineTokens(lineIndex);
+				tokens = lines.getLineTokens(lineIndex);
 				if (tokens == null) {
 					if (TMUIPlugin.isLogTraceEnabled()) {
 						TMUIPlugin.logTrace("TextMate tokens not yet available for line " + lineIndex);
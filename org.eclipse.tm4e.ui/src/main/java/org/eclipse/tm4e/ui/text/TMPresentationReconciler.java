@@ -33,6 +33,7 @@
 import org.eclipse.jface.text.ITextOperationTarget;
 import org.eclipse.jface.text.ITextViewer;
 import org.eclipse.jface.text.ITextViewerExtension5;
+import org.eclipse.jface.text.IViewportListener;
 import org.eclipse.jface.text.Region;
 import org.eclipse.jface.text.TextEvent;
 import org.eclipse.jface.text.TextPresentation;
@@ -43,6 +44,8 @@
 import org.eclipse.jface.text.source.SourceViewer;
 import org.eclipse.swt.custom.StyleRange;
 import org.eclipse.swt.custom.StyledText;
+import org.eclipse.swt.events.FocusEvent;
+import org.eclipse.swt.events.FocusListener;
 import org.eclipse.swt.widgets.Control;
 import org.eclipse.tm4e.core.TMException;
 import org.eclipse.tm4e.core.grammar.IGrammar;
@@ -138,6 +141,26 @@ public class TMPresentationReconciler implements IPresentationReconciler {
 		}
 	};
 
+	/**
+	 * Listener to prioritize the background tokenization of the document shown in the focused editor.
+	 */
+	private final FocusListener focusListener = new FocusListener() {
+		@Override
+		public void focusGained(final FocusEvent event) {
+			setModelPrioritized(true);
+		}
+
+		@Override
+		public void focusLost(final FocusEvent event) {
+			setModelPrioritized(false);
+		}
+	};
+
+	/**
+	 * Listener to tokenize the lines scrolled into view first.
+	 */
+	private final IViewportListener viewportListener = verticalOffset -> updateModelVisibleRange();
+
 	/** The target viewer */
 	private @Nullable ITextViewer viewer;
 	private final TextViewerListener viewerListener = new TextViewerListener();
@@ -220,6 +243,8 @@ public void inputDocumentChanged(final @Nullable IDocument oldDoc, final @Nullab
 			final var docModel = TMModelManager.INSTANCE.connect(newDoc);
 			docModel.setGrammar(newDocGrammar);
 			docModel.addModelTokensChangedListener(modelsTokensChangedListener);
+			docModel.setPrioritized(viewer.getTextWidget().isFocusControl());
+			docModel.setVisibleRange(viewer.getTopIndex(), viewer.getBottomIndex());
 
 			// For new models the colorizer will be invoked after tokenization. For reused
 			// models (e.g. when splitting an editor) this must be done explicitly.
@@ -241,7 +266,7 @@ public void textChanged(final TextEvent event) {
 			if (viewer == null)
 				return;
 
-			// case 1) changed text: propagate previous style (which will be overridden later asynchronously by TMModel.TokenizerThread)
+			// case 1) changed text: propagate previous style (which will be overridden later asynchronously by the TMModel's background tokenization)
 			if (event.getDocumentEvent() != null) {
 				final int diff = event.getText().length() - event.getLength();
 				if (diff == 0 || event.getOffset() <= 0)
@@ -273,8 +298,8 @@ public void textChanged(final TextEvent event) {
 				// case where there is grammar & theme -> update text presentation with the grammar tokens
 
 				// It's possible that there are two or more SourceViewers opened for the same document,
-				// so when one of them is closed the existing TMModel is also "closed" and its TokenizerThread
-				// is interrupted and terminated.
+				// so when one of them is closed the existing TMModel is also "closed" and its background tokenization
+				// is cancelled.
 				// In this case, in order to let the others Source Viewers to continue working a new
 				// TMModel object is to be created for the document, so it should be initialized
 				// with the existing grammar as well as new ModelTokensChangedListener is to be added.
@@ -381,6 +406,8 @@ public void setTheme(final ITokenProvider newTheme) {
 			if (doc == null)
 				return;
 
+			// the model's tokens are theme independent, so the document is not re-tokenized. The new theme only resolves the
+			// style of each distinct scopes list of the painted tokens once, see TokenStyleCache
 			final var docModel = TMModelManager.INSTANCE.connect(doc);
 			try {
 				colorizer.colorize(new Region(0, doc.getLength()), docModel);
@@ -390,10 +417,31 @@ public void setTheme(final ITokenProvider newTheme) {
 		}
 	}
 
+	private void setModelPrioritized(final boolean prioritized) {
+		final IDocument doc = getViewerDocument();
+		if (doc != null && TMModelManager.INSTANCE.isConnected(doc)) {
+			TMModelManager.INSTANCE.connect(doc).setPrioritized(prioritized);
+		}
+	}
+
+	private void updateModelVisibleRange() {
+		final var viewer = this.viewer;
+		final IDocument doc = getViewerDocument();
+		if (viewer != null && doc != null && TMModelManager.INSTANCE.isConnected(doc)) {
+			TMModelManager.INSTANCE.connect(doc).setVisibleRange(viewer.getTopIndex(), viewer.getBottomIndex());
+		}
+	}
+
 	@Override
 	public void install(final ITextViewer viewer) {
 		this.viewer = viewer;
 		viewer.addTextInputListener(viewerListener);
+		viewer.addViewportListener(viewportListener);
+
+		final StyledText widget = viewer.getTextWidget();
+		if (widget != null && !widget.isDisposed()) {
+			widget.addFocusListener(focusListener);
+		}
 
 		final IDocument doc = viewer.getDocument();
 		if (doc != null) {
@@ -407,6 +455,13 @@ public void uninstall() {
 		final var viewer = this.viewer;
 		if (viewer != null) {
 			viewer.removeTextInputListener(viewerListener);
+			viewer.removeViewportListener(viewportListener);
+
+			final StyledText widget = viewer.getTextWidget();
+			if (widget != null && !widget.isDisposed()) {
+				widget.removeFocusListener(focusListener);
+			}
+			setModelPrioritized(false);
 
 			viewerListener.inputDocumentAboutToBeChanged(viewer.getDocument(), null);
 			ThemeManager.removePreferenceChangeListener(themeChangeListener);
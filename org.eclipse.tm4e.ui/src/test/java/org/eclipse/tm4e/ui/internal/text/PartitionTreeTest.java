@@ -0,0 +1,132 @@
+/**
+ * Copyright (c) 2026 Sebastian Thomschke and others.
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.eclipse.tm4e.ui.internal.text;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tm4e.ui.internal.text.PartitionTree.Entry;
+import org.junit.jupiter.api.Test;
+
+class PartitionTreeTest {
+
+	private static Entry<String> entry(final int offset, final int length, final String value) {
+		return new Entry<>(offset, length, value);
+	}
+
+	/**
+	 * Applies {@link PartitionTree#replace(int, int, int, List)} to a plain list of entries.
+	 */
+	private static List<Entry<String>> naiveReplace(final List<Entry<String>> entries, final int start, final int oldEnd,
+			final int newEnd, final List<Entry<String>> replacement) {
+		final var result = new ArrayList<Entry<String>>();
+		for (final var e : entries) {
+			if (e.offset() < start) {
+				result.add(entry(e.offset(), Math.min(e.end(), start) - e.offset(), e.value()));
+			}
+		}
+		result.addAll(replacement);
+		for (final var e : entries) {
+			if (e.end() > oldEnd) {
+				final int from = Math.max(e.offset(), oldEnd);
+				result.add(entry(from + newEnd - oldEnd, e.end() - from, e.value()));
+			}
+		}
+		return result;
+	}
+
+	private static @Nullable Entry<String> naiveFloor(final List<Entry<String>> entries, final int offset) {
+		@Nullable
+		Entry<String> result = null;
+		for (final var e : entries) {
+			if (e.offset() <= offset) {
+				result = e;
+			}
+		}
+		return result;
+	}
+
+	private static @Nullable Entry<String> naiveCeiling(final List<Entry<String>> entries, final int offset) {
+		for (final var e : entries) {
+			if (e.offset() >= offset)
+				return e;
+		}
+		return null;
+	}
+
+	private static void assertMatchesNaive(final PartitionTree<String> tree, final List<Entry<String>> entries,
+			final int docLength) {
+		assertThat(tree.toList()).isEqualTo(entries);
+		assertThat(tree.isEmpty()).isEqualTo(entries.isEmpty());
+		for (int offset = -1; offset <= docLength + 1; offset++) {
+			assertThat(tree.floor(offset)).as("floor of %d", offset).isEqualTo(naiveFloor(entries, offset));
+			assertThat(tree.ceiling(offset)).as("ceiling of %d", offset).isEqualTo(naiveCeiling(entries, offset));
+		}
+		for (int from = 0; from <= docLength; from += 7) {
+			final int start = from;
+			final int end = from + 13;
+			assertThat(tree.overlapping(start, end)).as("entries overlapping [%d, %d)", start, end)
+					.isEqualTo(entries.stream().filter(e -> e.offset() < end && e.end() > start).toList());
+		}
+	}
+
+	@Test
+	void testReplace() {
+		var tree = PartitionTree.<String> empty()
+				.replace(0, 0, 30, List.of(entry(0, 10, "a"), entry(15, 5, "b"), entry(20, 10, "c")));
+		assertThat(tree.toList()).containsExactly(entry(0, 10, "a"), entry(15, 5, "b"), entry(20, 10, "c"));
+		assertThat(tree.floor(12)).isEqualTo(entry(0, 10, "a"));
+		assertThat(tree.ceiling(12)).isEqualTo(entry(15, 5, "b"));
+		assertThat(tree.overlapping(9, 16)).containsExactly(entry(0, 10, "a"), entry(15, 5, "b"));
+
+		// insert 3 chars into the middle of "a" -> "a" is cut and the following entries are shifted
+		tree = tree.replace(5, 5, 8, List.of(entry(5, 3, "x")));
+		assertThat(tree.toList()).containsExactly(entry(0, 5, "a"), entry(5, 3, "x"), entry(8, 5, "a"), entry(18, 5, "b"),
+				entry(23, 10, "c"));
+
+		// delete a range crossing two entries
+		tree = tree.replace(10, 25, 10, List.of());
+		assertThat(tree.toList()).containsExactly(entry(0, 5, "a"), entry(5, 3, "x"), entry(8, 2, "a"), entry(10, 8, "c"));
+	}
+
+	@Test
+	void testIncrementalUpdatesMatchNaive() {
+		final var random = new Random(42);
+		final String[] values = { "a", "b", "c" };
+		var tree = PartitionTree.<String> empty();
+		var entries = List.<Entry<String>> of();
+		int docLength = 0;
+		for (int round = 0; round < 500; round++) {
+			final int start = random.nextInt(docLength + 1);
+			final int oldEnd = start + random.nextInt(Math.min(docLength - start, 40) + 1);
+			final int newEnd = start + random.nextInt(40);
+			final var replacement = new ArrayList<Entry<String>>();
+			int cursor = start;
+			while (cursor < newEnd) {
+				final int gap = random.nextInt(3);
+				final int length = 1 + random.nextInt(8);
+				if (cursor + gap + length > newEnd) {
+					break;
+				}
+				replacement.add(entry(cursor + gap, length, values[random.nextInt(values.length)]));
+				cursor += gap + length;
+			}
+
+			tree = tree.replace(start, oldEnd, newEnd, replacement);
+			entries = naiveReplace(entries, start, oldEnd, newEnd, replacement);
+			docLength += newEnd - oldEnd;
+			assertMatchesNaive(tree, entries, docLength);
+		}
+	}
+}